@@ -0,0 +1,204 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Operational endpoints for sizing and inspecting the movie service internals.
+ */
+@RestController
+public class AdminController {
+    private static final Logger logger = LogManager.getLogger(AdminController.class);
+
+    @Autowired
+    private MovieService movieService;
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private SimilarMoviesService similarMoviesService;
+
+    @Autowired
+    private TypeaheadService typeaheadService;
+
+    @Autowired
+    private QueryAnalytics queryAnalytics;
+
+    @Autowired(required = false)
+    private CatalogReplicator catalogReplicator;
+
+    /**
+     * Search result cache statistics: size, estimated bytes, hits, misses and evictions.
+     */
+    @GetMapping("/api/admin/search-cache")
+    public ResponseEntity<Map<String, Object>> getSearchCacheStats() {
+        logger.debug("Reporting search cache statistics");
+        Map<String, Object> response = new HashMap<>();
+        response.put("catalogVersion", movieService.getCatalogVersion());
+        response.put("searchCache", movieService.getSearchCacheStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Estimated heap retained by the catalog: total, per movie, the shared director and
+     * genre tables, and the savings over movies holding their own strings.
+     */
+    @GetMapping("/api/admin/memory")
+    public ResponseEntity<Map<String, Object>> getCatalogFootprint() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("catalogVersion", movieService.getCatalogVersion());
+        response.put("footprint", movieService.getFootprint());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Parallel search engine settings and the sequential cutoff calibrated so far. Reading
+     * it neither calibrates the engine nor starts its pool.
+     */
+    @GetMapping("/api/admin/search-engine")
+    public ResponseEntity<Map<String, Object>> getSearchEngineStats() {
+        ParallelSearchEngine engine = movieService.getSearchEngine();
+        Map<String, Object> response = new HashMap<>();
+        response.put("parallelism", engine.getParallelism());
+        response.put("segmentSize", engine.getSegmentSize());
+        int cutoff = engine.getCalibratedSequentialCutoff();
+        response.put("sequentialCutoff", cutoff >= 0 ? cutoff : "not calibrated");
+        response.put("poolStarted", engine.isPoolStarted());
+        response.put("parallelSearches", engine.getParallelSearches());
+        response.put("sequentialSearches", engine.getSequentialSearches());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Replication state: this instance's feed versions and, on followers, the replicator's progress.
+     */
+    @GetMapping("/api/admin/replication")
+    public ResponseEntity<Map<String, Object>> getReplicationStatus() {
+        CatalogChangeLog changeLog = movieService.getChangeLog();
+        Map<String, Object> response = new HashMap<>();
+        response.put("catalogVersion", movieService.getCatalogVersion());
+        response.put("replicationEpoch", changeLog.getEpoch());
+        response.put("replicationVersion", changeLog.getLatestVersion());
+        response.put("oldestRetainedVersion", changeLog.getBaseVersion());
+        if (catalogReplicator != null) {
+            Map<String, Object> follower = new HashMap<>();
+            follower.put("leaderUrl", catalogReplicator.getLeaderUrl());
+            follower.put("running", catalogReplicator.isRunning());
+            follower.put("appliedEpoch", catalogReplicator.getAppliedEpoch());
+            follower.put("appliedVersion", catalogReplicator.getAppliedVersion());
+            follower.put("snapshotsInstalled", catalogReplicator.getSnapshotsInstalled());
+            follower.put("changesApplied", catalogReplicator.getChangesApplied());
+            follower.put("failures", catalogReplicator.getFailures());
+            response.put("follower", follower);
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Similarity index state: whether it is built yet, and its build mode, size, build time
+     * and the catalog version it reflects.
+     */
+    @GetMapping("/api/admin/similar-movies")
+    public ResponseEntity<Map<String, Object>> getSimilarityIndexStats() {
+        SimilarityIndex index = similarMoviesService.currentIndex();
+        Map<String, Object> response = new HashMap<>();
+        response.put("catalogVersion", movieService.getCatalogVersion());
+        response.put("built", index != null);
+        if (index == null) {
+            return ResponseEntity.ok(response);
+        }
+        response.put("mode", index.getMode());
+        response.put("movies", index.size());
+        response.put("neighboursPerMovie", index.getK());
+        response.put("buildMillis", index.getBuildMillis());
+        response.put("indexedCatalogVersion", index.getCatalogVersion());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Whether the typeahead index is built yet, its trie size, stored completion lists,
+     * build time and the catalog version it reflects.
+     */
+    @GetMapping("/api/admin/typeahead")
+    public ResponseEntity<Map<String, Object>> getTypeaheadStats() {
+        TypeaheadIndex index = typeaheadService.currentIndex();
+        Map<String, Object> response = new HashMap<>();
+        response.put("catalogVersion", movieService.getCatalogVersion());
+        response.put("built", index != null);
+        if (index == null) {
+            return ResponseEntity.ok(response);
+        }
+        response.put("completions", index.getCompletionCount());
+        response.put("trieNodes", index.getNodeCount());
+        response.put("storedCompletions", index.getStoredCompletions());
+        response.put("completionsPerPrefix", index.getK());
+        response.put("buildMillis", index.getBuildMillis());
+        response.put("indexedCatalogVersion", typeaheadService.getIndexedCatalogVersion());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Most frequent searches over the retained time windows, with sketch sizing.
+     */
+    @GetMapping("/api/admin/query-analytics")
+    public ResponseEntity<Map<String, Object>> getQueryAnalytics(
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        Map<String, Object> response = new HashMap<>();
+        if (limit < 1 || limit > queryAnalytics.getTopK()) {
+            response.put("error", "limit must be between 1 and " + queryAnalytics.getTopK());
+            return ResponseEntity.badRequest().body(response);
+        }
+        List<Map<String, Object>> topQueries = new ArrayList<>();
+        for (QueryAnalytics.QueryCount query : queryAnalytics.topQueries(limit)) {
+            SearchCriteria criteria = query.getCriteria();
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", criteria.getName());
+            entry.put("id", criteria.getId());
+            entry.put("genre", criteria.getGenre());
+            if (criteria.hasYearRange()) {
+                entry.put("minYear", criteria.getMinYear());
+                entry.put("maxYear", criteria.getMaxYear());
+            }
+            if (criteria.hasRatingRange()) {
+                entry.put("minRating", criteria.getMinRating());
+                entry.put("maxRating", criteria.getMaxRating());
+            }
+            entry.put("count", query.getCount());
+            topQueries.add(entry);
+        }
+        response.put("topQueries", topQueries);
+        response.put("windowedSearches", queryAnalytics.getWindowedTotal());
+        response.put("searchesSinceStartup", queryAnalytics.getTotalRecorded());
+        response.put("windowMillis", queryAnalytics.getWindowMillis());
+        response.put("windows", queryAnalytics.getWindowCount());
+        response.put("sketchBytes", queryAnalytics.getSketchBytes());
+        response.put("warmedUpQueries", queryAnalytics.getWarmedUp());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Review loader bulkhead: threads, loads in progress and queued, and loads turned away.
+     */
+    @GetMapping("/api/admin/reviews")
+    public ResponseEntity<Map<String, Object>> getReviewLoaderStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("loaderThreads", reviewService.getLoaderThreads());
+        response.put("activeLoads", reviewService.getActiveLoads());
+        response.put("queuedLoads", reviewService.getQueuedLoads());
+        response.put("completedLoads", reviewService.getCompletedLoads());
+        response.put("rejectedLoads", reviewService.getRejectedLoads());
+        return ResponseEntity.ok(response);
+    }
+}
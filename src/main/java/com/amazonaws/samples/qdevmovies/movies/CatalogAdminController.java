@@ -0,0 +1,186 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Create, update and delete endpoints for the catalog. Changes are applied to the
+ * running catalog, persisted when the store is writable and published to followers
+ * through the replication feed; searches keep running while they are applied.
+ *
+ * <p>Only registered when {@code movies.admin.catalog-writes} is {@code true}, and like
+ * every admin endpoint only open to the admin user, see {@link SecurityConfiguration}.
+ * Followers take their catalog from the leader, so they reject these requests.
+ */
+@RestController
+@ConditionalOnProperty(prefix = "movies.admin", name = "catalog-writes", havingValue = "true")
+public class CatalogAdminController {
+    private static final Logger logger = LogManager.getLogger(CatalogAdminController.class);
+
+    static final int MAX_NAME_LENGTH = 100;
+    static final int MAX_GENRE_LENGTH = 50;
+    static final int MAX_DESCRIPTION_LENGTH = 2000;
+    static final int MIN_YEAR = 1888;
+    static final int MAX_YEAR = 2100;
+    static final int MAX_DURATION = 1000;
+    static final double MAX_RATING = 5.0;
+
+    @Autowired
+    private MovieService movieService;
+
+    @Autowired(required = false)
+    private CatalogReplicator catalogReplicator;
+
+    /**
+     * Adds a movie. Without an {@code id} in the body the next unused ID is assigned.
+     */
+    @PostMapping(value = "/api/admin/movies", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> createMovie(@RequestBody String body) {
+        Optional<ResponseEntity<Map<String, Object>>> rejected = rejectOnFollower();
+        if (rejected.isPresent()) {
+            return rejected.get();
+        }
+        CatalogChange change;
+        try {
+            JSONObject json = new JSONObject(body);
+            if (json.has("id") && !json.isNull("id")) {
+                Movie movie = parseMovie(json, json.getLong("id"));
+                Optional<CatalogChange> created = movieService.createMovie(movie);
+                if (!created.isPresent()) {
+                    return error(HttpStatus.CONFLICT, "Movie with ID " + movie.getId() + " already exists");
+                }
+                change = created.get();
+            } else {
+                validate(json);
+                change = movieService.createMovie(id -> parseMovie(json, id));
+            }
+        } catch (JSONException | IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        logger.info("Created movie {} at replication version {}", change.getMovieId(), change.getVersion());
+        return ResponseEntity.created(URI.create("/movies/" + change.getMovieId() + "/details"))
+            .body(changeResponse(change));
+    }
+
+    /**
+     * Replaces an existing movie. An {@code id} in the body must match the path.
+     */
+    @PutMapping(value = "/api/admin/movies/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> updateMovie(@PathVariable("id") long movieId,
+                                                           @RequestBody String body) {
+        Optional<ResponseEntity<Map<String, Object>>> rejected = rejectOnFollower();
+        if (rejected.isPresent()) {
+            return rejected.get();
+        }
+        Optional<CatalogChange> change;
+        try {
+            JSONObject json = new JSONObject(body);
+            if (json.has("id") && !json.isNull("id") && json.getLong("id") != movieId) {
+                return error(HttpStatus.BAD_REQUEST, "Body ID " + json.get("id") + " does not match path ID " + movieId);
+            }
+            change = movieService.updateMovie(parseMovie(json, movieId));
+        } catch (JSONException | IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (!change.isPresent()) {
+            return error(HttpStatus.NOT_FOUND, "Movie with ID " + movieId + " was not found");
+        }
+        logger.info("Updated movie {} at replication version {}", movieId, change.get().getVersion());
+        return ResponseEntity.ok(changeResponse(change.get()));
+    }
+
+    @DeleteMapping("/api/admin/movies/{id}")
+    public ResponseEntity<Map<String, Object>> deleteMovie(@PathVariable("id") long movieId) {
+        Optional<ResponseEntity<Map<String, Object>>> rejected = rejectOnFollower();
+        if (rejected.isPresent()) {
+            return rejected.get();
+        }
+        Optional<CatalogChange> change = movieService.deleteMovie(movieId);
+        if (!change.isPresent()) {
+            return error(HttpStatus.NOT_FOUND, "Movie with ID " + movieId + " was not found");
+        }
+        logger.info("Deleted movie {} at replication version {}", movieId, change.get().getVersion());
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Reads a movie in the movies.json schema, rejecting missing or out-of-range fields.
+     * {@code description} is optional.
+     */
+    static Movie parseMovie(JSONObject json, long id) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("id must be positive");
+        }
+        validate(json);
+        return new Movie(id, json.getString("movieName").trim(), json.getString("director").trim(),
+            json.getInt("year"), json.getString("genre").trim(), json.optString("description", "").trim(),
+            json.getInt("duration"), json.getDouble("imdbRating"));
+    }
+
+    private static void validate(JSONObject json) {
+        requireText(json, "movieName", MAX_NAME_LENGTH);
+        requireText(json, "director", MAX_NAME_LENGTH);
+        requireText(json, "genre", MAX_GENRE_LENGTH);
+        if (json.optString("description", "").length() > MAX_DESCRIPTION_LENGTH) {
+            throw new IllegalArgumentException("description must be at most " + MAX_DESCRIPTION_LENGTH + " characters");
+        }
+        int year = json.getInt("year");
+        if (year < MIN_YEAR || year > MAX_YEAR) {
+            throw new IllegalArgumentException("year must be between " + MIN_YEAR + " and " + MAX_YEAR);
+        }
+        int duration = json.getInt("duration");
+        if (duration < 1 || duration > MAX_DURATION) {
+            throw new IllegalArgumentException("duration must be between 1 and " + MAX_DURATION + " minutes");
+        }
+        double rating = json.getDouble("imdbRating");
+        if (!(rating >= 0 && rating <= MAX_RATING)) {
+            throw new IllegalArgumentException("imdbRating must be between 0 and " + MAX_RATING);
+        }
+    }
+
+    private static void requireText(JSONObject json, String key, int maxLength) {
+        String value = json.getString(key).trim();
+        if (value.isEmpty() || value.length() > maxLength) {
+            throw new IllegalArgumentException(key + " must be 1 to " + maxLength + " characters");
+        }
+    }
+
+    private Optional<ResponseEntity<Map<String, Object>>> rejectOnFollower() {
+        if (catalogReplicator == null) {
+            return Optional.empty();
+        }
+        return Optional.of(error(HttpStatus.CONFLICT, "This instance is a replication follower; change the catalog on the leader"));
+    }
+
+    private Map<String, Object> changeResponse(CatalogChange change) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("movie", change.getMovie());
+        response.put("replicationVersion", change.getVersion());
+        response.put("catalogVersion", movieService.getCatalogVersion());
+        return response;
+    }
+
+    private static ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("error", message);
+        return ResponseEntity.status(status).body(response);
+    }
+}
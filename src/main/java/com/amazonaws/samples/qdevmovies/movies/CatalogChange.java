@@ -0,0 +1,50 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+/**
+ * One versioned catalog delta: a movie was created or replaced, or deleted.
+ * Versions are assigned by the instance that made the change and preserved by replicas,
+ * so every instance agrees on what "version N" of the catalog contains.
+ */
+public final class CatalogChange {
+
+    public enum Type { UPSERT, DELETE }
+
+    private final long version;
+    private final Type type;
+    private final long movieId;
+    private final Movie movie;
+
+    private CatalogChange(long version, Type type, long movieId, Movie movie) {
+        this.version = version;
+        this.type = type;
+        this.movieId = movieId;
+        this.movie = movie;
+    }
+
+    public static CatalogChange upsert(long version, Movie movie) {
+        return new CatalogChange(version, Type.UPSERT, movie.getId(), movie);
+    }
+
+    public static CatalogChange delete(long version, long movieId) {
+        return new CatalogChange(version, Type.DELETE, movieId, null);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getMovieId() {
+        return movieId;
+    }
+
+    /**
+     * @return the new state of the movie, or null for deletes
+     */
+    public Movie getMovie() {
+        return movie;
+    }
+}
@@ -0,0 +1,181 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Bounded, in-memory history of recent catalog changes, used to serve the replication
+ * change feed. Changes are kept in a ring buffer indexed by version, so a replica asking
+ * for "everything after version N" is answered without scanning. Once a replica falls
+ * further behind than the buffer reaches, it must start over from a full snapshot.
+ *
+ * <p>Versions only mean something within one history, which restarts when an instance
+ * does. Each history is named by an epoch: a random ID for a log that starts here, or
+ * the leader's epoch once a snapshot from it is installed. A replica whose epoch differs
+ * has versions from another history and must start over from a snapshot too.
+ *
+ * <p>Replicas that are up to date can register a listener for the next change instead
+ * of holding a thread while they wait for it.
+ */
+public class CatalogChangeLog {
+    public static final int DEFAULT_CAPACITY = 10_000;
+
+    private static final class Waiter {
+        final long since;
+        final Runnable listener;
+
+        Waiter(long since, Runnable listener) {
+            this.since = since;
+            this.listener = listener;
+        }
+    }
+
+    private final CatalogChange[] ring;
+    // Changes with baseVersion < version <= latestVersion are retained
+    private long baseVersion;
+    private long latestVersion;
+    private String epoch;
+    private final List<Waiter> waiters = new ArrayList<>();
+
+    /**
+     * Starts a new history with a random epoch.
+     */
+    public CatalogChangeLog(int capacity, long initialVersion) {
+        this(capacity, initialVersion, UUID.randomUUID().toString());
+    }
+
+    public CatalogChangeLog(int capacity, long initialVersion, String epoch) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.ring = new CatalogChange[capacity];
+        this.baseVersion = initialVersion;
+        this.latestVersion = initialVersion;
+        this.epoch = epoch;
+    }
+
+    /**
+     * Records the next change and runs the listeners of replicas waiting for it.
+     *
+     * @throws IllegalStateException if the change does not directly follow the latest version
+     */
+    public void append(CatalogChange change) {
+        List<Runnable> woken;
+        synchronized (this) {
+            if (change.getVersion() != latestVersion + 1) {
+                throw new IllegalStateException("Expected change version " + (latestVersion + 1)
+                    + " but got " + change.getVersion());
+            }
+            ring[slot(change.getVersion())] = change;
+            latestVersion = change.getVersion();
+            baseVersion = Math.max(baseVersion, latestVersion - ring.length);
+            woken = takeWaiters(false);
+        }
+        woken.forEach(Runnable::run);
+    }
+
+    /**
+     * Forgets all history; the catalog is now at the given version of the given epoch.
+     * Every waiting listener runs, as its replica now needs a snapshot.
+     */
+    public void reset(long version, String epoch) {
+        List<Runnable> woken;
+        synchronized (this) {
+            Arrays.fill(ring, null);
+            baseVersion = version;
+            latestVersion = version;
+            this.epoch = epoch;
+            woken = takeWaiters(true);
+        }
+        woken.forEach(Runnable::run);
+    }
+
+    /**
+     * @param epoch Epoch of the replica's versions
+     * @param since Last version the replica has applied
+     * @param limit Maximum number of changes to return
+     * @return changes after {@code since} in version order, or null if the replica's
+     *         versions are from another epoch, or the changes are no longer (or were never)
+     *         available, and the replica needs a snapshot
+     */
+    public synchronized List<CatalogChange> changesSince(String epoch, long since, int limit) {
+        return this.epoch.equals(epoch) ? changesSince(since, limit) : null;
+    }
+
+    /**
+     * @param since Last version the replica has applied
+     * @param limit Maximum number of changes to return
+     * @return changes after {@code since} in version order, or null if they are no longer
+     *         (or were never) available and the replica needs a snapshot
+     */
+    public synchronized List<CatalogChange> changesSince(long since, int limit) {
+        if (since < baseVersion || since > latestVersion) {
+            return null;
+        }
+        long end = Math.min(latestVersion, since + Math.max(0, limit));
+        if (end == since) {
+            return Collections.emptyList();
+        }
+        List<CatalogChange> changes = new ArrayList<>((int) (end - since));
+        for (long version = since + 1; version <= end; version++) {
+            changes.add(ring[slot(version)]);
+        }
+        return changes;
+    }
+
+    /**
+     * Runs the listener once a change newer than {@code since} exists or the history is
+     * reset: at once on the calling thread if one already exists, otherwise on the thread
+     * that records it, after this log's lock is released. Listeners should only hand off
+     * work, as they hold up that writer.
+     */
+    public void whenNewerThan(long since, Runnable listener) {
+        synchronized (this) {
+            if (latestVersion <= since) {
+                waiters.add(new Waiter(since, listener));
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    /**
+     * Forgets a listener that has not run yet, for example when its replica stopped waiting.
+     */
+    public synchronized void cancel(Runnable listener) {
+        waiters.removeIf(waiter -> waiter.listener == listener);
+    }
+
+    public synchronized long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public synchronized long getLatestVersion() {
+        return latestVersion;
+    }
+
+    public synchronized String getEpoch() {
+        return epoch;
+    }
+
+    // Caller holds the lock
+    private List<Runnable> takeWaiters(boolean all) {
+        List<Runnable> woken = new ArrayList<>();
+        for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+            Waiter waiter = it.next();
+            if (all || waiter.since < latestVersion) {
+                woken.add(waiter.listener);
+                it.remove();
+            }
+        }
+        return woken;
+    }
+
+    private int slot(long version) {
+        return (int) (version % ring.length);
+    }
+}
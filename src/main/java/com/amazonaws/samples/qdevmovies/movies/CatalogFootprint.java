@@ -0,0 +1,137 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Estimated heap retained by the catalog, for sizing and for measuring layout changes
+ * such as the dictionary encoding of directors and genres. Sizes assume a 64-bit JVM
+ * with compressed references and compact strings, the defaults for heaps under 32 GB.
+ *
+ * <p>{@code unencodedBytes} estimates the same catalog with every movie holding its own
+ * director, genre and case-folded genre strings, as movies read from JSON or from the
+ * file store would without the shared tables.
+ */
+public final class CatalogFootprint {
+
+    static final int OBJECT_HEADER_BYTES = 12;
+    static final int ARRAY_HEADER_BYTES = 16;
+    static final int REFERENCE_BYTES = 4;
+    // String: header, value array reference, hash, coder and hashIsZero
+    static final int STRING_BYTES = 24;
+    static final int MAP_ENTRY_BYTES = 32;
+    static final int BOXED_BYTES = 16;
+    // Movie: header, id, imdbRating, name, description, search key, director term and
+    // genre term references, and year and duration
+    static final long MOVIE_BYTES = align(OBJECT_HEADER_BYTES + 8 + 8 + 5 * REFERENCE_BYTES + 2 * 4);
+    // The same fields with director, genre and case-folded genre as string references
+    static final long UNENCODED_MOVIE_BYTES = align(OBJECT_HEADER_BYTES + 8 + 8 + 6 * REFERENCE_BYTES + 2 * 4);
+
+    private final int movies;
+    private final long movieBytes;
+    private final long dictionaryBytes;
+    private final long totalBytes;
+    private final long unencodedBytes;
+    private final int distinctDirectors;
+    private final int distinctGenres;
+
+    private CatalogFootprint(int movies, long movieBytes, long dictionaryBytes, long totalBytes, long unencodedBytes,
+                             int distinctDirectors, int distinctGenres) {
+        this.movies = movies;
+        this.movieBytes = movieBytes;
+        this.dictionaryBytes = dictionaryBytes;
+        this.totalBytes = totalBytes;
+        this.unencodedBytes = unencodedBytes;
+        this.distinctDirectors = distinctDirectors;
+        this.distinctGenres = distinctGenres;
+    }
+
+    /**
+     * Walks the catalog and adds up the estimated size of each movie and the strings it
+     * holds, the list holding them and the director and genre terms its movies share.
+     * Only terms in use by the catalog count; the tables drop the others.
+     */
+    static CatalogFootprint measure(List<Movie> catalog) {
+        long listBytes = align(OBJECT_HEADER_BYTES + 2 * 4 + REFERENCE_BYTES)
+            + arrayBytes(catalog.size(), REFERENCE_BYTES);
+        long movieBytes = 0;
+        long unencodedBytes = listBytes;
+        Set<StringDictionary.Term> directors = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<StringDictionary.Term> genres = Collections.newSetFromMap(new IdentityHashMap<>());
+        long dictionaryBytes = 0;
+        for (Movie movie : catalog) {
+            StringDictionary.Term director = movie.getDirectorTerm();
+            if (director != null && directors.add(director)) {
+                dictionaryBytes += director.estimatedBytes();
+            }
+            if (genres.add(movie.getGenreTerm())) {
+                dictionaryBytes += movie.getGenreTerm().estimatedBytes();
+            }
+
+            long ownStrings = stringBytes(movie.getMovieName()) + stringBytes(movie.getDescription());
+            if (movie.getNormalizedName() != movie.getMovieName()) {
+                ownStrings += stringBytes(movie.getNormalizedName());
+            }
+            movieBytes += MOVIE_BYTES + ownStrings;
+
+            String genre = movie.getGenre();
+            unencodedBytes += UNENCODED_MOVIE_BYTES + ownStrings + stringBytes(movie.getDirector()) + stringBytes(genre);
+            if (!movie.getNormalizedGenre().equals(genre)) {
+                unencodedBytes += stringBytes(movie.getNormalizedGenre());
+            }
+        }
+        return new CatalogFootprint(catalog.size(), movieBytes, dictionaryBytes,
+            listBytes + movieBytes + dictionaryBytes, unencodedBytes, directors.size(), genres.size());
+    }
+
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    static long arrayBytes(int length, int elementBytes) {
+        return align(ARRAY_HEADER_BYTES + (long) length * elementBytes);
+    }
+
+    static long stringBytes(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int bytesPerChar = 1;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                bytesPerChar = 2;
+                break;
+            }
+        }
+        return STRING_BYTES + arrayBytes(value.length(), bytesPerChar);
+    }
+
+    public int getMovies() { return movies; }
+
+    /**
+     * @return movie objects and the strings only they hold
+     */
+    public long getMovieBytes() { return movieBytes; }
+
+    /**
+     * @return the director and genre terms the catalog's movies share
+     */
+    public long getDictionaryBytes() { return dictionaryBytes; }
+
+    public long getTotalBytes() { return totalBytes; }
+
+    public double getBytesPerMovie() { return movies == 0 ? 0 : (double) totalBytes / movies; }
+
+    public long getUnencodedBytes() { return unencodedBytes; }
+
+    public long getSavedBytes() { return unencodedBytes - totalBytes; }
+
+    /**
+     * @return distinct directors of the catalog's movies
+     */
+    public int getDistinctDirectors() { return distinctDirectors; }
+
+    public int getDistinctGenres() { return distinctGenres; }
+}
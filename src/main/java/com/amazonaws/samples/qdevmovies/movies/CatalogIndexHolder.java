@@ -0,0 +1,128 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongFunction;
+
+/**
+ * Holds an index derived from the movie catalog and rebuilds it in the background once
+ * the catalog version has moved on. Readers keep getting the previous index until the
+ * new one is ready, so a build never blocks a request; at most one build runs at a
+ * time. Builds are started on the holder's own thread, never on a request thread; an
+ * index may still spread its own work over the common pool.
+ *
+ * <p>The first build starts in the background too, so creating the holder does not wait
+ * for it. Until it is done there is no index and readers get null. A failed build is
+ * retried by the next reader once a retry delay has passed, five seconds by default.
+ *
+ * @param <T> Index type
+ */
+final class CatalogIndexHolder<T> {
+    private static final Logger logger = LogManager.getLogger(CatalogIndexHolder.class);
+
+    private static final long RETRY_DELAY_MILLIS = 5_000;
+
+    private static final class Built<T> {
+        final T index;
+        final long catalogVersion;
+
+        Built(T index, long catalogVersion) {
+            this.index = index;
+            this.catalogVersion = catalogVersion;
+        }
+    }
+
+    private final String name;
+    private final MovieService movieService;
+    private final LongFunction<T> builder;
+    private final long retryDelayMillis;
+    private final ExecutorService rebuilder;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    // Null until the first build is done
+    private volatile Built<T> built;
+    // System.nanoTime() before which no build is retried after a failure
+    private volatile long retryAfter;
+    private volatile boolean failed;
+
+    /**
+     * Starts building the first index.
+     *
+     * @param name Index name, for the rebuild thread and log messages
+     * @param builder Builds the index from the current catalog; receives the catalog
+     *                version read just before it is called
+     */
+    CatalogIndexHolder(String name, MovieService movieService, LongFunction<T> builder) {
+        this(name, movieService, builder, RETRY_DELAY_MILLIS);
+    }
+
+    /**
+     * @param retryDelayMillis Time after a failed build before the next one is started
+     */
+    CatalogIndexHolder(String name, MovieService movieService, LongFunction<T> builder, long retryDelayMillis) {
+        this.name = name;
+        this.retryDelayMillis = retryDelayMillis;
+        this.movieService = movieService;
+        this.builder = builder;
+        this.rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-builder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rebuilding.set(true);
+        submitBuild();
+    }
+
+    /**
+     * @return the current index, or null until the first build is done; starts a build if
+     *         there is no index yet or the catalog has changed since it was built
+     */
+    T get() {
+        Built<T> current = built;
+        if ((current == null || current.catalogVersion != movieService.getCatalogVersion())
+                && (!failed || System.nanoTime() - retryAfter >= 0)
+                && rebuilding.compareAndSet(false, true)) {
+            submitBuild();
+        }
+        return current != null ? current.index : null;
+    }
+
+    /**
+     * @return catalog version the current index was built from, or -1 without an index
+     */
+    long getCatalogVersion() {
+        Built<T> current = built;
+        return current != null ? current.catalogVersion : -1;
+    }
+
+    void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    // Caller has set the rebuilding flag
+    private void submitBuild() {
+        try {
+            rebuilder.execute(() -> {
+                try {
+                    long version = movieService.getCatalogVersion();
+                    built = new Built<>(builder.apply(version), version);
+                    failed = false;
+                } catch (RuntimeException e) {
+                    logger.error("Failed to build the {}, retrying in {} ms: {}", name, retryDelayMillis,
+                        e.getMessage(), e);
+                    retryAfter = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryDelayMillis);
+                    failed = true;
+                } finally {
+                    rebuilding.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            rebuilding.set(false);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps this instance's catalog in sync with a leader instance by long-polling its
+ * change feed and applying the deltas to {@link MovieService}. The first contact (and
+ * any contact after falling out of the leader's retained history) installs a snapshot;
+ * after a disconnect the replicator resumes from its last applied version, so catching
+ * up only transfers the missed changes. Versions are sent with the epoch of the leader's
+ * feed they belong to; once the leader restarts, its epoch changes and the replicator
+ * starts over from a snapshot instead of trusting versions that now mean other changes.
+ *
+ * <p>Only created when {@code movies.replication.role} is {@code follower}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "movies.replication", name = "role", havingValue = "follower")
+public class CatalogReplicator {
+    private static final Logger logger = LogManager.getLogger(CatalogReplicator.class);
+
+    static final long NOT_SYNCED = -1;
+    private static final long MIN_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 10_000;
+
+    private final MovieService movieService;
+    private final String leaderUrl;
+    private final int batchSize;
+    private final long longPollMillis;
+    private final RestTemplate restTemplate;
+
+    private final AtomicLong snapshotsInstalled = new AtomicLong();
+    private final AtomicLong changesApplied = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long appliedVersion = NOT_SYNCED;
+    // Epoch of the leader feed appliedVersion belongs to; empty until the first snapshot
+    private volatile String appliedEpoch = "";
+    private volatile boolean running;
+    private volatile Thread worker;
+
+    @Autowired
+    public CatalogReplicator(MovieService movieService,
+                             @Value("${movies.replication.leader-url}") String leaderUrl,
+                             @Value("${movies.replication.batch-size:500}") int batchSize,
+                             @Value("${movies.replication.long-poll-millis:20000}") long longPollMillis) {
+        this.movieService = movieService;
+        this.leaderUrl = leaderUrl.endsWith("/") ? leaderUrl.substring(0, leaderUrl.length() - 1) : leaderUrl;
+        this.batchSize = batchSize;
+        this.longPollMillis = longPollMillis;
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(2000);
+        requestFactory.setReadTimeout((int) (longPollMillis + 10_000));
+        this.restTemplate = new RestTemplate(requestFactory);
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "catalog-replicator");
+        worker.setDaemon(true);
+        worker.start();
+        logger.info("Replicating catalog from leader {}", leaderUrl);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    private void run() {
+        long backoff = MIN_BACKOFF_MILLIS;
+        // A restarted replicator gets a new worker; a stale one exits after its current poll
+        while (running && worker == Thread.currentThread()) {
+            try {
+                pollOnce();
+                backoff = MIN_BACKOFF_MILLIS;
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                failures.incrementAndGet();
+                logger.warn("Catalog replication from {} failed: {}; retrying in {} ms",
+                    leaderUrl, e.getMessage(), backoff);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Fetches and applies one batch from the leader's feed, waiting for new changes when
+     * already up to date.
+     */
+    void pollOnce() {
+        String url = leaderUrl + "/api/replication/changes?epoch=" + appliedEpoch + "&since=" + appliedVersion
+            + "&limit=" + batchSize + "&waitMillis=" + longPollMillis;
+        String body = restTemplate.getForObject(url, String.class);
+        apply(new JSONObject(body));
+    }
+
+    void apply(JSONObject feed) {
+        long version = feed.getLong("version");
+        String epoch = feed.getString("epoch");
+        if (feed.getBoolean("snapshot")) {
+            JSONArray moviesArray = feed.getJSONArray("movies");
+            List<Movie> movies = new ArrayList<>(moviesArray.length());
+            for (int i = 0; i < moviesArray.length(); i++) {
+                movies.add(JsonMovieRepository.movieFromJson(moviesArray.getJSONObject(i)));
+            }
+            movieService.installSnapshot(movies, version, epoch);
+            appliedEpoch = epoch;
+            appliedVersion = version;
+            snapshotsInstalled.incrementAndGet();
+            return;
+        }
+
+        if (!epoch.equals(appliedEpoch)) {
+            logger.warn("Change feed from {} is at epoch {}, not {}; requesting a snapshot",
+                leaderUrl, epoch, appliedEpoch);
+            appliedVersion = NOT_SYNCED;
+            return;
+        }
+        JSONArray changesArray = feed.getJSONArray("changes");
+        if (changesArray.length() == 0) {
+            return;
+        }
+        List<CatalogChange> changes = new ArrayList<>(changesArray.length());
+        for (int i = 0; i < changesArray.length(); i++) {
+            JSONObject changeObj = changesArray.getJSONObject(i);
+            long changeVersion = changeObj.getLong("version");
+            if (CatalogChange.Type.valueOf(changeObj.getString("type")) == CatalogChange.Type.UPSERT) {
+                changes.add(CatalogChange.upsert(changeVersion,
+                    JsonMovieRepository.movieFromJson(changeObj.getJSONObject("movie"))));
+            } else {
+                changes.add(CatalogChange.delete(changeVersion, changeObj.getLong("movieId")));
+            }
+        }
+        if (movieService.applyReplicatedChanges(changes)) {
+            appliedVersion = version;
+            changesApplied.addAndGet(changes.size());
+        } else {
+            logger.warn("Change feed from {} does not continue from version {}; requesting a snapshot",
+                leaderUrl, movieService.getChangeLog().getLatestVersion());
+            appliedVersion = NOT_SYNCED;
+        }
+    }
+
+    public String getLeaderUrl() {
+        return leaderUrl;
+    }
+
+    public long getAppliedVersion() {
+        return appliedVersion;
+    }
+
+    public String getAppliedEpoch() {
+        return appliedEpoch;
+    }
+
+    public long getSnapshotsInstalled() {
+        return snapshotsInstalled.get();
+    }
+
+    public long getChangesApplied() {
+        return changesApplied.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+}
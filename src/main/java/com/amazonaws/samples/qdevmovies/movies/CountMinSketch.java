@@ -0,0 +1,104 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min Sketch: approximate occurrence counts of arbitrary keys in fixed memory.
+ * Each key maps to one counter in each of {@code depth} rows and the estimate is the
+ * smallest of them, so it never undercounts and overcounts by at most
+ * {@code e / width * total} with probability {@code 1 - e^-depth}. Uses conservative
+ * update (only the counters at the current minimum are raised), which tightens the
+ * estimates of infrequent keys. Not thread-safe; callers synchronize.
+ */
+final class CountMinSketch {
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L,
+        0x9e3779b97f4a7c15L, 0xd6e8feb86659fd93L, 0xa0761d6478bd642fL, 0xe7037ed1a0b428dbL
+    };
+
+    private final int depth;
+    private final int widthMask;
+    private final long[] counters;
+    private long total;
+
+    /**
+     * @param depth Rows, 1 to 8
+     * @param width Counters per row, rounded up to a power of two
+     */
+    CountMinSketch(int depth, int width) {
+        if (depth < 1 || depth > SEEDS.length) {
+            throw new IllegalArgumentException("depth must be between 1 and " + SEEDS.length);
+        }
+        int capacity = Integer.highestOneBit(Math.max(16, width) - 1) << 1;
+        this.depth = depth;
+        this.widthMask = capacity - 1;
+        this.counters = new long[depth * capacity];
+    }
+
+    /**
+     * Adds occurrences of the key.
+     *
+     * @return the key's new estimated count
+     */
+    long add(Object key, long count) {
+        int hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[indexOf(hash, row)]);
+        }
+        long updated = estimate + count;
+        for (int row = 0; row < depth; row++) {
+            int index = indexOf(hash, row);
+            if (counters[index] < updated) {
+                counters[index] = updated;
+            }
+        }
+        total += count;
+        return updated;
+    }
+
+    /**
+     * @return estimated number of occurrences of the key; never less than the true count
+     */
+    long estimate(Object key) {
+        int hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[indexOf(hash, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * @return sum of all counts added
+     */
+    long getTotal() {
+        return total;
+    }
+
+    void clear() {
+        Arrays.fill(counters, 0L);
+        total = 0;
+    }
+
+    int getDepth() {
+        return depth;
+    }
+
+    int getWidth() {
+        return widthMask + 1;
+    }
+
+    long estimatedBytes() {
+        return 8L * counters.length;
+    }
+
+    private int indexOf(int hash, int row) {
+        // Independent per-row hash: the key's hash plus a row seed through a 64-bit finalizer
+        long h = hash + SEEDS[row];
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        h ^= h >>> 31;
+        return row * (widthMask + 1) + ((int) h & widthMask);
+    }
+}
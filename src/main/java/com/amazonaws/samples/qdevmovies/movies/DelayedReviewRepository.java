@@ -0,0 +1,74 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Stand-in for a slow, remote review source: delegates to another repository after
+ * waiting for an injected latency. Enabled with
+ * {@code movies.reviews.simulated-latency-millis} to try out the details page against a
+ * slow review backend, and used by tests to control review latency. A bulk read is one
+ * request to the source, so it waits once.
+ */
+public class DelayedReviewRepository implements ReviewRepository, Closeable {
+
+    private final ReviewRepository delegate;
+    private final LongSupplier latencyMillis;
+
+    /**
+     * @param latencyMillis Delay before each read, in milliseconds; asked again per read
+     */
+    public DelayedReviewRepository(ReviewRepository delegate, LongSupplier latencyMillis) {
+        this.delegate = delegate;
+        this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    public List<Review> findByMovieId(long movieId) {
+        delay("reviews for movie " + movieId);
+        return delegate.findByMovieId(movieId);
+    }
+
+    @Override
+    public void forEachMovie(BiConsumer<Long, List<Review>> action) {
+        delay("all reviews");
+        delegate.forEachMovie(action);
+    }
+
+    private void delay(String what) {
+        long delay = latencyMillis.getAsLong();
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while loading " + what, e);
+            }
+        }
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return delegate.isReadOnly();
+    }
+
+    @Override
+    public void save(long movieId, Review review) {
+        delegate.save(movieId, review);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable) {
+            ((Closeable) delegate).close();
+        }
+    }
+}
@@ -0,0 +1,653 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Embedded, file-backed movie repository.
+ *
+ * <p>Movies are stored as records in an append-only {@link RecordFile}: a save appends the
+ * new state, a delete appends a tombstone. Only the indexes live in memory, all of them
+ * in primitive arrays: the record offset of each movie by slot, a hash map from movie ID
+ * to slot, and sorted slot lists per genre, director and year. Every query is answered
+ * from an index and then reads just the matching records, so the catalog itself does not
+ * have to fit in the heap. Superseded records are dropped by rewriting the file once
+ * they outnumber the live ones.
+ *
+ * <p>The rewrite runs on a background thread and streams the live records into the new
+ * file one at a time, while saves and deletes carry on against the old one. Only the
+ * records changed during the copy are copied under the write lock, just before the new
+ * file is swapped in.
+ *
+ * <p>A movie gets the next slot when it is first saved and keeps it across updates and
+ * compactions, so slot order is storage order. A deleted movie's slot stays empty
+ * (eight bytes) until the store is reopened or replaced, which numbers the slots afresh.
+ */
+public class FileMovieRepository implements MovieRepository, Closeable {
+    private static final Logger logger = LogManager.getLogger(FileMovieRepository.class);
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int MIN_GARBAGE_FOR_COMPACTION = 1000;
+    private static final long EMPTY = -1;
+    private static final int BLOCK_BITS = 10;
+
+    private final Path path;
+    private final boolean syncWrites;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Held while a new file is written and swapped in, so only one rewrite runs at a time
+    private final Object rewriting = new Object();
+    private final ExecutorService compactor;
+    private RecordFile file;
+
+    // Offset of each slot's current record, or EMPTY
+    private long[] offsets = new long[16];
+    private int slotCount;
+    // Movies per block of 1 << BLOCK_BITS slots, to find a movie by position
+    private int[] blockSizes = new int[1];
+    private LongIntMap slots = new LongIntMap();
+    private final Map<String, SlotList> genreIndex = new HashMap<>();
+    private final Map<String, SlotList> directorIndex = new HashMap<>();
+    private final NavigableMap<Integer, SlotList> yearIndex = new TreeMap<>();
+    private long garbageRecords;
+    private boolean compactionScheduled;
+    private boolean closed;
+
+    /**
+     * Opens (or creates) the store and rebuilds the in-memory indexes from it.
+     *
+     * @param path Data file
+     * @param syncWrites Whether to force every write to disk before returning
+     */
+    public FileMovieRepository(Path path, boolean syncWrites) {
+        this.path = path;
+        this.syncWrites = syncWrites;
+        this.file = new RecordFile(path);
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "movie-store-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        load();
+    }
+
+    private void load() {
+        file.scan((offset, payload) -> {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            byte type = in.readByte();
+            long id = in.readLong();
+            int slot = slots.get(id);
+            if (slot != LongIntMap.MISSING) {
+                garbageRecords++;
+            }
+            if (type == PUT) {
+                setSlot(slot != LongIntMap.MISSING ? slot : addSlot(id), offset);
+            } else {
+                if (slot != LongIntMap.MISSING) {
+                    slots.remove(id);
+                    setSlot(slot, EMPTY);
+                }
+                garbageRecords++;
+            }
+        });
+        // Number the slots afresh without the deleted movies, and index them
+        long[] scanned = offsets;
+        int scannedCount = slotCount;
+        clearSlots(slots.size());
+        for (int slot = 0; slot < scannedCount; slot++) {
+            if (scanned[slot] != EMPTY) {
+                Movie movie = readMovie(scanned[slot]);
+                setSlot(addSlot(movie.getId()), scanned[slot]);
+                index(movie, slotCount - 1);
+            }
+        }
+        logger.info("Opened movie store {} with {} movies", path, slots.size());
+    }
+
+    @Override
+    public List<Movie> findAll() {
+        List<Movie> movies = new ArrayList<>();
+        forEach(movies::add);
+        return movies;
+    }
+
+    @Override
+    public void forEach(Consumer<Movie> action) {
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (offsets[slot] != EMPTY) {
+                    action.accept(readMovie(offsets[slot]));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Movie> findById(long id) {
+        lock.readLock().lock();
+        try {
+            int slot = slots.get(id);
+            return slot == LongIntMap.MISSING ? Optional.empty() : Optional.of(readMovie(offsets[slot]));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getSlotCount() {
+        lock.readLock().lock();
+        try {
+            return slotCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Movie findBySlot(int slot) {
+        lock.readLock().lock();
+        try {
+            return slot >= 0 && slot < slotCount && offsets[slot] != EMPTY ? readMovie(offsets[slot]) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int slotOf(long id) {
+        lock.readLock().lock();
+        try {
+            return slots.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Movie findByPosition(int position) {
+        lock.readLock().lock();
+        try {
+            if (position < 0 || position >= slots.size()) {
+                return null;
+            }
+            int block = 0;
+            int remaining = position;
+            while (remaining >= blockSizes[block]) {
+                remaining -= blockSizes[block];
+                block++;
+            }
+            for (int slot = block << BLOCK_BITS; ; slot++) {
+                if (offsets[slot] != EMPTY && remaining-- == 0) {
+                    return readMovie(offsets[slot]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Movie> findByGenre(String genre) {
+        lock.readLock().lock();
+        try {
+            return readAll(genreIndex.get(key(genre)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Movie> findByDirector(String director) {
+        lock.readLock().lock();
+        try {
+            return readAll(directorIndex.get(key(director)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Movie> findByYearBetween(int fromYear, int toYear) {
+        lock.readLock().lock();
+        try {
+            List<Movie> movies = new ArrayList<>();
+            if (fromYear > toYear) {
+                return movies;
+            }
+            for (SlotList year : yearIndex.subMap(fromYear, true, toYear, true).values()) {
+                movies.addAll(readAll(year));
+            }
+            return movies;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    @Override
+    public void save(Movie movie) {
+        lock.writeLock().lock();
+        try {
+            long offset = append(encodePut(movie));
+            int slot = slots.get(movie.getId());
+            if (slot != LongIntMap.MISSING) {
+                unindex(readMovie(offsets[slot]), slot);
+                garbageRecords++;
+            } else {
+                slot = addSlot(movie.getId());
+            }
+            setSlot(slot, offset);
+            index(movie, slot);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean deleteById(long id) {
+        lock.writeLock().lock();
+        try {
+            int slot = slots.get(id);
+            if (slot == LongIntMap.MISSING) {
+                return false;
+            }
+            Movie movie = readMovie(offsets[slot]);
+            append(encodeDelete(id));
+            slots.remove(id);
+            setSlot(slot, EMPTY);
+            unindex(movie, slot);
+            garbageRecords += 2;
+            compactIfNeeded();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void replaceAll(List<Movie> movies) {
+        synchronized (rewriting) {
+            // Write the new file first; readers and writers carry on with the old one
+            LongIntMap newSlots = new LongIntMap(movies.size());
+            long[] newOffsets = new long[movies.size()];
+            Movie[] current = new Movie[movies.size()];
+            int newSlotCount = 0;
+            long superseded = 0;
+            Path tempPath = rewritePath();
+            RecordFile tempFile = new RecordFile(tempPath, true);
+            try {
+                for (Movie movie : movies) {
+                    int slot = newSlots.get(movie.getId());
+                    if (slot == LongIntMap.MISSING) {
+                        slot = newSlotCount++;
+                        newSlots.put(movie.getId(), slot);
+                    } else {
+                        // A later state of the same movie replaces the earlier one
+                        superseded++;
+                    }
+                    newOffsets[slot] = tempFile.append(encodePut(movie));
+                    current[slot] = movie;
+                }
+                tempFile.sync();
+            } finally {
+                tempFile.close();
+            }
+
+            lock.writeLock().lock();
+            try {
+                ensureOpen();
+                swapIn(tempPath);
+                clearSlots(newSlotCount);
+                genreIndex.clear();
+                directorIndex.clear();
+                yearIndex.clear();
+                for (int slot = 0; slot < newSlotCount; slot++) {
+                    setSlot(addSlot(current[slot].getId()), newOffsets[slot]);
+                    index(current[slot], slot);
+                }
+                garbageRecords = superseded;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Rewrites the data file with only the current record of each movie.
+     *
+     * <p>The records are copied from a snapshot of the slots without blocking saves and
+     * deletes; the write lock is only held to copy the records changed since the
+     * snapshot and to swap the new file in.
+     */
+    public void compact() {
+        synchronized (rewriting) {
+            long[] snapshot;
+            RecordFile source;
+            lock.readLock().lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                snapshot = Arrays.copyOf(offsets, slotCount);
+                source = file;
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            Path tempPath = rewritePath();
+            RecordFile tempFile = new RecordFile(tempPath, true);
+            try {
+                // The old file is append-only, so the snapshot's records stay where they are
+                long[] copied = new long[snapshot.length];
+                for (int slot = 0; slot < snapshot.length; slot++) {
+                    copied[slot] = snapshot[slot] != EMPTY ? tempFile.append(source.read(snapshot[slot])) : EMPTY;
+                }
+                tempFile.sync();
+
+                lock.writeLock().lock();
+                try {
+                    // Offsets only grow, so a slot whose offset is unchanged was not written since
+                    long[] newOffsets = new long[slotCount];
+                    for (int slot = 0; slot < slotCount; slot++) {
+                        if (offsets[slot] == EMPTY) {
+                            newOffsets[slot] = EMPTY;
+                        } else if (slot < snapshot.length && offsets[slot] == snapshot[slot]) {
+                            newOffsets[slot] = copied[slot];
+                        } else {
+                            newOffsets[slot] = tempFile.append(file.read(offsets[slot]));
+                        }
+                    }
+                    tempFile.sync();
+                    tempFile.close();
+                    swapIn(tempPath);
+                    for (int slot = 0; slot < newOffsets.length; slot++) {
+                        setSlot(slot, newOffsets[slot]);
+                    }
+                    garbageRecords = 0;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } finally {
+                tempFile.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdown();
+        synchronized (rewriting) {
+            lock.writeLock().lock();
+            try {
+                closed = true;
+                file.close();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    long getGarbageRecords() {
+        lock.readLock().lock();
+        try {
+            return garbageRecords;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits for a compaction started by a save or delete to finish.
+     */
+    void awaitCompaction() {
+        try {
+            compactor.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (RejectedExecutionException e) {
+            // Closed; nothing runs any more
+        }
+    }
+
+    /**
+     * Starts a background compaction once superseded records outnumber the live ones.
+     * Caller holds the write lock.
+     */
+    private void compactIfNeeded() {
+        if (!compactionScheduled && !closed && garbageRecords >= MIN_GARBAGE_FOR_COMPACTION && garbageRecords > slots.size()) {
+            logger.info("Compacting movie store {}: {} live, {} superseded records",
+                path, slots.size(), garbageRecords);
+            compactionScheduled = true;
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } catch (RuntimeException e) {
+                    logger.error("Failed to compact movie store {}: {}", path, e.getMessage(), e);
+                } finally {
+                    lock.writeLock().lock();
+                    try {
+                        compactionScheduled = false;
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Atomically replaces the data file with the rewritten one. Caller holds the write
+     * lock and then points the slots at their offsets in the new file.
+     */
+    private void swapIn(Path tempPath) {
+        file.close();
+        RecordFile.replace(tempPath, path);
+        file = new RecordFile(path);
+    }
+
+    private Path rewritePath() {
+        return Paths.get(path.toString() + ".compact");
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Movie store " + path + " is closed");
+        }
+    }
+
+    /**
+     * Empties every slot, keeping room for the expected number of movies.
+     */
+    private void clearSlots(int expectedSize) {
+        offsets = new long[Math.max(16, expectedSize)];
+        blockSizes = new int[(offsets.length >>> BLOCK_BITS) + 1];
+        slotCount = 0;
+        slots = new LongIntMap(expectedSize);
+    }
+
+    /**
+     * @return a new, still empty slot for the movie
+     */
+    private int addSlot(long id) {
+        if (slotCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, slotCount * 2);
+            blockSizes = Arrays.copyOf(blockSizes, (offsets.length >>> BLOCK_BITS) + 1);
+        }
+        offsets[slotCount] = EMPTY;
+        slots.put(id, slotCount);
+        return slotCount++;
+    }
+
+    private void setSlot(int slot, long offset) {
+        int delta = (offset != EMPTY ? 1 : 0) - (offsets[slot] != EMPTY ? 1 : 0);
+        offsets[slot] = offset;
+        blockSizes[slot >>> BLOCK_BITS] += delta;
+    }
+
+    private long append(byte[] record) {
+        long offset = file.append(record);
+        if (syncWrites) {
+            file.sync();
+        }
+        return offset;
+    }
+
+    private List<Movie> readAll(SlotList slotList) {
+        if (slotList == null) {
+            return new ArrayList<>();
+        }
+        List<Movie> movies = new ArrayList<>(slotList.size);
+        for (int i = 0; i < slotList.size; i++) {
+            movies.add(readMovie(offsets[slotList.slots[i]]));
+        }
+        return movies;
+    }
+
+    private Movie readMovie(long offset) {
+        return decodeMovie(file.read(offset));
+    }
+
+    private void index(Movie movie, int slot) {
+        genreIndex.computeIfAbsent(key(movie.getGenre()), k -> new SlotList()).add(slot);
+        directorIndex.computeIfAbsent(key(movie.getDirector()), k -> new SlotList()).add(slot);
+        yearIndex.computeIfAbsent(movie.getYear(), k -> new SlotList()).add(slot);
+    }
+
+    private void unindex(Movie movie, int slot) {
+        removeFromIndex(genreIndex, key(movie.getGenre()), slot);
+        removeFromIndex(directorIndex, key(movie.getDirector()), slot);
+        removeFromIndex(yearIndex, movie.getYear(), slot);
+    }
+
+    private static <K> void removeFromIndex(Map<K, SlotList> index, K key, int slot) {
+        SlotList slotList = index.get(key);
+        if (slotList != null) {
+            slotList.remove(slot);
+            if (slotList.size == 0) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static String key(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Slots in ascending order. Movies are mostly added in slot order, so adding is
+     * usually an append; otherwise, and on removal, the tail is shifted.
+     */
+    private static final class SlotList {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            int index = Arrays.binarySearch(slots, 0, size, slot);
+            if (index >= 0) {
+                return;
+            }
+            int insertAt = -index - 1;
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            System.arraycopy(slots, insertAt, slots, insertAt + 1, size - insertAt);
+            slots[insertAt] = slot;
+            size++;
+        }
+
+        void remove(int slot) {
+            int index = Arrays.binarySearch(slots, 0, size, slot);
+            if (index >= 0) {
+                System.arraycopy(slots, index + 1, slots, index, size - index - 1);
+                size--;
+            }
+        }
+    }
+
+    static byte[] encodePut(Movie movie) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(PUT);
+            out.writeLong(movie.getId());
+            out.writeUTF(movie.getMovieName());
+            out.writeUTF(movie.getDirector());
+            out.writeInt(movie.getYear());
+            out.writeUTF(movie.getGenre());
+            out.writeUTF(movie.getDescription());
+            out.writeInt(movie.getDuration());
+            out.writeDouble(movie.getImdbRating());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeDelete(long id) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(9);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(DELETE);
+            out.writeLong(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Movie decodeMovie(byte[] record) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+            if (in.readByte() != PUT) {
+                throw new IllegalStateException("Not a movie record");
+            }
+            return new Movie(in.readLong(), in.readUTF(), in.readUTF(), in.readInt(), in.readUTF(),
+                in.readUTF(), in.readInt(), in.readDouble());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Embedded, file-backed review repository. Reviews are appended to a {@link RecordFile};
+ * the only in-memory state is the secondary index from movie ID to record offsets, so
+ * loading a movie's reviews reads exactly those records.
+ */
+public class FileReviewRepository implements ReviewRepository, Closeable {
+    private static final Logger logger = LogManager.getLogger(FileReviewRepository.class);
+
+    private final Path path;
+    private final boolean syncWrites;
+    private final RecordFile file;
+    private final Map<Long, List<Long>> offsetsByMovie = new HashMap<>();
+    private long count;
+
+    /**
+     * Opens (or creates) the store and rebuilds the movie ID index from it.
+     *
+     * @param path Data file
+     * @param syncWrites Whether to force every write to disk before returning
+     */
+    public FileReviewRepository(Path path, boolean syncWrites) {
+        this.path = path;
+        this.syncWrites = syncWrites;
+        this.file = new RecordFile(path);
+        file.scan((offset, payload) -> {
+            long movieId = new DataInputStream(new ByteArrayInputStream(payload)).readLong();
+            offsetsByMovie.computeIfAbsent(movieId, k -> new ArrayList<>()).add(offset);
+            count++;
+        });
+        logger.info("Opened review store {} with {} reviews", path, count);
+    }
+
+    @Override
+    public List<Review> findByMovieId(long movieId) {
+        long[] offsets;
+        synchronized (this) {
+            List<Long> movieOffsets = offsetsByMovie.get(movieId);
+            if (movieOffsets == null) {
+                return Collections.emptyList();
+            }
+            offsets = movieOffsets.stream().mapToLong(Long::longValue).toArray();
+        }
+        List<Review> reviews = new ArrayList<>(offsets.length);
+        for (long offset : offsets) {
+            reviews.add(decodeReview(file.read(offset)));
+        }
+        return reviews;
+    }
+
+    @Override
+    public void forEachMovie(BiConsumer<Long, List<Review>> action) {
+        Map<Long, long[]> offsets = new HashMap<>();
+        synchronized (this) {
+            offsetsByMovie.forEach((movieId, movieOffsets) ->
+                offsets.put(movieId, movieOffsets.stream().mapToLong(Long::longValue).toArray()));
+        }
+        offsets.forEach((movieId, movieOffsets) -> {
+            List<Review> reviews = new ArrayList<>(movieOffsets.length);
+            for (long offset : movieOffsets) {
+                reviews.add(decodeReview(file.read(offset)));
+            }
+            action.accept(movieId, reviews);
+        });
+    }
+
+    @Override
+    public synchronized long count() {
+        return count;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    @Override
+    public synchronized void save(long movieId, Review review) {
+        long offset = file.append(encodeReview(movieId, review));
+        if (syncWrites) {
+            file.sync();
+        }
+        offsetsByMovie.computeIfAbsent(movieId, k -> new ArrayList<>()).add(offset);
+        count++;
+    }
+
+    @Override
+    public void close() {
+        file.close();
+    }
+
+    private static byte[] encodeReview(long movieId, Review review) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(movieId);
+            out.writeUTF(review.getUserName());
+            out.writeUTF(review.getAvatarEmoji());
+            out.writeDouble(review.getRating());
+            out.writeUTF(review.getComment());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Review decodeReview(byte[] record) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+            in.readLong();
+            return new Review(in.readUTF(), in.readUTF(), in.readDouble(), in.readUTF());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Streams the movies.json and mock-reviews.json documents one element at a time.
+ *
+ * <p>The document is tokenized straight from a reader, and each movie or review object is
+ * handed on and dropped as soon as it is parsed, so loading a large generated catalog
+ * never holds the file's text or its whole parsed tree next to the loaded movies.
+ *
+ * <p>Malformed input is an error, not an empty catalog: {@link JSONException} reports
+ * the position of the problem.
+ */
+final class JsonCatalogReader {
+
+    private JsonCatalogReader() {
+    }
+
+    /**
+     * Reads one document from a file.
+     *
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    static void read(Path file, Consumer<JSONTokener> document) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            read(reader, document);
+        } catch (JSONException e) {
+            throw new IOException("Malformed JSON in " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads one document from a classpath resource.
+     *
+     * @throws IllegalStateException if the resource is missing, unreadable or malformed
+     */
+    static void readResource(String resource, Consumer<JSONTokener> document) {
+        InputStream in = JsonCatalogReader.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IllegalStateException(resource + " is missing from the classpath");
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            read(reader, document);
+        } catch (IOException | JSONException e) {
+            throw new IllegalStateException("Cannot read " + resource + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Calls the action for each object of the array at the tokener's position.
+     */
+    static void forEachObject(JSONTokener tokener, Consumer<JSONObject> action) {
+        if (tokener.nextClean() != '[') {
+            throw tokener.syntaxError("Expected an array");
+        }
+        if (tokener.nextClean() == ']') {
+            return;
+        }
+        tokener.back();
+        while (true) {
+            action.accept(new JSONObject(tokener));
+            char next = tokener.nextClean();
+            if (next == ']') {
+                return;
+            }
+            if (next != ',') {
+                throw tokener.syntaxError("Expected ',' or ']'");
+            }
+        }
+    }
+
+    /**
+     * Calls the action for each member of the object at the tokener's position, with the
+     * tokener placed at the member's value.
+     */
+    static void forEachMember(JSONTokener tokener, Consumer<String> action) {
+        if (tokener.nextClean() != '{') {
+            throw tokener.syntaxError("Expected an object");
+        }
+        if (tokener.nextClean() == '}') {
+            return;
+        }
+        tokener.back();
+        while (true) {
+            char quote = tokener.nextClean();
+            if (quote != '"' && quote != '\'') {
+                throw tokener.syntaxError("Expected a member name");
+            }
+            String name = tokener.nextString(quote);
+            if (tokener.nextClean() != ':') {
+                throw tokener.syntaxError("Expected ':' after " + name);
+            }
+            action.accept(name);
+            char next = tokener.nextClean();
+            if (next == '}') {
+                return;
+            }
+            if (next != ',') {
+                throw tokener.syntaxError("Expected ',' or '}'");
+            }
+        }
+    }
+
+    private static void read(Reader reader, Consumer<JSONTokener> document) {
+        JSONTokener tokener = new JSONTokener(reader);
+        document.accept(tokener);
+        if (tokener.nextClean() != 0) {
+            throw tokener.syntaxError("Unexpected content after the document");
+        }
+    }
+}
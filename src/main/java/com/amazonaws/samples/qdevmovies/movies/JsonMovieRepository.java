@@ -0,0 +1,160 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Read-only repository over the movies.json classpath resource, or a file in the same
+ * schema. The catalog is parsed once, a movie at a time, and held in memory; queries
+ * filter that list.
+ */
+public class JsonMovieRepository implements MovieRepository {
+
+    private final List<Movie> movies;
+
+    /**
+     * @throws IllegalStateException if movies.json is missing or malformed
+     */
+    public JsonMovieRepository() {
+        List<Movie> movies = new ArrayList<>();
+        JsonCatalogReader.readResource("movies.json", tokener -> readMovies(tokener, movies));
+        this.movies = Collections.unmodifiableList(movies);
+    }
+
+    /**
+     * Reads the catalog from a file instead of the bundled resource, for example one
+     * written by {@link SyntheticCatalogGenerator}.
+     *
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public JsonMovieRepository(Path file) throws IOException {
+        List<Movie> movies = new ArrayList<>();
+        JsonCatalogReader.read(file, tokener -> readMovies(tokener, movies));
+        this.movies = Collections.unmodifiableList(movies);
+    }
+
+    JsonMovieRepository(List<Movie> movies) {
+        this.movies = Collections.unmodifiableList(new ArrayList<>(movies));
+    }
+
+    private static void readMovies(JSONTokener tokener, List<Movie> movies) {
+        JsonCatalogReader.forEachObject(tokener, movie -> movies.add(movieFromJson(movie)));
+    }
+
+    /**
+     * Reads a movie in the movies.json schema. Extra properties (such as {@code icon} in
+     * API output) are ignored.
+     */
+    static Movie movieFromJson(JSONObject movieObj) {
+        return new Movie(
+            movieObj.getLong("id"),
+            movieObj.getString("movieName"),
+            movieObj.getString("director"),
+            movieObj.getInt("year"),
+            movieObj.getString("genre"),
+            movieObj.getString("description"),
+            movieObj.getInt("duration"),
+            movieObj.getDouble("imdbRating")
+        );
+    }
+
+    @Override
+    public List<Movie> findAll() {
+        return movies;
+    }
+
+    @Override
+    public void forEach(Consumer<Movie> action) {
+        movies.forEach(action);
+    }
+
+    @Override
+    public Optional<Movie> findById(long id) {
+        return movies.stream().filter(movie -> movie.getId() == id).findFirst();
+    }
+
+    @Override
+    public int getSlotCount() {
+        return movies.size();
+    }
+
+    @Override
+    public Movie findBySlot(int slot) {
+        return findByPosition(slot);
+    }
+
+    @Override
+    public int slotOf(long id) {
+        for (int slot = 0; slot < movies.size(); slot++) {
+            if (movies.get(slot).getId() == id) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Movie findByPosition(int position) {
+        return position >= 0 && position < movies.size() ? movies.get(position) : null;
+    }
+
+    @Override
+    public List<Movie> findByGenre(String genre) {
+        String key = genre.toLowerCase(Locale.ROOT);
+        return filter(movie -> movie.getNormalizedGenre().equals(key));
+    }
+
+    @Override
+    public List<Movie> findByDirector(String director) {
+        return filter(movie -> movie.getDirector().equalsIgnoreCase(director));
+    }
+
+    @Override
+    public List<Movie> findByYearBetween(int fromYear, int toYear) {
+        return movies.stream()
+            .filter(movie -> movie.getYear() >= fromYear && movie.getYear() <= toYear)
+            .sorted(Comparator.comparingInt(Movie::getYear))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public long count() {
+        return movies.size();
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public void save(Movie movie) {
+        throw new UnsupportedOperationException("movies.json is read-only");
+    }
+
+    @Override
+    public boolean deleteById(long id) {
+        throw new UnsupportedOperationException("movies.json is read-only");
+    }
+
+    @Override
+    public void replaceAll(List<Movie> movies) {
+        throw new UnsupportedOperationException("movies.json is read-only");
+    }
+
+    private List<Movie> filter(Predicate<Movie> predicate) {
+        return movies.stream().filter(predicate).collect(Collectors.toList());
+    }
+}
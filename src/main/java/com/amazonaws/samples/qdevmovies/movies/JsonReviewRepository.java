@@ -0,0 +1,121 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Read-only repository over the mock-reviews.json classpath resource, or a file in the
+ * same schema, parsed once, a review at a time, into a map keyed by movie ID.
+ */
+public class JsonReviewRepository implements ReviewRepository {
+
+    private final Map<Long, List<Review>> reviewsByMovie;
+    private final long count;
+
+    /**
+     * @throws IllegalStateException if mock-reviews.json is missing or malformed
+     */
+    public JsonReviewRepository() {
+        this(loadBundledReviews());
+    }
+
+    /**
+     * Reads reviews from a file instead of the bundled resource, for example one written
+     * by {@link SyntheticCatalogGenerator}.
+     *
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public JsonReviewRepository(Path file) throws IOException {
+        this(readReviews(file));
+    }
+
+    private JsonReviewRepository(Map<Long, List<Review>> reviewsByMovie) {
+        this.reviewsByMovie = reviewsByMovie;
+        this.count = reviewsByMovie.values().stream().mapToLong(List::size).sum();
+    }
+
+    private static Map<Long, List<Review>> loadBundledReviews() {
+        Map<Long, List<Review>> reviews = new HashMap<>();
+        JsonCatalogReader.readResource("mock-reviews.json", tokener -> readReviews(tokener, reviews));
+        return reviews;
+    }
+
+    private static Map<Long, List<Review>> readReviews(Path file) throws IOException {
+        Map<Long, List<Review>> reviews = new HashMap<>();
+        JsonCatalogReader.read(file, tokener -> readReviews(tokener, reviews));
+        return reviews;
+    }
+
+    private static void readReviews(JSONTokener tokener, Map<Long, List<Review>> reviews) {
+        JsonCatalogReader.forEachMember(tokener, movieId -> {
+            long id;
+            try {
+                id = Long.parseLong(movieId);
+            } catch (NumberFormatException e) {
+                throw tokener.syntaxError("Expected a movie ID, not '" + movieId + "'");
+            }
+            List<Review> list = new ArrayList<>();
+            JsonCatalogReader.forEachObject(tokener, review -> list.add(reviewFromJson(review)));
+            reviews.put(id, Collections.unmodifiableList(list));
+        });
+    }
+
+    static Review reviewFromJson(JSONObject reviewObj) {
+        return new Review(
+            reviewObj.getString("userName"),
+            reviewObj.getString("avatarEmoji"),
+            reviewObj.getDouble("rating"),
+            reviewObj.getString("comment")
+        );
+    }
+
+    /**
+     * Copies every review from mock-reviews.json into another repository.
+     */
+    static void seed(ReviewRepository target) {
+        new JsonReviewRepository().copyTo(target);
+    }
+
+    /**
+     * Copies every review into another repository, in movie ID order.
+     */
+    void copyTo(ReviewRepository target) {
+        reviewsByMovie.entrySet().stream()
+            .sorted(Map.Entry.comparingByKey())
+            .forEach(entry -> entry.getValue().forEach(review -> target.save(entry.getKey(), review)));
+    }
+
+    @Override
+    public List<Review> findByMovieId(long movieId) {
+        return reviewsByMovie.getOrDefault(movieId, Collections.emptyList());
+    }
+
+    @Override
+    public void forEachMovie(BiConsumer<Long, List<Review>> action) {
+        reviewsByMovie.forEach(action);
+    }
+
+    @Override
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public void save(long movieId, Review review) {
+        throw new UnsupportedOperationException("mock-reviews.json is read-only");
+    }
+}
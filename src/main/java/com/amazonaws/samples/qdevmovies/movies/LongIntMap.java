@@ -0,0 +1,127 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from long keys to non-negative int values, held in two primitive arrays with
+ * open addressing, so an entry costs 12 bytes plus free space instead of a map entry and
+ * two boxed numbers. Not thread-safe.
+ */
+final class LongIntMap {
+
+    static final int MISSING = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    // MISSING marks a free bucket
+    private int[] values;
+    private int size;
+
+    LongIntMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize Entries to make room for without resizing
+     */
+    LongIntMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3L < expectedSize * 4L) {
+            capacity <<= 1;
+        }
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        Arrays.fill(values, MISSING);
+    }
+
+    /**
+     * @return the value of the key, or {@link #MISSING}
+     */
+    int get(long key) {
+        int mask = values.length - 1;
+        for (int i = bucket(key, mask); values[i] != MISSING; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return MISSING;
+    }
+
+    /**
+     * @param value Non-negative value
+     * @return the previous value of the key, or {@link #MISSING}
+     */
+    int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        int mask = values.length - 1;
+        int i = bucket(key, mask);
+        for (; values[i] != MISSING; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                int previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        // Resize at three quarters full
+        if (++size * 4L > values.length * 3L) {
+            resize(values.length * 2);
+        }
+        return MISSING;
+    }
+
+    /**
+     * @return the value the key had, or {@link #MISSING}
+     */
+    int remove(long key) {
+        int mask = values.length - 1;
+        int i = bucket(key, mask);
+        while (values[i] != MISSING && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (values[i] == MISSING) {
+            return MISSING;
+        }
+        int previous = values[i];
+        // Shift later entries of the probe run back, so lookups never stop early
+        int free = i;
+        for (int j = (i + 1) & mask; values[j] != MISSING; j = (j + 1) & mask) {
+            int home = bucket(keys[j], mask);
+            if (((j - home) & mask) >= ((j - free) & mask)) {
+                keys[free] = keys[j];
+                values[free] = values[j];
+                free = j;
+            }
+        }
+        values[free] = MISSING;
+        size--;
+        return previous;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        size = 0;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != MISSING) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int bucket(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -1,27 +1,42 @@
 package com.amazonaws.samples.qdevmovies.movies;
 
 import com.amazonaws.samples.qdevmovies.utils.MovieIconUtils;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
+import java.util.Locale;
+import java.util.Objects;
+
+// Director and genre are not fields, so their JSON position is pinned
+@JsonPropertyOrder({"id", "movieName", "director", "year", "genre", "description", "duration", "imdbRating"})
 public class Movie {
 
+    // Directors and genres repeat across the catalog, so movies share terms from these
+    // tables rather than hold strings of their own. A term lasts as long as a movie holds it.
+    static final StringDictionary DIRECTORS = new StringDictionary();
+    static final StringDictionary GENRES = new StringDictionary();
+
     private final long id;
     private final String movieName;
-    private final String director;
+    private final StringDictionary.Term director;
     private final int year;
-    private final String genre;
+    private final StringDictionary.Term genre;
     private final String description;
     private final int duration;
     private final double imdbRating;
+    // Search key, case-folded once at load time so matching never allocates; the genre's
+    // is kept in its term
+    private final String normalizedName;
 
     public Movie(long id, String movieName, String director, int year, String genre, String description, int duration, double imdbRating) {
         this.id = id;
         this.movieName = movieName;
-        this.director = director;
+        this.director = DIRECTORS.intern(director);
         this.year = year;
-        this.genre = genre;
+        this.genre = GENRES.intern(Objects.requireNonNull(genre, "genre"));
         this.description = description;
         this.duration = duration;
         this.imdbRating = imdbRating;
+        this.normalizedName = movieName.toLowerCase(Locale.ROOT);
     }
 
     public long getId() {
@@ -33,7 +48,7 @@ public class Movie {
     }
 
     public String getDirector() {
-        return this.director;
+        return this.director != null ? this.director.value : null;
     }
 
     public int getYear() {
@@ -41,7 +56,7 @@ public class Movie {
     }
 
     public String getGenre() {
-        return this.genre;
+        return this.genre.value;
     }
 
     public String getDescription() {
@@ -56,6 +71,22 @@ public class Movie {
         return this.imdbRating;
     }
 
+    String getNormalizedName() {
+        return this.normalizedName;
+    }
+
+    String getNormalizedGenre() {
+        return this.genre.normalized;
+    }
+
+    StringDictionary.Term getDirectorTerm() {
+        return this.director;
+    }
+
+    StringDictionary.Term getGenreTerm() {
+        return this.genre;
+    }
+
     public String getIcon() {
         return MovieIconUtils.getMovieIcon(this.movieName);
     }
@@ -0,0 +1,85 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Cache of each movie's card on the listing pages as rendered HTML, produced once per
+ * movie state from the {@code card} fragment of {@code movie-card.html}. Listing
+ * pages and the infinite-scroll fragments insert the cached markup, so paging through
+ * the catalog renders each card once rather than on every request.
+ *
+ * <p>Cards are rendered in the web context of the request that first needs them, with
+ * fixed-format numbers and links resolved against the application's context path,
+ * which is the same for every request. A response that rewrites URLs with a session ID
+ * gets its cards rendered for it alone and not cached.
+ */
+@Component
+public class MovieCardFragments {
+
+    static final String TEMPLATE = "movie-card";
+    static final Set<String> FRAGMENT = Collections.singleton("card");
+    static final int MAX_ENTRIES = 16_384;
+    static final long MAX_BYTES = 16L * 1024 * 1024;
+
+    private final ITemplateEngine templateEngine;
+    private final MovieService movieService;
+    private final MovieFragmentCache<String> cache =
+        new MovieFragmentCache<>(MAX_ENTRIES, MAX_BYTES, CatalogFootprint::stringBytes);
+
+    @Autowired
+    public MovieCardFragments(ITemplateEngine templateEngine, MovieService movieService) {
+        this.templateEngine = templateEngine;
+        this.movieService = movieService;
+    }
+
+    /**
+     * Must be called while handling a request, whose context the cards are rendered in.
+     *
+     * @param movies Movies read from the movie service, in page order
+     * @return each movie's card HTML
+     */
+    public List<String> render(List<Movie> movies) {
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
+        HttpServletRequest request = attributes.getRequest();
+        HttpServletResponse response = attributes.getResponse();
+        if (response == null) {
+            throw new IllegalStateException("Movie cards are rendered for a response, but none is bound to this thread");
+        }
+        List<String> cards = new ArrayList<>(movies.size());
+        if (!"/".equals(response.encodeURL("/"))) {
+            for (Movie movie : movies) {
+                cards.add(renderCard(movie, request, response));
+            }
+            return cards;
+        }
+        long catalogVersion = movieService.getCatalogVersion();
+        for (Movie movie : movies) {
+            cards.add(cache.get(movie, catalogVersion, m -> renderCard(m, request, response)));
+        }
+        return cards;
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    private String renderCard(Movie movie, HttpServletRequest request, HttpServletResponse response) {
+        WebContext context = new WebContext(request, response, request.getServletContext(), Locale.ROOT);
+        context.setVariable("movie", movie);
+        return templateEngine.process(TEMPLATE, FRAGMENT, context);
+    }
+}
@@ -0,0 +1,123 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events of the movie service, shown under "Movies" in JDK Mission
+ * Control. Record them with, for example,
+ * {@code jcmd <pid> JFR.start name=movies settings=profile duration=60s filename=movies.jfr}.
+ *
+ * <p>Each event is created, begun and ended around the work it describes, and only
+ * filled in when {@link Event#shouldCommit()} says a recording wants it. While no
+ * recording is running these calls are empty and the JIT removes them.
+ */
+final class MovieEvents {
+
+    private MovieEvents() {
+    }
+
+    @Name("qdevmovies.Search")
+    @Label("Movie Search")
+    @Category("Movies")
+    @Description("A catalog search, served from the result cache or by filtering the catalog")
+    @StackTrace(false)
+    static final class Search extends Event {
+        @Label("Name")
+        String name;
+
+        @Label("Movie ID")
+        long movieId;
+
+        @Label("Genre")
+        String genre;
+
+        @Label("Results")
+        int resultCount;
+
+        @Label("Cache Hit")
+        boolean cacheHit;
+
+        void finish(SearchCriteria criteria, int resultCount, boolean cacheHit) {
+            end();
+            if (shouldCommit()) {
+                this.name = criteria.getName();
+                this.movieId = criteria.getIdValue();
+                this.genre = criteria.getGenre();
+                this.resultCount = resultCount;
+                this.cacheHit = cacheHit;
+                commit();
+            }
+        }
+    }
+
+    @Name("qdevmovies.ReviewLoad")
+    @Label("Review Load")
+    @Category("Movies")
+    @Description("Reviews of one movie read from the review source on a review loader thread")
+    @StackTrace(false)
+    static final class ReviewLoad extends Event {
+        @Label("Movie ID")
+        long movieId;
+
+        @Label("Reviews")
+        int reviewCount;
+
+        void finish(long movieId, int reviewCount) {
+            end();
+            if (shouldCommit()) {
+                this.movieId = movieId;
+                this.reviewCount = reviewCount;
+                commit();
+            }
+        }
+    }
+
+    @Name("qdevmovies.Render")
+    @Label("Page Render")
+    @Category("Movies")
+    @Description("A Thymeleaf view rendered into the response")
+    @StackTrace(false)
+    static final class Render extends Event {
+        @Label("View")
+        String view;
+
+        @Label("URI")
+        String uri;
+
+        void finish(String view, String uri) {
+            end();
+            if (shouldCommit()) {
+                this.view = view;
+                this.uri = uri;
+                commit();
+            }
+        }
+    }
+
+    @Name("qdevmovies.Serialize")
+    @Label("Response Serialization")
+    @Category("Movies")
+    @Description("An API response body written by an HTTP message converter")
+    @StackTrace(false)
+    static final class Serialize extends Event {
+        @Label("Media Type")
+        String mediaType;
+
+        @Label("URI")
+        String uri;
+
+        void finish(String mediaType, String uri) {
+            end();
+            if (shouldCommit()) {
+                this.mediaType = mediaType;
+                this.uri = uri;
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The movie properties an API caller asked for with {@code fields=}. Properties are
+ * named as in the JSON output and always returned in that order, whatever order they
+ * were requested in.
+ */
+public final class MovieFields {
+
+    private static final Map<String, Function<Movie, Object>> PROPERTIES = new LinkedHashMap<>();
+
+    static {
+        PROPERTIES.put("id", Movie::getId);
+        PROPERTIES.put("movieName", Movie::getMovieName);
+        PROPERTIES.put("director", Movie::getDirector);
+        PROPERTIES.put("year", Movie::getYear);
+        PROPERTIES.put("genre", Movie::getGenre);
+        PROPERTIES.put("description", Movie::getDescription);
+        PROPERTIES.put("duration", Movie::getDuration);
+        PROPERTIES.put("imdbRating", Movie::getImdbRating);
+        PROPERTIES.put("icon", Movie::getIcon);
+    }
+
+    public static final MovieFields ALL = new MovieFields(new ArrayList<>(PROPERTIES.keySet()));
+
+    private final List<String> names;
+
+    private MovieFields(List<String> names) {
+        this.names = Collections.unmodifiableList(names);
+    }
+
+    /**
+     * @param fields Comma-separated property names, or null/blank for all properties
+     * @throws IllegalArgumentException if a name is not a movie property
+     */
+    public static MovieFields parse(String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return ALL;
+        }
+        Set<String> requested = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!PROPERTIES.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown movie field '" + name + "' (expected any of "
+                    + String.join(", ", PROPERTIES.keySet()) + ")");
+            }
+            requested.add(name);
+        }
+        if (requested.isEmpty() || requested.size() == PROPERTIES.size()) {
+            return ALL;
+        }
+        List<String> names = new ArrayList<>(requested.size());
+        for (String name : PROPERTIES.keySet()) {
+            if (requested.contains(name)) {
+                names.add(name);
+            }
+        }
+        return new MovieFields(names);
+    }
+
+    public boolean isAll() {
+        return this == ALL;
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * @return the selected properties of the movie, in output order
+     */
+    public Map<String, Object> project(Movie movie) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String name : names) {
+            values.put(name, PROPERTIES.get(name).apply(movie));
+        }
+        return values;
+    }
+
+    public List<Map<String, Object>> project(List<Movie> movies) {
+        List<Map<String, Object>> projected = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            projected.add(project(movie));
+        }
+        return projected;
+    }
+}
@@ -0,0 +1,84 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded per-movie cache of a derived value, such as an encoding or rendering.
+ *
+ * <p>Entries are keyed by movie ID and remember the {@link Movie} instance they were
+ * made from. Movies are immutable and every change installs a new instance, so a lookup
+ * for a movie that was replaced since misses and replaces that movie's entry alone; the
+ * entries of unchanged movies survive catalog changes. Entries of deleted movies are
+ * never hit again and age out.
+ *
+ * <p>The cache is bounded by entry count and by estimated retained bytes, with the
+ * W-TinyLFU eviction of {@link TinyLfuCache}, so the most requested movies stay resident
+ * however large the catalog grows. Values are made outside the lock; when two requests
+ * make one concurrently, the value of the movie read at the newer catalog version is kept.
+ *
+ * @param <T> Cached value
+ */
+final class MovieFragmentCache<T> {
+
+    // Entry, boxed key, cache node and its map and segment entries
+    private static final long ENTRY_OVERHEAD_BYTES = 160;
+
+    private final TinyLfuCache<Long, Entry<T>> entries;
+    private final ToLongFunction<T> weigher;
+
+    /**
+     * @param weigher Estimated retained bytes of a value
+     */
+    MovieFragmentCache(int maxEntries, long maxBytes, ToLongFunction<T> weigher) {
+        this.entries = new TinyLfuCache<>(maxEntries, maxBytes);
+        this.weigher = weigher;
+    }
+
+    /**
+     * @param movie Movie read at the catalog version
+     * @param catalogVersion Catalog version the movie was read at
+     * @param create Makes the value on a miss
+     * @return the cached or newly made value
+     */
+    T get(Movie movie, long catalogVersion, Function<Movie, T> create) {
+        Long id = movie.getId();
+        Entry<T> entry;
+        synchronized (this) {
+            entry = entries.get(id);
+        }
+        if (entry != null && entry.movie == movie) {
+            return entry.value;
+        }
+        T value = create.apply(movie);
+        synchronized (this) {
+            Entry<T> current = entries.peek(id);
+            // A movie read at an older version is served but does not replace a newer one
+            if (current == null || current.catalogVersion <= catalogVersion) {
+                entries.put(id, new Entry<>(movie, value, catalogVersion),
+                    ENTRY_OVERHEAD_BYTES + weigher.applyAsLong(value));
+            }
+        }
+        return value;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long estimatedBytes() {
+        return entries.weightedSize();
+    }
+
+    private static final class Entry<T> {
+        final Movie movie;
+        final T value;
+        final long catalogVersion;
+
+        Entry(Movie movie, T value, long catalogVersion) {
+            this.movie = movie;
+            this.value = value;
+            this.catalogVersion = catalogVersion;
+        }
+    }
+}
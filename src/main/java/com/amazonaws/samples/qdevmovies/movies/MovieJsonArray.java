@@ -0,0 +1,65 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.WritableTypeId;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A JSON array of movies whose encodings were produced ahead of time by
+ * {@link MovieJsonFragments}. When Jackson reaches it inside a response body it writes
+ * the cached bytes as raw values instead of serializing each movie. Binary formats such
+ * as CBOR cannot embed JSON text, so for them the movies are serialized as usual.
+ */
+public final class MovieJsonArray implements JsonSerializable {
+    private final List<Movie> movies;
+    private final List<MovieJsonFragments.Fragment> fragments;
+
+    MovieJsonArray(List<Movie> movies, List<MovieJsonFragments.Fragment> fragments) {
+        this.movies = movies;
+        this.fragments = fragments;
+    }
+
+    public int size() {
+        return fragments.size();
+    }
+
+    /**
+     * @return the movies, for encodings other than JSON
+     */
+    public List<Movie> getMovies() {
+        return movies;
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeStartArray(this, fragments.size());
+        writeElements(gen, serializers);
+        gen.writeEndArray();
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+            throws IOException {
+        WritableTypeId typeId = typeSer.writeTypePrefix(gen, typeSer.typeId(this, JsonToken.START_ARRAY));
+        writeElements(gen, serializers);
+        typeSer.writeTypeSuffix(gen, typeId);
+    }
+
+    private void writeElements(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        if (gen.canWriteBinaryNatively()) {
+            for (Movie movie : movies) {
+                serializers.defaultSerializeValue(movie, gen);
+            }
+            return;
+        }
+        for (MovieJsonFragments.Fragment fragment : fragments) {
+            gen.writeRawValue(fragment);
+        }
+    }
+}
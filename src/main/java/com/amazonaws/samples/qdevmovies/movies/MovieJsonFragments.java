@@ -0,0 +1,168 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cache of each movie's JSON encoding as UTF-8 bytes, produced once per movie state by
+ * the same Jackson serialization the API used to run on every request. API responses
+ * embed the cached bytes through {@link MovieJsonArray}, so the output is unchanged but
+ * no getter (including the icon lookup) runs again until the movie changes, see
+ * {@link MovieFragmentCache}.
+ */
+public final class MovieJsonFragments {
+    static final int MAX_ENTRIES = 65_536;
+    static final long MAX_BYTES = 16L * 1024 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final MovieFragmentCache<Fragment> cache =
+        new MovieFragmentCache<>(MAX_ENTRIES, MAX_BYTES, Fragment::estimatedBytes);
+
+    public MovieJsonFragments(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param movies Movies to embed in a response, in output order
+     * @param catalogVersion Catalog version the movies were read at
+     * @return a JSON array of the movies' cached encodings
+     */
+    public MovieJsonArray toJsonArray(List<Movie> movies, long catalogVersion) {
+        List<Fragment> fragments = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            fragments.add(fragment(movie, catalogVersion));
+        }
+        return new MovieJsonArray(movies, fragments);
+    }
+
+    Fragment fragment(Movie movie, long catalogVersion) {
+        return cache.get(movie, catalogVersion, this::serialize);
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    long estimatedBytes() {
+        return cache.estimatedBytes();
+    }
+
+    private Fragment serialize(Movie movie) {
+        try {
+            return new Fragment(objectMapper.writeValueAsBytes(movie));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Failed to serialize movie " + movie.getId(), e);
+        }
+    }
+
+    /**
+     * A complete JSON value as UTF-8 bytes. Byte-oriented generators copy the bytes
+     * straight into their output buffer via the unquoted methods; the quoted methods are
+     * only here to satisfy the interface and encode it as a JSON string instead.
+     */
+    static final class Fragment implements SerializableString {
+        private final byte[] utf8;
+
+        Fragment(byte[] utf8) {
+            this.utf8 = utf8;
+        }
+
+        long estimatedBytes() {
+            return CatalogFootprint.align(CatalogFootprint.OBJECT_HEADER_BYTES + CatalogFootprint.REFERENCE_BYTES)
+                + CatalogFootprint.arrayBytes(utf8.length, 1);
+        }
+
+        @Override
+        public String getValue() {
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int charLength() {
+            return getValue().length();
+        }
+
+        @Override
+        public byte[] asUnquotedUTF8() {
+            return utf8.clone();
+        }
+
+        @Override
+        public int appendUnquotedUTF8(byte[] buffer, int offset) {
+            if (offset + utf8.length > buffer.length) {
+                return -1;
+            }
+            System.arraycopy(utf8, 0, buffer, offset, utf8.length);
+            return utf8.length;
+        }
+
+        @Override
+        public int appendUnquoted(char[] buffer, int offset) {
+            String value = getValue();
+            if (offset + value.length() > buffer.length) {
+                return -1;
+            }
+            value.getChars(0, value.length(), buffer, offset);
+            return value.length();
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream out) throws IOException {
+            out.write(utf8);
+            return utf8.length;
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer buffer) {
+            if (utf8.length > buffer.remaining()) {
+                return -1;
+            }
+            buffer.put(utf8);
+            return utf8.length;
+        }
+
+        @Override
+        public char[] asQuotedChars() {
+            return quoted().asQuotedChars();
+        }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            return quoted().asQuotedUTF8();
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] buffer, int offset) {
+            return quoted().appendQuotedUTF8(buffer, offset);
+        }
+
+        @Override
+        public int appendQuoted(char[] buffer, int offset) {
+            return quoted().appendQuoted(buffer, offset);
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream out) throws IOException {
+            return quoted().writeQuotedUTF8(out);
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer buffer) throws IOException {
+            return quoted().putQuotedUTF8(buffer);
+        }
+
+        private SerializedString quoted() {
+            return new SerializedString(getValue());
+        }
+    }
+}
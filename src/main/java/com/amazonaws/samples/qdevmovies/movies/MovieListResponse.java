@@ -0,0 +1,15 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.HashMap;
+
+/**
+ * Body of the API endpoints that answer with a list of movies: search, similar movies
+ * and the year and director listings. It is an ordinary map for JSON and CBOR, but its
+ * own type lets {@link MovieProtobufHttpMessageConverter} offer protobuf for exactly
+ * these responses, whose keys are the fields of {@code MovieListResponse} in
+ * {@code /proto/movies.proto}. Other endpoints answer a protobuf-only request with
+ * 406 Not Acceptable.
+ */
+public class MovieListResponse extends HashMap<String, Object> {
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,74 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a movie listing. The page is a view of the listing, so making one costs
+ * the same whatever the listing's size.
+ */
+public final class MoviePage {
+
+    private final List<Movie> movies;
+    private final int page;
+    private final int pageCount;
+    private final int totalMovies;
+
+    private MoviePage(List<Movie> movies, int page, int pageCount, int totalMovies) {
+        this.movies = movies;
+        this.page = page;
+        this.pageCount = pageCount;
+        this.totalMovies = totalMovies;
+    }
+
+    /**
+     * @param listing All movies of the listing, not modified while the page is in use
+     * @param page 1-based page number; below 1 means the first page, past the last page
+     *             gives an empty page
+     * @param pageSize Movies per page, positive
+     */
+    public static MoviePage of(List<Movie> listing, int page, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        int number = Math.max(1, page);
+        int pageCount = pageCount(listing.size(), pageSize);
+        long from = (long) (number - 1) * pageSize;
+        List<Movie> movies = from >= listing.size()
+            ? Collections.<Movie>emptyList()
+            : Collections.unmodifiableList(listing.subList((int) from, (int) Math.min(listing.size(), from + pageSize)));
+        return new MoviePage(movies, number, pageCount, listing.size());
+    }
+
+    /**
+     * @return number of pages needed for a listing, at least 1 so an empty listing has an
+     *         (empty) first page
+     */
+    public static int pageCount(int totalMovies, int pageSize) {
+        return Math.max(1, (totalMovies + pageSize - 1) / pageSize);
+    }
+
+    public List<Movie> getMovies() {
+        return movies;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public int getTotalMovies() {
+        return totalMovies;
+    }
+
+    public boolean hasNext() {
+        return page < pageCount;
+    }
+
+    public int getNextPage() {
+        return page + 1;
+    }
+}
@@ -0,0 +1,214 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Protocol Buffers wire encoding of movie API response bodies, following the schema
+ * published at {@code /proto/movies.proto}. Bodies are the same maps the JSON API
+ * returns; each known key maps to a field of {@code MovieListResponse}. As in proto3,
+ * zero and empty values are not written. Encode-only: the server never reads protobuf.
+ */
+final class MovieProtobuf {
+
+    static final int VARINT = 0;
+    static final int FIXED64 = 1;
+    static final int LENGTH_DELIMITED = 2;
+
+    enum Type { INT64, INT32, DOUBLE, STRING, STRINGS, MOVIES, CRITERIA, PACKED_DOUBLES, PLAN, PLAN_CANDIDATES }
+
+    static final class Field {
+        final int number;
+        final String name;
+        final Type type;
+
+        Field(int number, String name, Type type) {
+            this.number = number;
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    static final Field[] MOVIE = {
+        new Field(1, "id", Type.INT64),
+        new Field(2, "movieName", Type.STRING),
+        new Field(3, "director", Type.STRING),
+        new Field(4, "year", Type.INT32),
+        new Field(5, "genre", Type.STRING),
+        new Field(6, "description", Type.STRING),
+        new Field(7, "duration", Type.INT32),
+        new Field(8, "imdbRating", Type.DOUBLE),
+        new Field(9, "icon", Type.STRING)
+    };
+
+    static final Field[] SEARCH_CRITERIA = {
+        new Field(1, "name", Type.STRING),
+        new Field(2, "id", Type.INT64),
+        new Field(3, "genre", Type.STRING),
+        new Field(4, "minYear", Type.INT32),
+        new Field(5, "maxYear", Type.INT32),
+        new Field(6, "minRating", Type.DOUBLE),
+        new Field(7, "maxRating", Type.DOUBLE)
+    };
+
+    static final Field[] PLAN_CANDIDATE = {
+        new Field(1, "access", Type.STRING),
+        new Field(2, "estimatedRows", Type.INT64),
+        new Field(3, "cost", Type.DOUBLE)
+    };
+
+    static final Field[] QUERY_PLAN = {
+        new Field(1, "access", Type.STRING),
+        new Field(2, "estimatedRows", Type.INT64),
+        new Field(3, "catalogSize", Type.INT64),
+        new Field(4, "residualFilters", Type.STRINGS),
+        new Field(6, "considered", Type.PLAN_CANDIDATES)
+    };
+
+    static final Field[] MOVIE_LIST_RESPONSE = {
+        new Field(1, "movies", Type.MOVIES),
+        new Field(2, "totalResults", Type.INT32),
+        new Field(3, "searchCriteria", Type.CRITERIA),
+        new Field(4, "pirateMessage", Type.STRING),
+        new Field(5, "error", Type.STRING),
+        new Field(6, "movieId", Type.INT64),
+        new Field(7, "scores", Type.PACKED_DOUBLES),
+        new Field(8, "plan", Type.PLAN)
+    };
+
+    private MovieProtobuf() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the body has a key that is not in the schema
+     */
+    static byte[] encode(Map<?, ?> body) throws IOException {
+        return encodeMessage(body, MOVIE_LIST_RESPONSE);
+    }
+
+    private static byte[] encodeMessage(Map<?, ?> values, Field[] schema) throws IOException {
+        for (Object key : values.keySet()) {
+            if (field(schema, String.valueOf(key)) == null) {
+                throw new IllegalArgumentException("'" + key + "' is not part of the protobuf schema");
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Field field : schema) {
+            Object value = values.get(field.name);
+            if (value != null) {
+                writeField(out, field, value);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] encodeMovie(Movie movie) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        writeField(out, MOVIE[0], movie.getId());
+        writeField(out, MOVIE[1], movie.getMovieName());
+        writeField(out, MOVIE[2], movie.getDirector());
+        writeField(out, MOVIE[3], movie.getYear());
+        writeField(out, MOVIE[4], movie.getGenre());
+        writeField(out, MOVIE[5], movie.getDescription());
+        writeField(out, MOVIE[6], movie.getDuration());
+        writeField(out, MOVIE[7], movie.getImdbRating());
+        writeField(out, MOVIE[8], movie.getIcon());
+        return out.toByteArray();
+    }
+
+    private static void writeField(OutputStream out, Field field, Object value) throws IOException {
+        switch (field.type) {
+            case INT64:
+            case INT32:
+                // An empty string stands for "not given" in searchCriteria
+                if (value instanceof Number && ((Number) value).longValue() != 0) {
+                    writeVarint(out, (long) field.number << 3 | VARINT);
+                    writeVarint(out, ((Number) value).longValue());
+                }
+                break;
+            case DOUBLE: {
+                double number = ((Number) value).doubleValue();
+                if (number != 0) {
+                    writeVarint(out, (long) field.number << 3 | FIXED64);
+                    long bits = Double.doubleToLongBits(number);
+                    for (int shift = 0; shift < 64; shift += 8) {
+                        out.write((int) (bits >>> shift) & 0xff);
+                    }
+                }
+                break;
+            }
+            case STRING:
+                if (!value.toString().isEmpty()) {
+                    writeBytes(out, field.number, value.toString().getBytes(StandardCharsets.UTF_8));
+                }
+                break;
+            case STRINGS:
+                for (Object string : (Collection<?>) value) {
+                    writeBytes(out, field.number, string.toString().getBytes(StandardCharsets.UTF_8));
+                }
+                break;
+            case CRITERIA:
+                writeBytes(out, field.number, encodeMessage((Map<?, ?>) value, SEARCH_CRITERIA));
+                break;
+            case PLAN:
+                writeBytes(out, field.number, encodeMessage((Map<?, ?>) value, QUERY_PLAN));
+                break;
+            case PLAN_CANDIDATES:
+                for (Object candidate : (Collection<?>) value) {
+                    writeBytes(out, field.number, encodeMessage((Map<?, ?>) candidate, PLAN_CANDIDATE));
+                }
+                break;
+            case PACKED_DOUBLES: {
+                Collection<?> numbers = (Collection<?>) value;
+                if (!numbers.isEmpty()) {
+                    ByteBuffer packed = ByteBuffer.allocate(numbers.size() * 8).order(ByteOrder.LITTLE_ENDIAN);
+                    for (Object number : numbers) {
+                        packed.putDouble(((Number) number).doubleValue());
+                    }
+                    writeBytes(out, field.number, packed.array());
+                }
+                break;
+            }
+            case MOVIES: {
+                Collection<?> movies = value instanceof MovieJsonArray
+                    ? ((MovieJsonArray) value).getMovies() : (Collection<?>) value;
+                for (Object movie : movies) {
+                    writeBytes(out, field.number, movie instanceof Movie
+                        ? encodeMovie((Movie) movie) : encodeMessage((Map<?, ?>) movie, MOVIE));
+                }
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unhandled field type " + field.type);
+        }
+    }
+
+    private static void writeBytes(OutputStream out, int number, byte[] bytes) throws IOException {
+        writeVarint(out, (long) number << 3 | LENGTH_DELIMITED);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static Field field(Field[] schema, String name) {
+        for (Field field : schema) {
+            if (field.name.equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,52 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+
+/**
+ * Writes movie list response bodies in the protobuf schema published at
+ * {@code /proto/movies.proto} when a client sends {@code Accept: application/x-protobuf}
+ * (or {@code application/protobuf}). Only {@link MovieListResponse} bodies have a
+ * protobuf encoding. Write-only: the API takes no request bodies.
+ */
+public class MovieProtobufHttpMessageConverter extends AbstractHttpMessageConverter<MovieListResponse> {
+
+    public static final MediaType APPLICATION_X_PROTOBUF = MediaType.valueOf("application/x-protobuf");
+    public static final MediaType APPLICATION_PROTOBUF = MediaType.valueOf("application/protobuf");
+
+    public MovieProtobufHttpMessageConverter() {
+        super(APPLICATION_X_PROTOBUF, APPLICATION_PROTOBUF);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return MovieListResponse.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected MovieListResponse readInternal(Class<? extends MovieListResponse> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Protobuf request bodies are not supported", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(MovieListResponse body, HttpOutputMessage outputMessage) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = MovieProtobuf.encode(body);
+        } catch (IllegalArgumentException e) {
+            throw new HttpMessageNotWritableException(e.getMessage(), e);
+        }
+        outputMessage.getBody().write(bytes);
+    }
+}
@@ -0,0 +1,87 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Storage for the movie catalog. Implementations answer the indexed queries themselves,
+ * so callers do not need the whole catalog in memory to filter by genre, director or year.
+ *
+ * <p>Each movie sits in a numbered slot, in storage order. A movie keeps its slot when it
+ * is updated and a deleted movie leaves its slot empty, so callers can page through the
+ * store or keep their own indexes by slot. Replacing the whole catalog renumbers the
+ * slots.
+ */
+public interface MovieRepository {
+
+    /**
+     * @return every movie, in storage order
+     */
+    List<Movie> findAll();
+
+    /**
+     * Streams every movie, in storage order, without collecting them into a list.
+     */
+    void forEach(Consumer<Movie> action);
+
+    Optional<Movie> findById(long id);
+
+    /**
+     * @return number of slots, empty ones included
+     */
+    int getSlotCount();
+
+    /**
+     * @return the movie in the slot, or null if the slot is empty or does not exist
+     */
+    Movie findBySlot(int slot);
+
+    /**
+     * @return slot of the movie, or -1 if there is no movie with that ID
+     */
+    int slotOf(long id);
+
+    /**
+     * @param position Index among the movies in storage order, not counting empty slots
+     * @return the movie, or null if there are not that many movies
+     */
+    Movie findByPosition(int position);
+
+    /**
+     * @param genre Genre to match exactly, ignoring case
+     */
+    List<Movie> findByGenre(String genre);
+
+    /**
+     * @param director Director to match exactly, ignoring case
+     */
+    List<Movie> findByDirector(String director);
+
+    /**
+     * @return movies released between the two years, both inclusive, ordered by year
+     */
+    List<Movie> findByYearBetween(int fromYear, int toYear);
+
+    long count();
+
+    /**
+     * @return true if the write methods are unsupported
+     */
+    boolean isReadOnly();
+
+    /**
+     * Creates or replaces a movie.
+     */
+    void save(Movie movie);
+
+    /**
+     * @return false if no movie with that ID existed
+     */
+    boolean deleteById(long id);
+
+    /**
+     * Replaces the whole catalog.
+     */
+    void replaceAll(List<Movie> movies);
+}
@@ -1,79 +1,186 @@
 package com.amazonaws.samples.qdevmovies.movies;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import javax.annotation.PreDestroy;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
-import java.util.Scanner;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
 
 @Service
 public class MovieService {
     private static final Logger logger = LogManager.getLogger(MovieService.class);
-    private final List<Movie> movies;
-    private final Map<Long, Movie> movieMap;
+    // Readers take the current catalog without locking; writers publish the next one under
+    // writeLock, so every change becomes visible to all readers at once
+    private volatile Catalog catalog;
+    // ID lookups over a read-only store. Entries staged for the next catalog version keep
+    // the state they replace until that version is published, so lookups never run ahead
+    // of the catalog
+    private final Map<Long, MovieVersion> movieMap = new ConcurrentHashMap<>();
+    // Movies per genre and the highest ID ever used, only touched under writeLock
+    private final TreeMap<String, Integer> genreCounts = new TreeMap<>();
+    private long maxMovieId;
+    private final SearchResultCache searchCache;
+    private final ParallelSearchEngine searchEngine;
+    private final CatalogChangeLog changeLog = new CatalogChangeLog(CatalogChangeLog.DEFAULT_CAPACITY, 0);
+    private final MovieRepository repository;
+    // A writable store read in place, or null if the catalog is held in memory
+    private final StoredMovies storedMovies;
+    private final MovieJsonFragments jsonFragments;
+    private final Object writeLock = new Object();
 
-    public MovieService() {
-        this.movies = loadMoviesFromJson();
-        this.movieMap = new HashMap<>();
-        for (Movie movie : movies) {
-            movieMap.put(movie.getId(), movie);
+    /**
+     * One published version of the catalog: its movies in catalog order, its genres and
+     * the secondary indexes the query planner searches it with. The movies are a
+     * {@link MovieTable} of this version, or with a writable store, the store itself.
+     */
+    private static final class Catalog {
+        final MovieSlots slots;
+        final List<Movie> movies;
+        final List<String> genres;
+        final SearchIndexes indexes;
+        final long version;
+
+        Catalog(MovieSlots slots, List<String> genres, SearchIndexes indexes, long version) {
+            this.slots = slots;
+            this.movies = slots.asList();
+            this.genres = genres;
+            this.indexes = indexes;
+            this.version = version;
         }
     }
 
-    private List<Movie> loadMoviesFromJson() {
-        List<Movie> movieList = new ArrayList<>();
-        try {
-            InputStream inputStream = getClass().getClassLoader().getResourceAsStream("movies.json");
-            if (inputStream != null) {
-                Scanner scanner = new Scanner(inputStream, StandardCharsets.UTF_8.name());
-                String jsonContent = scanner.useDelimiter("\\A").next();
-                scanner.close();
-                
-                JSONArray moviesArray = new JSONArray(jsonContent);
-                for (int i = 0; i < moviesArray.length(); i++) {
-                    JSONObject movieObj = moviesArray.getJSONObject(i);
-                    movieList.add(new Movie(
-                        movieObj.getLong("id"),
-                        movieObj.getString("movieName"),
-                        movieObj.getString("director"),
-                        movieObj.getInt("year"),
-                        movieObj.getString("genre"),
-                        movieObj.getString("description"),
-                        movieObj.getInt("duration"),
-                        movieObj.getDouble("imdbRating")
-                    ));
-                }
-            }
-        } catch (Exception e) {
-            logger.error("Failed to load movies from JSON: {}", e.getMessage());
+    /**
+     * A movie (null once deleted) as of a catalog version, the table slot it occupies,
+     * and while that version is not yet published, the state it replaces.
+     */
+    private static final class MovieVersion {
+        final Movie movie;
+        final int slot;
+        final long version;
+        final MovieVersion previous;
+
+        MovieVersion(Movie movie, int slot, long version, MovieVersion previous) {
+            this.movie = movie;
+            this.slot = slot;
+            this.version = version;
+            this.previous = previous;
         }
-        return movieList;
     }
 
+    public MovieService() {
+        this(new JsonMovieRepository(),
+            new SearchResultCache(SearchResultCache.DEFAULT_MAX_ENTRIES, SearchResultCache.DEFAULT_MAX_BYTES),
+            new ParallelSearchEngine(0, ParallelSearchEngine.DEFAULT_SEGMENT_SIZE));
+    }
+
+    @Autowired
+    public MovieService(MovieRepository repository,
+                        ObjectMapper objectMapper,
+                        @Value("${movies.search-cache.max-entries:1024}") int searchCacheMaxEntries,
+                        @Value("${movies.search-cache.max-bytes:4194304}") long searchCacheMaxBytes,
+                        @Value("${movies.search.parallelism:0}") int searchParallelism,
+                        @Value("${movies.search.segment-size:4096}") int searchSegmentSize) {
+        this(repository, new SearchResultCache(searchCacheMaxEntries, searchCacheMaxBytes),
+            new ParallelSearchEngine(searchParallelism, searchSegmentSize), objectMapper);
+    }
+
+    /**
+     * Creates a service over the given movies instead of the bundled movies.json.
+     */
+    MovieService(List<Movie> movies) {
+        this(movies, new ParallelSearchEngine(0, ParallelSearchEngine.DEFAULT_SEGMENT_SIZE));
+    }
+
+    MovieService(List<Movie> movies, ParallelSearchEngine searchEngine) {
+        this(new JsonMovieRepository(movies),
+            new SearchResultCache(SearchResultCache.DEFAULT_MAX_ENTRIES, SearchResultCache.DEFAULT_MAX_BYTES),
+            searchEngine);
+    }
+
+    MovieService(MovieRepository repository, SearchResultCache searchCache, ParallelSearchEngine searchEngine) {
+        this(repository, searchCache, searchEngine, new ObjectMapper());
+    }
+
+    private MovieService(MovieRepository repository, SearchResultCache searchCache, ParallelSearchEngine searchEngine,
+                         ObjectMapper objectMapper) {
+        this.repository = repository;
+        MovieSlots slots;
+        if (repository.isReadOnly()) {
+            // Changes only live in memory, so the catalog is copied into a table
+            MovieTable.Builder initial = MovieTable.builder();
+            repository.forEach(movie -> {
+                movieMap.put(movie.getId(), new MovieVersion(movie, initial.add(movie), 1, null));
+                addGenre(movie.getGenre());
+                maxMovieId = Math.max(maxMovieId, movie.getId());
+            });
+            this.storedMovies = null;
+            slots = initial.build();
+        } else {
+            // The store is the catalog: stream it for the genres and the indexes, keep no movie
+            repository.forEach(movie -> {
+                addGenre(movie.getGenre());
+                maxMovieId = Math.max(maxMovieId, movie.getId());
+            });
+            this.storedMovies = new StoredMovies(repository);
+            slots = storedMovies;
+        }
+        this.catalog = new Catalog(slots, genreList(), SearchIndexes.build(slots), 1);
+        this.searchCache = searchCache;
+        this.searchEngine = searchEngine;
+        this.jsonFragments = new MovieJsonFragments(objectMapper);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        searchEngine.shutdown();
+    }
+
+    /**
+     * @return every movie in catalog order, as an unmodifiable view. With a writable store
+     *         the view reads through to the store, and so reflects later changes.
+     */
     public List<Movie> getAllMovies() {
-        return movies;
+        return catalog.movies;
     }
 
     public Optional<Movie> getMovieById(Long id) {
         if (id == null || id <= 0) {
             return Optional.empty();
         }
-        return Optional.ofNullable(movieMap.get(id));
+        if (storedMovies != null) {
+            return repository.findById(id);
+        }
+        MovieVersion entry = movieMap.get(id);
+        // Read the catalog version after the entry: a change staged but not yet published
+        // is not visible
+        if (entry != null && entry.version > catalog.version) {
+            entry = entry.previous;
+        }
+        return Optional.ofNullable(entry != null ? entry.movie : null);
     }
 
     /**
      * Ahoy matey! Search for treasure (movies) in our vast collection!
      * This method filters movies based on the search criteria ye provide.
+     * Results are cached per normalized criteria and catalog version, so the returned
+     * list is shared and must not be modified.
      * 
      * @param name The movie name to search for (partial matches allowed, case-insensitive)
      * @param id The exact movie ID to find
@@ -84,48 +191,185 @@ public class MovieService {
         logger.info("Arrr! Starting treasure hunt with criteria - name: '{}', id: {}, genre: '{}'", 
                    name, id, genre);
         
-        List<Movie> searchResults = movies.stream()
-            .filter(movie -> matchesSearchCriteria(movie, name, id, genre))
-            .collect(Collectors.toList());
-        
-        logger.info("Treasure hunt complete! Found {} movies matching yer criteria", searchResults.size());
-        return searchResults;
+        return searchMovies(SearchCriteria.of(name, id, genre));
     }
 
     /**
-     * Checks if a movie matches the search criteria like a true pirate examines treasure!
-     * 
-     * @param movie The movie to examine
-     * @param name Name criteria (partial match, case-insensitive)
-     * @param id ID criteria (exact match)
-     * @param genre Genre criteria (case-insensitive)
-     * @return true if the movie matches all provided criteria, false otherwise
+     * Searches with criteria that may include year and rating ranges. On a cache miss the
+     * {@link QueryPlanner} picks the most selective index to find candidates, and the
+     * remaining criteria are checked on those alone.
+     *
+     * @param criteria Normalized search criteria
+     * @return shared, unmodifiable list of matching movies in catalog order
+     */
+    public List<Movie> searchMovies(SearchCriteria criteria) {
+        return search(criteria).getMovies();
+    }
+
+    /**
+     * Searches like {@link #searchMovies(SearchCriteria)} and also reports how the
+     * movies were found: the plan that was executed, or on a cache hit, that the result
+     * cache served them.
+     *
+     * @param criteria Normalized search criteria
+     * @return the matching movies with the plan that produced them
      */
-    private boolean matchesSearchCriteria(Movie movie, String name, Long id, String genre) {
-        // If searching by ID, it must match exactly - no room for error on the high seas!
-        if (id != null && !movie.getId().equals(id)) {
-            return false;
+    public SearchResult search(SearchCriteria criteria) {
+        MovieEvents.Search event = new MovieEvents.Search();
+        event.begin();
+        RequestTiming.Phase phase = RequestTiming.phase(RequestTiming.SEARCH);
+        try {
+            Catalog current = catalog;
+            long version = current.version;
+            List<Movie> cached = searchCache.get(criteria, version);
+            if (cached != null) {
+                logger.info("Treasure map already charted! Found {} movies in the cache", cached.size());
+                event.finish(criteria, cached.size(), true);
+                return new SearchResult(cached, SearchPlan.cached(current.movies.size(), cached.size()));
+            }
+
+            SearchPlan plan = planSearch(criteria, current);
+            List<Movie> searchResults = Collections.unmodifiableList(executePlan(plan, criteria, current));
+            searchCache.put(criteria, searchResults, version);
+
+            logger.info("Treasure hunt complete! Found {} movies matching yer criteria via {}", searchResults.size(), plan);
+            event.finish(criteria, searchResults.size(), false);
+            return new SearchResult(searchResults, plan);
+        } finally {
+            phase.close();
         }
-        
-        // If searching by name, allow partial matches - even pirates make typos!
-        if (name != null && !name.trim().isEmpty()) {
-            String searchName = name.trim().toLowerCase();
-            String movieName = movie.getMovieName().toLowerCase();
-            if (!movieName.contains(searchName)) {
-                return false;
+    }
+
+    /**
+     * @param criteria Normalized search criteria
+     * @return how a search with the criteria would be evaluated against the current
+     *         catalog if it were not cached
+     */
+    public SearchPlan explainSearch(SearchCriteria criteria) {
+        return planSearch(criteria, catalog);
+    }
+
+    private SearchPlan planSearch(SearchCriteria criteria, Catalog current) {
+        return QueryPlanner.plan(criteria, current.movies.size(), current.indexes);
+    }
+
+    private List<Movie> executePlan(SearchPlan plan, SearchCriteria criteria, Catalog current) {
+        SearchFilter filter = new SearchFilter(criteria);
+        List<Movie> results = new ArrayList<>();
+        switch (plan.getAccess()) {
+            case FULL_SCAN:
+                return filterMovies(criteria, current.slots);
+            case ID_LOOKUP:
+                // The ID map may run ahead of a catalog read just before a change; the
+                // result is then cached under the older version and dropped with it
+                Optional<Movie> movie = getMovieById(criteria.getId());
+                if (movie.isPresent() && filter.matches(movie.get())) {
+                    results.add(movie.get());
+                }
+                return results;
+            default:
+                // Indexes may list slots of newer versions and slots whose movie has
+                // changed; the filter checks every candidate
+                for (int slot : plan.getSlots()) {
+                    Movie candidate = current.slots.get(slot);
+                    if (candidate != null && filter.matches(candidate)) {
+                        results.add(candidate);
+                    }
+                }
+                return results;
+        }
+    }
+
+    /**
+     * Scans the catalog for movies matching already-normalized criteria. Criteria are
+     * unpacked once up front and compared against keys normalized when each movie was
+     * loaded, so the per-movie check allocates nothing. Large catalogs are scanned in
+     * parallel segments by the {@link ParallelSearchEngine}.
+     *
+     * @param criteria Normalized search criteria
+     * @return new list of matching movies, in catalog order
+     */
+    List<Movie> filterMovies(SearchCriteria criteria) {
+        return filterMovies(criteria, catalog.slots);
+    }
+
+    private List<Movie> filterMovies(SearchCriteria criteria, MovieSlots movies) {
+        SearchFilter filter = new SearchFilter(criteria);
+
+        // Segments are ranges of slots; empty slots are skipped. A store is paged through
+        // a record at a time.
+        return searchEngine.search(movies.getSlotCount(), (from, to, out) -> {
+            for (int slot = from; slot < to; slot++) {
+                Movie movie = movies.get(slot);
+                if (movie != null && filter.matches(movie)) {
+                    out.add(movie);
+                }
             }
+        });
+    }
+
+    /**
+     * Search criteria unpacked into primitives once per search, so that checking a movie
+     * allocates nothing. Open range bounds become infinite.
+     */
+    private static final class SearchFilter {
+        private final String searchName;
+        private final boolean byId;
+        private final long searchId;
+        private final String searchGenre;
+        private final int minYear;
+        private final int maxYear;
+        private final double minRating;
+        private final double maxRating;
+
+        SearchFilter(SearchCriteria criteria) {
+            this.searchName = criteria.getName();
+            this.byId = criteria.hasId();
+            this.searchId = criteria.getIdValue();
+            this.searchGenre = criteria.getGenre();
+            this.minYear = criteria.getMinYear() != null ? criteria.getMinYear() : Integer.MIN_VALUE;
+            this.maxYear = criteria.getMaxYear() != null ? criteria.getMaxYear() : Integer.MAX_VALUE;
+            this.minRating = criteria.getMinRating() != null ? criteria.getMinRating() : Double.NEGATIVE_INFINITY;
+            this.maxRating = criteria.getMaxRating() != null ? criteria.getMaxRating() : Double.POSITIVE_INFINITY;
         }
-        
-        // If searching by genre, must match exactly - genres be sacred to us movie pirates!
-        if (genre != null && !genre.trim().isEmpty()) {
-            String searchGenre = genre.trim().toLowerCase();
-            String movieGenre = movie.getGenre().toLowerCase();
-            if (!movieGenre.equals(searchGenre)) {
+
+        /**
+         * Checks if a movie matches the search criteria like a true pirate examines treasure!
+         * 
+         * @param movie The movie to examine
+         * @return true if the movie matches all provided criteria, false otherwise
+         */
+        boolean matches(Movie movie) {
+            // If searching by ID, it must match exactly - no room for error on the high seas!
+            if (byId && movie.getId() != searchId) {
                 return false;
             }
+            
+            // If searching by name, allow partial matches - even pirates make typos!
+            if (searchName != null && !movie.getNormalizedName().contains(searchName)) {
+                return false;
+            }
+            
+            // If searching by genre, must match exactly - genres be sacred to us movie pirates!
+            if (searchGenre != null && !movie.getNormalizedGenre().equals(searchGenre)) {
+                return false;
+            }
+            
+            // Year and rating ranges include both ends
+            return movie.getYear() >= minYear && movie.getYear() <= maxYear
+                && movie.getImdbRating() >= minRating && movie.getImdbRating() <= maxRating;
         }
-        
-        return true;
+    }
+
+    /**
+     * Wraps movies for a JSON response body. Each movie is serialized once per catalog
+     * version and its bytes are reused by every response that contains it.
+     *
+     * @param movies Movies read from this service, in output order
+     * @return JSON array that writes the cached encodings
+     */
+    public MovieJsonArray toJsonArray(List<Movie> movies) {
+        return jsonFragments.toJsonArray(movies, catalog.version);
     }
 
     /**
@@ -135,10 +379,505 @@ public class MovieService {
      * @return List of unique genres found in our movie collection
      */
     public List<String> getAllGenres() {
-        return movies.stream()
-            .map(Movie::getGenre)
-            .distinct()
-            .sorted()
-            .collect(Collectors.toList());
+        return new ArrayList<>(catalog.genres);
+    }
+
+    /**
+     * Finds movies released in a range of years, oldest first. With a writable store the
+     * range is answered from its year index; otherwise the in-memory catalog is filtered.
+     *
+     * @param fromYear First year, inclusive
+     * @param toYear Last year, inclusive
+     * @return new list of matching movies
+     */
+    public List<Movie> findMoviesByYearRange(int fromYear, int toYear) {
+        if (!repository.isReadOnly()) {
+            return repository.findByYearBetween(fromYear, toYear);
+        }
+        List<Movie> results = new ArrayList<>();
+        for (Movie movie : catalog.movies) {
+            if (movie.getYear() >= fromYear && movie.getYear() <= toYear) {
+                results.add(movie);
+            }
+        }
+        results.sort(Comparator.comparingInt(Movie::getYear));
+        return results;
+    }
+
+    /**
+     * Finds movies by director, ignoring case. With a writable store the lookup is
+     * answered from its director index; otherwise the in-memory catalog is filtered.
+     *
+     * @param director Director name to match exactly
+     * @return new list of matching movies
+     */
+    public List<Movie> findMoviesByDirector(String director) {
+        String trimmed = director.trim();
+        if (!repository.isReadOnly()) {
+            return repository.findByDirector(trimmed);
+        }
+        List<Movie> results = new ArrayList<>();
+        for (Movie movie : catalog.movies) {
+            if (movie.getDirector().equalsIgnoreCase(trimmed)) {
+                results.add(movie);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Creates or replaces a movie and records the change in the replication feed.
+     * With a writable store the change is persisted before it becomes visible.
+     *
+     * @param movie The new state of the movie
+     * @return the catalog change that was applied
+     */
+    public CatalogChange saveMovie(Movie movie) {
+        synchronized (writeLock) {
+            CatalogChange change = CatalogChange.upsert(changeLog.getLatestVersion() + 1, movie);
+            applyChanges(Collections.singletonList(change));
+            return change;
+        }
+    }
+
+    /**
+     * Adds a movie under the next unused ID. IDs of deleted movies are not reused.
+     *
+     * @param withId Creates the movie given its ID
+     * @return the catalog change that was applied
+     */
+    public CatalogChange createMovie(LongFunction<Movie> withId) {
+        synchronized (writeLock) {
+            return saveMovie(withId.apply(maxMovieId + 1));
+        }
+    }
+
+    /**
+     * Adds a movie under its own ID.
+     *
+     * @return the catalog change that was applied, or empty if a movie with that ID exists
+     */
+    public Optional<CatalogChange> createMovie(Movie movie) {
+        synchronized (writeLock) {
+            if (getMovieById(movie.getId()).isPresent()) {
+                return Optional.empty();
+            }
+            return Optional.of(saveMovie(movie));
+        }
+    }
+
+    /**
+     * Replaces an existing movie.
+     *
+     * @return the catalog change that was applied, or empty if no movie has that ID
+     */
+    public Optional<CatalogChange> updateMovie(Movie movie) {
+        synchronized (writeLock) {
+            if (!getMovieById(movie.getId()).isPresent()) {
+                return Optional.empty();
+            }
+            return Optional.of(saveMovie(movie));
+        }
+    }
+
+    /**
+     * Deletes a movie and records the change in the replication feed.
+     *
+     * @param id ID of the movie to delete
+     * @return the catalog change that was applied, or empty if no such movie exists
+     */
+    public Optional<CatalogChange> deleteMovie(long id) {
+        synchronized (writeLock) {
+            if (!getMovieById(id).isPresent()) {
+                return Optional.empty();
+            }
+            CatalogChange change = CatalogChange.delete(changeLog.getLatestVersion() + 1, id);
+            applyChanges(Collections.singletonList(change));
+            return Optional.of(change);
+        }
+    }
+
+    /**
+     * Applies changes pulled from another instance's feed, keeping their versions.
+     * Changes this instance already has are skipped.
+     *
+     * @param changes Consecutive changes in version order
+     * @return false if the changes do not continue from this instance's replication
+     *         version, in which case nothing is applied and a snapshot is needed
+     */
+    public boolean applyReplicatedChanges(List<CatalogChange> changes) {
+        synchronized (writeLock) {
+            long latest = changeLog.getLatestVersion();
+            int first = 0;
+            while (first < changes.size() && changes.get(first).getVersion() <= latest) {
+                first++;
+            }
+            if (first == changes.size()) {
+                return true;
+            }
+            if (changes.get(first).getVersion() != latest + 1) {
+                return false;
+            }
+            applyChanges(changes.subList(first, changes.size()));
+            return true;
+        }
+    }
+
+    /**
+     * Replaces the whole catalog with a snapshot taken from another instance.
+     *
+     * @param snapshotMovies Every movie at the snapshot version
+     * @param replicationVersion Feed version the snapshot corresponds to
+     * @param epoch Epoch of the feed the snapshot was taken from, which this instance's
+     *              feed continues
+     */
+    public void installSnapshot(List<Movie> snapshotMovies, long replicationVersion, String epoch) {
+        synchronized (writeLock) {
+            long nextVersion = catalog.version + 1;
+            Set<Long> staged = new LinkedHashSet<>(movieMap.keySet());
+            for (Long id : staged) {
+                stage(id, null, -1, nextVersion);
+            }
+            genreCounts.clear();
+            maxMovieId = 0;
+            MovieTable.Builder next = null;
+            if (storedMovies != null) {
+                repository.replaceAll(snapshotMovies);
+            } else {
+                next = MovieTable.builder();
+            }
+            for (Movie movie : snapshotMovies) {
+                if (next != null) {
+                    stage(movie.getId(), movie, next.add(movie), nextVersion);
+                    staged.add(movie.getId());
+                }
+                addGenre(movie.getGenre());
+                maxMovieId = Math.max(maxMovieId, movie.getId());
+            }
+            changeLog.reset(replicationVersion, epoch);
+            publish(next, null, true, nextVersion, staged);
+        }
+        logger.info("Installed catalog snapshot with {} movies at replication version {} of epoch {}",
+            snapshotMovies.size(), replicationVersion, epoch);
+    }
+
+    /**
+     * @return the current movies together with the feed version and epoch they correspond to
+     */
+    public CatalogSnapshot getCatalogSnapshot() {
+        synchronized (writeLock) {
+            return new CatalogSnapshot(catalog.movies, changeLog.getLatestVersion(), changeLog.getEpoch());
+        }
+    }
+
+    /**
+     * @return the replication feed of this instance
+     */
+    public CatalogChangeLog getChangeLog() {
+        return changeLog;
+    }
+
+    /**
+     * Applies changes to the catalog and the indexes without reloading. With a writable
+     * store each change is written through and the store's slot is indexed. Otherwise
+     * the changes only live in memory: an update or delete goes straight to the movie's
+     * table slot, so the next table shares every chunk the changes leave alone with the
+     * current one, and all of the changes become visible together when the next catalog
+     * is published. Caller holds writeLock.
+     */
+    private void applyChanges(List<CatalogChange> changes) {
+        Catalog current = catalog;
+        long nextVersion = current.version + 1;
+        // Only a read-only store leaves the catalog in a table
+        MovieTable.Builder table = storedMovies == null ? ((MovieTable) current.slots).toBuilder() : null;
+        SearchIndexes indexes = current.indexes;
+        Set<Long> staged = new LinkedHashSet<>();
+        boolean genresChanged = false;
+        for (CatalogChange change : changes) {
+            long id = change.getMovieId();
+            Movie movie = change.getType() == CatalogChange.Type.UPSERT ? change.getMovie() : null;
+            Movie previous;
+            int slot;
+            if (table == null) {
+                previous = repository.findById(id).orElse(null);
+                slot = repository.slotOf(id);
+                if (movie != null) {
+                    repository.save(movie);
+                    slot = repository.slotOf(id);
+                } else if (previous != null) {
+                    repository.deleteById(id);
+                }
+            } else {
+                MovieVersion entry = movieMap.get(id);
+                previous = entry != null ? entry.movie : null;
+                slot = previous != null ? entry.slot : -1;
+                if (movie != null && previous != null) {
+                    table.set(slot, movie);
+                } else if (movie != null) {
+                    slot = table.add(movie);
+                } else if (previous != null) {
+                    table.remove(slot);
+                }
+                if (movie != null || previous != null) {
+                    stage(id, movie, movie != null ? slot : -1, nextVersion);
+                    staged.add(id);
+                }
+            }
+            if (movie != null || previous != null) {
+                indexes.update(slot, previous, movie);
+            }
+            if (previous != null) {
+                genresChanged |= removeGenre(previous.getGenre());
+            }
+            if (movie != null) {
+                genresChanged |= addGenre(movie.getGenre());
+                maxMovieId = Math.max(maxMovieId, movie.getId());
+            }
+            changeLog.append(change);
+        }
+        publish(table, indexes, genresChanged, nextVersion, staged);
+    }
+
+    /**
+     * Records the state of a movie in the catalog version being prepared. Caller holds
+     * writeLock.
+     */
+    private void stage(long id, Movie movie, int slot, long nextVersion) {
+        MovieVersion entry = movieMap.get(id);
+        // A movie changed twice in one version still falls back to its published state
+        MovieVersion published = entry != null && entry.version == nextVersion ? entry.previous : entry;
+        movieMap.put(id, new MovieVersion(movie, slot, nextVersion, published));
+    }
+
+    /**
+     * Makes the prepared catalog version visible, then drops the superseded states of
+     * the staged movies, which no reader can need any more. Once deletes have left more
+     * empty slots than movies, the table is compacted first, like the file store
+     * compacts its records, and the indexes are rebuilt for the new slots; likewise once
+     * the indexes hold more stale slots than movies. Either costs one pass over the
+     * catalog per that many changes. Caller holds writeLock.
+     *
+     * @param next The next table, or null if the catalog is the store
+     * @param indexes Indexes already updated for the changes, or null to build them
+     */
+    private void publish(MovieTable.Builder next, SearchIndexes indexes, boolean genresChanged, long version,
+                         Set<Long> staged) {
+        MovieSlots slots = storedMovies;
+        if (next != null) {
+            MovieTable table = next.build();
+            if (table.needsCompaction()) {
+                table = compact(table, version);
+                indexes = null;
+            }
+            slots = table;
+        }
+        if (indexes == null || indexes.needsRebuild()) {
+            indexes = SearchIndexes.build(slots);
+        }
+        Catalog current = catalog;
+        catalog = new Catalog(slots, genresChanged ? genreList() : current.genres, indexes, version);
+        for (Long id : staged) {
+            MovieVersion entry = movieMap.get(id);
+            if (entry.movie == null) {
+                movieMap.remove(id);
+            } else if (entry.previous != null) {
+                movieMap.put(id, new MovieVersion(entry.movie, entry.slot, entry.version, null));
+            }
+        }
+    }
+
+    /**
+     * @return the table with its movies moved to consecutive slots, with the ID map
+     *         pointing at the new slots. Slots are only read under writeLock, so readers
+     *         are unaffected. Caller holds writeLock.
+     */
+    private MovieTable compact(MovieTable table, long version) {
+        MovieTable compacted = MovieTable.of(table.asList());
+        for (int slot = 0; slot < compacted.getSlotCount(); slot++) {
+            Movie movie = compacted.get(slot);
+            MovieVersion entry = movieMap.get(movie.getId());
+            movieMap.put(movie.getId(), new MovieVersion(entry.movie, slot, entry.version, entry.previous));
+        }
+        logger.info("Compacted catalog table version {} from {} slots to {} movies", version,
+            table.getSlotCount(), compacted.size());
+        return compacted;
+    }
+
+    /**
+     * @return true if this is the first movie of the genre
+     */
+    private boolean addGenre(String genre) {
+        return genreCounts.merge(genre, 1, Integer::sum) == 1;
+    }
+
+    /**
+     * @return true if this was the last movie of the genre
+     */
+    private boolean removeGenre(String genre) {
+        return genreCounts.computeIfPresent(genre, (key, count) -> count > 1 ? count - 1 : null) == null;
+    }
+
+    private List<String> genreList() {
+        return Collections.unmodifiableList(new ArrayList<>(genreCounts.keySet()));
+    }
+
+    /**
+     * @return local version of the catalog, bumped on every change; cached search results
+     *         are tied to it. Unlike replication versions it is never shared between instances.
+     */
+    public long getCatalogVersion() {
+        return catalog.version;
+    }
+
+    /**
+     * @return hit, miss and eviction counters of the search result cache
+     */
+    public SearchResultCache.Stats getSearchCacheStats() {
+        return searchCache.stats();
+    }
+
+    /**
+     * @return estimated heap retained by the current catalog. A writable store keeps no
+     *         movie in memory; its movies are read to estimate what holding them would take.
+     */
+    public CatalogFootprint getFootprint() {
+        return CatalogFootprint.measure(catalog.movies);
+    }
+
+    public ParallelSearchEngine getSearchEngine() {
+        return searchEngine;
+    }
+
+    /**
+     * A writable store read in place. Slots are the store's own and every read goes to
+     * the store, so no movie stays in memory; readers see each movie as last saved rather
+     * than as of one catalog version.
+     */
+    private static final class StoredMovies implements MovieSlots {
+        private final MovieRepository repository;
+        private final List<Movie> movies = new AbstractList<Movie>() {
+            @Override
+            public Movie get(int index) {
+                Movie movie = repository.findByPosition(index);
+                if (movie == null) {
+                    throw new IndexOutOfBoundsException("Index " + index + " of " + size() + " movies");
+                }
+                return movie;
+            }
+
+            @Override
+            public int size() {
+                return StoredMovies.this.size();
+            }
+
+            @Override
+            public Iterator<Movie> iterator() {
+                return new Iterator<Movie>() {
+                    private int slot;
+                    private Movie next = advance();
+
+                    private Movie advance() {
+                        int slotCount = repository.getSlotCount();
+                        while (slot < slotCount) {
+                            Movie movie = repository.findBySlot(slot++);
+                            if (movie != null) {
+                                return movie;
+                            }
+                        }
+                        return null;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != null;
+                    }
+
+                    @Override
+                    public Movie next() {
+                        if (next == null) {
+                            throw new NoSuchElementException();
+                        }
+                        Movie movie = next;
+                        next = advance();
+                        return movie;
+                    }
+                };
+            }
+        };
+
+        StoredMovies(MovieRepository repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public Movie get(int slot) {
+            return repository.findBySlot(slot);
+        }
+
+        @Override
+        public int getSlotCount() {
+            return repository.getSlotCount();
+        }
+
+        @Override
+        public int size() {
+            return (int) repository.count();
+        }
+
+        @Override
+        public List<Movie> asList() {
+            return movies;
+        }
+    }
+
+    /**
+     * The movies a search found and the plan that found them.
+     */
+    public static final class SearchResult {
+        private final List<Movie> movies;
+        private final SearchPlan plan;
+
+        SearchResult(List<Movie> movies, SearchPlan plan) {
+            this.movies = movies;
+            this.plan = plan;
+        }
+
+        /**
+         * @return shared, unmodifiable list of matching movies in catalog order
+         */
+        public List<Movie> getMovies() {
+            return movies;
+        }
+
+        public SearchPlan getPlan() {
+            return plan;
+        }
+    }
+
+    /**
+     * The catalog at a replication version, as served to replicas that need a full copy.
+     */
+    public static final class CatalogSnapshot {
+        private final List<Movie> movies;
+        private final long version;
+        private final String epoch;
+
+        CatalogSnapshot(List<Movie> movies, long version, String epoch) {
+            this.movies = movies;
+            this.version = version;
+            this.epoch = epoch;
+        }
+
+        public List<Movie> getMovies() {
+            return movies;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String getEpoch() {
+            return epoch;
+        }
     }
 }
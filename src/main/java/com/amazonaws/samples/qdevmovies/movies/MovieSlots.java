@@ -0,0 +1,31 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.List;
+
+/**
+ * Movies in numbered slots, as the catalog is scanned and indexed: an in-memory
+ * {@link MovieTable}, or a writable {@link MovieRepository} read in place. A movie keeps
+ * its slot when it is updated; a deleted movie leaves its slot empty.
+ */
+interface MovieSlots {
+
+    /**
+     * @return the movie in the slot, or null if the slot is empty or past the end
+     */
+    Movie get(int slot);
+
+    /**
+     * @return number of slots, empty ones included
+     */
+    int getSlotCount();
+
+    /**
+     * @return number of movies
+     */
+    int size();
+
+    /**
+     * @return the movies in slot order, as an unmodifiable view
+     */
+    List<Movie> asList();
+}
@@ -0,0 +1,248 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The movies of one catalog version, each in a numbered slot. A new movie takes the
+ * next slot, an update keeps its movie's slot and a delete empties it, so slot order is
+ * catalog order and a slot keeps referring to the same movie across versions.
+ *
+ * <p>Slots are grouped in fixed-size chunks. A new version copies only the chunks its
+ * changes touch and the array of chunk references, and shares every other chunk with
+ * the version it was made from, so a change costs a few kilobytes whatever the size of
+ * the catalog. A table is never modified once built; readers need no locking.
+ *
+ * <p>Deleted movies leave empty slots behind. Once they outnumber the movies,
+ * {@link #needsCompaction()} asks for the table to be rebuilt without them, which
+ * renumbers the slots.
+ */
+final class MovieTable implements MovieSlots {
+
+    static final int CHUNK_BITS = 10;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int MIN_EMPTY_SLOTS_FOR_COMPACTION = 1000;
+
+    private static final MovieTable EMPTY = new MovieTable(new Movie[0][], new int[0], 0, 0);
+
+    private final Movie[][] chunks;
+    // Movies per chunk, to find a movie by its position among the movies
+    private final int[] chunkSizes;
+    private final int slotCount;
+    private final int size;
+    private final List<Movie> movies = new MovieList();
+
+    private MovieTable(Movie[][] chunks, int[] chunkSizes, int slotCount, int size) {
+        this.chunks = chunks;
+        this.chunkSizes = chunkSizes;
+        this.slotCount = slotCount;
+        this.size = size;
+    }
+
+    /**
+     * @return table with the movies in consecutive slots, in list order
+     */
+    static MovieTable of(Iterable<Movie> movies) {
+        Builder builder = builder();
+        for (Movie movie : movies) {
+            builder.add(movie);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return builder for a table that starts out empty
+     */
+    static Builder builder() {
+        return EMPTY.toBuilder();
+    }
+
+    @Override
+    public Movie get(int slot) {
+        return slot >= 0 && slot < slotCount ? chunks[slot >>> CHUNK_BITS][slot & CHUNK_MASK] : null;
+    }
+
+    @Override
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true once empty slots outnumber the movies
+     */
+    boolean needsCompaction() {
+        int empty = slotCount - size;
+        return empty >= MIN_EMPTY_SLOTS_FOR_COMPACTION && empty > size;
+    }
+
+    /**
+     * @return the movies in slot order, as an unmodifiable view of this table. Iterating
+     *         walks the slots; {@code get(index)} first counts its way to the right chunk.
+     */
+    @Override
+    public List<Movie> asList() {
+        return movies;
+    }
+
+    /**
+     * @return a builder for the next version, starting from this one
+     */
+    Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * Prepares the next version of a table. Each chunk is copied the first time the
+     * builder changes it, so a batch of changes to one chunk copies it once.
+     */
+    static final class Builder {
+        private Movie[][] chunks;
+        private int[] chunkSizes;
+        // Chunks already copied by this builder, and so safe to change in place
+        private boolean[] owned;
+        private int slotCount;
+        private int size;
+
+        private Builder(MovieTable table) {
+            this.chunks = table.chunks.clone();
+            this.chunkSizes = table.chunkSizes.clone();
+            this.owned = new boolean[chunks.length];
+            this.slotCount = table.slotCount;
+            this.size = table.size;
+        }
+
+        /**
+         * @return the movie in the slot as the builder has it, or null
+         */
+        Movie get(int slot) {
+            return slot >= 0 && slot < slotCount ? chunks[slot >>> CHUNK_BITS][slot & CHUNK_MASK] : null;
+        }
+
+        /**
+         * Puts a movie in the next slot.
+         *
+         * @return the slot
+         */
+        int add(Movie movie) {
+            int slot = slotCount;
+            int chunk = slot >>> CHUNK_BITS;
+            if (chunk == chunks.length) {
+                int capacity = Math.max(4, chunks.length * 2);
+                chunks = Arrays.copyOf(chunks, capacity);
+                chunkSizes = Arrays.copyOf(chunkSizes, capacity);
+                owned = Arrays.copyOf(owned, capacity);
+            }
+            if (chunks[chunk] == null) {
+                chunks[chunk] = new Movie[CHUNK_SIZE];
+                owned[chunk] = true;
+            }
+            slotCount++;
+            write(slot, movie);
+            return slot;
+        }
+
+        /**
+         * Replaces the movie in an occupied slot.
+         */
+        void set(int slot, Movie movie) {
+            if (get(slot) == null) {
+                throw new IllegalArgumentException("Slot " + slot + " is empty");
+            }
+            write(slot, movie);
+        }
+
+        /**
+         * Empties a slot.
+         */
+        void remove(int slot) {
+            if (get(slot) != null) {
+                write(slot, null);
+            }
+        }
+
+        MovieTable build() {
+            // Later builders copy chunks again before changing them
+            Arrays.fill(owned, false);
+            return new MovieTable(chunks.clone(), chunkSizes.clone(), slotCount, size);
+        }
+
+        private void write(int slot, Movie movie) {
+            int chunk = slot >>> CHUNK_BITS;
+            if (!owned[chunk]) {
+                chunks[chunk] = chunks[chunk].clone();
+                owned[chunk] = true;
+            }
+            Movie[] slots = chunks[chunk];
+            int delta = (movie != null ? 1 : 0) - (slots[slot & CHUNK_MASK] != null ? 1 : 0);
+            slots[slot & CHUNK_MASK] = movie;
+            chunkSizes[chunk] += delta;
+            size += delta;
+        }
+    }
+
+    private final class MovieList extends AbstractList<Movie> {
+
+        @Override
+        public Movie get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " of " + size + " movies");
+            }
+            int chunk = 0;
+            int remaining = index;
+            while (remaining >= chunkSizes[chunk]) {
+                remaining -= chunkSizes[chunk];
+                chunk++;
+            }
+            for (Movie movie : chunks[chunk]) {
+                if (movie != null && remaining-- == 0) {
+                    return movie;
+                }
+            }
+            throw new IllegalStateException("Chunk " + chunk + " holds fewer movies than counted");
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Movie> iterator() {
+            return new Iterator<Movie>() {
+                private int slot = advance(0);
+
+                private int advance(int from) {
+                    int next = from;
+                    while (next < slotCount && MovieTable.this.get(next) == null) {
+                        next++;
+                    }
+                    return next;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return slot < slotCount;
+                }
+
+                @Override
+                public Movie next() {
+                    if (slot >= slotCount) {
+                        throw new NoSuchElementException();
+                    }
+                    Movie movie = MovieTable.this.get(slot);
+                    slot = advance(slot + 1);
+                    return movie;
+                }
+            };
+        }
+    }
+}
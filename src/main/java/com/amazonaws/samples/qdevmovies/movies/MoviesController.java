@@ -2,23 +2,39 @@ package com.amazonaws.samples.qdevmovies.movies;
 
 import com.amazonaws.samples.qdevmovies.utils.MovieIconUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Controller
 public class MoviesController {
     private static final Logger logger = LogManager.getLogger(MoviesController.class);
+    private static final int DETAILS_SIMILAR_MOVIES = 6;
+    private static final int MAX_SIMILAR_MOVIES = 50;
+    private static final long DEFAULT_REVIEW_DEADLINE_MILLIS = 150;
+    private static final long REVIEWS_API_TIMEOUT_MILLIS = 5000;
+    private static final int DEFAULT_PAGE_SIZE = 24;
 
     @Autowired
     private MovieService movieService;
@@ -26,16 +42,61 @@ public class MoviesController {
     @Autowired
     private ReviewService reviewService;
 
+    @Autowired
+    private SimilarMoviesService similarMoviesService;
+
+    @Autowired
+    private TypeaheadService typeaheadService;
+
+    @Autowired
+    private QueryAnalytics queryAnalytics;
+
+    @Autowired
+    private MovieCardFragments movieCards;
+
+    // How long the details page waits for reviews before rendering without them
+    @Value("${movies.reviews.deadline-millis:150}")
+    private long reviewDeadlineMillis = DEFAULT_REVIEW_DEADLINE_MILLIS;
+
+    // Movie cards per page of the HTML listings
+    @Value("${movies.listing.page-size:24}")
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
     @GetMapping("/movies")
-    public String getMovies(org.springframework.ui.Model model) {
-        logger.info("Ahoy! Fetching all movies from our treasure chest");
-        model.addAttribute("movies", movieService.getAllMovies());
+    public String getMovies(
+            @RequestParam(value = "page", defaultValue = "1") int page,
+            org.springframework.ui.Model model) {
+        logger.info("Ahoy! Fetching page {} of the movies in our treasure chest", page);
+        addListing(model, "/movies", movieService.getAllMovies(), page, true, null, null, null);
         model.addAttribute("allGenres", movieService.getAllGenres());
         return "movies";
     }
 
+    /**
+     * One page of the movie listing as an HTML fragment, for infinite scroll: the cards
+     * and the link to the page after. Takes the same criteria as {@code /movies/search};
+     * without criteria it pages through all movies.
+     */
+    @GetMapping("/movies/cards")
+    public String getMovieCards(
+            @RequestParam(value = "name", required = false) String name,
+            @RequestParam(value = "id", required = false) Long id,
+            @RequestParam(value = "genre", required = false) String genre,
+            @RequestParam(value = "page", defaultValue = "1") int page,
+            org.springframework.ui.Model model) {
+        
+        if ((name != null && name.trim().length() > 100) || (genre != null && genre.trim().length() > 50)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Arrr! That search be too long for our treasure map!");
+        }
+        boolean search = name != null || id != null || genre != null;
+        List<Movie> listing = search ? movieService.searchMovies(name, id, genre) : movieService.getAllMovies();
+        addListing(model, search ? "/movies/search" : "/movies", listing, page, false, name, id, genre);
+        return "movies :: listing";
+    }
+
     @GetMapping("/movies/{id}/details")
     public String getMovieDetails(@PathVariable("id") Long movieId, org.springframework.ui.Model model) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(reviewDeadlineMillis);
         logger.info("Fetching details for movie ID: {}", movieId);
         
         Optional<Movie> movieOpt = movieService.getMovieById(movieId);
@@ -46,14 +107,78 @@ public class MoviesController {
             return "error";
         }
         
+        // Reviews come from a slower source: load them while the rest of the page is prepared
         Movie movie = movieOpt.get();
+        CompletableFuture<List<Review>> reviews = reviewService.getReviewsForMovieAsync(movie.getId());
         model.addAttribute("movie", movie);
         model.addAttribute("movieIcon", MovieIconUtils.getMovieIcon(movie.getMovieName()));
-        model.addAttribute("allReviews", reviewService.getReviewsForMovie(movie.getId()));
+        
+        List<Movie> similarMovies = new ArrayList<>();
+        RequestTiming.Phase similarPhase = RequestTiming.phase(RequestTiming.SIMILAR);
+        for (SimilarityIndex.Neighbour neighbour : similarMoviesService.getSimilarMovies(movie.getId(), DETAILS_SIMILAR_MOVIES)) {
+            similarMovies.add(neighbour.getMovie());
+        }
+        similarPhase.close();
+        model.addAttribute("similarMovies", similarMovies);
+        
+        // Past the deadline the page renders without reviews; the browser fetches them afterwards
+        RequestTiming.Phase reviewsPhase = RequestTiming.phase(RequestTiming.REVIEWS);
+        List<Review> loadedReviews = awaitReviews(reviews, deadline - System.nanoTime(), movie.getId());
+        reviewsPhase.close();
+        model.addAttribute("allReviews", loadedReviews != null ? loadedReviews : new ArrayList<Review>());
+        model.addAttribute("reviewsLoading", loadedReviews == null);
         
         return "movie-details";
     }
 
+    private static List<Review> awaitReviews(CompletableFuture<List<Review>> reviews, long timeoutNanos, long movieId) {
+        try {
+            return reviews.get(Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            logger.info("Reviews for movie {} missed the page deadline; rendering without them", movieId);
+        } catch (ExecutionException e) {
+            logger.warn("Reviews for movie {} are unavailable: {}", movieId, e.getCause().toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * JSON API endpoint for a movie's customer reviews. The details page calls it when
+     * the reviews were not ready in time to be rendered with the page.
+     */
+    @GetMapping(value = "/api/movies/{id}/reviews", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> movieReviewsApi(@PathVariable("id") Long movieId) {
+        Map<String, Object> response = new HashMap<>();
+        if (!movieService.getMovieById(movieId).isPresent()) {
+            response.put("error", "Movie with ID " + movieId + " was not found");
+            response.put("pirateMessage", "Arrr! No such treasure in our chest!");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        
+        List<Review> reviews;
+        RequestTiming.Phase phase = RequestTiming.phase(RequestTiming.REVIEWS);
+        try {
+            reviews = reviewService.getReviewsForMovieAsync(movieId).get(REVIEWS_API_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            logger.warn("Reviews for movie {} are unavailable: {}", movieId, e.toString());
+            response.put("error", "Reviews are temporarily unavailable");
+            response.put("pirateMessage", "Arrr! The reviews be lost in a fog bank. Try again soon, matey!");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        } finally {
+            phase.close();
+        }
+        response.put("movieId", movieId);
+        response.put("reviews", reviews);
+        response.put("totalResults", reviews.size());
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Ahoy matey! Search for movies in our treasure chest!
      * This endpoint handles both JSON API requests and HTML form submissions.
@@ -69,6 +194,7 @@ public class MoviesController {
             @RequestParam(value = "name", required = false) String name,
             @RequestParam(value = "id", required = false) Long id,
             @RequestParam(value = "genre", required = false) String genre,
+            @RequestParam(value = "page", defaultValue = "1") int page,
             org.springframework.ui.Model model) {
         
         logger.info("Arrr! Treasure hunt initiated with name: '{}', id: {}, genre: '{}'", name, id, genre);
@@ -78,7 +204,7 @@ public class MoviesController {
             if (name != null && name.trim().length() > 100) {
                 logger.warn("Movie name search too long, ye scallywag!");
                 model.addAttribute("errorMessage", "Arrr! That movie name be too long for our treasure map!");
-                model.addAttribute("movies", movieService.getAllMovies());
+                addListing(model, "/movies", movieService.getAllMovies(), 1, true, null, null, null);
                 model.addAttribute("allGenres", movieService.getAllGenres());
                 return "movies";
             }
@@ -86,12 +212,15 @@ public class MoviesController {
             if (genre != null && genre.trim().length() > 50) {
                 logger.warn("Genre search too long, ye landlubber!");
                 model.addAttribute("errorMessage", "Arrr! That genre be too long for our charts!");
-                model.addAttribute("movies", movieService.getAllMovies());
+                addListing(model, "/movies", movieService.getAllMovies(), 1, true, null, null, null);
                 model.addAttribute("allGenres", movieService.getAllGenres());
                 return "movies";
             }
             
-            // Perform the treasure hunt!
+            // Perform the treasure hunt! Later pages of the same search are not counted again
+            if (page <= 1) {
+                queryAnalytics.record(SearchCriteria.of(name, id, genre));
+            }
             List<Movie> searchResults = movieService.searchMovies(name, id, genre);
             
             // Prepare the response with pirate flair
@@ -105,7 +234,7 @@ public class MoviesController {
                 logger.info("Found {} movies matching search criteria", searchResults.size());
             }
             
-            model.addAttribute("movies", searchResults);
+            addListing(model, "/movies/search", searchResults, page, true, name, id, genre);
             model.addAttribute("allGenres", movieService.getAllGenres());
             model.addAttribute("searchName", name);
             model.addAttribute("searchId", id);
@@ -116,7 +245,7 @@ public class MoviesController {
         } catch (Exception e) {
             logger.error("Blimey! Error during movie search: {}", e.getMessage(), e);
             model.addAttribute("errorMessage", "Arrr! Something went wrong during the treasure hunt. Try again, matey!");
-            model.addAttribute("movies", movieService.getAllMovies());
+            addListing(model, "/movies", movieService.getAllMovies(), 1, true, null, null, null);
             model.addAttribute("allGenres", movieService.getAllGenres());
             return "movies";
         }
@@ -124,20 +253,45 @@ public class MoviesController {
 
     /**
      * JSON API endpoint for movie search - for ye tech-savvy pirates!
-     * Returns pure JSON response for API consumers.
+     * Returns pure JSON response for API consumers, or CBOR / protobuf when the
+     * Accept header asks for them (see {@link MovieListResponse}).
+     * 
+     * @param fields Comma-separated movie properties to return (all when omitted)
+     * @param minYear Earliest release year (inclusive)
+     * @param maxYear Latest release year (inclusive)
+     * @param minRating Lowest rating (inclusive)
+     * @param maxRating Highest rating (inclusive)
+     * @param explain Add the query plan the search was evaluated with, which names the
+     *                result cache when a cached result was served
      */
     @GetMapping("/api/movies/search")
     @ResponseBody
     public ResponseEntity<Map<String, Object>> searchMoviesApi(
             @RequestParam(value = "name", required = false) String name,
             @RequestParam(value = "id", required = false) Long id,
-            @RequestParam(value = "genre", required = false) String genre) {
+            @RequestParam(value = "genre", required = false) String genre,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "minYear", required = false) Integer minYear,
+            @RequestParam(value = "maxYear", required = false) Integer maxYear,
+            @RequestParam(value = "minRating", required = false) Double minRating,
+            @RequestParam(value = "maxRating", required = false) Double maxRating,
+            @RequestParam(value = "explain", defaultValue = "false") boolean explain) {
         
-        logger.info("API treasure hunt initiated with name: '{}', id: {}, genre: '{}'", name, id, genre);
+        logger.info("API treasure hunt initiated with name: '{}', id: {}, genre: '{}', years: {}..{}, rating: {}..{}",
+            name, id, genre, minYear, maxYear, minRating, maxRating);
         
-        Map<String, Object> response = new HashMap<>();
+        Map<String, Object> response = new MovieListResponse();
         
         try {
+            MovieFields movieFields;
+            try {
+                movieFields = MovieFields.parse(fields);
+            } catch (IllegalArgumentException e) {
+                response.put("error", e.getMessage());
+                response.put("pirateMessage", "Arrr! That field be not on our treasure map!");
+                return ResponseEntity.badRequest().body(response);
+            }
+            
             // Validate input parameters
             if (name != null && name.trim().length() > 100) {
                 response.put("error", "Movie name too long (max 100 characters)");
@@ -151,16 +305,44 @@ public class MoviesController {
                 return ResponseEntity.badRequest().body(response);
             }
             
+            if ((minYear != null && maxYear != null && minYear > maxYear)
+                    || (minRating != null && maxRating != null && minRating > maxRating)) {
+                response.put("error", "Range minimum must not be above its maximum");
+                response.put("pirateMessage", "Arrr! Ye can't sail backwards through the years!");
+                return ResponseEntity.badRequest().body(response);
+            }
+            
             // Perform the search
-            List<Movie> searchResults = movieService.searchMovies(name, id, genre);
+            SearchCriteria criteria = SearchCriteria.of(name, id, genre, minYear, maxYear, minRating, maxRating);
+            queryAnalytics.record(criteria);
+            MovieService.SearchResult result = movieService.search(criteria);
+            List<Movie> searchResults = result.getMovies();
             
-            response.put("movies", searchResults);
+            response.put("movies", movieFields.isAll()
+                ? movieService.toJsonArray(searchResults) : movieFields.project(searchResults));
             response.put("totalResults", searchResults.size());
-            response.put("searchCriteria", Map.of(
-                "name", name != null ? name : "",
-                "id", id != null ? id : "",
-                "genre", genre != null ? genre : ""
-            ));
+            Map<String, Object> searchCriteria = new LinkedHashMap<>();
+            searchCriteria.put("name", name != null ? name : "");
+            searchCriteria.put("id", id != null ? id : "");
+            searchCriteria.put("genre", genre != null ? genre : "");
+            // Ranges only appear when given
+            if (minYear != null) {
+                searchCriteria.put("minYear", minYear);
+            }
+            if (maxYear != null) {
+                searchCriteria.put("maxYear", maxYear);
+            }
+            if (minRating != null) {
+                searchCriteria.put("minRating", minRating);
+            }
+            if (maxRating != null) {
+                searchCriteria.put("maxRating", maxRating);
+            }
+            response.put("searchCriteria", searchCriteria);
+            if (explain) {
+                // The plan that actually produced the results, or the result cache
+                response.put("plan", result.getPlan().toMap());
+            }
             
             if (searchResults.isEmpty()) {
                 response.put("pirateMessage", "Arrr! No treasure found matching yer criteria. Try another search, ye savvy sailor!");
@@ -179,6 +361,163 @@ public class MoviesController {
         }
     }
 
+    /**
+     * JSON API endpoint for "more like this" - movies that sail in similar waters!
+     * Neighbours are precomputed, so this is a lookup rather than a search.
+     * 
+     * @param movieId Movie to find similar movies for
+     * @param limit Maximum number of similar movies (1-50)
+     */
+    @GetMapping("/api/movies/{id}/similar")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> similarMoviesApi(
+            @PathVariable("id") Long movieId,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        
+        Map<String, Object> response = new MovieListResponse();
+        if (limit < 1 || limit > MAX_SIMILAR_MOVIES) {
+            response.put("error", "limit must be between 1 and " + MAX_SIMILAR_MOVIES);
+            response.put("pirateMessage", "Arrr! That be more treasure than our hold can carry!");
+            return ResponseEntity.badRequest().body(response);
+        }
+        if (!movieService.getMovieById(movieId).isPresent()) {
+            response.put("error", "Movie with ID " + movieId + " was not found");
+            response.put("pirateMessage", "Arrr! No such treasure in our chest!");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        
+        List<Movie> movies = new ArrayList<>();
+        List<Double> scores = new ArrayList<>();
+        for (SimilarityIndex.Neighbour neighbour : similarMoviesService.getSimilarMovies(movieId, limit)) {
+            movies.add(neighbour.getMovie());
+            scores.add(neighbour.getScore());
+        }
+        response.put("movieId", movieId);
+        response.put("movies", movieService.toJsonArray(movies));
+        response.put("scores", scores);
+        response.put("totalResults", movies.size());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Typeahead completions for the search box: movie names and directors starting with
+     * the typed text (at any word). Answered from a precomputed prefix trie.
+     */
+    @GetMapping(value = "/api/movies/typeahead", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> typeaheadApi(
+            @RequestParam(value = "q", defaultValue = "") String query,
+            @RequestParam(value = "limit", defaultValue = "8") int limit) {
+        
+        Map<String, Object> response = new HashMap<>();
+        if (query.length() > 100) {
+            response.put("error", "Query too long (max 100 characters)");
+            response.put("pirateMessage", "Arrr! That movie name be too long for our treasure map!");
+            return ResponseEntity.badRequest().body(response);
+        }
+        if (limit < 1 || limit > typeaheadService.getMaxCompletions()) {
+            response.put("error", "limit must be between 1 and " + typeaheadService.getMaxCompletions());
+            response.put("pirateMessage", "Arrr! That be more treasure than our hold can carry!");
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        List<Map<String, Object>> suggestions = new ArrayList<>();
+        for (TypeaheadIndex.Completion completion : typeaheadService.complete(query, limit)) {
+            Map<String, Object> suggestion = new HashMap<>();
+            suggestion.put("type", completion.getKind() == TypeaheadIndex.Kind.MOVIE ? "movie" : "director");
+            suggestion.put("text", completion.getText());
+            suggestion.put("movieId", completion.getMovieId());
+            suggestions.add(suggestion);
+        }
+        response.put("query", query);
+        response.put("suggestions", suggestions);
+        response.put("totalResults", suggestions.size());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * JSON API endpoint for browsing movies by release year range.
+     * Answered from the storage backend's year index when it has one.
+     */
+    @GetMapping("/api/movies/by-year")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> moviesByYearApi(
+            @RequestParam("from") int fromYear,
+            @RequestParam("to") int toYear) {
+        
+        Map<String, Object> response = new MovieListResponse();
+        if (fromYear > toYear) {
+            response.put("error", "'from' must not be after 'to'");
+            response.put("pirateMessage", "Arrr! Ye can't sail backwards through the years!");
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        List<Movie> movies = movieService.findMoviesByYearRange(fromYear, toYear);
+        response.put("movies", movieService.toJsonArray(movies));
+        response.put("totalResults", movies.size());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * JSON API endpoint for browsing movies by director.
+     * Answered from the storage backend's director index when it has one.
+     */
+    @GetMapping("/api/movies/by-director")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> moviesByDirectorApi(
+            @RequestParam("director") String director) {
+        
+        Map<String, Object> response = new MovieListResponse();
+        if (director.trim().isEmpty() || director.trim().length() > 100) {
+            response.put("error", "Director must be between 1 and 100 characters");
+            response.put("pirateMessage", "Arrr! That be no captain we know of!");
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        List<Movie> movies = movieService.findMoviesByDirector(director);
+        response.put("movies", movieService.toJsonArray(movies));
+        response.put("totalResults", movies.size());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Adds one page of a listing to the model: its movies, their cached card HTML and
+     * links to the neighbouring pages. Only the page's cards are rendered, so the cost
+     * does not grow with the listing.
+     *
+     * @param path Page the listing is shown on, for the page links
+     * @param clampPage Show the last page rather than an empty one past the end
+     */
+    private void addListing(org.springframework.ui.Model model, String path, List<Movie> listing, int page,
+                            boolean clampPage, String name, Long id, String genre) {
+        int number = clampPage ? Math.min(page, MoviePage.pageCount(listing.size(), pageSize)) : page;
+        MoviePage moviePage = MoviePage.of(listing, number, pageSize);
+        model.addAttribute("moviePage", moviePage);
+        model.addAttribute("movies", moviePage.getMovies());
+        model.addAttribute("movieCards", movieCards.render(moviePage.getMovies()));
+        if (moviePage.getPage() > 1 && moviePage.getPage() <= moviePage.getPageCount()) {
+            model.addAttribute("previousPageUrl", pageUrl(path, name, id, genre, moviePage.getPage() - 1));
+        }
+        if (moviePage.hasNext()) {
+            model.addAttribute("nextPageUrl", pageUrl(path, name, id, genre, moviePage.getNextPage()));
+            model.addAttribute("nextCardsUrl", pageUrl("/movies/cards", name, id, genre, moviePage.getNextPage()));
+        }
+    }
+
+    private static String pageUrl(String path, String name, Long id, String genre, int page) {
+        UriComponentsBuilder url = UriComponentsBuilder.fromPath(path);
+        if (name != null && !name.trim().isEmpty()) {
+            url.queryParam("name", name.trim());
+        }
+        if (id != null) {
+            url.queryParam("id", id);
+        }
+        if (genre != null && !genre.trim().isEmpty()) {
+            url.queryParam("genre", genre.trim());
+        }
+        return url.queryParam("page", page).encode().toUriString();
+    }
+
     /**
      * Helper method to build a user-friendly search criteria message
      */
@@ -0,0 +1,263 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evaluates a row filter over the catalog, in parallel for large catalogs.
+ *
+ * <p>The catalog is split into fixed-size segments (a few thousand rows, so each task
+ * walks a cache-sized slice of the backing array) that are filtered on a dedicated
+ * {@link ForkJoinPool}; the common pool is left to the rest of the application.
+ * Per-segment results are concatenated in segment order, so output order matches a
+ * sequential scan.
+ *
+ * <p>Scans below a sequential cutoff run on the caller's thread. The cutoff is
+ * calibrated from measurements: the pool's task hand-off latency, taken once, and a
+ * moving average of the observed scan cost per row. Parallelism only pays off when
+ * the scan takes many times longer than handing the work to another thread.
+ *
+ * <p>The pool is started by the first scan that goes parallel, so engines over small
+ * catalogs never own threads; {@link #shutdown()} stops it.
+ */
+public class ParallelSearchEngine {
+    private static final Logger logger = LogManager.getLogger(ParallelSearchEngine.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 4096;
+
+    // Parallel scans must be worth at least this many task hand-offs
+    private static final int HANDOFF_MULTIPLIER = 50;
+    private static final long MIN_PARALLEL_WORK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final int CALIBRATION_ROUNDS = 32;
+    private static final int MIN_MEASURED_ROWS = 1024;
+    private static final double EWMA_WEIGHT = 0.2;
+
+    /**
+     * Appends the rows in {@code [from, to)} that pass the filter to {@code out}.
+     */
+    @FunctionalInterface
+    public interface RangeFilter {
+        void filter(int from, int to, List<Movie> out);
+    }
+
+    private final int parallelism;
+    private final int segmentSize;
+    // Started on first parallel use, under this engine's monitor
+    private volatile ForkJoinPool pool;
+    private boolean shutdown;
+    private final AtomicLong parallelSearches = new AtomicLong();
+    private final AtomicLong sequentialSearches = new AtomicLong();
+
+    private volatile long handoffNanos = -1;
+    private volatile double nanosPerRow = -1;
+
+    /**
+     * @param parallelism Maximum worker threads; 0 or less uses half the available processors
+     * @param segmentSize Rows per task
+     */
+    public ParallelSearchEngine(int parallelism, int segmentSize) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("segmentSize must be positive");
+        }
+        this.parallelism = parallelism > 0
+            ? parallelism
+            : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.segmentSize = segmentSize;
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("movie-search-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Filters rows {@code [0, size)}.
+     *
+     * @param size Number of rows in the catalog
+     * @param filter Row filter; must be safe to call concurrently on disjoint ranges
+     * @return matching rows in catalog order
+     */
+    public List<Movie> search(int size, RangeFilter filter) {
+        ForkJoinPool workers = parallelism > 1 && size >= 2 * segmentSize && size >= getSequentialCutoff() ? pool() : null;
+        if (workers == null) {
+            sequentialSearches.incrementAndGet();
+            List<Movie> results = new ArrayList<>();
+            scanSegment(filter, 0, size, results);
+            return results;
+        }
+
+        parallelSearches.incrementAndGet();
+        int segments = (size + segmentSize - 1) / segmentSize;
+        List<List<Movie>> parts = new ArrayList<>(Collections.<List<Movie>>nCopies(segments, null));
+        workers.invoke(new SegmentTask(filter, size, parts, 0, segments));
+
+        int total = 0;
+        for (List<Movie> part : parts) {
+            total += part.size();
+        }
+        List<Movie> results = new ArrayList<>(total);
+        for (List<Movie> part : parts) {
+            results.addAll(part);
+        }
+        return results;
+    }
+
+    /**
+     * Calibrates the cutoff on first use, which measures the hand-off latency and so
+     * starts the pool.
+     *
+     * @return catalog size from which scans are split across the pool
+     */
+    public int getSequentialCutoff() {
+        double perRow = nanosPerRow;
+        if (perRow <= 0) {
+            // Not measured yet: scan sequentially once to learn the per-row cost
+            return Integer.MAX_VALUE;
+        }
+        return cutoff(perRow, handoffNanos());
+    }
+
+    /**
+     * @return the sequential cutoff from the measurements taken so far, or -1 until both
+     *         the scan cost and the hand-off latency are measured; never measures anything
+     *         or starts the pool itself
+     */
+    public int getCalibratedSequentialCutoff() {
+        double perRow = nanosPerRow;
+        long handoff = handoffNanos;
+        return perRow > 0 && handoff >= 0 ? cutoff(perRow, handoff) : -1;
+    }
+
+    public boolean isPoolStarted() {
+        return pool != null;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public long getParallelSearches() {
+        return parallelSearches.get();
+    }
+
+    public long getSequentialSearches() {
+        return sequentialSearches.get();
+    }
+
+    public synchronized void shutdown() {
+        shutdown = true;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the worker pool, started on first use; null once the engine is shut down
+     */
+    private ForkJoinPool pool() {
+        ForkJoinPool current = pool;
+        if (current == null) {
+            synchronized (this) {
+                current = pool;
+                if (current == null && !shutdown) {
+                    current = new ForkJoinPool(parallelism, ParallelSearchEngine::newWorker, null, false);
+                    pool = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private int cutoff(double perRow, long handoff) {
+        long targetNanos = Math.max(MIN_PARALLEL_WORK_NANOS, handoff * HANDOFF_MULTIPLIER);
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(2L * segmentSize, (long) (targetNanos / perRow)));
+    }
+
+    private void scanSegment(RangeFilter filter, int from, int to, List<Movie> out) {
+        long start = System.nanoTime();
+        filter.filter(from, to, out);
+        recordScan(to - from, System.nanoTime() - start);
+    }
+
+    private void recordScan(int rows, long elapsedNanos) {
+        if (rows < MIN_MEASURED_ROWS) {
+            return;
+        }
+        double sample = (double) elapsedNanos / rows;
+        double current = nanosPerRow;
+        // Racy read-modify-write is fine: this is a smoothed estimate, not a counter
+        nanosPerRow = current <= 0 ? sample : current + EWMA_WEIGHT * (sample - current);
+    }
+
+    private long handoffNanos() {
+        long measured = handoffNanos;
+        if (measured < 0) {
+            measured = measureHandoff();
+            handoffNanos = measured;
+            logger.info("Calibrated search pool hand-off at {} ns with parallelism {}", measured, parallelism);
+        }
+        return measured;
+    }
+
+    private long measureHandoff() {
+        ForkJoinPool workers = parallelism > 1 ? pool() : null;
+        if (workers == null) {
+            return 0;
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+            long start = System.nanoTime();
+            workers.submit(() -> { }).join();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private final class SegmentTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient RangeFilter filter;
+        private final int size;
+        private final transient List<List<Movie>> parts;
+        private final int firstSegment;
+        private final int endSegment;
+
+        SegmentTask(RangeFilter filter, int size, List<List<Movie>> parts, int firstSegment, int endSegment) {
+            this.filter = filter;
+            this.size = size;
+            this.parts = parts;
+            this.firstSegment = firstSegment;
+            this.endSegment = endSegment;
+        }
+
+        @Override
+        protected void compute() {
+            if (endSegment - firstSegment == 1) {
+                int from = firstSegment * segmentSize;
+                int to = Math.min(size, from + segmentSize);
+                List<Movie> out = new ArrayList<>();
+                scanSegment(filter, from, to, out);
+                parts.set(firstSegment, out);
+                return;
+            }
+            int middle = (firstSegment + endSegment) >>> 1;
+            invokeAll(new SegmentTask(filter, size, parts, firstSegment, middle),
+                new SegmentTask(filter, size, parts, middle, endSegment));
+        }
+    }
+}
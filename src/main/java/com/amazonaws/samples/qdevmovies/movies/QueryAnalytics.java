@@ -0,0 +1,445 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded-memory analytics of the searches users run.
+ *
+ * <p>Time is split into windows of {@code movies.analytics.window-minutes}; the last
+ * {@code movies.analytics.windows} of them are kept in a ring. Each window counts
+ * normalized {@link SearchCriteria} in a {@link CountMinSketch} and tracks its heavy
+ * hitters: up to {@code 2 * top-k} candidate queries with the highest estimated counts,
+ * the least frequent candidate making room for a query that overtakes it. Counts over
+ * the whole span are the sums of the per-window estimates, so memory stays fixed no
+ * matter how many distinct queries arrive, and queries older than the span drop out
+ * as their window is reused.
+ *
+ * <p>Recording a search never waits: it is queued in a lock-free buffer, and the
+ * recording thread applies the buffered searches only if no other thread holds the
+ * analytics lock at that moment. Readers apply whatever is still buffered first. The
+ * candidates are kept ordered by estimate, so making room takes logarithmic time.
+ *
+ * <p>At shutdown the top queries are written to {@code movies.analytics.file}. At
+ * startup they are read back into the current window and the most popular
+ * {@code movies.analytics.warm-up-queries} are run, filling the search result cache and
+ * the pre-serialized JSON of their movies before the application context finishes
+ * starting, and so before the web server accepts requests.
+ */
+@Service
+public class QueryAnalytics {
+    private static final Logger logger = LogManager.getLogger(QueryAnalytics.class);
+
+    static final int SKETCH_DEPTH = 4;
+
+    /**
+     * An estimated number of searches for one query.
+     */
+    public static final class QueryCount {
+        private final SearchCriteria criteria;
+        private final long count;
+
+        QueryCount(SearchCriteria criteria, long count) {
+            this.criteria = criteria;
+            this.count = count;
+        }
+
+        public SearchCriteria getCriteria() {
+            return criteria;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+    private static final class Candidate {
+        final SearchCriteria criteria;
+        final long sequence;
+        long estimate;
+
+        Candidate(SearchCriteria criteria, long sequence, long estimate) {
+            this.criteria = criteria;
+            this.sequence = sequence;
+            this.estimate = estimate;
+        }
+    }
+
+    private static final class Window {
+        long epoch = -1;
+        final CountMinSketch sketch;
+        final Map<SearchCriteria, Candidate> candidates = new HashMap<>();
+        // Least estimated first; ties broken by arrival
+        final TreeSet<Candidate> ranked = new TreeSet<>((a, b) -> a.estimate != b.estimate
+            ? Long.compare(a.estimate, b.estimate) : Long.compare(a.sequence, b.sequence));
+        long sequence;
+
+        Window(int sketchWidth) {
+            this.sketch = new CountMinSketch(SKETCH_DEPTH, sketchWidth);
+        }
+
+        void clear() {
+            sketch.clear();
+            candidates.clear();
+            ranked.clear();
+        }
+    }
+
+    private static final class Recorded {
+        final SearchCriteria criteria;
+        final long count;
+        final long epoch;
+
+        Recorded(SearchCriteria criteria, long count, long epoch) {
+            this.criteria = criteria;
+            this.count = count;
+            this.epoch = epoch;
+        }
+    }
+
+    private final MovieService movieService;
+    private final long windowMillis;
+    private final int topK;
+    private final int warmUpQueries;
+    private final Path file;
+    private final LongSupplier clock;
+    private final Window[] windows;
+    private final Queue<Recorded> buffer = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private long totalRecorded;
+    private volatile int warmedUp;
+
+    @Autowired
+    public QueryAnalytics(MovieService movieService,
+                          @Value("${movies.analytics.window-minutes:10}") int windowMinutes,
+                          @Value("${movies.analytics.windows:6}") int windows,
+                          @Value("${movies.analytics.top-k:100}") int topK,
+                          @Value("${movies.analytics.sketch-width:2048}") int sketchWidth,
+                          @Value("${movies.analytics.warm-up-queries:50}") int warmUpQueries,
+                          @Value("${movies.analytics.file:data/top-queries.json}") String file) {
+        this(movieService, windowMinutes * 60_000L, windows, topK, sketchWidth, warmUpQueries,
+            file.trim().isEmpty() ? null : Paths.get(file), System::currentTimeMillis);
+    }
+
+    /**
+     * @param file Where top queries are persisted, or null to not persist them
+     * @param clock Current time in milliseconds
+     */
+    QueryAnalytics(MovieService movieService, long windowMillis, int windows, int topK, int sketchWidth,
+                   int warmUpQueries, Path file, LongSupplier clock) {
+        if (windowMillis <= 0 || windows < 1 || topK < 1) {
+            throw new IllegalArgumentException("Window length, window count and top-k must be positive");
+        }
+        this.movieService = movieService;
+        this.windowMillis = windowMillis;
+        this.topK = topK;
+        this.warmUpQueries = warmUpQueries;
+        this.file = file;
+        this.clock = clock;
+        this.windows = new Window[windows];
+        for (int i = 0; i < windows; i++) {
+            this.windows[i] = new Window(sketchWidth);
+        }
+    }
+
+    /**
+     * Counts one search.
+     */
+    public void record(SearchCriteria criteria) {
+        record(criteria, 1);
+    }
+
+    void record(SearchCriteria criteria, long count) {
+        buffer.add(new Recorded(criteria, count, clock.getAsLong() / windowMillis));
+        if (lock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return estimated searches for the query over the retained windows
+     */
+    public long estimate(SearchCriteria criteria) {
+        lock.lock();
+        try {
+            drain();
+            long current = clock.getAsLong() / windowMillis;
+            long estimate = 0;
+            for (Window window : windows) {
+                if (isLive(window, current)) {
+                    estimate += window.sketch.estimate(criteria);
+                }
+            }
+            return estimate;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param limit Maximum number of queries
+     * @return the most frequent queries over the retained windows, most frequent first
+     */
+    public List<QueryCount> topQueries(int limit) {
+        lock.lock();
+        try {
+            drain();
+            return rankedQueries(limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<QueryCount> rankedQueries(int limit) {
+        long current = clock.getAsLong() / windowMillis;
+        Map<SearchCriteria, Long> totals = new HashMap<>();
+        for (Window window : windows) {
+            if (isLive(window, current)) {
+                for (SearchCriteria criteria : window.candidates.keySet()) {
+                    totals.putIfAbsent(criteria, 0L);
+                }
+            }
+        }
+        List<QueryCount> counts = new ArrayList<>(totals.size());
+        for (SearchCriteria criteria : totals.keySet()) {
+            long total = 0;
+            for (Window window : windows) {
+                if (isLive(window, current)) {
+                    total += window.sketch.estimate(criteria);
+                }
+            }
+            counts.add(new QueryCount(criteria, total));
+        }
+        counts.sort((a, b) -> a.count != b.count ? Long.compare(b.count, a.count)
+            : a.criteria.toString().compareTo(b.criteria.toString()));
+        return counts.size() > limit ? new ArrayList<>(counts.subList(0, limit)) : counts;
+    }
+
+    /**
+     * @return searches counted in the retained windows
+     */
+    public long getWindowedTotal() {
+        lock.lock();
+        try {
+            drain();
+            long current = clock.getAsLong() / windowMillis;
+            long total = 0;
+            for (Window window : windows) {
+                if (isLive(window, current)) {
+                    total += window.sketch.getTotal();
+                }
+            }
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return searches counted since startup
+     */
+    public long getTotalRecorded() {
+        lock.lock();
+        try {
+            drain();
+            return totalRecorded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getWindowCount() {
+        return windows.length;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    public long getSketchBytes() {
+        return windows.length * windows[0].sketch.estimatedBytes();
+    }
+
+    /**
+     * @return queries replayed at startup
+     */
+    public int getWarmedUp() {
+        return warmedUp;
+    }
+
+    /**
+     * Reads the persisted top queries, counts them again and runs the most popular ones
+     * so their results are cached before traffic arrives.
+     */
+    @PostConstruct
+    public void warmUp() {
+        List<QueryCount> persisted = load();
+        if (persisted.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        for (QueryCount query : persisted) {
+            record(query.getCriteria(), query.getCount());
+        }
+        int replayed = 0;
+        for (QueryCount query : topQueries(warmUpQueries)) {
+            SearchCriteria criteria = query.getCriteria();
+            List<Movie> results = movieService.searchMovies(criteria);
+            movieService.toJsonArray(results);
+            replayed++;
+        }
+        warmedUp = replayed;
+        logger.info("Pre-warmed {} of {} persisted top queries in {} ms", replayed, persisted.size(),
+            (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Writes the current top queries, replacing the previous file atomically.
+     */
+    @PreDestroy
+    public void persist() {
+        if (file == null) {
+            return;
+        }
+        JSONArray queries = new JSONArray();
+        for (QueryCount query : topQueries(topK)) {
+            SearchCriteria criteria = query.getCriteria();
+            JSONObject entry = new JSONObject();
+            entry.put("name", criteria.getName() != null ? criteria.getName() : JSONObject.NULL);
+            entry.put("id", criteria.hasId() ? criteria.getId() : JSONObject.NULL);
+            entry.put("genre", criteria.getGenre() != null ? criteria.getGenre() : JSONObject.NULL);
+            // Ranges are only written when set, so files from before they existed read the same
+            entry.putOpt("minYear", criteria.getMinYear());
+            entry.putOpt("maxYear", criteria.getMaxYear());
+            entry.putOpt("minRating", criteria.getMinRating());
+            entry.putOpt("maxRating", criteria.getMaxRating());
+            entry.put("count", query.getCount());
+            queries.put(entry);
+        }
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path temp = Paths.get(file.toString() + ".tmp");
+            Files.write(temp, queries.toString(2).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Saved {} top queries to {}", queries.length(), file);
+        } catch (IOException e) {
+            logger.warn("Failed to save top queries to {}: {}", file, e.getMessage());
+        }
+    }
+
+    private List<QueryCount> load() {
+        List<QueryCount> queries = new ArrayList<>();
+        if (file == null || !Files.isRegularFile(file)) {
+            return queries;
+        }
+        try {
+            JSONArray entries = new JSONArray(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            Iterator<Object> iterator = entries.iterator();
+            while (iterator.hasNext() && queries.size() < topK) {
+                JSONObject entry = (JSONObject) iterator.next();
+                SearchCriteria criteria = SearchCriteria.of(entry.optString("name", null),
+                    entry.isNull("id") ? null : entry.getLong("id"), entry.optString("genre", null),
+                    entry.has("minYear") ? entry.getInt("minYear") : null,
+                    entry.has("maxYear") ? entry.getInt("maxYear") : null,
+                    entry.has("minRating") ? entry.getDouble("minRating") : null,
+                    entry.has("maxRating") ? entry.getDouble("maxRating") : null);
+                queries.add(new QueryCount(criteria, Math.max(1, entry.optLong("count", 1))));
+            }
+        } catch (IOException | JSONException | ClassCastException e) {
+            logger.warn("Ignoring unreadable top queries file {}: {}", file, e.getMessage());
+            queries.clear();
+        }
+        return queries;
+    }
+
+    /**
+     * Applies the buffered searches. Caller holds the lock.
+     */
+    private void drain() {
+        Recorded recorded;
+        while ((recorded = buffer.poll()) != null) {
+            apply(recorded);
+        }
+    }
+
+    private void apply(Recorded recorded) {
+        totalRecorded += recorded.count;
+        Window window = window(recorded.epoch);
+        if (window == null) {
+            return;
+        }
+        SearchCriteria criteria = recorded.criteria;
+        long estimate = window.sketch.add(criteria, recorded.count);
+        Candidate candidate = window.candidates.get(criteria);
+        if (candidate != null) {
+            window.ranked.remove(candidate);
+            candidate.estimate = estimate;
+            window.ranked.add(candidate);
+            return;
+        }
+        if (window.candidates.size() >= 2 * topK) {
+            Candidate least = window.ranked.first();
+            if (estimate <= least.estimate) {
+                return;
+            }
+            window.ranked.pollFirst();
+            window.candidates.remove(least.criteria);
+        }
+        candidate = new Candidate(criteria, window.sequence++, estimate);
+        window.candidates.put(criteria, candidate);
+        window.ranked.add(candidate);
+    }
+
+    /**
+     * @return the window of the epoch, started afresh if its slot held an older one; null
+     *         if the slot has already moved on to a newer epoch
+     */
+    private Window window(long epoch) {
+        Window window = windows[(int) (epoch % windows.length)];
+        if (window.epoch < epoch) {
+            window.epoch = epoch;
+            window.clear();
+        }
+        return window.epoch == epoch ? window : null;
+    }
+
+    private boolean isLive(Window window, long currentEpoch) {
+        return window.epoch >= 0 && window.epoch > currentEpoch - windows.length && window.epoch <= currentEpoch;
+    }
+}
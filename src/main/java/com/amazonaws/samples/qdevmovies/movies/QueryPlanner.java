@@ -0,0 +1,128 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chooses how to evaluate a search. Every criterion that has an index is an access
+ * path whose candidate count is known up front from the index: one movie for an ID,
+ * the length of a genre's posting list, two binary searches for a year or rating range,
+ * the rarest trigram's posting list for a name fragment. The cheapest path drives the
+ * search and the other criteria are checked on its candidates only; without a usable
+ * index the catalog is scanned. Index counts include slots whose movie has changed
+ * since the indexes were built, so they are upper bounds.
+ *
+ * <p>Candidates reached through an index cost {@link #INDEX_ROW_COST} times a scanned
+ * row, as they are read out of order, so an index only drives a search when it rules out
+ * most of the catalog.
+ */
+final class QueryPlanner {
+
+    static final double INDEX_ROW_COST = 2.0;
+
+    private QueryPlanner() {
+    }
+
+    /**
+     * @param criteria Normalized search criteria
+     * @param catalogSize Movies in the catalog being searched
+     * @param indexes Indexes of that catalog
+     */
+    static SearchPlan plan(SearchCriteria criteria, int catalogSize, SearchIndexes indexes) {
+        List<SearchPlan.Candidate> considered = new ArrayList<>();
+        SearchPlan.Candidate best = new SearchPlan.Candidate(SearchPlan.Access.FULL_SCAN, catalogSize, catalogSize);
+
+        if (criteria.hasId()) {
+            SearchPlan.Candidate id = new SearchPlan.Candidate(SearchPlan.Access.ID_LOOKUP, 1, 1);
+            considered.add(id);
+            best = id;
+        }
+        if (criteria.getGenre() != null) {
+            SearchPlan.Candidate genre = indexed(SearchPlan.Access.GENRE_POSTINGS,
+                indexes.countGenre(criteria.getGenre()));
+            considered.add(genre);
+            best = cheaper(genre, best);
+        }
+        if (criteria.hasYearRange()) {
+            SearchPlan.Candidate years = indexed(SearchPlan.Access.YEAR_RANGE,
+                indexes.countYears(criteria.getMinYear(), criteria.getMaxYear()));
+            considered.add(years);
+            best = cheaper(years, best);
+        }
+        if (criteria.hasRatingRange()) {
+            SearchPlan.Candidate ratings = indexed(SearchPlan.Access.RATING_RANGE,
+                indexes.countRatings(criteria.getMinRating(), criteria.getMaxRating()));
+            considered.add(ratings);
+            best = cheaper(ratings, best);
+        }
+        if (criteria.getName() != null) {
+            int rows = indexes.countNameCandidates(criteria.getName());
+            if (rows >= 0) {
+                SearchPlan.Candidate name = indexed(SearchPlan.Access.NAME_TRIGRAMS, rows);
+                considered.add(name);
+                best = cheaper(name, best);
+            }
+        }
+        considered.add(new SearchPlan.Candidate(SearchPlan.Access.FULL_SCAN, catalogSize, catalogSize));
+        return new SearchPlan(best, considered, residualFilters(criteria, best.getAccess()), catalogSize,
+            slots(criteria, best.getAccess(), indexes));
+    }
+
+    private static SearchPlan.Candidate cheaper(SearchPlan.Candidate candidate, SearchPlan.Candidate best) {
+        return candidate.getCost() < best.getCost() ? candidate : best;
+    }
+
+    /**
+     * @return candidate slots of the chosen index path, read out of the same indexes
+     *         that were counted, or null for the ID lookup and the full scan
+     */
+    private static int[] slots(SearchCriteria criteria, SearchPlan.Access access, SearchIndexes indexes) {
+        switch (access) {
+            case GENRE_POSTINGS:
+                return indexes.genre(criteria.getGenre());
+            case YEAR_RANGE:
+                return indexes.years(criteria.getMinYear(), criteria.getMaxYear());
+            case RATING_RANGE:
+                return indexes.ratings(criteria.getMinRating(), criteria.getMaxRating());
+            case NAME_TRIGRAMS:
+                return indexes.nameCandidates(criteria.getName());
+            default:
+                return null;
+        }
+    }
+
+    private static SearchPlan.Candidate indexed(SearchPlan.Access access, long rows) {
+        return new SearchPlan.Candidate(access, rows, rows * INDEX_ROW_COST);
+    }
+
+    /**
+     * @return the criteria left to check once the access path has produced its
+     *         candidates; a name fragment is always checked, as trigrams only narrow it down
+     */
+    private static List<String> residualFilters(SearchCriteria criteria, SearchPlan.Access access) {
+        List<String> filters = new ArrayList<>();
+        if (criteria.hasId() && access != SearchPlan.Access.ID_LOOKUP) {
+            filters.add("id = " + criteria.getId());
+        }
+        if (criteria.getName() != null) {
+            filters.add("name contains '" + criteria.getName() + "'");
+        }
+        if (criteria.getGenre() != null && access != SearchPlan.Access.GENRE_POSTINGS) {
+            filters.add("genre = '" + criteria.getGenre() + "'");
+        }
+        if (criteria.hasYearRange() && access != SearchPlan.Access.YEAR_RANGE) {
+            filters.add(range("year", criteria.getMinYear(), criteria.getMaxYear()));
+        }
+        if (criteria.hasRatingRange() && access != SearchPlan.Access.RATING_RANGE) {
+            filters.add(range("rating", criteria.getMinRating(), criteria.getMaxRating()));
+        }
+        return filters;
+    }
+
+    private static String range(String column, Number min, Number max) {
+        if (min != null && max != null) {
+            return column + " between " + min + " and " + max;
+        }
+        return min != null ? column + " >= " + min : column + " <= " + max;
+    }
+}
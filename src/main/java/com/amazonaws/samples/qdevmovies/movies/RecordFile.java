@@ -0,0 +1,184 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of length-prefixed, checksummed records: the storage layer of the
+ * embedded file-backed repositories. Records are addressed by their byte offset and read
+ * with positional reads, so lookups only touch the bytes of the record itself and
+ * concurrent readers need no locking.
+ *
+ * <p>Layout per record: {@code int length, int crc32, byte[length] payload}. When a file
+ * is opened, a torn or corrupt tail (for example after a crash mid-append) is truncated.
+ */
+final class RecordFile implements Closeable {
+    private static final Logger logger = LogManager.getLogger(RecordFile.class);
+
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+    @FunctionalInterface
+    interface RecordVisitor {
+        void visit(long offset, byte[] payload) throws IOException;
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private long end;
+
+    RecordFile(Path path) {
+        this(path, false);
+    }
+
+    /**
+     * @param truncate Whether to discard any existing content
+     */
+    RecordFile(Path path, boolean truncate) {
+        this.path = path;
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.channel = truncate
+                ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.end = channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open " + path, e);
+        }
+    }
+
+    /**
+     * Visits every intact record in file order and truncates anything after the last one.
+     */
+    synchronized void scan(RecordVisitor visitor) {
+        try {
+            long size = channel.size();
+            long offset = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (offset + HEADER_BYTES <= size) {
+                header.clear();
+                readFully(header, offset);
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length < 0 || length > MAX_RECORD_BYTES || offset + HEADER_BYTES + length > size) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(payload, offset + HEADER_BYTES);
+                if (crc(payload.array()) != checksum) {
+                    break;
+                }
+                visitor.visit(offset, payload.array());
+                offset += HEADER_BYTES + length;
+            }
+            if (offset < size) {
+                logger.warn("Truncating {} bytes of incomplete records at the end of {}", size - offset, path);
+                channel.truncate(offset);
+            }
+            end = offset;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to scan " + path, e);
+        }
+    }
+
+    /**
+     * @return offset of the appended record
+     */
+    synchronized long append(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buffer.putInt(payload.length).putInt(crc(payload)).put(payload).flip();
+        long offset = end;
+        try {
+            long position = offset;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to " + path, e);
+        }
+        end = offset + HEADER_BYTES + payload.length;
+        return offset;
+    }
+
+    byte[] read(long offset) {
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(header, offset);
+            header.flip();
+            int length = header.getInt();
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, offset + HEADER_BYTES);
+            return payload.array();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read record at " + offset + " in " + path, e);
+        }
+    }
+
+    synchronized long size() {
+        return end;
+    }
+
+    /**
+     * Forces appended records to the storage device.
+     */
+    void sync() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to sync " + path, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Atomically replaces the file at {@code target} with {@code source}.
+     */
+    static void replace(Path source, Path target) {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replace " + target, e);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file at " + position);
+            }
+            position += read;
+        }
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,125 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Serves the versioned catalog change feed that follower instances replicate from.
+ * Only registered when {@code movies.replication.role} is {@code leader}.
+ *
+ * <p>Long polls are asynchronous requests: a follower waiting for changes holds a
+ * connection but no request thread. When a change arrives, the waiting responses are
+ * prepared on the feed's own thread rather than the writer's.
+ */
+@RestController
+@ConditionalOnProperty(prefix = "movies.replication", name = "role", havingValue = "leader")
+public class ReplicationController {
+    private static final Logger logger = LogManager.getLogger(ReplicationController.class);
+
+    static final int MAX_BATCH_SIZE = 5000;
+    static final long MAX_WAIT_MILLIS = 30_000;
+
+    @Autowired
+    private MovieService movieService;
+
+    private final ExecutorService responder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replication-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        responder.shutdownNow();
+    }
+
+    /**
+     * Returns the changes after a replica's version. When the replica is up to date the
+     * response is held back for up to {@code waitMillis} until a change arrives (long
+     * polling), without holding a request thread. When the changes are no longer retained,
+     * or the replica's versions are from another epoch (this instance has restarted or
+     * installed a snapshot since), the full catalog is returned with {@code snapshot: true}
+     * instead. Every response names the epoch of its versions.
+     *
+     * @param epoch Epoch of the replica's versions, as last returned by this feed
+     * @param since Last version the replica has applied; -1 for a replica that has none
+     * @param limit Maximum number of changes to return
+     * @param waitMillis How long to wait for new changes, capped at 30 seconds
+     */
+    @GetMapping("/api/replication/changes")
+    public DeferredResult<ResponseEntity<Map<String, Object>>> getChanges(
+            @RequestParam(value = "epoch", defaultValue = "") String epoch,
+            @RequestParam(value = "since", defaultValue = "-1") long since,
+            @RequestParam(value = "limit", defaultValue = "500") int limit,
+            @RequestParam(value = "waitMillis", defaultValue = "0") long waitMillis) {
+
+        int batchSize = Math.max(1, Math.min(limit, MAX_BATCH_SIZE));
+        CatalogChangeLog changeLog = movieService.getChangeLog();
+        long timeout = Math.min(waitMillis, MAX_WAIT_MILLIS);
+        DeferredResult<ResponseEntity<Map<String, Object>>> result = new DeferredResult<>(Math.max(timeout, 1));
+
+        List<CatalogChange> changes = changeLog.changesSince(epoch, since, batchSize);
+        if (changes != null && changes.isEmpty() && timeout > 0) {
+            Runnable answer = () -> {
+                try {
+                    result.setResult(respond(epoch, since, changeLog.changesSince(epoch, since, batchSize)));
+                } catch (RuntimeException e) {
+                    result.setErrorResult(e);
+                }
+            };
+            Runnable listener = () -> {
+                try {
+                    responder.execute(answer);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down: let the wait time out
+                }
+            };
+            result.onTimeout(answer);
+            result.onCompletion(() -> changeLog.cancel(listener));
+            changeLog.whenNewerThan(since, listener);
+            return result;
+        }
+        result.setResult(respond(epoch, since, changes));
+        return result;
+    }
+
+    /**
+     * @param changes Changes after {@code since}, or null when the replica needs a snapshot
+     */
+    private ResponseEntity<Map<String, Object>> respond(String epoch, long since, List<CatalogChange> changes) {
+        Map<String, Object> response = new HashMap<>();
+
+        if (changes == null) {
+            MovieService.CatalogSnapshot snapshot = movieService.getCatalogSnapshot();
+            logger.info("Replica at version {} of epoch '{}' needs a snapshot; sending {} movies at version {} of epoch {}",
+                since, epoch, snapshot.getMovies().size(), snapshot.getVersion(), snapshot.getEpoch());
+            response.put("snapshot", true);
+            response.put("epoch", snapshot.getEpoch());
+            response.put("version", snapshot.getVersion());
+            response.put("movies", snapshot.getMovies());
+            return ResponseEntity.ok(response);
+        }
+
+        response.put("snapshot", false);
+        response.put("epoch", epoch);
+        response.put("version", changes.isEmpty() ? since : changes.get(changes.size() - 1).getVersion());
+        response.put("latestVersion", movieService.getChangeLog().getLatestVersion());
+        response.put("changes", changes);
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,126 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Durations of the phases of the request being handled on the current thread, reported
+ * in the {@code Server-Timing} response header by {@link RequestTimingFilter}.
+ *
+ * <p>Code marks a phase by taking {@code RequestTiming.phase(...)} and closing it when the
+ * phase ends, in a {@code finally} block where the phase can throw.
+ * Outside a timed request (background threads, tests, or with the header switched off)
+ * {@link #phase} returns a shared no-op, so instrumented code costs one thread-local
+ * read. Repeated phases of the same name add up.
+ */
+public final class RequestTiming {
+
+    public static final String SEARCH = "search";
+    public static final String REVIEWS = "reviews";
+    public static final String SIMILAR = "similar";
+    public static final String RENDER = "render";
+    public static final String SERIALIZE = "serialize";
+    public static final String TOTAL = "total";
+
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+
+    /**
+     * A running phase; closing it records its duration.
+     */
+    public static final class Phase implements AutoCloseable {
+        private static final Phase NONE = new Phase(null, null, 0);
+
+        private final RequestTiming timing;
+        private final String name;
+        private final long startNanos;
+
+        private Phase(RequestTiming timing, String name, long startNanos) {
+            this.timing = timing;
+            this.name = name;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void close() {
+            if (timing != null) {
+                timing.record(name, System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    private RequestTiming() {
+    }
+
+    /**
+     * Starts timing a request on the current thread.
+     */
+    static RequestTiming start() {
+        RequestTiming timing = new RequestTiming();
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    /**
+     * Stops timing on the current thread.
+     */
+    static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return the timing of the request on the current thread, or null if it is not timed
+     */
+    static RequestTiming current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Starts a phase of the current request.
+     */
+    public static Phase phase(String name) {
+        RequestTiming timing = CURRENT.get();
+        return timing == null ? Phase.NONE : new Phase(timing, name, System.nanoTime());
+    }
+
+    /**
+     * Adds a phase measured elsewhere, for example across interceptor callbacks.
+     */
+    void record(String name, long nanos) {
+        phases.merge(name, nanos, Long::sum);
+    }
+
+    /**
+     * @return phase durations in milliseconds, in the order they first occurred
+     */
+    Map<String, Double> getPhaseMillis() {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            millis.put(phase.getKey(), phase.getValue() / 1e6);
+        }
+        return millis;
+    }
+
+    /**
+     * @return {@code Server-Timing} header value with every phase and the total so far,
+     *         for example {@code search;dur=0.42, render;dur=3.10, total;dur=4.05}
+     */
+    String toServerTiming() {
+        StringBuilder header = new StringBuilder();
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            appendMetric(header, phase.getKey(), phase.getValue());
+        }
+        appendMetric(header, TOTAL, System.nanoTime() - startNanos);
+        return header.toString();
+    }
+
+    private static void appendMetric(StringBuilder header, String name, long nanos) {
+        if (header.length() > 0) {
+            header.append(", ");
+        }
+        header.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.2f", nanos / 1e6));
+    }
+}
@@ -0,0 +1,73 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Times each request and reports its phases in a {@code Server-Timing} header, which
+ * browser developer tools show next to the request, for example
+ * {@code search;dur=0.42, render;dur=3.10, total;dur=4.05}.
+ *
+ * <p>The body is buffered until the handler is done so that rendering and serialization,
+ * which write the body, can still be reported in a header. Buffering holds the whole body
+ * in memory and delays its first byte, so the header is off unless
+ * {@code movies.timing.server-timing} is {@code true}, and even then only the movie pages
+ * and the search API are timed. Every other request, including static assets, the admin
+ * API and the replication feed with its large snapshots and long polls, is passed
+ * through untouched.
+ */
+@Component
+public class RequestTimingFilter extends OncePerRequestFilter {
+
+    public static final String SERVER_TIMING = "Server-Timing";
+
+    private static final UrlPathHelper PATHS = new UrlPathHelper();
+
+    private final boolean enabled;
+
+    public RequestTimingFilter(@Value("${movies.timing.server-timing:false}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !isTimed(PATHS.getPathWithinApplication(request));
+    }
+
+    /**
+     * @param path Request path within the application
+     * @return whether the request is a movie page or a search API call
+     */
+    static boolean isTimed(String path) {
+        return path.equals("/movies") || path.startsWith("/movies/") || path.equals("/api/movies/search");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper buffered = new ContentCachingResponseWrapper(response);
+        RequestTiming timing = RequestTiming.start();
+        try {
+            chain.doFilter(request, buffered);
+        } finally {
+            RequestTiming.clear();
+            if (!buffered.isCommitted()) {
+                buffered.setHeader(SERVER_TIMING, timing.toServerTiming());
+            }
+            buffered.copyBodyToResponse();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import jdk.jfr.Event;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Times the phases that happen after a handler returns: rendering its view, or writing
+ * its response body (started by {@link SerializationTimingAdvice}). Both end when the
+ * request completes, and are added to the request's {@link RequestTiming} and recorded
+ * as {@link MovieEvents.Render} and {@link MovieEvents.Serialize} events.
+ */
+class RequestTimingInterceptor implements HandlerInterceptor {
+
+    static final String RENDER_ATTRIBUTE = RequestTimingInterceptor.class.getName() + ".render";
+    static final String SERIALIZE_ATTRIBUTE = RequestTimingInterceptor.class.getName() + ".serialize";
+
+    /**
+     * A phase started in one callback and finished in another.
+     */
+    static final class Mark {
+        final Event event;
+        final String detail;
+        final long startNanos = System.nanoTime();
+
+        Mark(Event event, String detail) {
+            this.event = event;
+            this.detail = detail;
+            event.begin();
+        }
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+                           ModelAndView modelAndView) {
+        if (modelAndView != null && !modelAndView.wasCleared()) {
+            String view = modelAndView.getViewName() != null ? modelAndView.getViewName() : String.valueOf(modelAndView.getView());
+            request.setAttribute(RENDER_ATTRIBUTE, new Mark(new MovieEvents.Render(), view));
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        Mark render = (Mark) request.getAttribute(RENDER_ATTRIBUTE);
+        if (render != null) {
+            request.removeAttribute(RENDER_ATTRIBUTE);
+            record(RequestTiming.RENDER, render);
+            ((MovieEvents.Render) render.event).finish(render.detail, request.getRequestURI());
+        }
+        Mark serialize = (Mark) request.getAttribute(SERIALIZE_ATTRIBUTE);
+        if (serialize != null) {
+            request.removeAttribute(SERIALIZE_ATTRIBUTE);
+            record(RequestTiming.SERIALIZE, serialize);
+            ((MovieEvents.Serialize) serialize.event).finish(serialize.detail, request.getRequestURI());
+        }
+    }
+
+    private static void record(String phase, Mark mark) {
+        RequestTiming timing = RequestTiming.current();
+        if (timing != null) {
+            timing.record(phase, System.nanoTime() - mark.startNanos);
+        }
+    }
+}
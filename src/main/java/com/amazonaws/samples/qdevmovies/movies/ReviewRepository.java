@@ -0,0 +1,31 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Storage for customer reviews, indexed by movie ID.
+ */
+public interface ReviewRepository {
+
+    /**
+     * @return reviews of the movie in the order they were added, or an empty list
+     */
+    List<Review> findByMovieId(long movieId);
+
+    /**
+     * Calls the action once for each reviewed movie with its ID and reviews, in one pass
+     * over the store. Bulk readers such as index builds use this instead of a lookup per
+     * movie.
+     */
+    void forEachMovie(BiConsumer<Long, List<Review>> action);
+
+    long count();
+
+    /**
+     * @return true if {@link #save} is unsupported
+     */
+    boolean isReadOnly();
+
+    void save(long movieId, Review review);
+}
@@ -1,47 +1,163 @@
 package com.amazonaws.samples.qdevmovies.movies;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import javax.annotation.PreDestroy;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class ReviewService {
     private static final Logger logger = LogManager.getLogger(ReviewService.class);
 
+    static final int DEFAULT_LOADER_THREADS = 8;
+    static final int DEFAULT_LOADER_QUEUE = 64;
+
+    private final ReviewRepository repository;
+    // Bulkhead: review loads only ever occupy these threads and this queue, so a slow
+    // review source cannot tie up request threads
+    private final ThreadPoolExecutor loader;
+    private final Map<Long, CompletableFuture<List<Review>>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong rejectedLoads = new AtomicLong();
+
+    public ReviewService() {
+        this(new JsonReviewRepository());
+    }
+
+    public ReviewService(ReviewRepository repository) {
+        this(repository, DEFAULT_LOADER_THREADS, DEFAULT_LOADER_QUEUE);
+    }
+
+    @Autowired
+    public ReviewService(ReviewRepository repository,
+                         @Value("${movies.reviews.loader-threads:8}") int loaderThreads,
+                         @Value("${movies.reviews.loader-queue:64}") int loaderQueue) {
+        this.repository = repository;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.loader = new ThreadPoolExecutor(loaderThreads, loaderThreads, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(loaderQueue), runnable -> {
+                Thread thread = new Thread(runnable, "review-loader-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.loader.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
     public List<Review> getReviewsForMovie(long movieId) {
         List<Review> reviews = new ArrayList<>();
         try {
-            InputStream inputStream = getClass().getClassLoader().getResourceAsStream("mock-reviews.json");
-            if (inputStream != null) {
-                Scanner scanner = new Scanner(inputStream, StandardCharsets.UTF_8.name());
-                String jsonContent = scanner.useDelimiter("\\A").next();
-                scanner.close();
-                
-                JSONObject reviewsData = new JSONObject(jsonContent);
-                if (reviewsData.has(String.valueOf(movieId))) {
-                    JSONArray movieReviews = reviewsData.getJSONArray(String.valueOf(movieId));
-                    for (int i = 0; i < movieReviews.length(); i++) {
-                        JSONObject reviewObj = movieReviews.getJSONObject(i);
-                        reviews.add(new Review(
-                            reviewObj.getString("userName"),
-                            reviewObj.getString("avatarEmoji"),
-                            reviewObj.getDouble("rating"),
-                            reviewObj.getString("comment")
-                        ));
-                    }
-                }
-            }
+            reviews.addAll(repository.findByMovieId(movieId));
         } catch (Exception e) {
             logger.error("Failed to load reviews for movie {}: {}", movieId, e.getMessage());
         }
         return reviews;
     }
+
+    /**
+     * Review count and average rating of every reviewed movie, read in one pass over the
+     * repository. Index builds use this rather than a load per movie, which against a slow
+     * review source would wait out its latency once for every movie in the catalog.
+     *
+     * @return summaries by movie ID, without the movies that have no reviews; empty if
+     *         the reviews could not be read
+     */
+    public Map<Long, SimilarityIndex.ReviewSummary> getReviewSummaries() {
+        Map<Long, SimilarityIndex.ReviewSummary> summaries = new HashMap<>();
+        try {
+            repository.forEachMovie((movieId, reviews) -> {
+                if (!reviews.isEmpty()) {
+                    summaries.put(movieId, SimilarityIndex.ReviewSummary.of(reviews));
+                }
+            });
+        } catch (Exception e) {
+            logger.error("Failed to summarize reviews: {}", e.getMessage());
+            summaries.clear();
+        }
+        return summaries;
+    }
+
+    /**
+     * Loads a movie's reviews on the review loader threads. Concurrent requests for the
+     * same movie share one load. When all loader threads are busy and the queue is full,
+     * the returned future fails at once with {@link RejectedExecutionException}.
+     */
+    public CompletableFuture<List<Review>> getReviewsForMovieAsync(long movieId) {
+        CompletableFuture<List<Review>> load = new CompletableFuture<>();
+        CompletableFuture<List<Review>> existing = inFlight.putIfAbsent(movieId, load);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            loader.execute(() -> {
+                MovieEvents.ReviewLoad event = new MovieEvents.ReviewLoad();
+                event.begin();
+                try {
+                    List<Review> reviews = getReviewsForMovie(movieId);
+                    event.finish(movieId, reviews.size());
+                    load.complete(reviews);
+                } catch (Throwable t) {
+                    load.completeExceptionally(t);
+                } finally {
+                    inFlight.remove(movieId, load);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(movieId, load);
+            rejectedLoads.incrementAndGet();
+            load.completeExceptionally(e);
+        }
+        return load;
+    }
+
+    /**
+     * Stores a new review for a movie.
+     *
+     * @throws UnsupportedOperationException if reviews are served from read-only storage
+     */
+    public void addReview(long movieId, Review review) {
+        repository.save(movieId, review);
+        logger.info("Added review by {} for movie {}", review.getUserName(), movieId);
+    }
+
+    public int getLoaderThreads() {
+        return loader.getMaximumPoolSize();
+    }
+
+    public int getActiveLoads() {
+        return loader.getActiveCount();
+    }
+
+    public int getQueuedLoads() {
+        return loader.getQueue().size();
+    }
+
+    public long getCompletedLoads() {
+        return loader.getCompletedTaskCount();
+    }
+
+    /**
+     * @return loads turned away because the loader threads and queue were full
+     */
+    public long getRejectedLoads() {
+        return rejectedLoads.get();
+    }
 }
@@ -0,0 +1,157 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Normalized, immutable form of the criteria accepted by {@link MovieService#searchMovies}.
+ * Text criteria are trimmed and lower-cased with {@link Locale#ROOT}, and blank values
+ * collapse to {@code null}, so that equivalent searches ("Drama", " drama ") produce
+ * equal keys regardless of the server's default locale. Year and rating bounds are
+ * inclusive; a missing bound leaves that side of the range open.
+ */
+public final class SearchCriteria {
+    private final String name;
+    private final Long id;
+    private final String genre;
+    private final Integer minYear;
+    private final Integer maxYear;
+    private final Double minRating;
+    private final Double maxRating;
+    private final int hash;
+
+    private SearchCriteria(String name, Long id, String genre, Integer minYear, Integer maxYear, Double minRating,
+                           Double maxRating) {
+        this.name = name;
+        this.id = id;
+        this.genre = genre;
+        this.minYear = minYear;
+        this.maxYear = maxYear;
+        this.minRating = minRating;
+        this.maxRating = maxRating;
+        this.hash = Objects.hash(name, id, genre, minYear, maxYear, minRating, maxRating);
+    }
+
+    /**
+     * Builds normalized criteria from raw request values.
+     *
+     * @param name Movie name fragment, may be null or blank
+     * @param id Exact movie ID, may be null
+     * @param genre Genre, may be null or blank
+     * @return normalized criteria
+     */
+    public static SearchCriteria of(String name, Long id, String genre) {
+        return of(name, id, genre, null, null, null, null);
+    }
+
+    /**
+     * Builds normalized criteria from raw request values, including numeric ranges.
+     *
+     * @param minYear Earliest release year, may be null
+     * @param maxYear Latest release year, may be null
+     * @param minRating Lowest rating, may be null
+     * @param maxRating Highest rating, may be null
+     * @return normalized criteria
+     */
+    public static SearchCriteria of(String name, Long id, String genre, Integer minYear, Integer maxYear,
+                                    Double minRating, Double maxRating) {
+        return new SearchCriteria(normalize(name), id, normalize(genre), minYear, maxYear, minRating, maxRating);
+    }
+
+    static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed.toLowerCase(Locale.ROOT);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public boolean hasId() {
+        return id != null;
+    }
+
+    /**
+     * @return the ID criteria as a primitive, or 0 when {@link #hasId()} is false
+     */
+    public long getIdValue() {
+        return id != null ? id : 0L;
+    }
+
+    public String getGenre() {
+        return genre;
+    }
+
+    public Integer getMinYear() {
+        return minYear;
+    }
+
+    public Integer getMaxYear() {
+        return maxYear;
+    }
+
+    public boolean hasYearRange() {
+        return minYear != null || maxYear != null;
+    }
+
+    public Double getMinRating() {
+        return minRating;
+    }
+
+    public Double getMaxRating() {
+        return maxRating;
+    }
+
+    public boolean hasRatingRange() {
+        return minRating != null || maxRating != null;
+    }
+
+    /**
+     * @return rough retained size of this key in bytes, used for cache weighing
+     */
+    long estimatedBytes() {
+        return 48 + stringBytes(name) + (id != null ? 16 : 0) + stringBytes(genre)
+            + (minYear != null ? 16 : 0) + (maxYear != null ? 16 : 0)
+            + (minRating != null ? 16 : 0) + (maxRating != null ? 16 : 0);
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : 40 + value.length();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SearchCriteria)) {
+            return false;
+        }
+        SearchCriteria other = (SearchCriteria) o;
+        return Objects.equals(name, other.name)
+            && Objects.equals(id, other.id)
+            && Objects.equals(genre, other.genre)
+            && Objects.equals(minYear, other.minYear)
+            && Objects.equals(maxYear, other.maxYear)
+            && Objects.equals(minRating, other.minRating)
+            && Objects.equals(maxRating, other.maxRating);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchCriteria{name='" + name + "', id=" + id + ", genre='" + genre + "', years=" + minYear + ".."
+            + maxYear + ", rating=" + minRating + ".." + maxRating + "}";
+    }
+}
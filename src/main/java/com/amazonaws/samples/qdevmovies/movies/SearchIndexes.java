@@ -0,0 +1,371 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Secondary indexes over the catalog's slots, used by {@link QueryPlanner} to find the
+ * candidate movies of a search without scanning the whole catalog. Movies are referred
+ * to by their slot, which a movie keeps when it is updated.
+ *
+ * <ul>
+ *   <li>Genre posting lists: the slots of each genre's movies.</li>
+ *   <li>Name trigrams: the slots of the movies whose name contains each run of three
+ *   characters. A name containing the search text contains all of its trigrams, so the
+ *   rarest one bounds the candidates. Trigrams found in more than {@link #MAX_TRIGRAM_SHARE}
+ *   of the catalog ("the", "in ") when the indexes are built are too common to narrow a
+ *   search and are not stored.</li>
+ *   <li>Year and rating posting lists, ordered by value, so a range is a walk over the
+ *   values it covers.</li>
+ * </ul>
+ *
+ * <p>The catalog writer keeps the indexes up to date with {@link #update} before it
+ * publishes each version, under its write lock. Updates only add slots: a slot whose movie
+ * changed or was deleted stays in the lists it was in. Posting lists are therefore a
+ * superset of the matching slots for the version being written and for every version
+ * since the indexes were built, so the same indexes serve readers of older versions
+ * too. Candidates are always checked against the full criteria, and estimates may count
+ * some stale slots. Once stale slots outnumber the movies, or the catalog has doubled,
+ * {@link #needsRebuild()} asks for fresh indexes.
+ *
+ * <p>Each posting list is an immutable view of a shared buffer that only the writer
+ * appends to, so readers need no locking. Candidates come out in ascending slot order,
+ * which is catalog order, like a scan.
+ */
+final class SearchIndexes {
+
+    static final double MAX_TRIGRAM_SHARE = 0.05;
+    static final int TRIGRAM_LENGTH = 3;
+    private static final int MIN_CHANGES_FOR_REBUILD = 1000;
+
+    private static final int[] NONE = new int[0];
+
+    private final Map<String, Postings> genrePostings = new ConcurrentHashMap<>();
+    private final Map<Long, Postings> trigramPostings = new ConcurrentHashMap<>();
+    private final Set<Long> commonTrigrams = ConcurrentHashMap.newKeySet();
+    private final NavigableMap<Integer, Postings> years = new ConcurrentSkipListMap<>();
+    private final NavigableMap<Double, Postings> ratings = new ConcurrentSkipListMap<>();
+    // Writer-only bookkeeping for needsRebuild()
+    private final int builtSize;
+    private int size;
+    private int staleSlots;
+
+    private SearchIndexes(int builtSize) {
+        this.builtSize = builtSize;
+        this.size = builtSize;
+    }
+
+    /**
+     * @param movies Catalog to index
+     */
+    static SearchIndexes build(MovieSlots movies) {
+        Map<String, PostingList> genres = new HashMap<>();
+        Map<Long, PostingList> trigrams = new HashMap<>();
+        Map<Integer, PostingList> yearValues = new HashMap<>();
+        Map<Double, PostingList> ratingValues = new HashMap<>();
+        int size = 0;
+        for (int slot = 0; slot < movies.getSlotCount(); slot++) {
+            Movie movie = movies.get(slot);
+            if (movie == null) {
+                continue;
+            }
+            size++;
+            genres.computeIfAbsent(movie.getNormalizedGenre(), key -> new PostingList()).add(slot);
+            String name = movie.getNormalizedName();
+            for (int i = 0; i + TRIGRAM_LENGTH <= name.length(); i++) {
+                // A trigram repeated within one name is added once
+                trigrams.computeIfAbsent(trigram(name, i), key -> new PostingList()).addOnce(slot);
+            }
+            yearValues.computeIfAbsent(movie.getYear(), key -> new PostingList()).add(slot);
+            ratingValues.computeIfAbsent(movie.getImdbRating(), key -> new PostingList()).add(slot);
+        }
+
+        SearchIndexes indexes = new SearchIndexes(size);
+        for (Map.Entry<String, PostingList> genre : genres.entrySet()) {
+            indexes.genrePostings.put(genre.getKey(), genre.getValue().toPostings());
+        }
+        long maxPostings = Math.max(1, (long) (size * MAX_TRIGRAM_SHARE));
+        for (Map.Entry<Long, PostingList> trigram : trigrams.entrySet()) {
+            if (trigram.getValue().size > maxPostings) {
+                indexes.commonTrigrams.add(trigram.getKey());
+            } else {
+                indexes.trigramPostings.put(trigram.getKey(), trigram.getValue().toPostings());
+            }
+        }
+        for (Map.Entry<Integer, PostingList> year : yearValues.entrySet()) {
+            indexes.years.put(year.getKey(), year.getValue().toPostings());
+        }
+        for (Map.Entry<Double, PostingList> rating : ratingValues.entrySet()) {
+            indexes.ratings.put(rating.getKey(), rating.getValue().toPostings());
+        }
+        return indexes;
+    }
+
+    /**
+     * Indexes a change to one slot. Only the keys the new movie does not share with the
+     * previous one are touched. Caller holds the catalog write lock.
+     *
+     * @param slot Slot of the movie
+     * @param previous Movie the slot held before, or null for a new slot
+     * @param movie Movie the slot holds now, or null if it was emptied
+     */
+    void update(int slot, Movie previous, Movie movie) {
+        if (previous != null) {
+            staleSlots++;
+            size--;
+        }
+        if (movie == null) {
+            return;
+        }
+        size++;
+        if (previous == null || !previous.getNormalizedGenre().equals(movie.getNormalizedGenre())) {
+            append(genrePostings, movie.getNormalizedGenre(), slot);
+        }
+        String name = movie.getNormalizedName();
+        String previousName = previous != null ? previous.getNormalizedName() : "";
+        for (int i = 0; i + TRIGRAM_LENGTH <= name.length(); i++) {
+            long trigram = trigram(name, i);
+            if (!commonTrigrams.contains(trigram) && !hasTrigram(previousName, trigram)) {
+                append(trigramPostings, trigram, slot);
+            }
+        }
+        if (previous == null || previous.getYear() != movie.getYear()) {
+            append(years, movie.getYear(), slot);
+        }
+        if (previous == null || previous.getImdbRating() != movie.getImdbRating()) {
+            append(ratings, movie.getImdbRating(), slot);
+        }
+    }
+
+    /**
+     * @return true once stale slots outnumber the movies or the catalog has more than
+     *         doubled since the indexes were built; either way rebuilding costs no more
+     *         than the changes that led to it
+     */
+    boolean needsRebuild() {
+        return staleSlots >= MIN_CHANGES_FOR_REBUILD && staleSlots > size
+            || size >= MIN_CHANGES_FOR_REBUILD && size > 2L * builtSize;
+    }
+
+    /**
+     * @param genre Normalized genre
+     * @return number of slots listed for the genre
+     */
+    int countGenre(String genre) {
+        Postings postings = genrePostings.get(genre);
+        return postings != null ? postings.size : 0;
+    }
+
+    /**
+     * @param genre Normalized genre
+     * @return slots of the genre's movies
+     */
+    int[] genre(String genre) {
+        Postings postings = genrePostings.get(genre);
+        return postings != null ? postings.toSortedArray() : NONE;
+    }
+
+    /**
+     * @param name Normalized name fragment
+     * @return number of slots {@link #nameCandidates} would return, or -1 if it would
+     *         return null
+     */
+    int countNameCandidates(String name) {
+        Postings rarest = rarestTrigram(name);
+        return rarest != null ? rarest.size : -1;
+    }
+
+    /**
+     * @param name Normalized name fragment
+     * @return slots of the movies that may contain the fragment (a superset, to be
+     *         checked), or null if the fragment is too short or only has common trigrams
+     */
+    int[] nameCandidates(String name) {
+        Postings rarest = rarestTrigram(name);
+        return rarest != null ? rarest.toSortedArray() : null;
+    }
+
+    private Postings rarestTrigram(String name) {
+        Postings rarest = null;
+        for (int i = 0; i + TRIGRAM_LENGTH <= name.length(); i++) {
+            long trigram = trigram(name, i);
+            Postings postings = trigramPostings.get(trigram);
+            if (postings == null) {
+                if (commonTrigrams.contains(trigram)) {
+                    continue;
+                }
+                // No movie name has this trigram, so none contains the fragment
+                return Postings.EMPTY;
+            }
+            if (rarest == null || postings.size < rarest.size) {
+                rarest = postings;
+            }
+        }
+        return rarest;
+    }
+
+    /**
+     * @param min Lowest year, or null for no lower bound
+     * @param max Highest year, or null for no upper bound
+     * @return number of slots listed for the years in the range
+     */
+    int countYears(Integer min, Integer max) {
+        return count(years, min, max);
+    }
+
+    /**
+     * @return slots of the movies released in the range, in catalog order
+     */
+    int[] years(Integer min, Integer max) {
+        return slots(years, min, max);
+    }
+
+    int countRatings(Double min, Double max) {
+        return count(ratings, min, max);
+    }
+
+    int[] ratings(Double min, Double max) {
+        return slots(ratings, min, max);
+    }
+
+    int getTrigramCount() {
+        return trigramPostings.size();
+    }
+
+    private static <K extends Comparable<K>> int count(NavigableMap<K, Postings> column, K min, K max) {
+        int count = 0;
+        for (Postings postings : range(column, min, max).values()) {
+            count += postings.size;
+        }
+        return count;
+    }
+
+    private static <K extends Comparable<K>> int[] slots(NavigableMap<K, Postings> column, K min, K max) {
+        // Take the lists once, so that sizing and copying see the same views
+        List<Postings> lists = new ArrayList<>(range(column, min, max).values());
+        int length = 0;
+        for (Postings postings : lists) {
+            length += postings.size;
+        }
+        int[] slots = new int[length];
+        int offset = 0;
+        for (Postings postings : lists) {
+            System.arraycopy(postings.slots, 0, slots, offset, postings.size);
+            offset += postings.size;
+        }
+        return sortedDistinct(slots, length);
+    }
+
+    /**
+     * @return the column's entries from min to max inclusive; an open end for null
+     */
+    private static <K extends Comparable<K>> NavigableMap<K, Postings> range(NavigableMap<K, Postings> column,
+                                                                           K min, K max) {
+        if (min != null && max != null && min.compareTo(max) > 0) {
+            return Collections.emptyNavigableMap();
+        }
+        NavigableMap<K, Postings> range = column;
+        if (min != null) {
+            range = range.tailMap(min, true);
+        }
+        if (max != null) {
+            range = range.headMap(max, true);
+        }
+        return range;
+    }
+
+    private static <K> void append(Map<K, Postings> postings, K key, int slot) {
+        Postings current = postings.get(key);
+        postings.put(key, current != null ? current.append(slot) : Postings.EMPTY.append(slot));
+    }
+
+    private static boolean hasTrigram(String name, long trigram) {
+        for (int i = 0; i + TRIGRAM_LENGTH <= name.length(); i++) {
+            if (trigram(name, i) == trigram) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long trigram(String text, int offset) {
+        return ((long) text.charAt(offset) << 32) | ((long) text.charAt(offset + 1) << 16) | text.charAt(offset + 2);
+    }
+
+    private static int[] sortedDistinct(int[] slots, int length) {
+        Arrays.sort(slots, 0, length);
+        int distinct = 0;
+        for (int i = 0; i < length; i++) {
+            if (distinct == 0 || slots[distinct - 1] != slots[i]) {
+                slots[distinct++] = slots[i];
+            }
+        }
+        return distinct == slots.length ? slots : Arrays.copyOf(slots, distinct);
+    }
+
+    /**
+     * The first {@code size} slots of a buffer. Appending writes past the end of every
+     * view of the buffer and returns a longer view, so existing views never change.
+     */
+    private static final class Postings {
+        static final Postings EMPTY = new Postings(NONE, 0, true);
+
+        final int[] slots;
+        final int size;
+        // Slots in strictly ascending order, as built; appends out of order clear it
+        final boolean ascending;
+
+        Postings(int[] slots, int size, boolean ascending) {
+            this.slots = slots;
+            this.size = size;
+            this.ascending = ascending;
+        }
+
+        Postings append(int slot) {
+            int[] buffer = slots;
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(4, size * 2));
+            }
+            buffer[size] = slot;
+            return new Postings(buffer, size + 1, ascending && (size == 0 || slot > slots[size - 1]));
+        }
+
+        int[] toSortedArray() {
+            int[] copy = Arrays.copyOf(slots, size);
+            return ascending ? copy : sortedDistinct(copy, size);
+        }
+    }
+
+    /**
+     * Ascending slots, grown while the indexes are built.
+     */
+    private static final class PostingList {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        void addOnce(int slot) {
+            if (size == 0 || slots[size - 1] != slot) {
+                add(slot);
+            }
+        }
+
+        Postings toPostings() {
+            return new Postings(slots, size, true);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How a search is evaluated, chosen by {@link QueryPlanner}: the access path that
+ * produces the candidate movies, and the filters every candidate is then checked
+ * against. Shown by the search API with {@code explain=true}.
+ */
+public final class SearchPlan {
+
+    /**
+     * Ways of finding candidate movies, in the order the planner prefers them when
+     * their costs are equal. The planner never chooses the result cache: it marks a
+     * search answered by a cached result without planning.
+     */
+    public enum Access {
+        RESULT_CACHE("result-cache"),
+        ID_LOOKUP("id-lookup"),
+        GENRE_POSTINGS("genre-postings"),
+        YEAR_RANGE("year-range"),
+        RATING_RANGE("rating-range"),
+        NAME_TRIGRAMS("name-trigrams"),
+        FULL_SCAN("full-scan");
+
+        private final String label;
+
+        Access(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * One access path the planner considered.
+     */
+    public static final class Candidate {
+        private final Access access;
+        private final long estimatedRows;
+        private final double cost;
+
+        Candidate(Access access, long estimatedRows, double cost) {
+            this.access = access;
+            this.estimatedRows = estimatedRows;
+            this.cost = cost;
+        }
+
+        public Access getAccess() {
+            return access;
+        }
+
+        public long getEstimatedRows() {
+            return estimatedRows;
+        }
+
+        public double getCost() {
+            return cost;
+        }
+    }
+
+    private final Candidate chosen;
+    private final List<Candidate> considered;
+    private final List<String> residualFilters;
+    private final int catalogSize;
+    // Candidate slots of the chosen index path in the planned catalog table, or null
+    private final int[] slots;
+
+    SearchPlan(Candidate chosen, List<Candidate> considered, List<String> residualFilters, int catalogSize,
+               int[] slots) {
+        this.chosen = chosen;
+        this.considered = Collections.unmodifiableList(new ArrayList<>(considered));
+        this.residualFilters = Collections.unmodifiableList(new ArrayList<>(residualFilters));
+        this.catalogSize = catalogSize;
+        this.slots = slots;
+    }
+
+    /**
+     * @param catalogSize Movies in the catalog the cached result belongs to
+     * @param rows Movies in the cached result
+     * @return plan of a search served from the result cache
+     */
+    static SearchPlan cached(int catalogSize, int rows) {
+        Candidate cache = new Candidate(Access.RESULT_CACHE, rows, 0);
+        return new SearchPlan(cache, Collections.singletonList(cache), Collections.emptyList(), catalogSize, null);
+    }
+
+    public Access getAccess() {
+        return chosen.getAccess();
+    }
+
+    public long getEstimatedRows() {
+        return chosen.getEstimatedRows();
+    }
+
+    /**
+     * @return every access path that could serve the search, including the chosen one
+     */
+    public List<Candidate> getConsidered() {
+        return considered;
+    }
+
+    /**
+     * @return the predicates checked on each candidate, in words
+     */
+    public List<String> getResidualFilters() {
+        return residualFilters;
+    }
+
+    int[] getSlots() {
+        return slots;
+    }
+
+    /**
+     * @return the plan as a JSON-ready map
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> plan = new LinkedHashMap<>();
+        plan.put("access", chosen.getAccess().getLabel());
+        plan.put("estimatedRows", chosen.getEstimatedRows());
+        plan.put("catalogSize", catalogSize);
+        plan.put("residualFilters", residualFilters);
+        List<Map<String, Object>> alternatives = new ArrayList<>();
+        for (Candidate candidate : considered) {
+            Map<String, Object> alternative = new LinkedHashMap<>();
+            alternative.put("access", candidate.getAccess().getLabel());
+            alternative.put("estimatedRows", candidate.getEstimatedRows());
+            alternative.put("cost", candidate.getCost());
+            alternatives.add(alternative);
+        }
+        plan.put("considered", alternatives);
+        return plan;
+    }
+
+    @Override
+    public String toString() {
+        return chosen.getAccess().getLabel() + " (~" + chosen.getEstimatedRows() + " rows)"
+            + (residualFilters.isEmpty() ? "" : " filter " + String.join(" and ", residualFilters));
+    }
+}
@@ -0,0 +1,155 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.List;
+
+/**
+ * Bounded cache of search results keyed by normalized {@link SearchCriteria}.
+ *
+ * <p>Eviction follows the W-TinyLFU layout of {@link TinyLfuCache}, which keeps the
+ * popular head of a skewed query distribution resident while one-off searches pass
+ * through its window.
+ *
+ * <p>The cache is bounded both by entry count and by estimated retained bytes, and every
+ * entry is tied to a catalog version: the first access with a newer version drops all
+ * entries, and results computed against an older version are never stored.
+ */
+public class SearchResultCache {
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    public static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024;
+
+    private static final long NODE_OVERHEAD_BYTES = 160;
+    private static final long LIST_OVERHEAD_BYTES = 56;
+    private static final long REFERENCE_BYTES = 8;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final TinyLfuCache<SearchCriteria, List<Movie>> entries;
+
+    private long version;
+    private long hits;
+    private long misses;
+    private long invalidations;
+
+    public SearchResultCache(int maxEntries, long maxBytes) {
+        this.entries = new TinyLfuCache<>(maxEntries, maxBytes);
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Looks up cached results and records the access for admission decisions.
+     *
+     * @param key Normalized search criteria
+     * @param catalogVersion Version of the catalog the caller is reading
+     * @return cached results, or null on a miss
+     */
+    public synchronized List<Movie> get(SearchCriteria key, long catalogVersion) {
+        if (!syncVersion(catalogVersion)) {
+            misses++;
+            return null;
+        }
+        List<Movie> results = entries.get(key);
+        if (results == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return results;
+    }
+
+    /**
+     * Stores results computed against the given catalog version. The list must not be
+     * modified afterwards, since it is handed out to every later caller with the same key.
+     *
+     * @param key Normalized search criteria
+     * @param results Search results
+     * @param catalogVersion Version of the catalog the results were computed from
+     */
+    public synchronized void put(SearchCriteria key, List<Movie> results, long catalogVersion) {
+        if (!syncVersion(catalogVersion)) {
+            return;
+        }
+        entries.put(key, results, estimateBytes(key, results));
+    }
+
+    /**
+     * Drops every entry. Frequency history is kept so popular keys are re-admitted quickly.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        invalidations++;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(maxEntries, maxBytes, entries.size(), entries.weightedSize(), version,
+            hits, misses, entries.evictions(), entries.admissionRejections(), invalidations);
+    }
+
+    static long estimateBytes(SearchCriteria key, List<Movie> results) {
+        return NODE_OVERHEAD_BYTES + key.estimatedBytes()
+            + LIST_OVERHEAD_BYTES + REFERENCE_BYTES * results.size();
+    }
+
+    /**
+     * @return false if the caller works with a catalog version older than the cached one
+     */
+    private boolean syncVersion(long catalogVersion) {
+        if (catalogVersion == version) {
+            return true;
+        }
+        if (catalogVersion < version) {
+            return false;
+        }
+        if (!entries.isEmpty()) {
+            invalidateAll();
+        }
+        version = catalogVersion;
+        return true;
+    }
+
+    /**
+     * Point-in-time cache statistics, serialized as-is by the admin API.
+     */
+    public static final class Stats {
+        private final int maxEntries;
+        private final long maxBytes;
+        private final int size;
+        private final long estimatedBytes;
+        private final long catalogVersion;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long admissionRejections;
+        private final long invalidations;
+
+        Stats(int maxEntries, long maxBytes, int size, long estimatedBytes, long catalogVersion,
+              long hits, long misses, long evictions, long admissionRejections, long invalidations) {
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+            this.size = size;
+            this.estimatedBytes = estimatedBytes;
+            this.catalogVersion = catalogVersion;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.admissionRejections = admissionRejections;
+            this.invalidations = invalidations;
+        }
+
+        public int getMaxEntries() { return maxEntries; }
+        public long getMaxBytes() { return maxBytes; }
+        public int getSize() { return size; }
+        public long getEstimatedBytes() { return estimatedBytes; }
+        public long getCatalogVersion() { return catalogVersion; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getAdmissionRejections() { return admissionRejections; }
+        public long getInvalidations() { return invalidations; }
+
+        public double getHitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0.0 : (double) hits / requests;
+        }
+    }
+}
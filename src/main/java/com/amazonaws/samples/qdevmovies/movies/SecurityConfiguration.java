@@ -0,0 +1,70 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.security.web.SecurityFilterChain;
+
+/**
+ * Protects the operational endpoints under {@code /api/admin/**}: they require HTTP Basic
+ * authentication as the one admin user configured with {@code movies.admin.username} and
+ * {@code movies.admin.password}. Everything else (the pages, the movie API, static assets
+ * and the replication feed) stays public.
+ *
+ * <p>There is no default password. Until one is configured, for example through the
+ * {@code MOVIES_ADMIN_PASSWORD} environment variable, no one can use the admin endpoints.
+ * The password may be given in a Spring Security encoded form such as
+ * <code>{bcrypt}$2a$10$...</code>; a plain value is compared as is.
+ */
+@Configuration
+public class SecurityConfiguration {
+    private static final Logger logger = LogManager.getLogger(SecurityConfiguration.class);
+
+    static final String ADMIN_ROLE = "ADMIN";
+
+    @Value("${movies.admin.username:admin}")
+    private String adminUsername;
+
+    @Value("${movies.admin.password:}")
+    private String adminPassword;
+
+    @Bean
+    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+        http
+            .authorizeHttpRequests(requests -> requests
+                .antMatchers("/api/admin/**").hasRole(ADMIN_ROLE)
+                .anyRequest().permitAll())
+            .httpBasic()
+            .and()
+            // The API is called with credentials on every request, never from a browser session
+            .csrf(csrf -> csrf.ignoringAntMatchers("/api/**"))
+            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
+        return http.build();
+    }
+
+    @Bean
+    public PasswordEncoder passwordEncoder() {
+        return PasswordEncoderFactories.createDelegatingPasswordEncoder();
+    }
+
+    @Bean
+    public UserDetailsService adminUsers() {
+        InMemoryUserDetailsManager users = new InMemoryUserDetailsManager();
+        if (adminPassword.isEmpty()) {
+            logger.warn("No movies.admin.password configured; the /api/admin endpoints are locked");
+            return users;
+        }
+        String password = adminPassword.startsWith("{") ? adminPassword : "{noop}" + adminPassword;
+        users.createUser(User.withUsername(adminUsername).password(password).roles(ADMIN_ROLE).build());
+        return users;
+    }
+}
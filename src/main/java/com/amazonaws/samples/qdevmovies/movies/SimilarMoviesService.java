@@ -0,0 +1,91 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * "More like this" recommendations from a precomputed {@link SimilarityIndex}.
+ *
+ * <p>The index is first built in the background when the service starts; lookups made
+ * before it is done find no similar movies rather than wait for it. Review aggregates for a build are read in one bulk pass rather
+ * than per movie. When the catalog changes afterwards,
+ * the next lookup starts a rebuild in the background and keeps answering from the
+ * previous index until it is done; neighbours are resolved against the live catalog,
+ * so deleted movies are skipped and updated movies are shown in their current state.
+ */
+@Service
+public class SimilarMoviesService {
+    private static final Logger logger = LogManager.getLogger(SimilarMoviesService.class);
+
+    private final MovieService movieService;
+    private final ReviewService reviewService;
+    private final int neighbours;
+    private final int exactThreshold;
+    private final CatalogIndexHolder<SimilarityIndex> index;
+
+    @Autowired
+    public SimilarMoviesService(MovieService movieService, ReviewService reviewService,
+                                @Value("${movies.similar.neighbours:10}") int neighbours,
+                                @Value("${movies.similar.exact-threshold:10000}") int exactThreshold) {
+        this.movieService = movieService;
+        this.reviewService = reviewService;
+        this.neighbours = neighbours;
+        this.exactThreshold = exactThreshold;
+        this.index = new CatalogIndexHolder<>("similarity-index", movieService, this::build);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        index.shutdown();
+    }
+
+    /**
+     * @param movieId Movie to find similar movies for
+     * @param limit Maximum number of results
+     * @return similar movies, most similar first; empty if the movie is unknown or the
+     *         index is not built yet
+     */
+    public List<SimilarityIndex.Neighbour> getSimilarMovies(long movieId, int limit) {
+        SimilarityIndex current = currentIndex();
+        if (current == null) {
+            return new ArrayList<>();
+        }
+        List<SimilarityIndex.Neighbour> result = new ArrayList<>(Math.min(limit, current.getK()));
+        for (SimilarityIndex.Neighbour neighbour : current.neighbours(movieId, current.getK())) {
+            if (result.size() == limit) {
+                break;
+            }
+            Optional<Movie> live = movieService.getMovieById(neighbour.getMovie().getId());
+            if (live.isPresent()) {
+                result.add(new SimilarityIndex.Neighbour(live.get(), neighbour.getScore()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the index currently answering lookups, or null until the first build is done
+     */
+    public SimilarityIndex currentIndex() {
+        return index.get();
+    }
+
+    private SimilarityIndex build(long version) {
+        Map<Long, SimilarityIndex.ReviewSummary> reviews = reviewService.getReviewSummaries();
+        SimilarityIndex built = SimilarityIndex.build(movieService.getAllMovies(),
+            movie -> reviews.getOrDefault(movie.getId(), SimilarityIndex.ReviewSummary.NONE),
+            neighbours, exactThreshold, version);
+        logger.info("Built {} similarity index for {} movies in {} ms", built.getMode(), built.size(),
+            built.getBuildMillis());
+        return built;
+    }
+}
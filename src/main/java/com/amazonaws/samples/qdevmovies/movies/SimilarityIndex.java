@@ -0,0 +1,504 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Precomputed top-K most similar movies for every movie in a catalog snapshot.
+ *
+ * <p>Each movie is described by a sparse feature vector: its genre tokens, its director,
+ * its release decade (adjacent decades weighted lower), and standardized duration,
+ * rating, average review rating and review count. Vectors are normalized, so similarity
+ * is their dot product (cosine similarity).
+ *
+ * <p>Up to {@code exactThreshold} movies, neighbours are found by comparing every pair.
+ * Larger catalogs use locality-sensitive hashing instead: each of {@link #LSH_TABLES}
+ * tables sorts the movies by a 32-bit random-projection signature, which places movies
+ * with similar vectors next to each other, and only the {@link #LSH_WINDOW} movies on
+ * either side are compared, followed by {@link #REFINEMENT_ROUNDS} rounds comparing
+ * each movie with its neighbours' neighbours. That is O(n log n) rather than O(n²).
+ * Both builds run on the common fork-join pool.
+ */
+public final class SimilarityIndex {
+
+    public enum Mode { EXACT, APPROXIMATE }
+
+    static final int LSH_TABLES = 8;
+    static final int LSH_WINDOW = 12;
+    static final int REFINEMENT_ROUNDS = 2;
+    private static final int SIGNATURE_BITS = 32;
+
+    private static final int DURATION = 0;
+    private static final int RATING = 1;
+    private static final int REVIEW_RATING = 2;
+    private static final int REVIEW_COUNT = 3;
+    private static final int FIRST_DECADE = 4;
+    private static final int DECADES = 16;
+    private static final int FIRST_YEAR = 1900;
+    private static final int FIRST_TOKEN = FIRST_DECADE + DECADES;
+
+    private static final float GENRE_WEIGHT = 1.0f;
+    private static final float DIRECTOR_WEIGHT = 0.8f;
+    private static final float DECADE_WEIGHT = 0.6f;
+    private static final float ADJACENT_DECADE_WEIGHT = 0.3f;
+    private static final float DURATION_WEIGHT = 0.3f;
+    private static final float RATING_WEIGHT = 0.4f;
+    private static final float REVIEW_RATING_WEIGHT = 0.3f;
+    private static final float REVIEW_COUNT_WEIGHT = 0.2f;
+
+    /**
+     * Review aggregates of one movie, one of the inputs of its feature vector.
+     */
+    public static final class ReviewSummary {
+        static final ReviewSummary NONE = new ReviewSummary(0, 0);
+
+        private final int count;
+        private final double averageRating;
+
+        ReviewSummary(int count, double averageRating) {
+            this.count = count;
+            this.averageRating = averageRating;
+        }
+
+        public static ReviewSummary of(List<Review> reviews) {
+            if (reviews.isEmpty()) {
+                return NONE;
+            }
+            double total = 0;
+            for (Review review : reviews) {
+                total += review.getRating();
+            }
+            return new ReviewSummary(reviews.size(), total / reviews.size());
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getAverageRating() {
+            return averageRating;
+        }
+    }
+
+    /**
+     * A neighbour of a movie, by position in the indexed snapshot.
+     */
+    public static final class Neighbour {
+        private final Movie movie;
+        private final double score;
+
+        Neighbour(Movie movie, double score) {
+            this.movie = movie;
+            this.score = score;
+        }
+
+        public Movie getMovie() {
+            return movie;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    private final Movie[] movies;
+    private final long[] sortedIds;
+    private final int[] positionsById;
+    private final int k;
+    private final int[] neighbours;
+    private final float[] scores;
+    private final int[] counts;
+    private final Mode mode;
+    private final long catalogVersion;
+    private final long buildMillis;
+
+    private SimilarityIndex(Movie[] movies, int k, int[] neighbours, float[] scores, int[] counts, Mode mode,
+                            long catalogVersion, long buildMillis) {
+        this.movies = movies;
+        this.k = k;
+        this.neighbours = neighbours;
+        this.scores = scores;
+        this.counts = counts;
+        this.mode = mode;
+        this.catalogVersion = catalogVersion;
+        this.buildMillis = buildMillis;
+
+        Integer[] order = new Integer[movies.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.parallelSort(order, (a, b) -> Long.compare(movies[a].getId(), movies[b].getId()));
+        this.sortedIds = new long[movies.length];
+        this.positionsById = new int[movies.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedIds[i] = movies[order[i]].getId();
+            positionsById[i] = order[i];
+        }
+    }
+
+    /**
+     * @param catalog Movies to index
+     * @param reviews Review aggregates for a movie; called once per movie from the
+     *                building thread, so it should be a lookup rather than a load
+     * @param k Neighbours to keep per movie
+     * @param exactThreshold Largest catalog that is compared pair by pair
+     * @param catalogVersion Catalog version the movies were read at
+     */
+    public static SimilarityIndex build(List<Movie> catalog, Function<Movie, ReviewSummary> reviews, int k,
+                                        int exactThreshold, long catalogVersion) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        long start = System.nanoTime();
+        Movie[] movies = catalog.toArray(new Movie[0]);
+        int n = movies.length;
+        FeatureVector[] vectors = encode(movies, reviews);
+
+        int[] neighbours = new int[n * k];
+        float[] scores = new float[n * k];
+        int[] counts = new int[n];
+        Mode mode = n <= exactThreshold ? Mode.EXACT : Mode.APPROXIMATE;
+        if (mode == Mode.EXACT) {
+            IntStream.range(0, n).parallel().forEach(i -> {
+                for (int j = 0; j < n; j++) {
+                    if (j != i) {
+                        offer(neighbours, scores, counts, k, i, j, vectors[i].dot(vectors[j]));
+                    }
+                }
+            });
+        } else {
+            buildApproximate(vectors, neighbours, scores, counts, k);
+        }
+        IntStream.range(0, n).parallel().forEach(i -> sortSlice(neighbours, scores, counts[i], i * k));
+
+        long buildMillis = (System.nanoTime() - start) / 1_000_000;
+        return new SimilarityIndex(movies, k, neighbours, scores, counts, mode, catalogVersion, buildMillis);
+    }
+
+    private static void buildApproximate(FeatureVector[] vectors, int[] neighbours, float[] scores, int[] counts,
+                                         int k) {
+        int n = vectors.length;
+        long[] keys = new long[n];
+        for (int table = 0; table < LSH_TABLES; table++) {
+            long seed = 0x9E3779B97F4A7C15L * (table + 1);
+            // Signature in the high half, position in the low half: sorting groups similar movies
+            IntStream.range(0, n).parallel().forEach(i ->
+                keys[i] = ((long) vectors[i].signature(seed) << 32) | i);
+            Arrays.parallelSort(keys);
+            // Each movie sits at exactly one position, so its slice is only touched by one task
+            IntStream.range(0, n).parallel().forEach(p -> {
+                int i = (int) keys[p];
+                int from = Math.max(0, p - LSH_WINDOW);
+                int to = Math.min(n - 1, p + LSH_WINDOW);
+                for (int q = from; q <= to; q++) {
+                    if (q != p) {
+                        int j = (int) keys[q];
+                        offer(neighbours, scores, counts, k, i, j, vectors[i].dot(vectors[j]));
+                    }
+                }
+            });
+        }
+        for (int round = 0; round < REFINEMENT_ROUNDS; round++) {
+            refine(vectors, neighbours, scores, counts, k);
+        }
+    }
+
+    /**
+     * One round of neighbour-of-neighbour search: a movie's neighbours' neighbours are
+     * likely to be its neighbours too, so they are compared as well. This recovers most of
+     * the near neighbours that no hash table happened to place within the window. The
+     * candidates are read from a copy so the result does not depend on task order.
+     */
+    private static void refine(FeatureVector[] vectors, int[] neighbours, float[] scores, int[] counts, int k) {
+        int[] previous = neighbours.clone();
+        int[] previousCounts = counts.clone();
+        IntStream.range(0, vectors.length).parallel().forEach(i -> {
+            for (int s = i * k; s < i * k + previousCounts[i]; s++) {
+                int j = previous[s];
+                for (int t = j * k; t < j * k + previousCounts[j]; t++) {
+                    int candidate = previous[t];
+                    if (candidate != i) {
+                        offer(neighbours, scores, counts, k, i, candidate, vectors[i].dot(vectors[candidate]));
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds a candidate to movie i's slice of the top-K arrays, unless it is already
+     * there. Ties go to the movie earlier in the catalog so builds are deterministic.
+     */
+    private static void offer(int[] neighbours, float[] scores, int[] counts, int k, int i, int j, float score) {
+        int base = i * k;
+        int count = counts[i];
+        int worst = -1;
+        for (int s = base; s < base + count; s++) {
+            if (neighbours[s] == j) {
+                return;
+            }
+            if (worst < 0 || isBetter(scores[worst], neighbours[worst], scores[s], neighbours[s])) {
+                worst = s;
+            }
+        }
+        if (count < k) {
+            neighbours[base + count] = j;
+            scores[base + count] = score;
+            counts[i] = count + 1;
+        } else if (isBetter(score, j, scores[worst], neighbours[worst])) {
+            neighbours[worst] = j;
+            scores[worst] = score;
+        }
+    }
+
+    private static boolean isBetter(float score, int position, float otherScore, int otherPosition) {
+        return score > otherScore || (score == otherScore && position < otherPosition);
+    }
+
+    private static void sortSlice(int[] neighbours, float[] scores, int count, int base) {
+        // Insertion sort: slices are small
+        for (int a = base + 1; a < base + count; a++) {
+            int neighbour = neighbours[a];
+            float score = scores[a];
+            int b = a - 1;
+            while (b >= base && isBetter(score, neighbour, scores[b], neighbours[b])) {
+                neighbours[b + 1] = neighbours[b];
+                scores[b + 1] = scores[b];
+                b--;
+            }
+            neighbours[b + 1] = neighbour;
+            scores[b + 1] = score;
+        }
+    }
+
+    private static FeatureVector[] encode(Movie[] movies, Function<Movie, ReviewSummary> reviews) {
+        int n = movies.length;
+        ReviewSummary[] summaries = new ReviewSummary[n];
+        for (int i = 0; i < n; i++) {
+            summaries[i] = reviews.apply(movies[i]);
+        }
+
+        Standardizer duration = new Standardizer();
+        Standardizer rating = new Standardizer();
+        Standardizer reviewRating = new Standardizer();
+        Standardizer reviewCount = new Standardizer();
+        Map<String, Integer> dimensions = new HashMap<>();
+        List<String[]> genreTokens = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Movie movie = movies[i];
+            duration.add(movie.getDuration());
+            rating.add(movie.getImdbRating());
+            if (summaries[i].count > 0) {
+                reviewRating.add(summaries[i].averageRating);
+            }
+            reviewCount.add(Math.log1p(summaries[i].count));
+
+            String[] tokens = movie.getNormalizedGenre().split("/");
+            for (int t = 0; t < tokens.length; t++) {
+                tokens[t] = "genre:" + tokens[t].trim();
+                dimensions.putIfAbsent(tokens[t], FIRST_TOKEN + dimensions.size());
+            }
+            genreTokens.add(tokens);
+            dimensions.putIfAbsent(directorKey(movie), FIRST_TOKEN + dimensions.size());
+        }
+
+        FeatureVector[] vectors = new FeatureVector[n];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            Movie movie = movies[i];
+            ReviewSummary summary = summaries[i];
+            String[] tokens = genreTokens.get(i);
+            int decade = Math.max(0, Math.min(DECADES - 1, (movie.getYear() - FIRST_YEAR) / 10));
+
+            int size = 4 + 3 + tokens.length + 1;
+            int[] indices = new int[size];
+            float[] values = new float[size];
+            int nnz = 0;
+            indices[nnz] = DURATION;
+            values[nnz++] = DURATION_WEIGHT * duration.z(movie.getDuration());
+            indices[nnz] = RATING;
+            values[nnz++] = RATING_WEIGHT * rating.z(movie.getImdbRating());
+            indices[nnz] = REVIEW_RATING;
+            values[nnz++] = summary.count > 0 ? REVIEW_RATING_WEIGHT * reviewRating.z(summary.averageRating) : 0;
+            indices[nnz] = REVIEW_COUNT;
+            values[nnz++] = REVIEW_COUNT_WEIGHT * reviewCount.z(Math.log1p(summary.count));
+            if (decade > 0) {
+                indices[nnz] = FIRST_DECADE + decade - 1;
+                values[nnz++] = ADJACENT_DECADE_WEIGHT;
+            }
+            indices[nnz] = FIRST_DECADE + decade;
+            values[nnz++] = DECADE_WEIGHT;
+            if (decade < DECADES - 1) {
+                indices[nnz] = FIRST_DECADE + decade + 1;
+                values[nnz++] = ADJACENT_DECADE_WEIGHT;
+            }
+            float tokenWeight = (float) (GENRE_WEIGHT / Math.sqrt(tokens.length));
+            for (String token : tokens) {
+                indices[nnz] = dimensions.get(token);
+                values[nnz++] = tokenWeight;
+            }
+            indices[nnz] = dimensions.get(directorKey(movie));
+            values[nnz++] = DIRECTOR_WEIGHT;
+            vectors[i] = FeatureVector.normalized(indices, values, nnz);
+        });
+        return vectors;
+    }
+
+    private static String directorKey(Movie movie) {
+        return "director:" + movie.getDirector().trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param movieId Movie to find neighbours of
+     * @param limit Maximum number of neighbours
+     * @return the most similar movies of the snapshot, best first, or an empty list if
+     *         the movie was not in it
+     */
+    public List<Neighbour> neighbours(long movieId, int limit) {
+        int found = Arrays.binarySearch(sortedIds, movieId);
+        if (found < 0) {
+            return Collections.emptyList();
+        }
+        int i = positionsById[found];
+        int count = Math.min(limit, counts[i]);
+        List<Neighbour> result = new ArrayList<>(count);
+        for (int s = i * k; s < i * k + count; s++) {
+            result.add(new Neighbour(movies[neighbours[s]], scores[s]));
+        }
+        return result;
+    }
+
+    public int size() {
+        return movies.length;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    public long getBuildMillis() {
+        return buildMillis;
+    }
+
+    /**
+     * Running mean and standard deviation, for z-scores.
+     */
+    private static final class Standardizer {
+        private long count;
+        private double mean;
+        private double sumOfSquares;
+
+        void add(double value) {
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            sumOfSquares += delta * (value - mean);
+        }
+
+        float z(double value) {
+            double deviation = count > 1 ? Math.sqrt(sumOfSquares / (count - 1)) : 0;
+            return deviation > 0 ? (float) ((value - mean) / deviation) : 0f;
+        }
+    }
+
+    /**
+     * Unit-length sparse vector with ascending indices.
+     */
+    static final class FeatureVector {
+        private final int[] indices;
+        private final float[] values;
+
+        private FeatureVector(int[] indices, float[] values) {
+            this.indices = indices;
+            this.values = values;
+        }
+
+        static FeatureVector normalized(int[] indices, float[] values, int nnz) {
+            // Sort by index (few entries, mostly in order already)
+            for (int a = 1; a < nnz; a++) {
+                int index = indices[a];
+                float value = values[a];
+                int b = a - 1;
+                while (b >= 0 && indices[b] > index) {
+                    indices[b + 1] = indices[b];
+                    values[b + 1] = values[b];
+                    b--;
+                }
+                indices[b + 1] = index;
+                values[b + 1] = value;
+            }
+            double norm = 0;
+            for (int a = 0; a < nnz; a++) {
+                norm += values[a] * values[a];
+            }
+            float scale = norm > 0 ? (float) (1 / Math.sqrt(norm)) : 0f;
+            int[] packedIndices = Arrays.copyOf(indices, nnz);
+            float[] packedValues = new float[nnz];
+            for (int a = 0; a < nnz; a++) {
+                packedValues[a] = values[a] * scale;
+            }
+            return new FeatureVector(packedIndices, packedValues);
+        }
+
+        float dot(FeatureVector other) {
+            float sum = 0;
+            int a = 0;
+            int b = 0;
+            while (a < indices.length && b < other.indices.length) {
+                int left = indices[a];
+                int right = other.indices[b];
+                if (left == right) {
+                    sum += values[a++] * other.values[b++];
+                } else if (left < right) {
+                    a++;
+                } else {
+                    b++;
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * Signs of projections onto random ±1 hyperplanes; vectors at a small angle
+         * agree on most bits. The hyperplane entries for a dimension come from hashing
+         * it, so no projection matrix is stored.
+         */
+        int signature(long seed) {
+            float[] sums = new float[SIGNATURE_BITS];
+            for (int a = 0; a < indices.length; a++) {
+                long hash = mix(seed ^ indices[a]);
+                float value = values[a];
+                for (int bit = 0; bit < SIGNATURE_BITS; bit++) {
+                    sums[bit] += ((hash >>> bit) & 1) == 0 ? value : -value;
+                }
+            }
+            int signature = 0;
+            for (int bit = 0; bit < SIGNATURE_BITS; bit++) {
+                if (sums[bit] > 0) {
+                    signature |= 1 << (SIGNATURE_BITS - 1 - bit);
+                }
+            }
+            return signature;
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
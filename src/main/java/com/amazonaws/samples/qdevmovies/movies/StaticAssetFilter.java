@@ -0,0 +1,127 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+
+/**
+ * Serves the stylesheets and scripts from memory, see {@link StaticAssets}, and points
+ * page links at their fingerprinted paths.
+ *
+ * <p>Fingerprinted paths are cached by browsers for a year without revalidation
+ * ({@code immutable}); plain paths must be revalidated, and are answered with
+ * {@code 304 Not Modified} while unchanged. Clients that accept gzip get the encoding
+ * compressed at startup, so no request pays for compression.
+ *
+ * <p>Links are rewritten as Thymeleaf builds them: {@code @{/css/movies.css}} goes
+ * through {@link HttpServletResponse#encodeURL}, which this filter maps to the
+ * fingerprinted path. Turn the pipeline off with {@code movies.assets.enabled: false} to
+ * serve the files with Spring's default resource handling instead.
+ */
+@Component
+@ConditionalOnProperty(prefix = "movies.assets", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class StaticAssetFilter extends OncePerRequestFilter {
+
+    static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    static final String REVALIDATE = "no-cache";
+
+    private final StaticAssets assets = StaticAssets.load();
+
+    StaticAssets getAssets() {
+        return assets;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String method = request.getMethod();
+        if ("GET".equals(method) || "HEAD".equals(method)) {
+            String path = request.getRequestURI().substring(request.getContextPath().length());
+            StaticAssets.Asset asset = assets.get(path);
+            if (asset != null) {
+                serve(request, response, asset, path.equals(asset.getHashedPath()));
+                return;
+            }
+        }
+        chain.doFilter(request, new HttpServletResponseWrapper(response) {
+            @Override
+            public String encodeURL(String url) {
+                return super.encodeURL(fingerprint(request.getContextPath(), url));
+            }
+        });
+    }
+
+    String fingerprint(String contextPath, String url) {
+        if (!url.startsWith(contextPath)) {
+            return url;
+        }
+        int end = url.length();
+        for (int i = contextPath.length(); i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '?' || c == '#' || c == ';') {
+                end = i;
+                break;
+            }
+        }
+        String hashed = assets.hashedPath(url.substring(contextPath.length(), end));
+        return hashed == null ? url : contextPath + hashed + url.substring(end);
+    }
+
+    private static void serve(HttpServletRequest request, HttpServletResponse response, StaticAssets.Asset asset,
+                              boolean fingerprinted) throws IOException {
+        boolean gzip = asset.getGzip() != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String etag = "\"" + asset.getHash() + (gzip ? "-gz" : "") + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, fingerprinted ? IMMUTABLE : REVALIDATE);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        if (asset.getGzip() != null) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        byte[] body = gzip ? asset.getGzip() : asset.getIdentity();
+        response.setContentType(asset.getContentType());
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLength(body.length);
+        if (!"HEAD".equals(request.getMethod())) {
+            response.getOutputStream().write(body);
+        }
+    }
+
+    /**
+     * @return true if the Accept-Encoding header lists gzip (or *) without {@code q=0}
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) {
+                continue;
+            }
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().replace(" ", "");
+                if (parameter.matches("q=0(\\.0{0,3})?")) {
+                    refused = true;
+                }
+            }
+            return !refused;
+        }
+        return false;
+    }
+}
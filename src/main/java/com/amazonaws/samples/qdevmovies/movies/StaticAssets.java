@@ -0,0 +1,177 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The stylesheets and scripts under {@code static/}, read once, fingerprinted and
+ * compressed ahead of time so they can be served straight from memory.
+ *
+ * <p>Each asset is reachable under its plain path ({@code /css/movies.css}) and under a
+ * fingerprinted one carrying a hash of its content ({@code /css/movies.1a2b3c4d5e6f.css}).
+ * Pages link to the fingerprinted path, which never changes content and so can be cached
+ * forever; a changed file gets a new path. The gzip encoding is kept when it is smaller.
+ */
+final class StaticAssets {
+    private static final Logger logger = LogManager.getLogger(StaticAssets.class);
+
+    static final String LOCATION = "classpath*:static/";
+    static final int HASH_LENGTH = 12;
+
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+
+    static {
+        CONTENT_TYPES.put("css", "text/css;charset=UTF-8");
+        CONTENT_TYPES.put("js", "text/javascript;charset=UTF-8");
+    }
+
+    /**
+     * One asset with its encodings.
+     */
+    static final class Asset {
+        private final String path;
+        private final String hashedPath;
+        private final String contentType;
+        private final byte[] identity;
+        private final byte[] gzip;
+        private final String hash;
+
+        Asset(String path, String hashedPath, String contentType, byte[] identity, byte[] gzip, String hash) {
+            this.path = path;
+            this.hashedPath = hashedPath;
+            this.contentType = contentType;
+            this.identity = identity;
+            this.gzip = gzip;
+            this.hash = hash;
+        }
+
+        String getPath() { return path; }
+        String getHashedPath() { return hashedPath; }
+        String getContentType() { return contentType; }
+        byte[] getIdentity() { return identity; }
+
+        /**
+         * @return the gzip encoding, or null if it would not be smaller
+         */
+        byte[] getGzip() { return gzip; }
+
+        String getHash() { return hash; }
+    }
+
+    private final Map<String, Asset> byPath;
+    private final Map<String, Asset> byAnyPath;
+
+    private StaticAssets(Map<String, Asset> byPath) {
+        this.byPath = Collections.unmodifiableMap(byPath);
+        Map<String, Asset> any = new HashMap<>(byPath);
+        for (Asset asset : byPath.values()) {
+            any.put(asset.getHashedPath(), asset);
+        }
+        this.byAnyPath = any;
+    }
+
+    /**
+     * Reads and prepares every {@code .css} and {@code .js} file under {@code static/}.
+     */
+    static StaticAssets load() {
+        long start = System.nanoTime();
+        Map<String, Asset> assets = new LinkedHashMap<>();
+        long identityBytes = 0;
+        long gzipBytes = 0;
+        try {
+            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+            for (String extension : CONTENT_TYPES.keySet()) {
+                for (Resource resource : resolver.getResources(LOCATION + "**/*." + extension)) {
+                    String url = resource.getURL().toString();
+                    String path = url.substring(url.lastIndexOf("/static/") + "/static".length());
+                    byte[] content;
+                    try (InputStream in = resource.getInputStream()) {
+                        content = StreamUtils.copyToByteArray(in);
+                    }
+                    Asset asset = prepare(path, content);
+                    assets.put(path, asset);
+                    identityBytes += content.length;
+                    gzipBytes += asset.getGzip() != null ? asset.getGzip().length : content.length;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read static assets", e);
+        }
+        logger.info("Prepared {} static assets ({} bytes, {} gzipped) in {} ms", assets.size(), identityBytes,
+            gzipBytes, (System.nanoTime() - start) / 1_000_000);
+        return new StaticAssets(assets);
+    }
+
+    static Asset prepare(String path, byte[] content) {
+        String hash = hash(content);
+        int dot = path.lastIndexOf('.');
+        String hashedPath = path.substring(0, dot) + "." + hash + path.substring(dot);
+        String contentType = CONTENT_TYPES.getOrDefault(path.substring(dot + 1), "application/octet-stream");
+        byte[] gzip = gzip(content);
+        return new Asset(path, hashedPath, contentType, content, gzip.length < content.length ? gzip : null, hash);
+    }
+
+    /**
+     * @param path Plain or fingerprinted path, such as {@code /css/movies.css}
+     * @return the asset, or null if there is none
+     */
+    Asset get(String path) {
+        return byAnyPath.get(path);
+    }
+
+    /**
+     * @return the fingerprinted path of the asset at a plain path, or null if there is none
+     */
+    String hashedPath(String path) {
+        Asset asset = byPath.get(path);
+        return asset != null ? asset.getHashedPath() : null;
+    }
+
+    Collection<Asset> all() {
+        return byPath.values();
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < HASH_LENGTH / 2; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,129 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Chooses the storage behind {@link MovieService} and {@link ReviewService}.
+ *
+ * <p>{@code movies.storage.type=json} (the default) serves the bundled JSON resources
+ * read-only. {@code file} uses the embedded file-backed store in
+ * {@code movies.storage.directory}; an empty store is seeded from the JSON resources on
+ * first start.
+ *
+ * <p>{@code movies.storage.json-directory} replaces the bundled JSON resources with the
+ * movies.json and mock-reviews.json in that directory, such as a catalog written by
+ * {@link SyntheticCatalogGenerator}, both for serving and for seeding. A missing or
+ * malformed file stops the application from starting rather than leaving it with an
+ * empty catalog.
+ *
+ * <p>{@code movies.reviews.simulated-latency-millis} delays every review read, to try
+ * the application against a slow review source.
+ */
+@Configuration
+public class StorageConfiguration {
+    private static final Logger logger = LogManager.getLogger(StorageConfiguration.class);
+
+    static final String MOVIES_FILE = "movies.db";
+    static final String REVIEWS_FILE = "reviews.db";
+
+    @Value("${movies.storage.type:json}")
+    private String storageType;
+
+    @Value("${movies.storage.directory:data}")
+    private String directory;
+
+    @Value("${movies.storage.json-directory:}")
+    private String jsonDirectory;
+
+    @Value("${movies.storage.sync-writes:true}")
+    private boolean syncWrites;
+
+    @Value("${movies.reviews.simulated-latency-millis:0}")
+    private long simulatedReviewLatencyMillis;
+
+    @Bean
+    public MovieRepository movieRepository() {
+        if (!isFileStorage()) {
+            return jsonMovieRepository();
+        }
+        FileMovieRepository repository = new FileMovieRepository(resolve(MOVIES_FILE), syncWrites);
+        if (repository.count() == 0) {
+            JsonMovieRepository seed = jsonMovieRepository();
+            repository.replaceAll(seed.findAll());
+            logger.info("Seeded movie store with {} movies from movies.json", seed.count());
+        }
+        return repository;
+    }
+
+    @Bean
+    public ReviewRepository reviewRepository() {
+        ReviewRepository repository = isFileStorage() ? fileReviewRepository() : jsonReviewRepository();
+        if (simulatedReviewLatencyMillis > 0) {
+            logger.warn("Delaying every review read by {} ms (movies.reviews.simulated-latency-millis)",
+                simulatedReviewLatencyMillis);
+            long latency = simulatedReviewLatencyMillis;
+            return new DelayedReviewRepository(repository, () -> latency);
+        }
+        return repository;
+    }
+
+    private ReviewRepository fileReviewRepository() {
+        FileReviewRepository repository = new FileReviewRepository(resolve(REVIEWS_FILE), syncWrites);
+        if (repository.count() == 0) {
+            jsonReviewRepository().copyTo(repository);
+            logger.info("Seeded review store with {} reviews from mock-reviews.json", repository.count());
+        }
+        return repository;
+    }
+
+    private JsonMovieRepository jsonMovieRepository() {
+        if (jsonDirectory.trim().isEmpty()) {
+            return new JsonMovieRepository();
+        }
+        Path file = Paths.get(jsonDirectory).resolve(SyntheticCatalogGenerator.MOVIES_FILE);
+        try {
+            JsonMovieRepository repository = new JsonMovieRepository(file);
+            logger.info("Loaded {} movies from {}", repository.count(), file);
+            return repository;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read movies from " + file, e);
+        }
+    }
+
+    private JsonReviewRepository jsonReviewRepository() {
+        if (jsonDirectory.trim().isEmpty()) {
+            return new JsonReviewRepository();
+        }
+        Path file = Paths.get(jsonDirectory).resolve(SyntheticCatalogGenerator.REVIEWS_FILE);
+        try {
+            return new JsonReviewRepository(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read reviews from " + file, e);
+        }
+    }
+
+    private boolean isFileStorage() {
+        switch (storageType) {
+            case "json":
+                return false;
+            case "file":
+                return true;
+            default:
+                throw new IllegalArgumentException("Unknown movies.storage.type '" + storageType
+                    + "' (expected json or file)");
+        }
+    }
+
+    private Path resolve(String fileName) {
+        return Paths.get(directory).resolve(fileName);
+    }
+}
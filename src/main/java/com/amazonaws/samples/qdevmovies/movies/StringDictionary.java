@@ -0,0 +1,123 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table of distinct strings, used to share values that repeat across the catalog. Every
+ * movie with the same director or genre holds one {@link Term}, with one string instance
+ * and its case-folded search key, instead of copies of its own.
+ *
+ * <p>The table only refers to its terms weakly: the movies holding a term keep it alive,
+ * and once the last of them is deleted or replaced the garbage collector reclaims the
+ * term and the table drops its entry. The table therefore holds the values of movies
+ * still in use, not every value ever seen.
+ *
+ * <p>Looking up a known value takes no lock; adding a new one locks the table.
+ */
+final class StringDictionary {
+
+    // Term: header, value and normalized references
+    static final int TERM_BYTES = (int) CatalogFootprint.align(CatalogFootprint.OBJECT_HEADER_BYTES
+        + 2 * CatalogFootprint.REFERENCE_BYTES);
+    // WeakReference: header, referent, queue, next and discovered references
+    static final int TERM_REFERENCE_BYTES = (int) CatalogFootprint.align(CatalogFootprint.OBJECT_HEADER_BYTES
+        + 4 * CatalogFootprint.REFERENCE_BYTES);
+
+    /**
+     * A value in the table and its form case-folded with {@link Locale#ROOT}.
+     */
+    static final class Term {
+        final String value;
+        final String normalized;
+
+        private Term(String value) {
+            this.value = value;
+            // The same instance when the value is already lower case
+            this.normalized = value.toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * @return rough retained size of the term, its strings and its table entry in bytes
+         */
+        long estimatedBytes() {
+            long bytes = TERM_BYTES + TERM_REFERENCE_BYTES + CatalogFootprint.MAP_ENTRY_BYTES
+                + CatalogFootprint.stringBytes(value);
+            if (normalized != value) {
+                bytes += CatalogFootprint.stringBytes(normalized);
+            }
+            return bytes;
+        }
+    }
+
+    private static final class TermReference extends WeakReference<Term> {
+        final String value;
+
+        TermReference(Term term, ReferenceQueue<Term> queue) {
+            super(term, queue);
+            this.value = term.value;
+        }
+    }
+
+    private final Map<String, TermReference> terms = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Term> reclaimed = new ReferenceQueue<>();
+
+    /**
+     * @return the term of the value, adding it to the table if it is new; null for null
+     */
+    Term intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        Term term = get(value);
+        if (term != null) {
+            return term;
+        }
+        synchronized (this) {
+            purge();
+            term = get(value);
+            if (term == null) {
+                term = new Term(value);
+                terms.put(term.value, new TermReference(term, reclaimed));
+            }
+            return term;
+        }
+    }
+
+    /**
+     * @return values in the table; terms reclaimed since the last change may still count
+     */
+    synchronized int size() {
+        purge();
+        return terms.size();
+    }
+
+    /**
+     * Clears the table's reference to a value's term and queues it for removal, as the
+     * garbage collector does once no movie holds the term.
+     */
+    void reclaim(String value) {
+        TermReference reference = terms.get(value);
+        if (reference != null) {
+            reference.enqueue();
+        }
+    }
+
+    private Term get(String value) {
+        TermReference reference = terms.get(value);
+        return reference != null ? reference.get() : null;
+    }
+
+    // Caller holds the lock
+    private void purge() {
+        Reference<? extends Term> reference;
+        while ((reference = reclaimed.poll()) != null) {
+            TermReference cleared = (TermReference) reference;
+            terms.remove(cleared.value, cleared);
+        }
+    }
+}
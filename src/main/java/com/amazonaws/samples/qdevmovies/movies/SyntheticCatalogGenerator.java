@@ -0,0 +1,395 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Generates large, realistic-looking catalogs and reviews for scale testing, in the
+ * schema of movies.json and mock-reviews.json.
+ *
+ * <p>Output is deterministic: the same seed and sizes give byte-identical files on every
+ * JVM. Each movie and its reviews are derived from the seed and the movie's ID alone, so
+ * {@link #movie(long)} and {@link #reviews(Movie)} can also be called for any single ID.
+ * The data is skewed like a real catalog: genres, directors and title words are drawn
+ * from Zipf distributions, review counts per movie are Zipfian (most movies have few,
+ * a handful have very many), release years lean recent and titles range from one word
+ * to long subtitled sequels.
+ *
+ * <p>{@link #write(Path)} streams both files, holding one movie at a time, so catalogs of
+ * tens of millions of movies need no more memory than small ones. From the command line:
+ * <pre>
+ * java ... SyntheticCatalogGenerator --movies=1000000 --max-reviews=200 --seed=42 --out=data/synthetic
+ * </pre>
+ */
+public final class SyntheticCatalogGenerator {
+    private static final Logger logger = LogManager.getLogger(SyntheticCatalogGenerator.class);
+
+    public static final String MOVIES_FILE = "movies.json";
+    public static final String REVIEWS_FILE = "mock-reviews.json";
+
+    static final long DEFAULT_SEED = 42;
+    static final int DEFAULT_MAX_REVIEWS = 100;
+    // One director per this many movies, on average
+    static final int MOVIES_PER_DIRECTOR = 8;
+
+    private static final long REVIEW_SALT = 0x5DEECE66DL;
+    private static final int PROGRESS_INTERVAL = 1_000_000;
+
+    // Most popular first: samplers pick low indexes most often
+    private static final String[] GENRES = {"Drama", "Comedy", "Action", "Thriller", "Drama/Romance", "Crime/Drama",
+        "Horror", "Action/Adventure", "Documentary", "Comedy/Romance", "Action/Crime", "Animation/Family",
+        "Adventure/Fantasy", "Action/Sci-Fi", "Mystery/Thriller", "Drama/History", "Horror/Thriller", "Sci-Fi",
+        "War/Drama", "Biography/Drama", "Adventure/Sci-Fi", "Musical", "Western", "Sport/Drama", "Film-Noir"};
+    private static final String[] FIRST_NAMES = {"John", "Mary", "David", "Sofia", "Michael", "Aiko", "James",
+        "Elena", "Robert", "Priya", "William", "Fatima", "Thomas", "Ingrid", "Carlos", "Mei", "Daniel", "Amara",
+        "Pierre", "Olga", "Kwame", "Lucia", "Hiroshi", "Nadia", "Samuel", "Chloe", "Ahmed", "Greta", "Luca",
+        "Zara", "Viktor", "Ana", "Rafael", "Yuki", "Martin", "Leila", "Oscar", "Hana", "Felix", "Isabel"};
+    private static final String[] LAST_NAMES = {"Director", "Smith", "Nakamura", "Rossi", "Okafor", "Johansson",
+        "Garcia", "Kowalski", "Chen", "Dubois", "Patel", "Müller", "Silva", "O'Brien", "Kim", "Novak", "Haddad",
+        "Andersen", "Moreau", "Ivanova", "Tanaka", "Fischer", "Costa", "Walsh", "Nguyen", "Bianchi", "Larsen",
+        "Mendes", "Schmidt", "Horvat", "Lindqvist", "Adeyemi", "Ferreira", "Brennan", "Sato", "Kaplan", "Ortiz",
+        "Berg", "Hughes", "Romano", "Yilmaz", "Dimitrov", "Svensson", "Castillo", "Park", "Quinn", "Weber",
+        "Laurent", "Mensah", "Hayes"};
+    private static final String[] ADJECTIVES = {"Last", "Dark", "Silent", "Golden", "Lost", "Hidden", "Broken",
+        "Final", "Crimson", "Endless", "Wild", "Quiet", "Burning", "Frozen", "Secret", "Distant", "Iron", "Electric",
+        "Savage", "Hollow", "Midnight", "Forgotten", "Eternal", "Restless", "Scarlet", "Shattered", "Sleepless",
+        "Velvet", "Wandering", "Invisible"};
+    private static final String[] NOUNS = {"River", "Storm", "Empire", "Shadow", "Kingdom", "Voyage", "Harbor",
+        "Garden", "Mirror", "Frontier", "Legacy", "Horizon", "Island", "Signal", "Promise", "Station", "Crown",
+        "Desert", "Forest", "Machine", "Treasure", "Escape", "Heist", "Summer", "Winter", "Letter", "Orchestra",
+        "Lighthouse", "Labyrinth", "Tide", "Dynasty", "Prophecy", "Outpost", "Carnival", "Archive"};
+    private static final String[] PLACES = {"Tomorrow", "the North", "Paris", "the Deep", "Avalon", "Babylon",
+        "the Valley", "Saturn", "Old Town", "the Coast", "Marrakesh", "the Moon", "Neo Tokyo", "Kingsbridge"};
+    private static final String[] ROLES = {"detective", "captain", "young musician", "retired spy", "family",
+        "scientist", "smuggler", "teacher", "prince", "rookie cop", "journalist", "pilot", "chef", "android"};
+    private static final String[] GOALS = {"uncover a conspiracy", "find a way home", "win back what was lost",
+        "survive one more night", "protect a stranger", "solve an impossible crime", "outrun the past",
+        "lead a final mission", "keep a promise", "rebuild a broken family"};
+    private static final String[] COMPLICATIONS = {"time runs out", "an old enemy returns", "the storm arrives",
+        "the truth comes out", "everything falls apart", "the city wakes up", "the money disappears"};
+    private static final String[] USER_ADJECTIVES = {"Movie", "Cinema", "Film", "Classic", "Indie", "Popcorn",
+        "Midnight", "Reel", "Silver", "Screen", "Plot", "Scene"};
+    private static final String[] USER_NOUNS = {"Buff", "Lover", "Critic", "Fan", "Geek", "Watcher", "Junkie",
+        "Scholar", "Nerd", "Addict", "Enthusiast", "Guru"};
+    private static final String[] AVATARS = {"👨", "👩", "🧔", "🎭", "🚀", "🧠", "🧙", "🦸", "🤓", "😎", "😊",
+        "🤔", "📚", "💻", "🎬", "🍿"};
+    private static final String[] PRAISE = {"Absolutely incredible storytelling.", "A masterpiece from start to finish.",
+        "The performances are phenomenal.", "Gets better with every viewing.", "Stunning visuals and a great score."};
+    private static final String[] MIXED = {"Good, but a little too long.", "Solid performances, uneven script.",
+        "Worth watching once.", "The second half drags, the ending makes up for it.", "Fun, if forgettable."};
+    private static final String[] PANS = {"Could not finish it.", "The plot makes no sense.",
+        "Beautiful to look at, painful to sit through.", "Wasted a great cast.", "Not for me at all."};
+
+    /**
+     * Sizes of a generated catalog.
+     */
+    public static final class Summary {
+        private final long movies;
+        private final long reviews;
+        private final long moviesBytes;
+        private final long reviewsBytes;
+
+        Summary(long movies, long reviews, long moviesBytes, long reviewsBytes) {
+            this.movies = movies;
+            this.reviews = reviews;
+            this.moviesBytes = moviesBytes;
+            this.reviewsBytes = reviewsBytes;
+        }
+
+        public long getMovies() { return movies; }
+        public long getReviews() { return reviews; }
+        public long getMoviesBytes() { return moviesBytes; }
+        public long getReviewsBytes() { return reviewsBytes; }
+    }
+
+    private final long seed;
+    private final long movieCount;
+    private final int maxReviews;
+    private final ZipfSampler genreSampler;
+    private final ZipfSampler directorSampler;
+    private final ZipfSampler titleWordSampler;
+    private final ZipfSampler reviewCountSampler;
+
+    /**
+     * @param seed Seed of all generated data
+     * @param movieCount Number of movies, with IDs 1..movieCount
+     * @param maxReviews Most reviews any one movie gets; 0 for none
+     */
+    public SyntheticCatalogGenerator(long seed, long movieCount, int maxReviews) {
+        if (movieCount < 0 || maxReviews < 0) {
+            throw new IllegalArgumentException("Movie and review counts must not be negative");
+        }
+        this.seed = seed;
+        this.movieCount = movieCount;
+        this.maxReviews = maxReviews;
+        this.genreSampler = new ZipfSampler(GENRES.length, 1.0);
+        this.directorSampler = new ZipfSampler(Math.max(1, movieCount / MOVIES_PER_DIRECTOR), 0.8);
+        this.titleWordSampler = new ZipfSampler(NOUNS.length, 0.7);
+        this.reviewCountSampler = new ZipfSampler(maxReviews + 1L, 2.0);
+    }
+
+    public long getMovieCount() {
+        return movieCount;
+    }
+
+    /**
+     * The fields of one generated movie. Files are written from these rather than from
+     * {@link Movie}, whose shared director table would otherwise grow with the output.
+     */
+    private static final class Draft {
+        long id;
+        String movieName;
+        String director;
+        int year;
+        String genre;
+        String description;
+        int duration;
+        double imdbRating;
+
+        Movie toMovie() {
+            return new Movie(id, movieName, director, year, genre, description, duration, imdbRating);
+        }
+    }
+
+    /**
+     * @return the movie with the given ID, the same on every call
+     */
+    public Movie movie(long id) {
+        return draft(id).toMovie();
+    }
+
+    private Draft draft(long id) {
+        Random random = new Random(mix(seed + id * 0x9E3779B97F4A7C15L));
+        Draft movie = new Draft();
+        movie.id = id;
+        movie.movieName = title(random);
+        movie.director = director(directorSampler.sample(random) - 1);
+        movie.genre = GENRES[genreSampler.sampleIndex(random)];
+        // Square root of a uniform leans towards recent years
+        movie.year = 1920 + (int) (105 * Math.sqrt(random.nextDouble()));
+        movie.duration = (int) Math.max(62, Math.min(240, Math.round(112 + 22 * random.nextGaussian())));
+        movie.imdbRating = Math.max(1.0, Math.min(5.0, Math.round((3.4 + 0.7 * random.nextGaussian()) * 2) / 2.0));
+        movie.description = description(random);
+        return movie;
+    }
+
+    /**
+     * @return the movie's reviews, the same on every call; often none
+     */
+    public List<Review> reviews(Movie movie) {
+        return reviews(movie.getId(), movie.getImdbRating());
+    }
+
+    private List<Review> reviews(long movieId, double movieRating) {
+        if (maxReviews == 0) {
+            return new ArrayList<>();
+        }
+        Random random = new Random(mix((seed ^ REVIEW_SALT) + movieId * 0x9E3779B97F4A7C15L));
+        int count = (int) (reviewCountSampler.sample(random) - 1);
+        List<Review> reviews = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String userName = USER_ADJECTIVES[random.nextInt(USER_ADJECTIVES.length)]
+                + USER_NOUNS[random.nextInt(USER_NOUNS.length)] + random.nextInt(100);
+            double rating = Math.max(0.5, Math.min(5.0,
+                Math.round((movieRating + 0.8 * random.nextGaussian()) * 2) / 2.0));
+            String[] comments = rating >= 4.0 ? PRAISE : rating >= 2.5 ? MIXED : PANS;
+            String comment = comments[random.nextInt(comments.length)];
+            if (random.nextInt(3) == 0) {
+                comment += " " + comments[random.nextInt(comments.length)];
+            }
+            reviews.add(new Review(userName, AVATARS[random.nextInt(AVATARS.length)], rating, comment));
+        }
+        return reviews;
+    }
+
+    /**
+     * Passes every movie to the consumer in ID order, one at a time.
+     */
+    public void forEachMovie(Consumer<Movie> consumer) {
+        for (long id = 1; id <= movieCount; id++) {
+            consumer.accept(movie(id));
+        }
+    }
+
+    /**
+     * Writes {@value #MOVIES_FILE} and {@value #REVIEWS_FILE} into the directory,
+     * replacing existing files. Movies without reviews are left out of the review file,
+     * which the review loaders read as having none.
+     */
+    public Summary write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path moviesFile = directory.resolve(MOVIES_FILE);
+        Path reviewsFile = directory.resolve(REVIEWS_FILE);
+        long start = System.nanoTime();
+        long reviewTotal = 0;
+        try (BufferedWriter movies = Files.newBufferedWriter(moviesFile, StandardCharsets.UTF_8);
+             BufferedWriter reviews = Files.newBufferedWriter(reviewsFile, StandardCharsets.UTF_8)) {
+            movies.write("[");
+            reviews.write("{");
+            boolean firstReviewed = true;
+            for (long id = 1; id <= movieCount; id++) {
+                Draft movie = draft(id);
+                movies.write(id == 1 ? "\n  " : ",\n  ");
+                writeMovie(movies, movie);
+
+                List<Review> movieReviews = reviews(id, movie.imdbRating);
+                if (!movieReviews.isEmpty()) {
+                    reviews.write(firstReviewed ? "\n  \"" : ",\n  \"");
+                    reviews.write(Long.toString(id));
+                    reviews.write("\": [");
+                    for (int i = 0; i < movieReviews.size(); i++) {
+                        reviews.write(i == 0 ? "\n    " : ",\n    ");
+                        writeReview(reviews, movieReviews.get(i));
+                    }
+                    reviews.write("\n  ]");
+                    firstReviewed = false;
+                    reviewTotal += movieReviews.size();
+                }
+                if (id % PROGRESS_INTERVAL == 0) {
+                    logger.info("Generated {} of {} movies and {} reviews", id, movieCount, reviewTotal);
+                }
+            }
+            movies.write("\n]\n");
+            reviews.write("\n}\n");
+        }
+        Summary summary = new Summary(movieCount, reviewTotal, Files.size(moviesFile), Files.size(reviewsFile));
+        logger.info("Wrote {} movies ({} bytes) and {} reviews ({} bytes) to {} in {} ms", summary.getMovies(),
+            summary.getMoviesBytes(), summary.getReviews(), summary.getReviewsBytes(), directory,
+            (System.nanoTime() - start) / 1_000_000);
+        return summary;
+    }
+
+    private String title(Random random) {
+        String noun = NOUNS[titleWordSampler.sampleIndex(random)];
+        String adjective = ADJECTIVES[random.nextInt(ADJECTIVES.length)];
+        String title;
+        switch (random.nextInt(8)) {
+            case 0:
+                title = noun;
+                break;
+            case 1:
+                title = "The " + noun + " of " + PLACES[random.nextInt(PLACES.length)];
+                break;
+            case 2:
+                title = adjective + " " + noun + ": The " + ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+                    + NOUNS[titleWordSampler.sampleIndex(random)];
+                break;
+            case 3:
+                title = "The " + LAST_NAMES[random.nextInt(LAST_NAMES.length)] + " " + noun;
+                break;
+            case 4:
+                title = "A " + adjective + " " + noun + " in " + PLACES[random.nextInt(PLACES.length)];
+                break;
+            default:
+                title = "The " + adjective + " " + noun;
+                break;
+        }
+        int sequel = random.nextInt(20);
+        if (sequel < 2) {
+            title += " " + (sequel + 2);
+        } else if (sequel == 2) {
+            title += " II: " + adjective + " " + NOUNS[random.nextInt(NOUNS.length)];
+        }
+        return title;
+    }
+
+    private static String director(long index) {
+        int names = FIRST_NAMES.length * LAST_NAMES.length;
+        String first = FIRST_NAMES[(int) (index % FIRST_NAMES.length)];
+        String last = LAST_NAMES[(int) (index / FIRST_NAMES.length % LAST_NAMES.length)];
+        if (index < names) {
+            return first + " " + last;
+        }
+        // Beyond the plain combinations, middle initials and then numbers keep names distinct
+        long rest = index / names - 1;
+        char initial = (char) ('A' + rest % 26);
+        long generation = rest / 26;
+        return first + " " + initial + ". " + last + (generation > 0 ? " " + (generation + 1) : "");
+    }
+
+    private static String description(Random random) {
+        StringBuilder description = new StringBuilder();
+        description.append("A ").append(ADJECTIVES[random.nextInt(ADJECTIVES.length)].toLowerCase())
+            .append(' ').append(ROLES[random.nextInt(ROLES.length)])
+            .append(" must ").append(GOALS[random.nextInt(GOALS.length)])
+            .append(" before ").append(COMPLICATIONS[random.nextInt(COMPLICATIONS.length)]).append('.');
+        if (random.nextBoolean()) {
+            description.append(" Set in ").append(PLACES[random.nextInt(PLACES.length)])
+                .append(", it is a story about ").append(NOUNS[random.nextInt(NOUNS.length)].toLowerCase())
+                .append(" and ").append(NOUNS[random.nextInt(NOUNS.length)].toLowerCase()).append('.');
+        }
+        return description.toString();
+    }
+
+    private static void writeMovie(Writer out, Draft movie) throws IOException {
+        out.write("{\"id\": " + movie.id
+            + ", \"movieName\": " + JSONObject.quote(movie.movieName)
+            + ", \"director\": " + JSONObject.quote(movie.director)
+            + ", \"year\": " + movie.year
+            + ", \"genre\": " + JSONObject.quote(movie.genre)
+            + ", \"description\": " + JSONObject.quote(movie.description)
+            + ", \"duration\": " + movie.duration
+            + ", \"imdbRating\": " + movie.imdbRating + "}");
+    }
+
+    private static void writeReview(Writer out, Review review) throws IOException {
+        out.write("{\"userName\": " + JSONObject.quote(review.getUserName())
+            + ", \"avatarEmoji\": " + JSONObject.quote(review.getAvatarEmoji())
+            + ", \"rating\": " + review.getRating()
+            + ", \"comment\": " + JSONObject.quote(review.getComment()) + "}");
+    }
+
+    // SplitMix64 finalizer, so neighbouring IDs get unrelated random streams
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Command line entry point: {@code --movies=N --max-reviews=N --seed=N --out=DIR}.
+     */
+    public static void main(String[] args) throws IOException {
+        long movies = 100_000;
+        int maxReviews = DEFAULT_MAX_REVIEWS;
+        long seed = DEFAULT_SEED;
+        Path out = Paths.get("data", "synthetic");
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = equals > 0 ? arg.substring(0, equals) : arg;
+            String value = equals > 0 ? arg.substring(equals + 1) : "";
+            switch (name) {
+                case "--movies":
+                    movies = Long.parseLong(value);
+                    break;
+                case "--max-reviews":
+                    maxReviews = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--out":
+                    out = Paths.get(value);
+                    break;
+                default:
+                    System.err.println("Usage: SyntheticCatalogGenerator [--movies=N] [--max-reviews=N] [--seed=N] [--out=DIR]");
+                    System.exit(2);
+                    return;
+            }
+        }
+        new SyntheticCatalogGenerator(seed, movies, maxReviews).write(out);
+    }
+}
@@ -0,0 +1,243 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Bounded map with W-TinyLFU eviction, the storage of {@link SearchResultCache} and
+ * {@link MovieFragmentCache}.
+ *
+ * <p>New entries land in a small LRU window, and entries leaving the window must win
+ * against the main region's LRU victim on estimated frequency (see
+ * {@link FrequencySketch}) to be admitted. The main region is a segmented LRU, where a
+ * second hit promotes an entry from probation to the protected segment. This keeps the
+ * popular head of a skewed access distribution resident while one-off keys pass through
+ * the window.
+ *
+ * <p>The map is bounded both by entry count and by the total weight (estimated retained
+ * bytes) its callers give the entries. Not thread-safe; callers synchronize.
+ *
+ * @param <K> Key
+ * @param <V> Value
+ */
+final class TinyLfuCache<K, V> {
+
+    private enum Region { WINDOW, PROBATION, PROTECTED }
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final long weight;
+        Region region;
+
+        Node(K key, V value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private final long maxBytes;
+    private final int windowCapacity;
+    private final int mainCapacity;
+    private final int protectedCapacity;
+
+    private final Map<K, Node<K, V>> data = new HashMap<>();
+    private final LinkedHashSet<Node<K, V>> window = new LinkedHashSet<>();
+    private final LinkedHashSet<Node<K, V>> probation = new LinkedHashSet<>();
+    private final LinkedHashSet<Node<K, V>> protectedSegment = new LinkedHashSet<>();
+    private final FrequencySketch sketch;
+
+    private long weightedSize;
+    private long evictions;
+    private long admissionRejections;
+
+    TinyLfuCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 2) {
+            throw new IllegalArgumentException("maxEntries must be at least 2");
+        }
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxBytes = maxBytes;
+        this.windowCapacity = Math.max(1, maxEntries / 100);
+        this.mainCapacity = maxEntries - windowCapacity;
+        this.protectedCapacity = Math.max(1, mainCapacity * 4 / 5);
+        this.sketch = new FrequencySketch(maxEntries);
+    }
+
+    /**
+     * Looks up a value and records the access for admission decisions.
+     *
+     * @return the value, or null on a miss
+     */
+    V get(K key) {
+        sketch.increment(key);
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            return null;
+        }
+        onHit(node);
+        return node.value;
+    }
+
+    /**
+     * @return the value without recording an access, or null
+     */
+    V peek(K key) {
+        Node<K, V> node = data.get(key);
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * Stores a value, replacing any earlier one for the key, and evicts down to the bounds.
+     * A value heavier than the whole cache is not stored.
+     *
+     * @param weight Estimated retained bytes of the entry
+     */
+    void put(K key, V value, long weight) {
+        remove(key);
+        if (weight > maxBytes) {
+            admissionRejections++;
+            return;
+        }
+        Node<K, V> node = new Node<>(key, value, weight);
+        data.put(key, node);
+        node.region = Region.WINDOW;
+        window.add(node);
+        weightedSize += weight;
+        evictIfNeeded();
+    }
+
+    void remove(K key) {
+        Node<K, V> existing = data.remove(key);
+        if (existing != null) {
+            unlink(existing);
+        }
+    }
+
+    /**
+     * Drops every entry. Frequency history is kept so popular keys are re-admitted quickly.
+     */
+    void clear() {
+        data.clear();
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+        weightedSize = 0;
+    }
+
+    int size() {
+        return data.size();
+    }
+
+    boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    long weightedSize() {
+        return weightedSize;
+    }
+
+    long evictions() {
+        return evictions;
+    }
+
+    long admissionRejections() {
+        return admissionRejections;
+    }
+
+    private void onHit(Node<K, V> node) {
+        switch (node.region) {
+            case WINDOW:
+                moveToTail(window, node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                node.region = Region.PROTECTED;
+                protectedSegment.add(node);
+                if (protectedSegment.size() > protectedCapacity) {
+                    Node<K, V> demoted = first(protectedSegment);
+                    protectedSegment.remove(demoted);
+                    demoted.region = Region.PROBATION;
+                    probation.add(demoted);
+                }
+                break;
+            case PROTECTED:
+                moveToTail(protectedSegment, node);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void evictIfNeeded() {
+        // Entries overflowing the window compete with the main region's LRU victim
+        while (window.size() > windowCapacity) {
+            Node<K, V> candidate = first(window);
+            window.remove(candidate);
+            if (probation.size() + protectedSegment.size() < mainCapacity) {
+                candidate.region = Region.PROBATION;
+                probation.add(candidate);
+                continue;
+            }
+            Node<K, V> victim = mainVictim();
+            if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evict(victim);
+                candidate.region = Region.PROBATION;
+                probation.add(candidate);
+            } else {
+                data.remove(candidate.key);
+                weightedSize -= candidate.weight;
+                admissionRejections++;
+            }
+        }
+
+        while (weightedSize > maxBytes) {
+            Node<K, V> victim = mainVictim();
+            evict(victim != null ? victim : first(window));
+        }
+    }
+
+    private Node<K, V> mainVictim() {
+        if (!probation.isEmpty()) {
+            return first(probation);
+        }
+        return protectedSegment.isEmpty() ? null : first(protectedSegment);
+    }
+
+    private void evict(Node<K, V> node) {
+        data.remove(node.key);
+        unlink(node);
+        evictions++;
+    }
+
+    private void unlink(Node<K, V> node) {
+        switch (node.region) {
+            case WINDOW:
+                window.remove(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protectedSegment.remove(node);
+                break;
+            default:
+                break;
+        }
+        weightedSize -= node.weight;
+    }
+
+    private static <K, V> void moveToTail(LinkedHashSet<Node<K, V>> segment, Node<K, V> node) {
+        segment.remove(node);
+        segment.add(node);
+    }
+
+    private static <K, V> Node<K, V> first(LinkedHashSet<Node<K, V>> segment) {
+        Iterator<Node<K, V>> iterator = segment.iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+}
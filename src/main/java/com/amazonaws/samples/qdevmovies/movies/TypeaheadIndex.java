@@ -0,0 +1,447 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Prefix trie over normalized movie names and directors with the best completions of
+ * every prefix precomputed, so a lookup walks one node per typed character and copies
+ * out a ready-made list, however large the catalog.
+ *
+ * <p>Every word start of a name is a key ("the prison escape", "prison escape",
+ * "escape"), so completions also match from the middle of a title. Completions are
+ * ranked by weight and numbered by rank; each node keeps the (at most {@code k}) lowest
+ * ranks found in its subtree. The trie is stored in flat arrays in depth-first order:
+ * a node's subtree is the range up to its {@code subtreeEnd}, so children are found by
+ * hopping from one sibling subtree to the next. A node with a single child and no
+ * completion of its own shares its child's list, which keeps the long single-title
+ * chains near the leaves from storing a list each.
+ */
+public final class TypeaheadIndex {
+
+    public enum Kind { MOVIE, DIRECTOR }
+
+    static final int MAX_WORD_STARTS = 8;
+
+    /**
+     * A suggested completion. Directors carry the ID of their highest weighted movie.
+     */
+    public static final class Completion {
+        private final Kind kind;
+        private final String text;
+        private final long movieId;
+        private final double weight;
+
+        Completion(Kind kind, String text, long movieId, double weight) {
+            this.kind = kind;
+            this.text = text;
+            this.movieId = movieId;
+            this.weight = weight;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public long getMovieId() {
+            return movieId;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+    }
+
+    private final Completion[] completions;
+    private final int k;
+    private final char[] labels;
+    private final int[] subtreeEnd;
+    private final int[] topStart;
+    private final byte[] topCount;
+    private final int[] top;
+    private final long buildMillis;
+
+    private TypeaheadIndex(Completion[] completions, int k, char[] labels, int[] subtreeEnd, int[] topStart,
+                           byte[] topCount, int[] top, long buildMillis) {
+        this.completions = completions;
+        this.k = k;
+        this.labels = labels;
+        this.subtreeEnd = subtreeEnd;
+        this.topStart = topStart;
+        this.topCount = topCount;
+        this.top = top;
+        this.buildMillis = buildMillis;
+    }
+
+    /**
+     * @param catalog Movies to index
+     * @param weight Ranking weight of a movie; a director ranks by their best movie
+     * @param k Completions kept per prefix, at most 127
+     */
+    public static TypeaheadIndex build(List<Movie> catalog, ToDoubleFunction<Movie> weight, int k) {
+        if (k < 1 || k > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("k must be between 1 and " + Byte.MAX_VALUE);
+        }
+        long start = System.nanoTime();
+        Completion[] completions = rankedCompletions(catalog, weight);
+
+        List<Key> keys = new ArrayList<>(completions.length * 3);
+        for (int rank = 0; rank < completions.length; rank++) {
+            String text = normalize(completions[rank].getText(), false);
+            int starts = 0;
+            for (int offset = 0; offset < text.length() && starts < MAX_WORD_STARTS; offset++) {
+                if (offset == 0 || text.charAt(offset - 1) == ' ') {
+                    keys.add(new Key(text, offset, rank));
+                    starts++;
+                }
+            }
+        }
+        keys.sort(null);
+
+        Builder builder = new Builder(keys.size() * 2);
+        for (Key key : keys) {
+            builder.add(key);
+        }
+        builder.finish();
+        int[][] lists = builder.topLists(k);
+
+        int nodes = builder.size;
+        int[] topStart = new int[nodes];
+        byte[] topCount = new byte[nodes];
+        int stored = 0;
+        for (int[] list : lists) {
+            stored += list == null ? 0 : list.length;
+        }
+        int[] top = new int[stored];
+        int used = 0;
+        for (int node = nodes - 1; node >= 0; node--) {
+            int[] list = lists[node];
+            if (list == null) {
+                // Shares the list of its only child
+                topStart[node] = topStart[node + 1];
+                topCount[node] = topCount[node + 1];
+            } else {
+                System.arraycopy(list, 0, top, used, list.length);
+                topStart[node] = used;
+                topCount[node] = (byte) list.length;
+                used += list.length;
+            }
+        }
+
+        long buildMillis = (System.nanoTime() - start) / 1_000_000;
+        return new TypeaheadIndex(completions, k, Arrays.copyOf(builder.labels, nodes),
+            Arrays.copyOf(builder.subtreeEnd, nodes), topStart, topCount, top, buildMillis);
+    }
+
+    private static Completion[] rankedCompletions(List<Movie> catalog, ToDoubleFunction<Movie> weight) {
+        List<Completion> completions = new ArrayList<>(catalog.size() * 2);
+        Map<String, Completion> directors = new LinkedHashMap<>();
+        for (Movie movie : catalog) {
+            double movieWeight = weight.applyAsDouble(movie);
+            completions.add(new Completion(Kind.MOVIE, movie.getMovieName(), movie.getId(), movieWeight));
+            String director = normalize(movie.getDirector(), false);
+            if (director.isEmpty()) {
+                continue;
+            }
+            Completion best = directors.get(director);
+            if (best == null || movieWeight > best.getWeight()) {
+                directors.put(director, new Completion(Kind.DIRECTOR, movie.getDirector().trim(), movie.getId(),
+                    movieWeight));
+            }
+        }
+        completions.addAll(directors.values());
+        // Heaviest first; ties in a fixed order so that builds are reproducible
+        completions.sort(Comparator.comparingDouble(Completion::getWeight).reversed()
+            .thenComparing(Completion::getText)
+            .thenComparing(Completion::getKind)
+            .thenComparingLong(Completion::getMovieId));
+        return completions.toArray(new Completion[0]);
+    }
+
+    /**
+     * Case-folds text and reduces it to words of letters and digits separated by single
+     * spaces. Apostrophes are dropped ("pirate's" becomes "pirates"); all other
+     * punctuation separates words.
+     *
+     * @param keepTrailingSpace Whether a separator after the last word is kept, so that
+     *                          a query for "the " only matches whole words
+     */
+    static String normalize(String text, boolean keepTrailingSpace) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\'' || c == '’') {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace) {
+                    normalized.append(' ');
+                    pendingSpace = false;
+                }
+                normalized.append(c);
+            } else if (normalized.length() > 0) {
+                pendingSpace = true;
+            }
+        }
+        if (pendingSpace && keepTrailingSpace) {
+            normalized.append(' ');
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param prefix Text typed so far
+     * @param limit Maximum number of completions
+     * @return best completions of the prefix, best first; empty for a blank prefix
+     */
+    public List<Completion> complete(String prefix, int limit) {
+        String normalized = normalize(prefix, true);
+        if (normalized.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int node = find(normalized, null);
+        if (node < 0) {
+            return Collections.emptyList();
+        }
+        int count = Math.min(limit, topCount[node]);
+        List<Completion> result = new ArrayList<>(count);
+        for (int s = topStart[node]; s < topStart[node] + count; s++) {
+            result.add(completions[top[s]]);
+        }
+        return result;
+    }
+
+    /**
+     * @return nodes a lookup of the prefix visits on its way down the trie, siblings
+     *         skipped included
+     */
+    int visitedNodes(String prefix) {
+        int[] visited = new int[1];
+        find(normalize(prefix, true), visited);
+        return visited[0];
+    }
+
+    /**
+     * @param visited Counts visited nodes in its only element; null to not count
+     * @return the node of the normalized prefix, or -1 if no key starts with it
+     */
+    private int find(String normalized, int[] visited) {
+        int node = 0;
+        for (int i = 0; i < normalized.length() && node >= 0; i++) {
+            node = child(node, normalized.charAt(i), visited);
+        }
+        return node;
+    }
+
+    private int child(int node, char label, int[] visited) {
+        int child = node + 1;
+        while (child < subtreeEnd[node]) {
+            if (visited != null) {
+                visited[0]++;
+            }
+            if (labels[child] == label) {
+                return child;
+            }
+            child = subtreeEnd[child];
+        }
+        return -1;
+    }
+
+    public int getCompletionCount() {
+        return completions.length;
+    }
+
+    public int getNodeCount() {
+        return labels.length;
+    }
+
+    /**
+     * @return entries of the shared completion array; at most {@code k} per node
+     */
+    public int getStoredCompletions() {
+        return top.length;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public long getBuildMillis() {
+        return buildMillis;
+    }
+
+    /**
+     * A key: the normalized completion text from a word start on.
+     */
+    private static final class Key implements Comparable<Key> {
+        final String text;
+        final int offset;
+        final int rank;
+
+        Key(String text, int offset, int rank) {
+            this.text = text;
+            this.offset = offset;
+            this.rank = rank;
+        }
+
+        int length() {
+            return text.length() - offset;
+        }
+
+        char charAt(int i) {
+            return text.charAt(offset + i);
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int length = Math.min(length(), other.length());
+            for (int i = 0; i < length; i++) {
+                int diff = charAt(i) - other.charAt(i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            int diff = length() - other.length();
+            return diff != 0 ? diff : Integer.compare(rank, other.rank);
+        }
+    }
+
+    /**
+     * Builds the depth-first node arrays from keys in sorted order: each key shares the
+     * path of its common prefix with the previous key and appends nodes for the rest.
+     */
+    private static final class Builder {
+        char[] labels;
+        int[] subtreeEnd;
+        int size;
+
+        // Completion ranks ending at each node, grouped by node since keys arrive sorted
+        int[] terminalNode;
+        int[] terminalRank;
+        int terminals;
+
+        private int[] path = new int[64];
+        private int depth;
+        private Key previous;
+
+        Builder(int expectedNodes) {
+            labels = new char[Math.max(16, expectedNodes)];
+            subtreeEnd = new int[labels.length];
+            terminalNode = new int[16];
+            terminalRank = new int[16];
+            addNode((char) 0);
+            path[0] = 0;
+        }
+
+        void add(Key key) {
+            int common = 0;
+            if (previous != null) {
+                int length = Math.min(previous.length(), key.length());
+                while (common < length && previous.charAt(common) == key.charAt(common)) {
+                    common++;
+                }
+            }
+            // Close the nodes of the previous key below the shared prefix
+            while (depth > common) {
+                subtreeEnd[path[depth--]] = size;
+            }
+            for (int i = common; i < key.length(); i++) {
+                if (depth + 1 == path.length) {
+                    path = Arrays.copyOf(path, path.length * 2);
+                }
+                path[++depth] = addNode(key.charAt(i));
+            }
+            if (terminals == terminalNode.length) {
+                terminalNode = Arrays.copyOf(terminalNode, terminals * 2);
+                terminalRank = Arrays.copyOf(terminalRank, terminals * 2);
+            }
+            terminalNode[terminals] = path[depth];
+            terminalRank[terminals++] = key.rank;
+            previous = key;
+        }
+
+        void finish() {
+            while (depth >= 0) {
+                subtreeEnd[path[depth--]] = size;
+            }
+        }
+
+        private int addNode(char label) {
+            if (size == labels.length) {
+                labels = Arrays.copyOf(labels, size * 2);
+                subtreeEnd = Arrays.copyOf(subtreeEnd, size * 2);
+            }
+            labels[size] = label;
+            return size++;
+        }
+
+        /**
+         * @return each node's best ranks, children before parents; {@code null} where a
+         *         node shares the list of its only child
+         */
+        int[][] topLists(int k) {
+            int[][] lists = new int[size][];
+            int[] terminalStart = new int[size + 1];
+            for (int t = 0; t < terminals; t++) {
+                terminalStart[terminalNode[t] + 1]++;
+            }
+            for (int node = 0; node < size; node++) {
+                terminalStart[node + 1] += terminalStart[node];
+            }
+            int[] candidates = new int[k * 8];
+            for (int node = size - 1; node >= 0; node--) {
+                int ownFrom = terminalStart[node];
+                int ownTo = terminalStart[node + 1];
+                int firstChild = node + 1;
+                boolean singleChild = firstChild < subtreeEnd[node] && subtreeEnd[firstChild] == subtreeEnd[node];
+                if (ownFrom == ownTo && singleChild) {
+                    continue;
+                }
+                int count = 0;
+                for (int t = ownFrom; t < ownTo; t++) {
+                    if (count == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, count * 2);
+                    }
+                    candidates[count++] = terminalRank[t];
+                }
+                for (int child = firstChild; child < subtreeEnd[node]; child = subtreeEnd[child]) {
+                    int[] childList = listOf(lists, child);
+                    if (count + childList.length > candidates.length) {
+                        candidates = Arrays.copyOf(candidates, (count + childList.length) * 2);
+                    }
+                    System.arraycopy(childList, 0, candidates, count, childList.length);
+                    count += childList.length;
+                }
+                Arrays.sort(candidates, 0, count);
+                int[] list = new int[Math.min(k, count)];
+                int distinct = 0;
+                for (int c = 0; c < count && distinct < list.length; c++) {
+                    if (distinct == 0 || candidates[c] != list[distinct - 1]) {
+                        list[distinct++] = candidates[c];
+                    }
+                }
+                lists[node] = distinct == list.length ? list : Arrays.copyOf(list, distinct);
+            }
+            return lists;
+        }
+
+        private static int[] listOf(int[][] lists, int node) {
+            while (lists[node] == null) {
+                node++;
+            }
+            return lists[node];
+        }
+    }
+}
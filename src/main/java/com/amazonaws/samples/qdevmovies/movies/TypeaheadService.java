@@ -0,0 +1,94 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search-as-you-type completions of movie names and directors from a {@link TypeaheadIndex}.
+ *
+ * <p>Movies are ranked by rating plus a popularity bonus of {@code ln(1 + reviews)}, so
+ * among equally rated movies the more reviewed one is suggested first. Review counts
+ * are read in one bulk pass per build. The index is built in the background when the
+ * service starts, with no completions offered until it is done, and rebuilt after catalog
+ * changes; until then completions for deleted movies are skipped.
+ */
+@Service
+public class TypeaheadService {
+    private static final Logger logger = LogManager.getLogger(TypeaheadService.class);
+
+    private final MovieService movieService;
+    private final ReviewService reviewService;
+    private final int maxCompletions;
+    private final CatalogIndexHolder<TypeaheadIndex> index;
+
+    @Autowired
+    public TypeaheadService(MovieService movieService, ReviewService reviewService,
+                            @Value("${movies.typeahead.max-completions:10}") int maxCompletions) {
+        this.movieService = movieService;
+        this.reviewService = reviewService;
+        this.maxCompletions = maxCompletions;
+        this.index = new CatalogIndexHolder<>("typeahead-index", movieService, version -> build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        index.shutdown();
+    }
+
+    /**
+     * @param prefix Text typed so far
+     * @param limit Maximum number of completions, at most {@link #getMaxCompletions()}
+     * @return best completions, best first; empty until the index is built
+     */
+    public List<TypeaheadIndex.Completion> complete(String prefix, int limit) {
+        TypeaheadIndex current = index.get();
+        if (current == null) {
+            return new ArrayList<>();
+        }
+        List<TypeaheadIndex.Completion> completions = current.complete(prefix, limit);
+        List<TypeaheadIndex.Completion> live = new ArrayList<>(completions.size());
+        for (TypeaheadIndex.Completion completion : completions) {
+            if (movieService.getMovieById(completion.getMovieId()).isPresent()) {
+                live.add(completion);
+            }
+        }
+        return live;
+    }
+
+    public int getMaxCompletions() {
+        return maxCompletions;
+    }
+
+    /**
+     * @return the index currently answering lookups, or null until the first build is done
+     */
+    public TypeaheadIndex currentIndex() {
+        return index.get();
+    }
+
+    /**
+     * @return catalog version the current index was built from, or -1 without an index
+     */
+    public long getIndexedCatalogVersion() {
+        return index.getCatalogVersion();
+    }
+
+    private TypeaheadIndex build() {
+        Map<Long, SimilarityIndex.ReviewSummary> reviews = reviewService.getReviewSummaries();
+        TypeaheadIndex built = TypeaheadIndex.build(movieService.getAllMovies(),
+            movie -> movie.getImdbRating()
+                + Math.log1p(reviews.getOrDefault(movie.getId(), SimilarityIndex.ReviewSummary.NONE).getCount()),
+            maxCompletions);
+        logger.info("Built typeahead index for {} completions ({} trie nodes) in {} ms",
+            built.getCompletionCount(), built.getNodeCount(), built.getBuildMillis());
+        return built;
+    }
+}
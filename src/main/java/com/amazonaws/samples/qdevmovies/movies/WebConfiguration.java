@@ -0,0 +1,32 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Adds the protobuf encoding of the movie list responses. It comes after the default
+ * converters, so JSON stays the response format unless a client asks for protobuf in
+ * its {@code Accept} header. CBOR needs no registration: Spring MVC adds its Jackson
+ * CBOR converter, after the JSON one, whenever {@code jackson-dataformat-cbor} is on the
+ * classpath.
+ *
+ * <p>Also times view rendering and response serialization for the {@code Server-Timing}
+ * header and flight recordings, see {@link RequestTimingFilter}.
+ */
+@Configuration
+public class WebConfiguration implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new MovieProtobufHttpMessageConverter());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new RequestTimingInterceptor());
+    }
+}
@@ -0,0 +1,80 @@
+// Infinite scroll for the movie listing: when the "more" link comes into view, the next
+// page of cards is fetched as an HTML fragment and appended. Without script support the
+// link simply opens the next page.
+(function () {
+    var listing = document.querySelector('.movie-listing');
+    if (!listing) {
+        return;
+    }
+    var grid = listing.querySelector('.movies-grid');
+    var loading = false;
+
+    function append(html) {
+        var container = document.createElement('div');
+        container.innerHTML = html;
+        var cards = container.querySelector('.movies-grid');
+        while (cards && cards.firstElementChild) {
+            grid.appendChild(cards.firstElementChild);
+        }
+        var oldPager = listing.querySelector('.pager');
+        var newPager = container.querySelector('.pager');
+        if (newPager) {
+            // Earlier pages are already on screen
+            var previous = newPager.querySelector('.pager-btn:not(.load-more)');
+            if (previous) {
+                newPager.removeChild(previous);
+            }
+            listing.replaceChild(newPager, oldPager);
+        } else if (oldPager) {
+            listing.removeChild(oldPager);
+        }
+        watch();
+    }
+
+    function load(link) {
+        if (loading) {
+            return;
+        }
+        loading = true;
+        fetch(link.getAttribute('data-cards-url'), { headers: { 'Accept': 'text/html' } })
+            .then(function (response) {
+                if (!response.ok) {
+                    throw new Error('HTTP ' + response.status);
+                }
+                return response.text();
+            })
+            .then(function (html) {
+                loading = false;
+                append(html);
+            })
+            .catch(function () {
+                // Leave the link in place: following it loads the page normally
+                loading = false;
+            });
+    }
+
+    var observer = 'IntersectionObserver' in window ? new IntersectionObserver(function (entries) {
+        entries.forEach(function (entry) {
+            if (entry.isIntersecting) {
+                observer.unobserve(entry.target);
+                load(entry.target);
+            }
+        });
+    }, { rootMargin: '600px' }) : null;
+
+    function watch() {
+        var link = listing.querySelector('.load-more');
+        if (!link) {
+            return;
+        }
+        link.addEventListener('click', function (event) {
+            event.preventDefault();
+            load(link);
+        });
+        if (observer) {
+            observer.observe(link);
+        }
+    }
+
+    watch();
+})();
@@ -0,0 +1,58 @@
+// Fills in the reviews when the details page was rendered before they had loaded
+(function () {
+    var section = document.querySelector('.reviews-loading');
+    if (!section) {
+        return;
+    }
+    var status = section.querySelector('.reviews-status');
+
+    function element(tag, className, text) {
+        var node = document.createElement(tag);
+        node.className = className;
+        if (text !== undefined) {
+            node.textContent = text;
+        }
+        return node;
+    }
+
+    function render(reviews) {
+        if (reviews.length === 0) {
+            section.parentNode.removeChild(section);
+            return;
+        }
+        section.removeChild(status);
+        reviews.forEach(function (review) {
+            var item = element('div', 'review');
+            var header = element('div', 'review-header');
+            header.appendChild(element('div', 'review-avatar', review.avatarEmoji));
+            header.appendChild(element('div', 'review-user', review.userName));
+            var rating = element('div', 'review-rating', '★★★★★ ');
+            rating.appendChild(element('span', '', review.rating.toFixed(1)));
+            header.appendChild(rating);
+            item.appendChild(header);
+            item.appendChild(element('div', 'review-comment', review.comment));
+            section.appendChild(item);
+        });
+        section.classList.remove('reviews-loading');
+    }
+
+    function load(attempt) {
+        fetch(section.getAttribute('data-reviews-url'))
+            .then(function (response) {
+                if (!response.ok) {
+                    throw new Error('HTTP ' + response.status);
+                }
+                return response.json();
+            })
+            .then(function (body) { render(body.reviews); })
+            .catch(function () {
+                if (attempt < 3) {
+                    setTimeout(function () { load(attempt + 1); }, 1000 * attempt);
+                } else {
+                    status.textContent = '🌫️ The reviews be lost in a fog bank. Try again later, matey!';
+                }
+            });
+    }
+
+    load(1);
+})();
@@ -0,0 +1,66 @@
+// Search-as-you-type suggestions for the movie name field, from /api/movies/typeahead
+(function () {
+    var input = document.getElementById('name');
+    var list = document.getElementById('name-suggestions');
+    if (!input || !list) {
+        return;
+    }
+    var pending = null;
+    var latest = 0;
+
+    function hide() {
+        list.innerHTML = '';
+        list.hidden = true;
+        input.setAttribute('aria-expanded', 'false');
+    }
+
+    function show(suggestions) {
+        list.innerHTML = '';
+        suggestions.forEach(function (suggestion) {
+            var item = document.createElement('li');
+            var link = document.createElement('a');
+            link.href = '/movies/' + suggestion.movieId + '/details';
+            link.className = 'suggestion suggestion-' + suggestion.type;
+            link.textContent = suggestion.type === 'director'
+                ? '🎬 ' + suggestion.text + ' (director)'
+                : suggestion.text;
+            item.appendChild(link);
+            list.appendChild(item);
+        });
+        list.hidden = suggestions.length === 0;
+        input.setAttribute('aria-expanded', String(!list.hidden));
+    }
+
+    function lookup() {
+        var query = input.value;
+        if (query.trim().length === 0) {
+            hide();
+            return;
+        }
+        var request = ++latest;
+        fetch('/api/movies/typeahead?limit=8&q=' + encodeURIComponent(query))
+            .then(function (response) { return response.ok ? response.json() : { suggestions: [] }; })
+            .then(function (body) {
+                // Responses can arrive out of order; only the newest one is shown
+                if (request === latest) {
+                    show(body.suggestions);
+                }
+            })
+            .catch(hide);
+    }
+
+    input.addEventListener('input', function () {
+        clearTimeout(pending);
+        pending = setTimeout(lookup, 60);
+    });
+    input.addEventListener('keydown', function (event) {
+        if (event.key === 'Escape') {
+            hide();
+        }
+    });
+    document.addEventListener('click', function (event) {
+        if (event.target !== input && !list.contains(event.target)) {
+            hide();
+        }
+    });
+})();
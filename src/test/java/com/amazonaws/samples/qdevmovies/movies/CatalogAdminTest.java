@@ -0,0 +1,292 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for changing the catalog while it is being read: the admin CRUD endpoints, and
+ * concurrency stress tests checking that readers only ever see whole catalog versions.
+ */
+public class CatalogAdminTest {
+
+    private static final long TOKEN_A = 1_000_001L;
+    private static final long TOKEN_B = 1_000_002L;
+    private static final long COUNTER = 1_000_003L;
+    private static final String ADMIN_PASSWORD = "test-admin-password";
+
+    private ConfigurableApplicationContext context;
+
+    @AfterEach
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    private static List<Movie> syntheticCatalog(int size) {
+        List<Movie> catalog = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            catalog.add(new Movie(i, "Synthetic Movie " + i, "Director " + (i % 50), 1950 + i % 70,
+                i % 2 == 0 ? "Drama" : "Comedy", "Description", 90, 3.5));
+        }
+        return catalog;
+    }
+
+    private static Movie token(long id) {
+        return new Movie(id, "Token", "Keeper", 2000, "Token", "Moves between two IDs", 100, 3.0);
+    }
+
+    private static Movie counter(int value) {
+        return new Movie(COUNTER, "Counter", "Keeper", 2000, "Counter", "Updated in place", value, 3.0);
+    }
+
+    @Test
+    public void testReadersNeverSeeTornCatalog() throws Exception {
+        List<Movie> initial = syntheticCatalog(2000);
+        initial.add(token(TOKEN_A));
+        initial.add(counter(1));
+        MovieService service = new MovieService(initial);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+        AtomicLong reads = new AtomicLong();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            Thread reader = new Thread(() -> {
+                while (running.get() && failures.isEmpty()) {
+                    // An ID lookup never runs ahead of the list, and the list never runs
+                    // ahead of a later lookup
+                    int seenById = service.getMovieById(COUNTER).get().getDuration();
+                    List<Movie> movies = service.getAllMovies();
+                    int tokens = 0;
+                    int listed = -1;
+                    Set<Long> ids = new HashSet<>();
+                    for (Movie movie : movies) {
+                        if (!ids.add(movie.getId())) {
+                            failures.add("Duplicate movie " + movie.getId());
+                        }
+                        if (movie.getId() == TOKEN_A || movie.getId() == TOKEN_B) {
+                            tokens++;
+                        } else if (movie.getId() == COUNTER) {
+                            listed = movie.getDuration();
+                        }
+                    }
+                    if (tokens != 1) {
+                        failures.add("Saw " + tokens + " tokens in one catalog version");
+                    }
+                    if (listed < seenById) {
+                        failures.add("List had counter " + listed + " after lookup saw " + seenById);
+                    }
+                    if (service.getMovieById(COUNTER).get().getDuration() < listed) {
+                        failures.add("Lookup went back before counter " + listed);
+                    }
+                    if (service.searchMovies(null, null, "token").size() != 1) {
+                        failures.add("Search saw a half-applied move");
+                    }
+                    if (!service.getAllGenres().contains("Token")) {
+                        failures.add("Token genre vanished");
+                    }
+                    reads.incrementAndGet();
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+
+        // One batch deletes the token from one ID and adds it under the other
+        long deadline = System.currentTimeMillis() + 1500;
+        int writes = 0;
+        while (System.currentTimeMillis() < deadline && failures.isEmpty()) {
+            long from = writes % 2 == 0 ? TOKEN_A : TOKEN_B;
+            long to = from == TOKEN_A ? TOKEN_B : TOKEN_A;
+            long version = service.getChangeLog().getLatestVersion();
+            assertTrue(service.applyReplicatedChanges(Arrays.asList(
+                CatalogChange.delete(version + 1, from), CatalogChange.upsert(version + 2, token(to)))));
+            service.saveMovie(counter(writes + 2));
+            writes++;
+            if (writes % 8 == 0) {
+                Thread.yield();
+            }
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertTrue(failures.isEmpty(), String.valueOf(failures.peek()));
+        assertTrue(writes > 100, "Only " + writes + " writes");
+        assertTrue(reads.get() > 10, "Only " + reads.get() + " reads");
+        assertEquals(2002, service.getAllMovies().size());
+        assertEquals(writes + 1, service.getMovieById(COUNTER).get().getDuration());
+    }
+
+    @Test
+    public void testConcurrentCreatesGetDistinctIds() throws Exception {
+        MovieService service = new MovieService(syntheticCatalog(100));
+        int threads = 4;
+        int perThread = 250;
+        CountDownLatch start = new CountDownLatch(1);
+        ConcurrentLinkedQueue<Long> created = new ConcurrentLinkedQueue<>();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread writer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    created.add(service.createMovie(id -> new Movie(id, "Created " + id, "Someone", 2020,
+                        "Drama", "New", 100, 4.0)).getMovieId());
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(threads * perThread, new HashSet<>(created).size());
+        assertEquals(100 + threads * perThread, service.getAllMovies().size());
+        for (long id : created) {
+            assertTrue(id > 100);
+            assertEquals("Created " + id, service.getMovieById(id).get().getMovieName());
+        }
+    }
+
+    @Test
+    public void testCreateUpdateDeleteInPlace() {
+        MovieService service = new MovieService(syntheticCatalog(10));
+        assertFalse(service.createMovie(new Movie(5, "Taken", "Someone", 2020, "Drama", "", 100, 4.0)).isPresent());
+        assertFalse(service.updateMovie(new Movie(99, "Missing", "Someone", 2020, "Drama", "", 100, 4.0)).isPresent());
+
+        assertTrue(service.updateMovie(new Movie(5, "Renamed", "Someone", 2020, "Western", "", 100, 4.0)).isPresent());
+        assertEquals(4, service.getAllMovies().indexOf(service.getMovieById(5L).get()), "Update keeps catalog order");
+        assertTrue(service.getAllGenres().contains("Western"));
+        assertEquals(1, service.searchMovies("renamed", null, null).size());
+
+        assertTrue(service.deleteMovie(5).isPresent());
+        assertFalse(service.getMovieById(5L).isPresent());
+        assertFalse(service.getAllGenres().contains("Western"));
+        assertFalse(service.deleteMovie(5).isPresent());
+        // Deleted IDs are not handed out again
+        assertEquals(11, service.createMovie(id -> new Movie(id, "New", "Someone", 2020, "Drama", "", 100, 4.0))
+            .getMovieId());
+    }
+
+    @Test
+    public void testAdminEndpoints() {
+        context = new SpringApplicationBuilder(MoviesApplication.class)
+            .run("--server.port=0", "--spring.main.banner-mode=off", "--movies.analytics.file=",
+                "--movies.admin.catalog-writes=true", "--movies.admin.password=" + ADMIN_PASSWORD);
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        RestTemplate client = new RestTemplate();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpHeaders anonymous = new HttpHeaders();
+        anonymous.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBasicAuth("admin", ADMIN_PASSWORD);
+        JSONObject movie = new JSONObject()
+            .put("movieName", "The Kraken Rises")
+            .put("director", "Davy Jones")
+            .put("year", 2024)
+            .put("genre", "Adventure/Horror")
+            .put("description", "Something stirs below")
+            .put("duration", 131)
+            .put("imdbRating", 4.2);
+
+        // Without the admin's credentials nothing can be changed, or even read
+        assertEquals(401, status(() -> client.postForEntity(baseUrl + "/api/admin/movies",
+            new HttpEntity<>(movie.toString(), anonymous), String.class)));
+        assertEquals(401, status(() -> client.getForEntity(baseUrl + "/api/admin/memory", String.class)));
+        HttpHeaders wrongPassword = new HttpHeaders();
+        wrongPassword.setBasicAuth("admin", "not the password");
+        assertEquals(401, status(() -> client.exchange(baseUrl + "/api/admin/movies/1", HttpMethod.DELETE,
+            new HttpEntity<>(wrongPassword), String.class)));
+        assertTrue(context.getBean(MovieService.class).getMovieById(1L).isPresent());
+
+        ResponseEntity<String> created = client.postForEntity(baseUrl + "/api/admin/movies",
+            new HttpEntity<>(movie.toString(), headers), String.class);
+        assertEquals(201, created.getStatusCodeValue());
+        long id = new JSONObject(created.getBody()).getJSONObject("movie").getLong("id");
+        assertEquals("/movies/" + id + "/details", created.getHeaders().getLocation().toString());
+        String search = client.getForObject(baseUrl + "/api/movies/search?name=kraken", String.class);
+        assertEquals(1, new JSONObject(search).getInt("totalResults"));
+
+        ResponseEntity<String> updated = client.exchange(baseUrl + "/api/admin/movies/" + id, HttpMethod.PUT,
+            new HttpEntity<>(movie.put("movieName", "The Kraken Returns").toString(), headers), String.class);
+        assertEquals(200, updated.getStatusCodeValue());
+        search = client.getForObject(baseUrl + "/api/movies/search?name=kraken", String.class);
+        assertEquals("The Kraken Returns",
+            new JSONObject(search).getJSONArray("movies").getJSONObject(0).getString("movieName"));
+
+        assertEquals(409, status(() -> client.postForEntity(baseUrl + "/api/admin/movies",
+            new HttpEntity<>(movie.put("id", id).toString(), headers), String.class)));
+        assertEquals(400, status(() -> client.postForEntity(baseUrl + "/api/admin/movies",
+            new HttpEntity<>(new JSONObject(movie.toString()).put("id", JSONObject.NULL).put("year", 1500).toString(),
+                headers), String.class)));
+        assertEquals(400, status(() -> client.postForEntity(baseUrl + "/api/admin/movies",
+            new HttpEntity<>("{\"movieName\": ", headers), String.class)));
+        assertEquals(400, status(() -> client.exchange(baseUrl + "/api/admin/movies/" + id, HttpMethod.PUT,
+            new HttpEntity<>(movie.put("id", id + 1).toString(), headers), String.class)));
+        assertEquals(404, status(() -> client.exchange(baseUrl + "/api/admin/movies/999999", HttpMethod.PUT,
+            new HttpEntity<>(movie.put("id", 999999).toString(), headers), String.class)));
+
+        ResponseEntity<String> deleted = client.exchange(baseUrl + "/api/admin/movies/" + id, HttpMethod.DELETE,
+            new HttpEntity<>(headers), String.class);
+        assertEquals(204, deleted.getStatusCodeValue());
+        assertEquals(404, status(() -> client.exchange(baseUrl + "/api/admin/movies/" + id, HttpMethod.DELETE,
+            new HttpEntity<>(headers), String.class)));
+        assertEquals(200, client.exchange(baseUrl + "/api/admin/memory", HttpMethod.GET, new HttpEntity<>(headers),
+            String.class).getStatusCodeValue());
+        Optional<Movie> gone = context.getBean(MovieService.class).getMovieById(id);
+        assertFalse(gone.isPresent());
+    }
+
+    @Test
+    public void testCatalogWritesAreOffByDefault() {
+        context = new SpringApplicationBuilder(MoviesApplication.class)
+            .run("--server.port=0", "--spring.main.banner-mode=off", "--movies.analytics.file=",
+                "--movies.admin.password=" + ADMIN_PASSWORD);
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBasicAuth("admin", ADMIN_PASSWORD);
+        assertEquals(404, status(() -> new RestTemplate().exchange(baseUrl + "/api/admin/movies/1", HttpMethod.DELETE,
+            new HttpEntity<>(headers), String.class)));
+        assertTrue(context.getBean(MovieService.class).getMovieById(1L).isPresent());
+    }
+
+    private static int status(Runnable request) {
+        try {
+            request.run();
+            return 200;
+        } catch (HttpStatusCodeException e) {
+            return e.getRawStatusCode();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the dictionary-encoded director and genre fields and the catalog memory
+ * footprint report.
+ */
+public class CatalogFootprintTest {
+
+    private static final String[] GENRES = {"Drama", "Action/Crime", "Adventure/Fantasy", "Action/Sci-Fi",
+        "Crime/Drama", "Comedy", "Horror/Thriller", "Drama/Romance"};
+
+    @Test
+    public void testMoviesShareDirectorAndGenreStrings() {
+        // Separate instances, as read from JSON or the file store
+        Movie first = new Movie(1L, "Sea Battle", new String("Admiral Storm"), 2022, new String("Action/Adventure"),
+            "Naval combat", 140, 4.0);
+        Movie second = new Movie(2L, "Sea Battle II", new String("Admiral Storm"), 2024, new String("Action/Adventure"),
+            "More naval combat", 135, 3.5);
+
+        assertEquals("Admiral Storm", first.getDirector());
+        assertEquals("Action/Adventure", first.getGenre());
+        assertEquals("action/adventure", first.getNormalizedGenre());
+        assertSame(first.getDirector(), second.getDirector());
+        assertSame(first.getGenre(), second.getGenre());
+        assertSame(first.getNormalizedGenre(), second.getNormalizedGenre());
+
+        Movie anonymous = new Movie(3L, "Unknown Voyage", null, 2001, "Drama", "Nobody knows", 90, 3.0);
+        assertNull(anonymous.getDirector());
+        assertThrows(NullPointerException.class,
+            () -> new Movie(4L, "No Genre", "Someone", 2001, null, "Missing genre", 90, 3.0));
+    }
+
+    @Test
+    public void testDictionaryIsConsistentAcrossThreads() throws Exception {
+        StringDictionary dictionary = new StringDictionary();
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        List<StringDictionary.Term[]> terms = new ArrayList<>();
+        try {
+            List<Future<StringDictionary.Term[]>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(threads.submit(() -> {
+                    StringDictionary.Term[] interned = new StringDictionary.Term[5000];
+                    for (int i = 0; i < interned.length; i++) {
+                        interned[i] = dictionary.intern("Value " + i);
+                        assertEquals("value " + i, interned[i].normalized);
+                    }
+                    return interned;
+                }));
+            }
+            for (Future<StringDictionary.Term[]> result : results) {
+                terms.add(result.get());
+            }
+        } finally {
+            threads.shutdown();
+        }
+        for (int i = 0; i < 5000; i++) {
+            assertSame(terms.get(0)[i], terms.get(3)[i]);
+            assertSame(terms.get(0)[i], dictionary.intern("Value " + i));
+            assertEquals("Value " + i, terms.get(0)[i].value);
+        }
+        assertEquals(5000, dictionary.size());
+        assertNull(dictionary.intern(null));
+    }
+
+    @Test
+    public void testDictionaryDropsTermsNoMovieHolds() {
+        StringDictionary dictionary = new StringDictionary();
+        StringDictionary.Term kept = dictionary.intern("Kept Director");
+        StringDictionary.Term removed = dictionary.intern("Removed Director 0");
+        for (int i = 1; i < 1000; i++) {
+            dictionary.intern("Removed Director " + i);
+        }
+        assertEquals(1001, dictionary.size());
+
+        // What the garbage collector does once the last movie holding a term is gone
+        for (int i = 0; i < 1000; i++) {
+            dictionary.reclaim("Removed Director " + i);
+        }
+        assertEquals(1, dictionary.size());
+        assertSame(kept, dictionary.intern("Kept Director"));
+        StringDictionary.Term readded = dictionary.intern("Removed Director 0");
+        assertNotSame(removed, readded);
+        assertEquals("Removed Director 0", readded.value);
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    public void testFootprintCountsOnlyDirectorsInUse() {
+        List<Movie> catalog = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            catalog.add(new Movie(i, "Footprint Movie " + i, "Footprint Director " + i, 2000, "Drama",
+                "Description", 100, 3.0));
+        }
+        MovieService movieService = new MovieService(catalog);
+        try {
+            assertEquals(100, movieService.getFootprint().getDistinctDirectors());
+            long dictionaryBytes = movieService.getFootprint().getDictionaryBytes();
+            for (long id = 1; id <= 50; id++) {
+                movieService.deleteMovie(id);
+            }
+            CatalogFootprint footprint = movieService.getFootprint();
+            assertEquals(50, footprint.getDistinctDirectors());
+            assertEquals(1, footprint.getDistinctGenres());
+            assertTrue(footprint.getDictionaryBytes() < dictionaryBytes);
+        } finally {
+            movieService.shutdown();
+        }
+    }
+
+    @Test
+    public void testFootprintReportsSavingsOfEncoding() {
+        int size = 200_000;
+        Random random = new Random(42);
+        List<Movie> catalog = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            catalog.add(new Movie(i, "Synthetic Movie " + i, "Director " + random.nextInt(size / 20),
+                1920 + random.nextInt(100), new String(GENRES[random.nextInt(GENRES.length)]), "Description " + i,
+                80 + random.nextInt(100), random.nextInt(11) / 2.0));
+        }
+
+        CatalogFootprint footprint = new MovieService(catalog).getFootprint();
+        assertEquals(size, footprint.getMovies());
+        assertTrue(footprint.getDistinctGenres() >= GENRES.length);
+        assertTrue(footprint.getDistinctDirectors() >= size / 20 - 100);
+        assertEquals(footprint.getTotalBytes(), footprint.getUnencodedBytes() - footprint.getSavedBytes());
+        assertTrue(footprint.getMovieBytes() + footprint.getDictionaryBytes() < footprint.getTotalBytes());
+        // Each movie saves its director string, two genre strings and four bytes of references
+        assertTrue(footprint.getSavedBytes() > size * 100L,
+            "Expected over 100 bytes saved per movie, saved " + footprint.getSavedBytes());
+        assertEquals((double) footprint.getTotalBytes() / size, footprint.getBytesPerMovie(), 1e-9);
+    }
+
+    @Test
+    public void testStringSizeEstimates() {
+        assertEquals(0, CatalogFootprint.stringBytes(null));
+        assertEquals(24 + 16, CatalogFootprint.stringBytes(""));
+        assertEquals(24 + 24, CatalogFootprint.stringBytes("Admiral"));
+        assertEquals(24 + 40, CatalogFootprint.stringBytes("⚓ Anchors"));
+        assertEquals(56, CatalogFootprint.MOVIE_BYTES);
+        assertEquals(64, CatalogFootprint.UNENCODED_MOVIE_BYTES);
+    }
+}
@@ -0,0 +1,28 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Waits in tests for an index that a service builds in the background.
+ */
+final class CatalogIndexes {
+
+    private CatalogIndexes() {
+    }
+
+    /**
+     * @param currentIndex Returns the index, or null while it is not built
+     * @return the first index built, within ten seconds
+     */
+    static <T> T awaitBuilt(Supplier<T> currentIndex) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        T index;
+        while ((index = currentIndex.get()) == null) {
+            assertTrue(System.currentTimeMillis() < deadline, "index was not built");
+            Thread.sleep(10);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,182 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the change log and for applying replicated changes to MovieService.
+ */
+public class CatalogReplicationTest {
+
+    private MovieService leader;
+    private MovieService follower;
+
+    private static Movie movie(long id, String name, String genre) {
+        return new Movie(id, name, "Captain Hook", 2023, genre, "A swashbuckling adventure", 120, 4.5);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        leader = new MovieService();
+        follower = new MovieService();
+    }
+
+    @Test
+    public void testChangeLogServesChangesAfterVersion() {
+        CatalogChangeLog log = new CatalogChangeLog(4, 0);
+        for (long v = 1; v <= 3; v++) {
+            log.append(CatalogChange.delete(v, v));
+        }
+        List<CatalogChange> changes = log.changesSince(1, 10);
+        assertEquals(2, changes.size());
+        assertEquals(2, changes.get(0).getVersion());
+        assertEquals(3, changes.get(1).getVersion());
+        assertEquals(1, log.changesSince(1, 1).size());
+        assertTrue(log.changesSince(3, 10).isEmpty());
+    }
+
+    @Test
+    public void testChangeLogRequiresSnapshotWhenHistoryIsGone() {
+        CatalogChangeLog log = new CatalogChangeLog(4, 0);
+        for (long v = 1; v <= 10; v++) {
+            log.append(CatalogChange.delete(v, v));
+        }
+        assertEquals(6, log.getBaseVersion());
+        assertNull(log.changesSince(5, 10));
+        assertNull(log.changesSince(-1, 10));
+        assertNull(log.changesSince(11, 10));
+        assertEquals(4, log.changesSince(6, 10).size());
+    }
+
+    @Test
+    public void testChangeLogRequiresSnapshotFromAnotherEpoch() {
+        CatalogChangeLog log = new CatalogChangeLog(4, 0, "first");
+        log.append(CatalogChange.delete(1, 1));
+        assertEquals(1, log.changesSince("first", 0, 10).size());
+        // The same version of another history says nothing about this one
+        assertNull(log.changesSince("restarted", 0, 10));
+        assertNull(log.changesSince("", 0, 10));
+
+        log.reset(7, "leader");
+        assertEquals("leader", log.getEpoch());
+        assertNull(log.changesSince("first", 1, 10));
+        assertTrue(log.changesSince("leader", 7, 10).isEmpty());
+    }
+
+    @Test
+    public void testChangeLogRejectsGaps() {
+        CatalogChangeLog log = new CatalogChangeLog(4, 0);
+        assertThrows(IllegalStateException.class, () -> log.append(CatalogChange.delete(2, 1)));
+    }
+
+    @Test
+    public void testListenersRunWhenChangeArrives() {
+        CatalogChangeLog log = new CatalogChangeLog(4, 0);
+        AtomicInteger woken = new AtomicInteger();
+        Runnable waiting = woken::incrementAndGet;
+        Runnable cancelled = () -> fail("cancelled listener ran");
+        log.whenNewerThan(0, waiting);
+        log.whenNewerThan(0, cancelled);
+        log.cancel(cancelled);
+        assertEquals(0, woken.get());
+
+        log.append(CatalogChange.delete(1, 1));
+        assertEquals(1, woken.get());
+        // Already newer: runs at once; up to date: waits for the next change or a reset
+        log.whenNewerThan(0, woken::incrementAndGet);
+        assertEquals(2, woken.get());
+        log.whenNewerThan(1, woken::incrementAndGet);
+        log.append(CatalogChange.delete(2, 2));
+        log.whenNewerThan(2, woken::incrementAndGet);
+        log.reset(10, "other");
+        assertEquals(4, woken.get());
+    }
+
+    @Test
+    public void testLocalChangesUpdateIndexesIncrementally() {
+        long versionBefore = leader.getCatalogVersion();
+        leader.saveMovie(movie(13L, "The Pirate's Treasure", "Pirate"));
+
+        assertEquals(13, leader.getAllMovies().size());
+        assertTrue(leader.getMovieById(13L).isPresent());
+        assertTrue(leader.getAllGenres().contains("Pirate"));
+        assertEquals(1, leader.searchMovies("treasure", null, null).size());
+        assertTrue(leader.getCatalogVersion() > versionBefore);
+
+        assertTrue(leader.deleteMovie(13L).isPresent());
+        assertFalse(leader.deleteMovie(13L).isPresent());
+        assertFalse(leader.getMovieById(13L).isPresent());
+        assertFalse(leader.getAllGenres().contains("Pirate"));
+        assertTrue(leader.searchMovies("treasure", null, null).isEmpty());
+        assertEquals(2, leader.getChangeLog().getLatestVersion());
+    }
+
+    @Test
+    public void testUpdateKeepsCatalogPosition() {
+        leader.saveMovie(movie(1L, "The Prison Escape: Director's Cut", "Drama"));
+        assertEquals("The Prison Escape: Director's Cut", leader.getAllMovies().get(0).getMovieName());
+        assertEquals(12, leader.getAllMovies().size());
+    }
+
+    @Test
+    public void testFollowerAppliesLeaderChanges() {
+        leader.saveMovie(movie(13L, "The Pirate's Treasure", "Pirate"));
+        leader.deleteMovie(2L);
+        leader.saveMovie(movie(14L, "Sea Battle", "Action"));
+
+        MovieService.CatalogSnapshot snapshot = leader.getCatalogSnapshot();
+        follower.installSnapshot(snapshot.getMovies(), snapshot.getVersion(), snapshot.getEpoch());
+        assertEquals(leader.getAllMovies().size(), follower.getAllMovies().size());
+
+        leader.saveMovie(movie(15L, "Treasure Island", "Adventure"));
+        List<CatalogChange> changes = leader.getChangeLog().changesSince(snapshot.getVersion(), 100);
+        assertTrue(follower.applyReplicatedChanges(changes));
+        // Re-delivered changes are skipped
+        assertTrue(follower.applyReplicatedChanges(changes));
+
+        assertEquals(leader.getAllMovies().size(), follower.getAllMovies().size());
+        assertEquals(1, follower.searchMovies("treasure island", null, null).size());
+        assertEquals(leader.getChangeLog().getLatestVersion(), follower.getChangeLog().getLatestVersion());
+        assertEquals(leader.getChangeLog().getEpoch(), follower.getChangeLog().getEpoch());
+    }
+
+    @Test
+    public void testRestartedLeaderStartsNewEpoch() {
+        leader.saveMovie(movie(13L, "The Pirate's Treasure", "Pirate"));
+        CatalogChangeLog before = leader.getChangeLog();
+
+        // A restarted leader counts versions from zero again, with other changes behind them
+        MovieService restarted = new MovieService();
+        restarted.saveMovie(movie(14L, "Sea Battle", "Action"));
+        CatalogChangeLog after = restarted.getChangeLog();
+        assertEquals(before.getLatestVersion(), after.getLatestVersion());
+        assertNotEquals(before.getEpoch(), after.getEpoch());
+        assertNull(after.changesSince(before.getEpoch(), 0, 10));
+        assertEquals(1, after.changesSince(after.getEpoch(), 0, 10).size());
+    }
+
+    @Test
+    public void testFollowerRejectsChangesWithGap() {
+        List<CatalogChange> changes = Arrays.asList(
+            CatalogChange.upsert(5, movie(13L, "The Pirate's Treasure", "Pirate")));
+        assertFalse(follower.applyReplicatedChanges(changes));
+        assertFalse(follower.getMovieById(13L).isPresent());
+    }
+
+    @Test
+    public void testSnapshotInvalidatesCachedSearches() {
+        assertEquals(1, follower.searchMovies("prison", null, null).size());
+        follower.installSnapshot(Arrays.asList(movie(20L, "Sea Battle", "Action")), 7, "leader-epoch");
+
+        assertTrue(follower.searchMovies("prison", null, null).isEmpty());
+        assertEquals(1, follower.getAllMovies().size());
+        assertEquals(Arrays.asList("Action"), follower.getAllGenres());
+        assertEquals(7, follower.getChangeLog().getLatestVersion());
+    }
+}
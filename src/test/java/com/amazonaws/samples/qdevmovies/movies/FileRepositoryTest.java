@@ -0,0 +1,280 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the embedded file-backed movie and review repositories.
+ */
+public class FileRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private Path moviesFile;
+    private FileMovieRepository movies;
+
+    private static Movie movie(long id, String director, int year, String genre) {
+        return new Movie(id, "Movie " + id, director, year, genre, "A swashbuckling adventure", 120, 4.5);
+    }
+
+    private static List<Long> ids(List<Movie> movies) {
+        return movies.stream().map(Movie::getId).collect(Collectors.toList());
+    }
+
+    // Movies found by position, to compare with findAll
+    private static List<Movie> positions(FileMovieRepository repository) {
+        List<Movie> movies = new ArrayList<>();
+        for (int position = 0; position < repository.count(); position++) {
+            movies.add(repository.findByPosition(position));
+        }
+        return movies;
+    }
+
+    @BeforeEach
+    public void setUp() {
+        moviesFile = directory.resolve("movies.db");
+        movies = new FileMovieRepository(moviesFile, false);
+        movies.replaceAll(new JsonMovieRepository().findAll());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        movies.close();
+    }
+
+    private FileMovieRepository reopen() {
+        movies.close();
+        movies = new FileMovieRepository(moviesFile, false);
+        return movies;
+    }
+
+    @Test
+    public void testIndexedQueriesMatchJsonRepository() {
+        JsonMovieRepository json = new JsonMovieRepository();
+        assertEquals(json.count(), movies.count());
+        assertEquals(ids(json.findAll()), ids(movies.findAll()));
+        assertEquals(ids(json.findByGenre("drama")), ids(movies.findByGenre("Drama")));
+        assertEquals(ids(json.findByDirector("john director")), ids(movies.findByDirector("John Director")));
+        assertEquals(ids(json.findByYearBetween(1990, 2000)), ids(movies.findByYearBetween(1990, 2000)));
+        assertEquals("The Prison Escape", movies.findById(1L).get().getMovieName());
+        assertFalse(movies.findById(999L).isPresent());
+        assertTrue(movies.findByYearBetween(2000, 1990).isEmpty());
+    }
+
+    @Test
+    public void testYearRangeIsOrderedByYear() {
+        List<Movie> range = movies.findByYearBetween(1900, 2100);
+        assertEquals(movies.count(), range.size());
+        for (int i = 1; i < range.size(); i++) {
+            assertTrue(range.get(i - 1).getYear() <= range.get(i).getYear());
+        }
+    }
+
+    @Test
+    public void testUpdatesAndDeletesSurviveReopen() {
+        movies.save(movie(100L, "Captain Hook", 1720, "Pirate"));
+        movies.save(movie(1L, "Captain Hook", 1721, "Pirate"));
+        assertTrue(movies.deleteById(2L));
+        assertFalse(movies.deleteById(2L));
+
+        FileMovieRepository reopened = reopen();
+        assertEquals(12, reopened.count());
+        assertFalse(reopened.findById(2L).isPresent());
+        assertEquals(Arrays.asList(1L, 100L), ids(reopened.findByGenre("pirate")));
+        assertEquals(Arrays.asList(100L, 1L), ids(reopened.findByYearBetween(1700, 1800)));
+        assertFalse(ids(reopened.findByGenre("Drama")).contains(1L));
+        // An update keeps the movie's original position
+        assertEquals(1L, reopened.findAll().get(0).getId());
+    }
+
+    @Test
+    public void testTornTailIsDiscardedOnOpen() throws IOException {
+        movies.save(movie(100L, "Captain Hook", 1720, "Pirate"));
+        movies.close();
+        long intactSize = Files.size(moviesFile);
+        try (FileChannel channel = FileChannel.open(moviesFile, StandardOpenOption.WRITE)) {
+            // A record header promising more bytes than were written
+            channel.write(java.nio.ByteBuffer.wrap(new byte[] {0, 0, 0, 100, 1, 2, 3}), intactSize);
+        }
+
+        movies = new FileMovieRepository(moviesFile, false);
+        assertEquals(13, movies.count());
+        assertEquals(intactSize, Files.size(moviesFile));
+        movies.save(movie(101L, "Captain Hook", 1720, "Pirate"));
+        assertEquals(14, reopen().count());
+    }
+
+    @Test
+    public void testCompactionDropsSupersededRecords() throws IOException {
+        for (int i = 0; i < 2000; i++) {
+            movies.save(movie(1L + (i % 3), "Captain Hook", 1700 + i, "Pirate"));
+        }
+        // The saves started a compaction in the background
+        movies.awaitCompaction();
+        assertTrue(movies.getGarbageRecords() <= 1000);
+        assertEquals(12, movies.count());
+
+        movies.compact();
+        assertEquals(0, movies.getGarbageRecords());
+        assertTrue(Files.size(moviesFile) < 12 * 200);
+        assertEquals(3698, reopen().findById(1L).get().getYear());
+        assertEquals(12, movies.count());
+        assertEquals(3, movies.findByGenre("Pirate").size());
+    }
+
+    @Test
+    public void testCompactionKeepsChangesMadeWhileCopying() throws InterruptedException {
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 3000; i++) {
+                movies.save(movie(100L + i % 50, "Captain Hook", 1700 + i, "Pirate"));
+                if (i == 1500) {
+                    movies.deleteById(1L);
+                }
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            movies.compact();
+        }
+        writer.join();
+        movies.awaitCompaction();
+
+        assertEquals(61, movies.count());
+        assertEquals(50, movies.findByGenre("Pirate").size());
+        FileMovieRepository reopened = reopen();
+        assertEquals(61, reopened.count());
+        assertFalse(reopened.findById(1L).isPresent());
+        for (int k = 0; k < 50; k++) {
+            assertEquals(1700 + 2950 + k, reopened.findById(100L + k).get().getYear());
+        }
+    }
+
+    @Test
+    public void testReplaceAllKeepsTheLastStateOfEachMovie() {
+        movies.replaceAll(Arrays.asList(movie(7L, "Admiral Storm", 2022, "Action"),
+            movie(8L, "Admiral Storm", 2023, "Action"), movie(7L, "Captain Hook", 1720, "Pirate")));
+        assertEquals(2, movies.count());
+        assertEquals(Arrays.asList(7L, 8L), ids(movies.findAll()));
+        assertEquals(Arrays.asList(8L), ids(movies.findByDirector("admiral storm")));
+        assertEquals(Arrays.asList(7L), ids(reopen().findByGenre("pirate")));
+    }
+
+    @Test
+    public void testReplaceAllRebuildsIndexes() {
+        movies.replaceAll(Arrays.asList(movie(7L, "Admiral Storm", 2022, "Action")));
+        assertEquals(1, movies.count());
+        assertTrue(movies.findByGenre("Drama").isEmpty());
+        assertEquals(Arrays.asList(7L), ids(reopen().findByDirector("admiral storm")));
+    }
+
+    @Test
+    public void testMovieServiceWritesThroughToStore() {
+        MovieService service = new MovieService(movies,
+            new SearchResultCache(SearchResultCache.DEFAULT_MAX_ENTRIES, SearchResultCache.DEFAULT_MAX_BYTES),
+            new ParallelSearchEngine(1, ParallelSearchEngine.DEFAULT_SEGMENT_SIZE));
+        service.saveMovie(movie(100L, "Captain Hook", 1720, "Pirate"));
+        service.deleteMovie(1L);
+        assertEquals(Arrays.asList(100L), ids(service.findMoviesByYearRange(1700, 1800)));
+        assertEquals(Arrays.asList(100L), ids(service.findMoviesByDirector(" captain hook ")));
+
+        FileMovieRepository reopened = reopen();
+        assertTrue(reopened.findById(100L).isPresent());
+        assertFalse(reopened.findById(1L).isPresent());
+        service.shutdown();
+    }
+
+    @Test
+    public void testSlotsStayWithTheirMovies() {
+        int slot = movies.slotOf(5L);
+        movies.save(movie(5L, "Captain Hook", 1720, "Pirate"));
+        assertEquals(slot, movies.slotOf(5L));
+        assertEquals("Captain Hook", movies.findBySlot(slot).getDirector());
+
+        assertTrue(movies.deleteById(2L));
+        assertEquals(-1, movies.slotOf(2L));
+        assertNull(movies.findBySlot(1));
+        assertEquals(12, movies.getSlotCount());
+        movies.save(movie(100L, "Captain Hook", 1720, "Pirate"));
+        assertEquals(12, movies.slotOf(100L));
+        assertEquals(ids(movies.findAll()), ids(positions(movies)));
+        assertNull(movies.findByPosition(12));
+
+        // Reopening renumbers the slots densely
+        FileMovieRepository reopened = reopen();
+        assertEquals(12, reopened.getSlotCount());
+        assertEquals(11, reopened.slotOf(100L));
+        assertEquals(ids(reopened.findAll()), ids(positions(reopened)));
+    }
+
+    @Test
+    public void testMovieServiceSearchesStoreInPlace() {
+        MovieService service = new MovieService(movies,
+            new SearchResultCache(SearchResultCache.DEFAULT_MAX_ENTRIES, SearchResultCache.DEFAULT_MAX_BYTES),
+            new ParallelSearchEngine(1, ParallelSearchEngine.DEFAULT_SEGMENT_SIZE));
+        MovieService memory = new MovieService(new JsonMovieRepository(),
+            new SearchResultCache(SearchResultCache.DEFAULT_MAX_ENTRIES, SearchResultCache.DEFAULT_MAX_BYTES),
+            new ParallelSearchEngine(1, ParallelSearchEngine.DEFAULT_SEGMENT_SIZE));
+        try {
+            assertEquals(ids(memory.searchMovies("the", null, null)), ids(service.searchMovies("the", null, null)));
+            assertEquals(ids(memory.searchMovies(null, null, "drama")), ids(service.searchMovies(null, null, "drama")));
+
+            service.saveMovie(movie(100L, "Captain Hook", 1720, "Pirate"));
+            service.saveMovie(movie(3L, "Captain Hook", 1721, "Pirate"));
+            service.deleteMovie(1L);
+            assertEquals(Arrays.asList(3L, 100L), ids(service.searchMovies(null, null, "Pirate")));
+            assertEquals(Arrays.asList(100L), ids(service.searchMovies("Movie 100", null, null)));
+            assertEquals("Captain Hook", service.getMovieById(3L).get().getDirector());
+            assertFalse(service.getMovieById(1L).isPresent());
+            assertEquals(12, service.getAllMovies().size());
+            assertEquals(ids(movies.findAll()), ids(service.getAllMovies()));
+            assertEquals(2L, service.getAllMovies().get(0).getId());
+            assertTrue(service.getAllGenres().contains("Pirate"));
+        } finally {
+            service.shutdown();
+            memory.shutdown();
+        }
+    }
+
+    @Test
+    public void testReviewsAreIndexedByMovieAndSurviveReopen() {
+        Path reviewsFile = directory.resolve("reviews.db");
+        FileReviewRepository reviews = new FileReviewRepository(reviewsFile, true);
+        JsonReviewRepository.seed(reviews);
+        JsonReviewRepository json = new JsonReviewRepository();
+        assertEquals(json.count(), reviews.count());
+        assertEquals(json.findByMovieId(1L).size(), reviews.findByMovieId(1L).size());
+
+        new ReviewService(reviews).addReview(1L, new Review("Captain Hook", "🏴‍☠️", 5.0, "Arrr, a fine tale!"));
+        reviews.close();
+
+        FileReviewRepository reopened = new FileReviewRepository(reviewsFile, true);
+        List<Review> movieReviews = new ReviewService(reopened).getReviewsForMovie(1L);
+        assertEquals(json.findByMovieId(1L).size() + 1, movieReviews.size());
+        assertEquals("Arrr, a fine tale!", movieReviews.get(movieReviews.size() - 1).getComment());
+        assertTrue(reopened.findByMovieId(999L).isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    public void testJsonRepositoriesAreReadOnly() {
+        assertThrows(UnsupportedOperationException.class,
+            () -> new ReviewService().addReview(1L, new Review("a", "b", 1.0, "c")));
+        assertThrows(UnsupportedOperationException.class,
+            () -> new JsonMovieRepository().save(movie(1L, "a", 2000, "b")));
+    }
+}
@@ -0,0 +1,124 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares writing a search API response with per-request Jackson serialization of every
+ * movie against embedding the pre-serialized fragments. Not part of the regular test run
+ * (the class name does not end in Test); run it with
+ * {@code mvn test -Dtest=MovieJsonBenchmark}.
+ */
+public class MovieJsonBenchmark {
+
+    private static final int CATALOG_SIZE = 5_000;
+    private static final int[] RESPONSE_SIZES = {10, 100, 1_000};
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+
+    /** Discards output but counts it, like a socket would consume it. */
+    private static final class CountingOutputStream extends OutputStream {
+        long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+
+    private interface ResponseWriter {
+        void write(OutputStream out) throws Exception;
+    }
+
+    @Test
+    public void benchmarkSearchResponseSerialization() throws Exception {
+        List<Movie> catalog = new ArrayList<>(CATALOG_SIZE);
+        for (int i = 1; i <= CATALOG_SIZE; i++) {
+            catalog.add(new Movie(i, "Synthetic Movie Number " + i, "Director " + (i % 500), 1950 + i % 70,
+                "Drama", "A long enough description of synthetic movie number " + i + " for realistic payloads",
+                90 + i % 60, (i % 10) / 2.0));
+        }
+        MovieService movieService = new MovieService(catalog);
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        System.out.printf("%-10s %14s %14s %14s %14s %8s%n",
+            "movies", "jackson ns/op", "fragment ns/op", "jackson B/op", "fragment B/op", "speedup");
+        for (int size : RESPONSE_SIZES) {
+            List<Movie> results = catalog.subList(0, size);
+            ResponseWriter jackson = out -> objectMapper.writeValue(out, response(results, size));
+            ResponseWriter fragments = out -> objectMapper.writeValue(out, response(movieService.toJsonArray(results), size));
+
+            assertArrayEquals(objectMapper.writeValueAsBytes(response(results, size)),
+                objectMapper.writeValueAsBytes(response(movieService.toJsonArray(results), size)));
+
+            double[] jacksonCost = measure(jackson);
+            double[] fragmentCost = measure(fragments);
+            System.out.printf("%-10d %14.0f %14.0f %14.0f %14.0f %7.1fx%n",
+                size, jacksonCost[0], fragmentCost[0], jacksonCost[1], fragmentCost[1], jacksonCost[0] / fragmentCost[0]);
+        }
+        movieService.shutdown();
+    }
+
+    private static Map<String, Object> response(Object movies, int totalResults) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("movies", movies);
+        response.put("totalResults", totalResults);
+        response.put("pirateMessage", "Ahoy! Found " + totalResults + " pieces of treasure!");
+        return response;
+    }
+
+    /**
+     * @return nanoseconds and allocated bytes per operation (allocation is -1 if the JVM
+     *         cannot report it)
+     */
+    private static double[] measure(ResponseWriter writer) throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd) {
+            writer.write(out);
+        }
+
+        com.sun.management.ThreadMXBean threadBean = threadBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadBean != null ? threadBean.getThreadAllocatedBytes(threadId) : 0;
+        long operations = 0;
+        long start = System.nanoTime();
+        long end = start + MEASURE_NANOS;
+        long now;
+        do {
+            for (int i = 0; i < 16; i++) {
+                writer.write(out);
+            }
+            operations += 16;
+            now = System.nanoTime();
+        } while (now < end);
+        long allocated = threadBean != null ? threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore : -operations;
+        assertTrue(out.bytes > 0);
+        return new double[] {(double) (now - start) / operations, (double) allocated / operations};
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+            if (threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled()) {
+                return threadBean;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,117 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that pre-serialized movie fragments produce exactly the JSON that serializing the
+ * movies on every request did, and that fragments follow catalog changes.
+ */
+public class MovieJsonFragmentsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MovieService movieService;
+
+    @BeforeEach
+    public void setUp() {
+        movieService = new MovieService();
+    }
+
+    private static Map<String, Object> searchResponse(Object movies, int totalResults) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("movies", movies);
+        response.put("totalResults", totalResults);
+        response.put("pirateMessage", "Ahoy! Found " + totalResults + " pieces of treasure!");
+        return response;
+    }
+
+    /**
+     * Compares the UTF-8 output used for HTTP responses. (Jackson's byte and character
+     * generators differ in how they write characters outside the BMP, e.g. emoji icons.)
+     */
+    private String json(Object value) throws Exception {
+        return new String(objectMapper.writeValueAsBytes(value), StandardCharsets.UTF_8);
+    }
+
+    private void assertSameJson(List<Movie> movies) throws Exception {
+        MovieJsonArray array = movieService.toJsonArray(movies);
+        assertArrayEquals(objectMapper.writeValueAsBytes(searchResponse(movies, movies.size())),
+            objectMapper.writeValueAsBytes(searchResponse(array, movies.size())));
+    }
+
+    @Test
+    public void testOutputMatchesJacksonSerialization() throws Exception {
+        assertSameJson(movieService.getAllMovies());
+        assertSameJson(movieService.searchMovies("the", null, null));
+        assertSameJson(Collections.emptyList());
+    }
+
+    @Test
+    public void testEscapingAndNonAsciiMatchJacksonSerialization() throws Exception {
+        movieService.saveMovie(new Movie(13L, "The \"Pirate's\" Treasure \\ 🏴‍☠️", "Capitán Garfio", 2023,
+            "Adventure", "Line one\nLine two\t\u0001 </script>", 120, 4.55));
+        assertSameJson(Arrays.asList(movieService.getMovieById(13L).get(), movieService.getMovieById(1L).get()));
+    }
+
+    @Test
+    public void testFragmentsAreReusedUntilTheMovieChanges() throws Exception {
+        MovieJsonFragments fragments = new MovieJsonFragments(objectMapper);
+        Movie movie = movieService.getMovieById(1L).get();
+        MovieJsonFragments.Fragment first = fragments.fragment(movie, 1);
+        assertSame(first, fragments.fragment(movie, 1));
+        // Changes to other movies leave the fragment in place
+        assertSame(first, fragments.fragment(movie, 2));
+        assertEquals(1, fragments.size());
+
+        Movie renamed = new Movie(1L, "The Great Escape", movie.getDirector(), movie.getYear(), movie.getGenre(),
+            movie.getDescription(), movie.getDuration(), movie.getImdbRating());
+        assertEquals(json(renamed), fragments.fragment(renamed, 2).getValue());
+        // Fragments for movies read at an older version are served but not cached
+        fragments.fragment(movie, 1);
+        assertEquals(json(renamed), fragments.fragment(renamed, 2).getValue());
+        assertEquals(1, fragments.size());
+    }
+
+    @Test
+    public void testFragmentCacheIsBoundedByCountAndBytes() {
+        MovieFragmentCache<String> cache = new MovieFragmentCache<>(100, 20_000, CatalogFootprint::stringBytes);
+        for (long id = 1; id <= 1_000; id++) {
+            Movie movie = new Movie(id, "Movie " + id, "Captain Hook", 1720, "Pirate", "Arrr", 120, 4.5);
+            assertEquals(movie.getMovieName(), cache.get(movie, 1, Movie::getMovieName));
+        }
+        assertTrue(cache.size() <= 100, "Cache grew past its entry bound: " + cache.size());
+        assertTrue(cache.estimatedBytes() <= 20_000);
+
+        MovieFragmentCache<String> small = new MovieFragmentCache<>(1_000, 2_000, CatalogFootprint::stringBytes);
+        for (long id = 1; id <= 100; id++) {
+            small.get(new Movie(id, "Movie " + id, "Captain Hook", 1720, "Pirate", "Arrr", 120, 4.5), 1,
+                Movie::getDescription);
+        }
+        assertTrue(small.estimatedBytes() <= 2_000);
+        assertTrue(small.size() < 100);
+    }
+
+    @Test
+    public void testServiceServesUpdatedMovieJson() throws Exception {
+        String before = json(movieService.toJsonArray(movieService.getAllMovies()));
+        assertTrue(before.contains("\"movieName\":\"The Prison Escape\""));
+
+        Movie movie = movieService.getMovieById(1L).get();
+        movieService.saveMovie(new Movie(1L, "The Great Escape", movie.getDirector(), movie.getYear(),
+            movie.getGenre(), movie.getDescription(), movie.getDuration(), movie.getImdbRating()));
+        String after = json(movieService.toJsonArray(movieService.getAllMovies()));
+        assertFalse(after.contains("The Prison Escape"));
+        assertTrue(after.contains("\"movieName\":\"The Great Escape\",\"director\":\"John Director\""));
+        assertEquals(json(movieService.getAllMovies()), after);
+    }
+}
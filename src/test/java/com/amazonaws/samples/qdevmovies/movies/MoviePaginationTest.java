@@ -0,0 +1,192 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the paginated HTML listings, the infinite-scroll fragment and the rendered card
+ * cache against a running instance of the application.
+ */
+public class MoviePaginationTest {
+
+    private static final Pattern CARD = Pattern.compile("<div class=\"movie-card\">");
+    private static final Pattern DETAILS_LINK = Pattern.compile("href=\"/movies/(\\d+)/details\"");
+
+    private ConfigurableApplicationContext context;
+
+    private String start(String... properties) {
+        String[] args = new String[properties.length + 3];
+        args[0] = "--server.port=0";
+        args[1] = "--spring.main.banner-mode=off";
+        args[2] = "--movies.analytics.file=";
+        for (int i = 0; i < properties.length; i++) {
+            args[i + 3] = "--" + properties[i];
+        }
+        context = new SpringApplicationBuilder(MoviesApplication.class).run(args);
+        return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    private static int count(Pattern pattern, String html) {
+        Matcher matcher = pattern.matcher(html);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    private static List<Long> movieIds(String html) {
+        List<Long> ids = new ArrayList<>();
+        Matcher matcher = DETAILS_LINK.matcher(html);
+        while (matcher.find()) {
+            ids.add(Long.parseLong(matcher.group(1)));
+        }
+        return ids;
+    }
+
+    private void addMovies(int count) {
+        MovieService movieService = context.getBean(MovieService.class);
+        for (int i = 0; i < count; i++) {
+            int n = i;
+            movieService.createMovie(id -> new Movie(id, "Generated Voyage " + n, "Director " + (n % 40), 1950 + n % 70,
+                n % 2 == 0 ? "Adventure" : "Drama", "Generated", 90 + n % 60, 1 + n % 5));
+        }
+    }
+
+    @Test
+    public void testMoviePage() {
+        List<Movie> listing = new ArrayList<>();
+        for (long id = 1; id <= 5; id++) {
+            listing.add(new Movie(id, "Movie " + id, "Director", 2000, "Drama", "", 100, 3.0));
+        }
+        MoviePage first = MoviePage.of(listing, 0, 2);
+        assertEquals(1, first.getPage());
+        assertEquals(3, first.getPageCount());
+        assertEquals(5, first.getTotalMovies());
+        assertEquals(listing.subList(0, 2), first.getMovies());
+        assertTrue(first.hasNext());
+
+        MoviePage last = MoviePage.of(listing, 3, 2);
+        assertEquals(1, last.getMovies().size());
+        assertFalse(last.hasNext());
+
+        assertTrue(MoviePage.of(listing, 4, 2).getMovies().isEmpty());
+        assertEquals(1, MoviePage.of(new ArrayList<Movie>(), 1, 2).getPageCount());
+        assertThrows(IllegalArgumentException.class, () -> MoviePage.of(listing, 1, 0));
+    }
+
+    @Test
+    public void testListingPagesThroughCatalog() {
+        String base = start("movies.listing.page-size=10");
+        addMovies(95);
+        int total = context.getBean(MovieService.class).getAllMovies().size();
+
+        String firstPage = new RestTemplate().getForObject(base + "/movies", String.class);
+        assertEquals(10, count(CARD, firstPage));
+        assertTrue(firstPage.contains("Page 1 of " + MoviePage.pageCount(total, 10) + " (" + total + " movies)"));
+        assertTrue(firstPage.contains("href=\"/movies?page=2\""));
+        assertTrue(firstPage.contains("data-cards-url=\"/movies/cards?page=2\""));
+
+        // Following the fragment links visits every movie once, in catalog order
+        List<Long> seen = new ArrayList<>(movieIds(firstPage));
+        String next = "/movies/cards?page=2";
+        while (next != null) {
+            String fragment = new RestTemplate().getForObject(base + next, String.class);
+            assertFalse(fragment.contains("<html"));
+            seen.addAll(movieIds(fragment));
+            Matcher more = Pattern.compile("data-cards-url=\"([^\"]+)\"").matcher(fragment);
+            next = more.find() ? more.group(1) : null;
+        }
+        List<Long> expected = new ArrayList<>();
+        for (Movie movie : context.getBean(MovieService.class).getAllMovies()) {
+            expected.add(movie.getId());
+        }
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    public void testSearchResultsArePaged() {
+        String base = start("movies.listing.page-size=5");
+        addMovies(30);
+        String page = new RestTemplate().getForObject(base + "/movies/search?name=voyage&genre=drama&page=2", String.class);
+        assertEquals(5, count(CARD, page));
+        assertTrue(page.contains("Found 15 pieces of treasure"));
+        assertTrue(page.contains("href=\"/movies/search?name=voyage&amp;genre=drama&amp;page=1\""), page);
+        assertTrue(page.contains("data-cards-url=\"/movies/cards?name=voyage&amp;genre=drama&amp;page=3\""));
+
+        String fragment = new RestTemplate().getForObject(base + "/movies/cards?name=voyage&genre=drama&page=3", String.class);
+        assertEquals(5, count(CARD, fragment));
+        assertFalse(fragment.contains("data-cards-url"));
+
+        try {
+            new RestTemplate().getForObject(base + "/movies/cards?name=" + "a".repeat(101), String.class);
+            fail("Expected 400");
+        } catch (HttpStatusCodeException e) {
+            assertEquals(400, e.getRawStatusCode());
+        }
+    }
+
+    @Test
+    public void testLinksFollowContextPath() {
+        String base = start("movies.listing.page-size=2", "server.servlet.context-path=/fleet");
+        String page = new RestTemplate().getForObject(base + "/fleet/movies", String.class);
+        assertTrue(page.contains("href=\"/fleet/movies/1/details\""), page);
+        assertTrue(page.contains("href=\"/fleet/movies?page=2\""), page);
+        assertTrue(page.contains("data-cards-url=\"/fleet/movies/cards?page=2\""), page);
+
+        String fragment = new RestTemplate().getForObject(base + "/fleet/movies/cards?page=2", String.class);
+        assertTrue(fragment.contains("href=\"/fleet/movies/3/details\""), fragment);
+        assertTrue(fragment.contains("data-cards-url=\"/fleet/movies/cards?page=3\""), fragment);
+    }
+
+    @Test
+    public void testCardsAreRenderedOncePerMovieState() {
+        start();
+        MovieService movieService = context.getBean(MovieService.class);
+        MovieCardFragments cards = context.getBean(MovieCardFragments.class);
+        List<Movie> movies = movieService.getAllMovies().subList(0, 3);
+        RequestContextHolder.setRequestAttributes(
+            new ServletRequestAttributes(new MockHttpServletRequest(), new MockHttpServletResponse()));
+
+        List<String> first = cards.render(movies);
+        List<String> second = cards.render(movies);
+        for (int i = 0; i < first.size(); i++) {
+            assertSame(first.get(i), second.get(i));
+        }
+        assertTrue(first.get(0).startsWith("<div class=\"movie-card\">"), first.get(0));
+        assertTrue(first.get(0).contains(">" + movies.get(0).getDirector() + "<"));
+
+        Movie original = movies.get(0);
+        movieService.updateMovie(new Movie(original.getId(), "Renamed <Voyage>", original.getDirector(), original.getYear(),
+            original.getGenre(), original.getDescription(), original.getDuration(), original.getImdbRating()));
+        List<String> afterUpdate = cards.render(movieService.getAllMovies().subList(0, 3));
+        assertTrue(afterUpdate.get(0).contains("Renamed &lt;Voyage&gt;"), afterUpdate.get(0));
+        // Only the changed movie's card is rendered again
+        assertSame(first.get(1), afterUpdate.get(1));
+        assertSame(first.get(2), afterUpdate.get(2));
+        assertEquals(3, cards.size());
+    }
+}
@@ -0,0 +1,148 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the protobuf bodies written by {@link MovieProtobuf} back into maps, so tests can
+ * compare them with the JSON API.
+ */
+final class MovieProtobufDecoder {
+
+    private MovieProtobufDecoder() {
+    }
+
+    /**
+     * Decodes a {@code MovieListResponse} into the map shape of the JSON API. Fields
+     * that were not written (zero or empty values) are absent.
+     */
+    static Map<String, Object> decode(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        return decodeMessage(in, bytes.length, MovieProtobuf.MOVIE_LIST_RESPONSE);
+    }
+
+    /**
+     * @return the field with the number, or null for an unknown or reserved number
+     */
+    private static MovieProtobuf.Field field(MovieProtobuf.Field[] schema, int number) {
+        for (MovieProtobuf.Field field : schema) {
+            if (field.number == number) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, Object> decodeMessage(ByteBuffer in, int end, MovieProtobuf.Field[] schema) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        while (in.position() < end) {
+            long tag = readVarint(in);
+            int number = (int) (tag >>> 3);
+            int wireType = (int) (tag & 7);
+            MovieProtobuf.Field field = field(schema, number);
+            if (field == null) {
+                skip(in, wireType);
+                continue;
+            }
+            switch (field.type) {
+                case INT64:
+                    values.put(field.name, readVarint(in));
+                    break;
+                case INT32:
+                    values.put(field.name, (int) readVarint(in));
+                    break;
+                case DOUBLE:
+                    values.put(field.name, in.getDouble());
+                    break;
+                case STRING: {
+                    byte[] utf8 = new byte[(int) readVarint(in)];
+                    in.get(utf8);
+                    values.put(field.name, new String(utf8, StandardCharsets.UTF_8));
+                    break;
+                }
+                case STRINGS: {
+                    byte[] utf8 = new byte[(int) readVarint(in)];
+                    in.get(utf8);
+                    @SuppressWarnings("unchecked")
+                    List<Object> strings = (List<Object>) values.computeIfAbsent(field.name, k -> new ArrayList<>());
+                    strings.add(new String(utf8, StandardCharsets.UTF_8));
+                    break;
+                }
+                case PACKED_DOUBLES: {
+                    int length = (int) readVarint(in);
+                    int packedEnd = in.position() + length;
+                    @SuppressWarnings("unchecked")
+                    List<Object> numbers = (List<Object>) values.computeIfAbsent(field.name, k -> new ArrayList<>());
+                    while (in.position() < packedEnd) {
+                        numbers.add(in.getDouble());
+                    }
+                    break;
+                }
+                case CRITERIA: {
+                    int length = (int) readVarint(in);
+                    values.put(field.name, decodeMessage(in, in.position() + length, MovieProtobuf.SEARCH_CRITERIA));
+                    break;
+                }
+                case PLAN: {
+                    int length = (int) readVarint(in);
+                    values.put(field.name, decodeMessage(in, in.position() + length, MovieProtobuf.QUERY_PLAN));
+                    break;
+                }
+                case PLAN_CANDIDATES: {
+                    int length = (int) readVarint(in);
+                    @SuppressWarnings("unchecked")
+                    List<Object> candidates = (List<Object>) values.computeIfAbsent(field.name, k -> new ArrayList<>());
+                    candidates.add(decodeMessage(in, in.position() + length, MovieProtobuf.PLAN_CANDIDATE));
+                    break;
+                }
+                case MOVIES: {
+                    int length = (int) readVarint(in);
+                    @SuppressWarnings("unchecked")
+                    List<Object> movies = (List<Object>) values.computeIfAbsent(field.name, k -> new ArrayList<>());
+                    movies.add(decodeMessage(in, in.position() + length, MovieProtobuf.MOVIE));
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Unhandled field type " + field.type);
+            }
+        }
+        return values;
+    }
+
+    private static void skip(ByteBuffer in, int wireType) {
+        switch (wireType) {
+            case MovieProtobuf.VARINT:
+                readVarint(in);
+                break;
+            case MovieProtobuf.FIXED64:
+                in.position(in.position() + 8);
+                break;
+            case MovieProtobuf.LENGTH_DELIMITED:
+                int length = (int) readVarint(in);
+                in.position(in.position() + length);
+                break;
+            case 5:
+                in.position(in.position() + 4);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported protobuf wire type " + wireType);
+        }
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed protobuf varint");
+    }
+}
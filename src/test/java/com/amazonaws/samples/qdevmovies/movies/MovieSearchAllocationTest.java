@@ -0,0 +1,92 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guards the search scan against per-movie allocations (case folding, trimming, boxing).
+ * Uses the HotSpot per-thread allocation counter, so the check is skipped on JVMs that
+ * do not support it.
+ */
+public class MovieSearchAllocationTest {
+
+    private static final int CATALOG_SIZE = 100_000;
+    private static final String[] GENRES = {"Drama", "Action/Crime", "Adventure/Fantasy", "Sci-Fi", "Crime/Drama"};
+
+    @Test
+    public void testScanDoesNotAllocatePerMovie() {
+        com.sun.management.ThreadMXBean threadBean = threadBean();
+        if (threadBean == null) {
+            return;
+        }
+
+        List<Movie> catalog = new ArrayList<>(CATALOG_SIZE);
+        for (int i = 1; i <= CATALOG_SIZE; i++) {
+            catalog.add(new Movie(i, "Synthetic Movie Number " + i, "Director " + (i % 500), 1950 + i % 70,
+                GENRES[i % GENRES.length], "Description", 90 + i % 60, (i % 10) / 2.0));
+        }
+        // Single-threaded engine, so every row is scanned (and measured) on this thread
+        MovieService movieService = new MovieService(catalog,
+            new ParallelSearchEngine(1, ParallelSearchEngine.DEFAULT_SEGMENT_SIZE));
+
+        SearchCriteria[] queries = {
+            SearchCriteria.of("  NO SUCH MOVIE ", null, null),
+            SearchCriteria.of(null, null, "Western"),
+            SearchCriteria.of("movie", 424242L, "DRAMA"),
+            SearchCriteria.of("number 99999", null, "sci-fi")
+        };
+
+        // Warm up so the measurement covers compiled code, not class loading
+        for (int i = 0; i < 20; i++) {
+            for (SearchCriteria query : queries) {
+                movieService.filterMovies(query);
+            }
+        }
+
+        long threadId = Thread.currentThread().getId();
+        for (SearchCriteria query : queries) {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            List<Movie> results = movieService.filterMovies(query);
+            long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+            assertTrue(results.size() <= 1);
+            // A single allocation per movie would cost at least 16 bytes per row
+            assertTrue(allocated < CATALOG_SIZE,
+                "Search for " + query + " allocated " + allocated + " bytes over " + CATALOG_SIZE + " movies");
+        }
+    }
+
+    @Test
+    public void testCaseFoldingIsLocaleIndependent() {
+        java.util.Locale previous = java.util.Locale.getDefault();
+        try {
+            // Turkish maps 'I' to dotless 'ı', which would break "INDIE" -> "indie"
+            java.util.Locale.setDefault(new java.util.Locale("tr", "TR"));
+            List<Movie> catalog = new ArrayList<>();
+            catalog.add(new Movie(1L, "INDIE INVASION", "Some Director", 2001, "INDIE", "Description", 100, 4.0));
+            MovieService movieService = new MovieService(catalog);
+
+            assertEquals(1, movieService.searchMovies("invasion", null, "indie").size());
+        } finally {
+            java.util.Locale.setDefault(previous);
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        return threadBean;
+    }
+}
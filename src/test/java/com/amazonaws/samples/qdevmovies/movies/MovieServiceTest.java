@@ -246,4 +246,16 @@ public class MovieServiceTest {
         List<Movie> results = movieService.searchMovies(null, null, "Crime");
         assertTrue(results.isEmpty()); // Should not match "Crime/Drama"
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSearchResultsAreCachedByNormalizedCriteria() {
+        List<Movie> first = movieService.searchMovies("prison", null, "Drama");
+        List<Movie> second = movieService.searchMovies("  PRISON ", null, "drama");
+
+        assertSame(first, second);
+        SearchResultCache.Stats stats = movieService.getSearchCacheStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getSize());
+    }
+}
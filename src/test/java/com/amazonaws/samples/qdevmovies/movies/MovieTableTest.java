@@ -0,0 +1,107 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the chunked catalog table: changes keep each movie's slot and never alter a
+ * table that was already built.
+ */
+public class MovieTableTest {
+
+    private static Movie movie(long id) {
+        return new Movie(id, "Table Movie " + id, "Director " + (id % 7), 1960 + (int) (id % 60),
+            id % 2 == 0 ? "Drama" : "Comedy", "Description", 95, 3.0);
+    }
+
+    private static List<Movie> movies(int count) {
+        List<Movie> movies = new ArrayList<>(count);
+        for (long id = 1; id <= count; id++) {
+            movies.add(movie(id));
+        }
+        return movies;
+    }
+
+    @Test
+    public void testChangesKeepSlotsAndEarlierVersions() {
+        List<Movie> movies = movies(3000);
+        MovieTable first = MovieTable.of(movies);
+        MovieTable.Builder builder = first.toBuilder();
+        Movie replacement = movie(10);
+        builder.set(9, replacement);
+        builder.remove(2000);
+        int added = builder.add(movie(3001));
+        MovieTable second = builder.build();
+
+        assertEquals(3000, added);
+        assertSame(movies.get(9), first.get(9));
+        assertSame(replacement, second.get(9));
+        assertNull(second.get(2000));
+        assertEquals(3000, first.size());
+        assertEquals(3000, second.size());
+        assertEquals(3001, second.getSlotCount());
+        assertEquals(movies, first.asList());
+
+        List<Movie> expected = new ArrayList<>(movies);
+        expected.set(9, replacement);
+        expected.remove(2000);
+        expected.add(second.get(3000));
+        assertEquals(expected, new ArrayList<>(second.asList()));
+        for (int i = 0; i < expected.size(); i += 97) {
+            assertSame(expected.get(i), second.asList().get(i));
+        }
+    }
+
+    @Test
+    public void testBuilderKeepsBuiltVersionsUnchanged() {
+        MovieTable first = MovieTable.of(movies(5 * MovieTable.CHUNK_SIZE));
+        MovieTable.Builder builder = first.toBuilder();
+        Movie fourth = movie(4);
+        builder.set(3, fourth);
+        MovieTable second = builder.build();
+
+        // Chunks shared with a built table are copied again before the next change
+        builder.set(3, movie(4));
+        builder.remove(MovieTable.CHUNK_SIZE);
+        MovieTable third = builder.build();
+        assertSame(fourth, second.get(3));
+        assertNotSame(fourth, third.get(3));
+        assertNotNull(second.get(MovieTable.CHUNK_SIZE));
+        assertNull(third.get(MovieTable.CHUNK_SIZE));
+        assertEquals(5 * MovieTable.CHUNK_SIZE, second.size());
+        assertEquals(5 * MovieTable.CHUNK_SIZE - 1, third.size());
+        assertFalse(third.needsCompaction());
+    }
+
+    @Test
+    public void testServiceUpdatesInPlaceAndCompactsAfterDeletes() {
+        MovieService movieService = new MovieService(movies(4000));
+        try {
+            Movie updated = new Movie(1500, "Renamed", "Director", 1999, "Drama", "Description", 95, 4.0);
+            movieService.saveMovie(updated);
+            assertSame(updated, movieService.getAllMovies().get(1499));
+
+            for (long id = 1; id <= 3000; id++) {
+                assertTrue(movieService.deleteMovie(id).isPresent());
+            }
+            assertEquals(1000, movieService.getAllMovies().size());
+            assertEquals(3001, movieService.getAllMovies().get(0).getId());
+
+            // Slots were renumbered by the compaction; changes still find their movies
+            Movie moved = new Movie(3500, "Moved", "Director", 2001, "Comedy", "Description", 95, 2.0);
+            movieService.saveMovie(moved);
+            assertEquals(Optional.of(moved), movieService.getMovieById(3500L));
+            assertSame(moved, movieService.getAllMovies().get(499));
+            assertTrue(movieService.deleteMovie(4000).isPresent());
+            assertEquals(999, movieService.getAllMovies().size());
+            assertEquals(1, movieService.searchMovies("Moved", null, null).size());
+        } finally {
+            movieService.shutdown();
+        }
+    }
+}
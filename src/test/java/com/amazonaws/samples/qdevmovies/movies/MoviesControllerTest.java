@@ -1,13 +1,22 @@
 package com.amazonaws.samples.qdevmovies.movies;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.ui.Model;
 import org.springframework.ui.ExtendedModelMap;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -25,6 +34,9 @@ public class MoviesControllerTest {
     public void setUp() {
         moviesController = new MoviesController();
         model = new ExtendedModelMap();
+        // Listing pages render their cards in the web context of the current request
+        RequestContextHolder.setRequestAttributes(
+            new ServletRequestAttributes(new MockHttpServletRequest(), new MockHttpServletResponse()));
         
         // Create mock services with pirate-themed test data
         mockMovieService = new MovieService() {
@@ -46,14 +58,17 @@ public class MoviesControllerTest {
             }
             
             @Override
-            public List<Movie> searchMovies(String name, Long id, String genre) {
+            public List<Movie> searchMovies(SearchCriteria criteria) {
+                String name = criteria.getName();
+                Long id = criteria.getId();
+                String genre = criteria.getGenre();
                 List<Movie> allMovies = getAllMovies();
                 List<Movie> results = new ArrayList<>();
                 
                 for (Movie movie : allMovies) {
                     boolean matches = true;
                     
-                    if (id != null && !movie.getId().equals(id)) {
+                    if (id != null && movie.getId() != id) {
                         matches = false;
                     }
                     
@@ -73,6 +88,13 @@ public class MoviesControllerTest {
                         }
                     }
                     
+                    if ((criteria.getMinYear() != null && movie.getYear() < criteria.getMinYear())
+                            || (criteria.getMaxYear() != null && movie.getYear() > criteria.getMaxYear())
+                            || (criteria.getMinRating() != null && movie.getImdbRating() < criteria.getMinRating())
+                            || (criteria.getMaxRating() != null && movie.getImdbRating() > criteria.getMaxRating())) {
+                        matches = false;
+                    }
+                    
                     if (matches) {
                         results.add(movie);
                     }
@@ -80,6 +102,11 @@ public class MoviesControllerTest {
                 
                 return results;
             }
+
+            @Override
+            public SearchResult search(SearchCriteria criteria) {
+                return new SearchResult(searchMovies(criteria), explainSearch(criteria));
+            }
             
             @Override
             public List<String> getAllGenres() {
@@ -92,6 +119,11 @@ public class MoviesControllerTest {
             public List<Review> getReviewsForMovie(long movieId) {
                 return new ArrayList<>();
             }
+
+            @Override
+            public Map<Long, SimilarityIndex.ReviewSummary> getReviewSummaries() {
+                return new HashMap<>();
+            }
         };
         
         // Inject mocks using reflection
@@ -103,14 +135,55 @@ public class MoviesControllerTest {
             java.lang.reflect.Field reviewServiceField = MoviesController.class.getDeclaredField("reviewService");
             reviewServiceField.setAccessible(true);
             reviewServiceField.set(moviesController, mockReviewService);
+            
+            java.lang.reflect.Field similarMoviesServiceField = MoviesController.class.getDeclaredField("similarMoviesService");
+            similarMoviesServiceField.setAccessible(true);
+            SimilarMoviesService similarMoviesService = new SimilarMoviesService(mockMovieService, mockReviewService, 5, 100);
+            similarMoviesServiceField.set(moviesController, similarMoviesService);
+
+            java.lang.reflect.Field typeaheadServiceField = MoviesController.class.getDeclaredField("typeaheadService");
+            typeaheadServiceField.setAccessible(true);
+            TypeaheadService typeaheadService = new TypeaheadService(mockMovieService, mockReviewService, 10);
+            typeaheadServiceField.set(moviesController, typeaheadService);
+
+            // Reviews load instantly here; a generous deadline keeps a cold JVM from missing it
+            java.lang.reflect.Field reviewDeadlineField = MoviesController.class.getDeclaredField("reviewDeadlineMillis");
+            reviewDeadlineField.setAccessible(true);
+            reviewDeadlineField.set(moviesController, 10_000L);
+
+            java.lang.reflect.Field queryAnalyticsField = MoviesController.class.getDeclaredField("queryAnalytics");
+            queryAnalyticsField.setAccessible(true);
+            queryAnalyticsField.set(moviesController, new QueryAnalytics(mockMovieService, 60_000, 6, 10, 256, 0, null,
+                System::currentTimeMillis));
+
+            java.lang.reflect.Field movieCardsField = MoviesController.class.getDeclaredField("movieCards");
+            movieCardsField.setAccessible(true);
+            movieCardsField.set(moviesController, new MovieCardFragments(templateEngine(), mockMovieService));
+
+            CatalogIndexes.awaitBuilt(similarMoviesService::currentIndex);
+            CatalogIndexes.awaitBuilt(typeaheadService::currentIndex);
         } catch (Exception e) {
             throw new RuntimeException("Failed to inject mock services", e);
         }
     }
 
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    private static SpringTemplateEngine templateEngine() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+        return templateEngine;
+    }
+
     @Test
     public void testGetMovies() {
-        String result = moviesController.getMovies(model);
+        String result = moviesController.getMovies(1, model);
         assertNotNull(result);
         assertEquals("movies", result);
         
@@ -127,6 +200,50 @@ public class MoviesControllerTest {
         assertEquals(3, genres.size());
     }
 
+    @Test
+    public void testGetMoviesPaginates() throws Exception {
+        java.lang.reflect.Field pageSizeField = MoviesController.class.getDeclaredField("pageSize");
+        pageSizeField.setAccessible(true);
+        pageSizeField.set(moviesController, 2);
+
+        moviesController.getMovies(1, model);
+        @SuppressWarnings("unchecked")
+        List<Movie> firstPage = (List<Movie>) model.getAttribute("movies");
+        assertEquals(2, firstPage.size());
+        @SuppressWarnings("unchecked")
+        List<String> cards = (List<String>) model.getAttribute("movieCards");
+        assertEquals(2, cards.size());
+        assertTrue(cards.get(0).contains("The Pirate&#39;s Treasure"), cards.get(0));
+        assertTrue(cards.get(0).contains("href=\"/movies/1/details\""));
+        assertEquals("/movies?page=2", model.getAttribute("nextPageUrl"));
+        assertEquals("/movies/cards?page=2", model.getAttribute("nextCardsUrl"));
+        assertFalse(model.containsAttribute("previousPageUrl"));
+
+        Model lastPage = new ExtendedModelMap();
+        moviesController.getMovies(99, lastPage);
+        MoviePage moviePage = (MoviePage) lastPage.getAttribute("moviePage");
+        assertEquals(2, moviePage.getPage());
+        assertEquals(1, moviePage.getMovies().size());
+        assertEquals("/movies?page=1", lastPage.getAttribute("previousPageUrl"));
+        assertFalse(lastPage.containsAttribute("nextPageUrl"));
+
+        Model search = new ExtendedModelMap();
+        moviesController.searchMovies(" a ", null, "", 1, search);
+        assertEquals("/movies/search?name=a&page=2", search.getAttribute("nextPageUrl"));
+        assertTrue(((String) search.getAttribute("searchMessage")).contains("Found 3 pieces of treasure"));
+
+        Model cardsPage = new ExtendedModelMap();
+        assertEquals("movies :: listing", moviesController.getMovieCards("a", null, null, 2, cardsPage));
+        @SuppressWarnings("unchecked")
+        List<Movie> secondResults = (List<Movie>) cardsPage.getAttribute("movies");
+        assertEquals("Treasure Island", secondResults.get(0).getMovieName());
+
+        Model pastEnd = new ExtendedModelMap();
+        moviesController.getMovieCards(null, null, null, 3, pastEnd);
+        assertTrue(((List<?>) pastEnd.getAttribute("movieCards")).isEmpty());
+        assertFalse(pastEnd.containsAttribute("nextCardsUrl"));
+    }
+
     @Test
     public void testGetMovieDetails() {
         String result = moviesController.getMovieDetails(1L, model);
@@ -136,6 +253,36 @@ public class MoviesControllerTest {
         assertTrue(model.containsAttribute("movie"));
         Movie movie = (Movie) model.getAttribute("movie");
         assertEquals("The Pirate's Treasure", movie.getMovieName());
+        assertTrue(model.containsAttribute("similarMovies"));
+        assertEquals(false, model.getAttribute("reviewsLoading"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTypeaheadApi() {
+        ResponseEntity<Map<String, Object>> response = moviesController.typeaheadApi("pira", 8);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        List<Map<String, Object>> suggestions = (List<Map<String, Object>>) response.getBody().get("suggestions");
+        assertEquals(1, suggestions.size());
+        assertEquals("The Pirate's Treasure", suggestions.get(0).get("text"));
+        assertEquals("movie", suggestions.get(0).get("type"));
+        assertEquals(1L, suggestions.get(0).get("movieId"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, moviesController.typeaheadApi("pira", 0).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, moviesController.typeaheadApi("pira", 11).getStatusCode());
+        String tooLong = new String(new char[101]).replace('\0', 'a');
+        assertEquals(HttpStatus.BAD_REQUEST, moviesController.typeaheadApi(tooLong, 8).getStatusCode());
+    }
+
+    @Test
+    public void testSimilarMoviesApiValidation() {
+        assertEquals(HttpStatus.BAD_REQUEST, moviesController.similarMoviesApi(1L, 0).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, moviesController.similarMoviesApi(1L, 51).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, moviesController.similarMoviesApi(999L, 10).getStatusCode());
+
+        ResponseEntity<Map<String, Object>> response = moviesController.similarMoviesApi(1L, 10);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1L, response.getBody().get("movieId"));
     }
 
     @Test
@@ -151,7 +298,7 @@ public class MoviesControllerTest {
     // Arrr! Test the treasure hunt functionality!
     @Test
     public void testSearchMoviesByName() {
-        String result = moviesController.searchMovies("pirate", null, null, model);
+        String result = moviesController.searchMovies("pirate", null, null, 1, model);
         assertEquals("movies", result);
         
         assertTrue(model.containsAttribute("movies"));
@@ -168,7 +315,7 @@ public class MoviesControllerTest {
 
     @Test
     public void testSearchMoviesById() {
-        String result = moviesController.searchMovies(null, 2L, null, model);
+        String result = moviesController.searchMovies(null, 2L, null, 1, model);
         assertEquals("movies", result);
         
         @SuppressWarnings("unchecked")
@@ -179,7 +326,7 @@ public class MoviesControllerTest {
 
     @Test
     public void testSearchMoviesByGenre() {
-        String result = moviesController.searchMovies(null, null, "Adventure", model);
+        String result = moviesController.searchMovies(null, null, "Adventure", 1, model);
         assertEquals("movies", result);
         
         @SuppressWarnings("unchecked")
@@ -189,7 +336,7 @@ public class MoviesControllerTest {
 
     @Test
     public void testSearchMoviesNoResults() {
-        String result = moviesController.searchMovies("nonexistent", null, null, model);
+        String result = moviesController.searchMovies("nonexistent", null, null, 1, model);
         assertEquals("movies", result);
         
         @SuppressWarnings("unchecked")
@@ -203,7 +350,7 @@ public class MoviesControllerTest {
     @Test
     public void testSearchMoviesWithInvalidLongName() {
         String longName = "a".repeat(101); // Too long!
-        String result = moviesController.searchMovies(longName, null, null, model);
+        String result = moviesController.searchMovies(longName, null, null, 1, model);
         assertEquals("movies", result);
         
         assertTrue(model.containsAttribute("errorMessage"));
@@ -214,7 +361,7 @@ public class MoviesControllerTest {
     @Test
     public void testSearchMoviesWithInvalidLongGenre() {
         String longGenre = "a".repeat(51); // Too long!
-        String result = moviesController.searchMovies(null, null, longGenre, model);
+        String result = moviesController.searchMovies(null, null, longGenre, 1, model);
         assertEquals("movies", result);
         
         assertTrue(model.containsAttribute("errorMessage"));
@@ -224,7 +371,7 @@ public class MoviesControllerTest {
 
     @Test
     public void testSearchMoviesCombinedCriteria() {
-        String result = moviesController.searchMovies("treasure", 1L, "Adventure", model);
+        String result = moviesController.searchMovies("treasure", 1L, "Adventure", 1, model);
         assertEquals("movies", result);
         
         @SuppressWarnings("unchecked")
@@ -236,7 +383,7 @@ public class MoviesControllerTest {
     // Test the JSON API endpoint - for tech-savvy pirates!
     @Test
     public void testSearchMoviesApiSuccess() {
-        ResponseEntity<Map<String, Object>> response = moviesController.searchMoviesApi("pirate", null, null);
+        ResponseEntity<Map<String, Object>> response = moviesController.searchMoviesApi("pirate", null, null, null, null, null, null, null, false);
         
         assertEquals(200, response.getStatusCodeValue());
         assertNotNull(response.getBody());
@@ -251,9 +398,48 @@ public class MoviesControllerTest {
         assertTrue(pirateMessage.contains("Found 1 pieces of treasure"));
     }
 
+    @Test
+    public void testSearchMoviesApiExplainAndRanges() {
+        ResponseEntity<Map<String, Object>> response =
+            moviesController.searchMoviesApi(null, null, "Adventure", null, 2020, null, 4.6, null, true);
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(1, response.getBody().get("totalResults"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> criteria = (Map<String, Object>) response.getBody().get("searchCriteria");
+        assertEquals(2020, criteria.get("minYear"));
+        assertFalse(criteria.containsKey("maxYear"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> plan = (Map<String, Object>) response.getBody().get("plan");
+        assertNotNull(plan);
+        assertTrue(plan.containsKey("access"));
+        assertTrue(plan.containsKey("residualFilters"));
+
+        assertFalse(moviesController.searchMoviesApi("pirate", null, null, null, null, null, null, null, false)
+            .getBody().containsKey("plan"));
+        assertEquals(400, moviesController.searchMoviesApi(null, null, null, null, 2000, 1990, null, null, false)
+            .getStatusCodeValue());
+        assertEquals(400, moviesController.searchMoviesApi(null, null, null, null, null, null, 4.0, 3.0, false)
+            .getStatusCodeValue());
+    }
+
+    @Test
+    public void testSearchesAreCountedForAnalytics() throws Exception {
+        moviesController.searchMoviesApi("Pirate", null, null, null, null, null, null, null, false);
+        moviesController.searchMovies(" pirate ", null, null, 1, model);
+        // Paging through the results is the same search
+        moviesController.searchMovies(" pirate ", null, null, 2, model);
+        moviesController.searchMoviesApi(null, null, "Action", null, null, null, null, null, false);
+
+        java.lang.reflect.Field queryAnalyticsField = MoviesController.class.getDeclaredField("queryAnalytics");
+        queryAnalyticsField.setAccessible(true);
+        QueryAnalytics analytics = (QueryAnalytics) queryAnalyticsField.get(moviesController);
+        assertEquals(2, analytics.estimate(SearchCriteria.of("pirate", null, null)));
+        assertEquals("pirate", analytics.topQueries(1).get(0).getCriteria().getName());
+    }
+
     @Test
     public void testSearchMoviesApiNoResults() {
-        ResponseEntity<Map<String, Object>> response = moviesController.searchMoviesApi("nonexistent", null, null);
+        ResponseEntity<Map<String, Object>> response = moviesController.searchMoviesApi("nonexistent", null, null, null, null, null, null, null, false);
         
         assertEquals(200, response.getStatusCodeValue());
         assertNotNull(response.getBody());
@@ -268,7 +454,7 @@ public class MoviesControllerTest {
     @Test
     public void testSearchMoviesApiInvalidInput() {
         String longName = "a".repeat(101);
-        ResponseEntity<Map<String, Object>> response = moviesController.searchMoviesApi(longName, null, null);
+        ResponseEntity<Map<String, Object>> response = moviesController.searchMoviesApi(longName, null, null, null, null, null, null, null, false);
         
         assertEquals(400, response.getStatusCodeValue());
         assertNotNull(response.getBody());
@@ -0,0 +1,136 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelSearchEngineTest {
+
+    private static final int CATALOG_SIZE = 50_000;
+
+    private final List<Movie> catalog = buildCatalog();
+    private ParallelSearchEngine engine;
+
+    private static List<Movie> buildCatalog() {
+        List<Movie> movies = new ArrayList<>(CATALOG_SIZE);
+        for (int i = 1; i <= CATALOG_SIZE; i++) {
+            movies.add(new Movie(i, "Movie " + i, "Director " + (i % 100), 2000 + i % 20,
+                i % 3 == 0 ? "Drama" : "Action", "Description", 100, 3.5));
+        }
+        return movies;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (engine != null) {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    public void testSmallCatalogStaysOnCallerThread() {
+        engine = new ParallelSearchEngine(4, 1000);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<Movie> results = engine.search(1500, (from, to, out) -> {
+            threads.add(Thread.currentThread().getName());
+            out.addAll(catalog.subList(from, to));
+        });
+        assertEquals(1500, results.size());
+        assertEquals(1, engine.getSequentialSearches());
+        assertEquals(0, engine.getParallelSearches());
+        assertTrue(threads.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void testCutoffIsCalibratedFromObservedScans() {
+        engine = new ParallelSearchEngine(4, 1000);
+        assertEquals(Integer.MAX_VALUE, engine.getSequentialCutoff());
+
+        engine.search(CATALOG_SIZE, (from, to, out) -> { });
+        // Reporting the cutoff does not measure the hand-off or start the pool
+        assertEquals(-1, engine.getCalibratedSequentialCutoff());
+        assertFalse(engine.isPoolStarted());
+
+        int cutoff = engine.getSequentialCutoff();
+        assertTrue(cutoff >= 2000, "Cutoff below two segments: " + cutoff);
+        assertTrue(cutoff < Integer.MAX_VALUE);
+        assertTrue(engine.isPoolStarted());
+        assertEquals(cutoff, engine.getCalibratedSequentialCutoff());
+    }
+
+    @Test
+    public void testExpensiveScanRunsOnDedicatedPoolInOrder() {
+        engine = new ParallelSearchEngine(4, 1000);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        ParallelSearchEngine.RangeFilter slowFilter = (from, to, out) -> {
+            threads.add(Thread.currentThread().getName());
+            for (int i = from; i < to; i++) {
+                Movie movie = catalog.get(i);
+                // Simulate an expensive predicate so parallelism clearly pays off
+                long spin = 0;
+                for (int j = 0; j < 2000; j++) {
+                    spin += j ^ movie.getId();
+                }
+                if (spin != 0 && "Drama".equals(movie.getGenre())) {
+                    out.add(movie);
+                }
+            }
+        };
+
+        List<Movie> first = engine.search(CATALOG_SIZE, slowFilter);
+        List<Movie> second = engine.search(CATALOG_SIZE, slowFilter);
+
+        assertEquals(1, engine.getSequentialSearches());
+        assertEquals(1, engine.getParallelSearches());
+        assertEquals(first, second);
+        assertEquals(CATALOG_SIZE / 3, second.size());
+        for (int i = 1; i < second.size(); i++) {
+            assertTrue(second.get(i - 1).getId() < second.get(i).getId(), "Results out of catalog order");
+        }
+        assertTrue(threads.stream().anyMatch(name -> name.startsWith("movie-search-")));
+    }
+
+    @Test
+    public void testSingleThreadedEngineNeverForks() {
+        engine = new ParallelSearchEngine(1, 1000);
+        for (int i = 0; i < 3; i++) {
+            engine.search(CATALOG_SIZE, (from, to, out) -> out.addAll(catalog.subList(from, to)));
+        }
+        assertEquals(0, engine.getParallelSearches());
+        assertEquals(1, engine.getParallelism());
+    }
+
+    @Test
+    public void testShutDownEngineScansOnCallerThread() {
+        engine = new ParallelSearchEngine(4, 1000);
+        engine.search(CATALOG_SIZE, (from, to, out) -> { });
+        engine.shutdown();
+
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<Movie> results = engine.search(CATALOG_SIZE, (from, to, out) -> {
+            threads.add(Thread.currentThread().getName());
+            out.addAll(catalog.subList(from, to));
+        });
+        assertEquals(CATALOG_SIZE, results.size());
+        assertEquals(Collections.singleton(Thread.currentThread().getName()), threads);
+    }
+
+    @Test
+    public void testServiceResultsMatchAcrossEngines() {
+        MovieService sequential = new MovieService(catalog, new ParallelSearchEngine(1, 1000));
+        engine = new ParallelSearchEngine(4, 1000);
+        MovieService parallel = new MovieService(catalog, engine);
+
+        SearchCriteria criteria = SearchCriteria.of("9", null, "drama");
+        for (int i = 0; i < 5; i++) {
+            assertEquals(sequential.filterMovies(criteria), parallel.filterMovies(criteria));
+        }
+    }
+}
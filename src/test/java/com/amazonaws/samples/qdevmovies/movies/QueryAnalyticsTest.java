@@ -0,0 +1,212 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the Count-Min Sketch and the windowed query analytics built on it.
+ */
+public class QueryAnalyticsTest {
+
+    private static final long WINDOW = 60_000;
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicLong now = new AtomicLong(1_000_000 * WINDOW);
+
+    private QueryAnalytics analytics(MovieService movieService, Path file) {
+        return new QueryAnalytics(movieService, WINDOW, 3, 10, 1024, 5, file, now::get);
+    }
+
+    private static SearchCriteria query(int i) {
+        return SearchCriteria.of("movie " + i, null, null);
+    }
+
+    /**
+     * Zipf-distributed query numbers: query 0 is the most popular.
+     */
+    private static int[] zipfStream(int events, int distinct, long seed) {
+        double[] cumulative = new double[distinct];
+        double sum = 0;
+        for (int i = 0; i < distinct; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        Random random = new Random(seed);
+        int[] stream = new int[events];
+        for (int e = 0; e < events; e++) {
+            double target = random.nextDouble() * sum;
+            int low = 0;
+            int high = distinct - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            stream[e] = low;
+        }
+        return stream;
+    }
+
+    @Test
+    public void testSketchNeverUndercountsAndStaysWithinErrorBound() {
+        CountMinSketch sketch = new CountMinSketch(4, 2048);
+        int[] stream = zipfStream(200_000, 20_000, 1);
+        Map<Integer, Long> exact = new HashMap<>();
+        for (int query : stream) {
+            sketch.add("query " + query, 1);
+            exact.merge(query, 1L, Long::sum);
+        }
+        assertEquals(stream.length, sketch.getTotal());
+
+        double bound = Math.E / sketch.getWidth() * sketch.getTotal();
+        int withinBound = 0;
+        for (Map.Entry<Integer, Long> entry : exact.entrySet()) {
+            long estimate = sketch.estimate("query " + entry.getKey());
+            assertTrue(estimate >= entry.getValue());
+            if (estimate - entry.getValue() <= bound) {
+                withinBound++;
+            }
+        }
+        assertTrue(withinBound >= 0.99 * exact.size());
+        assertTrue(sketch.estimate("never seen") <= bound);
+    }
+
+    @Test
+    public void testTopQueriesFindTheHeavyHitters() {
+        QueryAnalytics analytics = analytics(new MovieService(), null);
+        int[] stream = zipfStream(50_000, 5_000, 2);
+        Map<Integer, Long> exact = new HashMap<>();
+        for (int query : stream) {
+            analytics.record(query(query));
+            exact.merge(query, 1L, Long::sum);
+        }
+        List<Map.Entry<Integer, Long>> byCount = new ArrayList<>(exact.entrySet());
+        byCount.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        Set<SearchCriteria> expected = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            expected.add(query(byCount.get(i).getKey()));
+        }
+
+        List<QueryAnalytics.QueryCount> top = analytics.topQueries(5);
+        Set<SearchCriteria> found = new HashSet<>();
+        for (QueryAnalytics.QueryCount count : top) {
+            found.add(count.getCriteria());
+        }
+        assertEquals(expected, found);
+        assertEquals(query(0), top.get(0).getCriteria());
+        assertTrue(top.get(0).getCount() >= exact.get(0));
+        assertEquals(stream.length, analytics.getWindowedTotal());
+    }
+
+    @Test
+    public void testEquivalentSearchesCountAsOneQuery() {
+        QueryAnalytics analytics = analytics(new MovieService(), null);
+        analytics.record(SearchCriteria.of("Prison", null, " Drama "));
+        analytics.record(SearchCriteria.of(" prison ", null, "drama"));
+        assertEquals(2, analytics.estimate(SearchCriteria.of("PRISON", null, "DRAMA")));
+        assertEquals(1, analytics.topQueries(10).size());
+    }
+
+    @Test
+    public void testConcurrentSearchesAreAllCounted() throws InterruptedException {
+        QueryAnalytics analytics = analytics(null, null);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    analytics.record(query(i % 7));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(20_000, analytics.getTotalRecorded());
+        assertEquals(20_000, analytics.getWindowedTotal());
+        assertEquals(7, analytics.topQueries(10).size());
+        assertTrue(analytics.estimate(query(0)) >= 4 * 715);
+    }
+
+    @Test
+    public void testOldWindowsAgeOut() {
+        QueryAnalytics analytics = analytics(new MovieService(), null);
+        for (int i = 0; i < 5; i++) {
+            analytics.record(query(1));
+        }
+        now.addAndGet(WINDOW);
+        analytics.record(query(2));
+        now.addAndGet(WINDOW);
+        analytics.record(query(2));
+        assertEquals(5, analytics.estimate(query(1)));
+        assertEquals(query(1), analytics.topQueries(1).get(0).getCriteria());
+
+        // Three windows are kept: the first one's counts expire with the fourth window
+        now.addAndGet(WINDOW);
+        assertEquals(0, analytics.estimate(query(1)));
+        assertEquals(2, analytics.estimate(query(2)));
+        analytics.record(query(3));
+        assertEquals(query(2), analytics.topQueries(1).get(0).getCriteria());
+        assertEquals(3, analytics.getWindowedTotal());
+        assertEquals(8, analytics.getTotalRecorded());
+    }
+
+    @Test
+    public void testPersistedTopQueriesWarmTheNextInstance() throws Exception {
+        Path file = tempDir.resolve("top-queries.json");
+        QueryAnalytics first = analytics(new MovieService(), file);
+        for (int i = 0; i < 3; i++) {
+            first.record(SearchCriteria.of("prison", null, null));
+        }
+        first.record(SearchCriteria.of(null, null, "drama"));
+        first.record(SearchCriteria.of(null, 4L, null));
+        first.persist();
+        assertTrue(Files.exists(file));
+
+        MovieService movieService = new MovieService();
+        QueryAnalytics second = analytics(movieService, file);
+        second.warmUp();
+        assertEquals(3, second.getWarmedUp());
+        assertEquals(3, second.estimate(SearchCriteria.of("Prison", null, null)));
+        assertEquals(3, movieService.getSearchCacheStats().getSize());
+
+        // The warmed searches are now cache hits
+        long hits = movieService.getSearchCacheStats().getHits();
+        movieService.searchMovies("PRISON", null, null);
+        movieService.searchMovies(null, 4L, null);
+        assertEquals(hits + 2, movieService.getSearchCacheStats().getHits());
+    }
+
+    @Test
+    public void testUnreadableFileIsIgnored() throws Exception {
+        Path file = tempDir.resolve("top-queries.json");
+        Files.write(file, "{not json".getBytes(StandardCharsets.UTF_8));
+        QueryAnalytics analytics = analytics(new MovieService(), file);
+        analytics.warmUp();
+        assertEquals(0, analytics.getWarmedUp());
+        assertTrue(analytics.topQueries(10).isEmpty());
+
+        QueryAnalytics withoutFile = analytics(new MovieService(), tempDir.resolve("missing.json"));
+        withoutFile.warmUp();
+        assertEquals(0, withoutFile.getWarmedUp());
+    }
+}
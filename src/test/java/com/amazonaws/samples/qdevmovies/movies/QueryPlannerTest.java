@@ -0,0 +1,198 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that the planner drives searches from the most selective index and that every
+ * plan returns exactly what a full scan returns.
+ */
+public class QueryPlannerTest {
+
+    private static final int CATALOG_SIZE = 20_000;
+
+    private List<Movie> catalog;
+    private MovieService movieService;
+
+    @BeforeEach
+    public void setUp() {
+        SyntheticCatalogGenerator generator = new SyntheticCatalogGenerator(7, CATALOG_SIZE, 0);
+        catalog = new ArrayList<>(CATALOG_SIZE);
+        for (long id = 1; id <= CATALOG_SIZE; id++) {
+            catalog.add(generator.movie(id));
+        }
+        movieService = new MovieService(catalog);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        movieService.shutdown();
+    }
+
+    private SearchPlan.Access access(SearchCriteria criteria) {
+        return movieService.explainSearch(criteria).getAccess();
+    }
+
+    @Test
+    public void testPlansMatchFullScan() {
+        Random random = new Random(42);
+        List<String> genres = movieService.getAllGenres();
+        int indexed = 0;
+        for (int i = 0; i < 400; i++) {
+            Movie sample = catalog.get(random.nextInt(catalog.size()));
+            String name = null;
+            if (random.nextInt(3) == 0) {
+                String title = sample.getMovieName();
+                int from = random.nextInt(title.length());
+                name = title.substring(from, Math.min(title.length(), from + 1 + random.nextInt(8)));
+            }
+            Long id = random.nextInt(8) == 0 ? (long) (1 + random.nextInt(CATALOG_SIZE + 10)) : null;
+            String genre = random.nextInt(3) == 0 ? genres.get(random.nextInt(genres.size())) : null;
+            Integer minYear = random.nextBoolean() ? 1920 + random.nextInt(110) : null;
+            Integer maxYear = random.nextBoolean() ? 1920 + random.nextInt(110) : null;
+            Double minRating = random.nextInt(3) == 0 ? random.nextInt(11) / 2.0 : null;
+            Double maxRating = random.nextInt(3) == 0 ? random.nextInt(11) / 2.0 : null;
+            SearchCriteria criteria = SearchCriteria.of(name, id, genre, minYear, maxYear, minRating, maxRating);
+
+            SearchPlan plan = movieService.explainSearch(criteria);
+            if (plan.getAccess() != SearchPlan.Access.FULL_SCAN) {
+                indexed++;
+            }
+            List<Movie> expected = movieService.filterMovies(criteria);
+            assertEquals(expected, movieService.searchMovies(criteria), criteria + " via " + plan);
+            assertTrue(plan.getAccess() == SearchPlan.Access.NAME_TRIGRAMS
+                    || plan.getEstimatedRows() >= expected.size(), "Estimate below result count for " + plan);
+        }
+        assertTrue(indexed > 200, "Only " + indexed + " searches used an index");
+    }
+
+    @Test
+    public void testMostSelectivePathDrivesSearch() {
+        Movie movie = catalog.get(1234);
+        assertEquals(SearchPlan.Access.ID_LOOKUP,
+            access(SearchCriteria.of(null, movie.getId(), movie.getGenre(), 1900, 2030, null, null)));
+        assertEquals(SearchPlan.Access.FULL_SCAN, access(SearchCriteria.of(null, null, null)));
+        assertEquals(SearchPlan.Access.YEAR_RANGE,
+            access(SearchCriteria.of(null, null, null, movie.getYear(), movie.getYear(), null, null)));
+        assertEquals(SearchPlan.Access.FULL_SCAN,
+            access(SearchCriteria.of(null, null, null, 1900, 2100, null, null)));
+        assertEquals(SearchPlan.Access.NAME_TRIGRAMS, access(SearchCriteria.of(movie.getMovieName(), null, null)));
+
+        // The rarest genre beats a wide year range
+        List<String> genres = movieService.getAllGenres();
+        String rarest = genres.get(0);
+        for (String genre : genres) {
+            if (movieService.searchMovies(null, null, genre).size() < movieService.searchMovies(null, null, rarest).size()) {
+                rarest = genre;
+            }
+        }
+        SearchPlan plan = movieService.explainSearch(SearchCriteria.of(null, null, rarest, 1950, 2020, null, null));
+        assertEquals(SearchPlan.Access.GENRE_POSTINGS, plan.getAccess());
+        assertEquals(movieService.searchMovies(null, null, rarest).size(), plan.getEstimatedRows());
+        assertEquals(List.of("year between 1950 and 2020"), plan.getResidualFilters());
+        assertEquals(3, plan.getConsidered().size());
+    }
+
+    @Test
+    public void testNameIndex() {
+        // A trigram no name has rules out every movie without reading one
+        SearchPlan none = movieService.explainSearch(SearchCriteria.of("qqxz", null, null));
+        assertEquals(SearchPlan.Access.NAME_TRIGRAMS, none.getAccess());
+        assertEquals(0, none.getEstimatedRows());
+        assertTrue(movieService.searchMovies("qqxz", null, null).isEmpty());
+
+        // Too short for a trigram, or made only of common ones: nothing to drive from
+        assertEquals(SearchPlan.Access.FULL_SCAN, access(SearchCriteria.of("e", null, null)));
+        SearchIndexes indexes = SearchIndexes.build(MovieTable.of(catalog));
+        assertNull(indexes.nameCandidates("e"));
+        assertTrue(indexes.getTrigramCount() > 0);
+    }
+
+    @Test
+    public void testIndexesFollowChanges() {
+        Movie movie = catalog.get(10);
+        SearchCriteria byYear = SearchCriteria.of(null, null, null, movie.getYear(), movie.getYear(), null, null);
+        assertEquals(SearchPlan.Access.YEAR_RANGE, access(byYear));
+
+        movieService.saveMovie(new Movie(movie.getId(), movie.getMovieName(), movie.getDirector(), 1899,
+            movie.getGenre(), movie.getDescription(), movie.getDuration(), movie.getImdbRating()));
+        SearchCriteria in1899 = SearchCriteria.of(null, null, null, 1899, 1899, null, null);
+        SearchPlan plan = movieService.explainSearch(in1899);
+        assertEquals(SearchPlan.Access.YEAR_RANGE, plan.getAccess());
+        assertEquals(1, plan.getEstimatedRows());
+        List<Movie> found = movieService.searchMovies(in1899);
+        assertEquals(1, found.size());
+        assertEquals(movie.getId(), found.get(0).getId());
+
+        // The old year still lists the slot until the indexes are rebuilt; the filter drops it
+        assertEquals(SearchPlan.Access.YEAR_RANGE, access(byYear));
+        assertFalse(movieService.searchMovies(byYear).stream().anyMatch(m -> m.getId() == movie.getId()));
+        assertEquals(movieService.filterMovies(byYear), movieService.searchMovies(byYear));
+    }
+
+    @Test
+    public void testManyChangesMatchFullScan() {
+        Random random = new Random(11);
+        List<String> genres = movieService.getAllGenres();
+        for (int i = 0; i < 25_000; i++) {
+            long id = 1 + random.nextInt(CATALOG_SIZE + 2000);
+            if (random.nextInt(4) == 0) {
+                movieService.deleteMovie(id);
+            } else {
+                movieService.saveMovie(new Movie(id, "Changed " + random.nextInt(500), "Director", 1900 + random.nextInt(130),
+                    genres.get(random.nextInt(genres.size())), "Description", 100, random.nextInt(11) / 2.0));
+            }
+        }
+        for (int i = 0; i < 200; i++) {
+            String name = random.nextBoolean() ? "anged " + random.nextInt(60) : null;
+            String genre = random.nextInt(3) == 0 ? genres.get(random.nextInt(genres.size())) : null;
+            Integer year = random.nextBoolean() ? 1900 + random.nextInt(130) : null;
+            Double rating = random.nextInt(3) == 0 ? random.nextInt(11) / 2.0 : null;
+            SearchCriteria criteria = SearchCriteria.of(name, null, genre, year, year, rating, null);
+            assertEquals(movieService.filterMovies(criteria), movieService.searchMovies(criteria),
+                criteria + " via " + movieService.explainSearch(criteria));
+        }
+    }
+
+    @Test
+    public void testSearchReportsExecutedPlan() {
+        Movie movie = catalog.get(1234);
+        SearchCriteria byName = SearchCriteria.of(movie.getMovieName(), null, null);
+        MovieService.SearchResult first = movieService.search(byName);
+        assertEquals(SearchPlan.Access.NAME_TRIGRAMS, first.getPlan().getAccess());
+        assertTrue(first.getMovies().contains(movie));
+
+        MovieService.SearchResult second = movieService.search(byName);
+        assertSame(first.getMovies(), second.getMovies());
+        assertEquals(SearchPlan.Access.RESULT_CACHE, second.getPlan().getAccess());
+        assertEquals(first.getMovies().size(), second.getPlan().getEstimatedRows());
+        assertEquals("result-cache", second.getPlan().toMap().get("access"));
+
+        // A write moves the catalog on, so the next search is planned again
+        movieService.saveMovie(movie);
+        assertEquals(SearchPlan.Access.NAME_TRIGRAMS, movieService.search(byName).getPlan().getAccess());
+    }
+
+    @Test
+    public void testPlanInProtobufResponse() throws Exception {
+        Map<String, Object> body = new java.util.HashMap<>();
+        body.put("totalResults", 3);
+        body.put("plan", movieService.explainSearch(SearchCriteria.of("night", null, "drama", 1990, null, 3.5, null)).toMap());
+        Map<String, Object> decoded = MovieProtobufDecoder.decode(MovieProtobuf.encode(body));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> plan = (Map<String, Object>) decoded.get("plan");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> expected = (Map<String, Object>) body.get("plan");
+        assertEquals(expected.get("access"), plan.get("access"));
+        assertEquals(expected.get("residualFilters"), plan.get("residualFilters"));
+        assertEquals(((List<?>) expected.get("considered")).size(), ((List<?>) plan.get("considered")).size());
+    }
+}
@@ -0,0 +1,137 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs a leader and a follower instance of the application on random local ports and
+ * checks that the follower converges on the leader's catalog over HTTP.
+ */
+public class ReplicationIntegrationTest {
+
+    private ConfigurableApplicationContext leader;
+    private ConfigurableApplicationContext follower;
+
+    private static ConfigurableApplicationContext startInstance(String... properties) {
+        String[] args = new String[properties.length + 2];
+        args[0] = "--server.port=0";
+        args[1] = "--spring.main.banner-mode=off";
+        for (int i = 0; i < properties.length; i++) {
+            args[i + 2] = "--" + properties[i];
+        }
+        return new SpringApplicationBuilder(MoviesApplication.class).run(args);
+    }
+
+    private static void await(BooleanSupplier condition, String description) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting until " + description);
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (follower != null) {
+            follower.close();
+        }
+        if (leader != null) {
+            leader.close();
+        }
+    }
+
+    @Test
+    public void testFollowerReplicatesLeaderCatalog() throws Exception {
+        leader = startInstance("movies.replication.role=leader");
+        MovieService leaderMovies = leader.getBean(MovieService.class);
+        leaderMovies.saveMovie(new Movie(13L, "The Pirate's Treasure", "Captain Hook", 2023, "Adventure",
+            "A swashbuckling adventure", 120, 4.5));
+        String leaderUrl = "http://localhost:" + leader.getEnvironment().getProperty("local.server.port");
+
+        follower = startInstance("movies.replication.role=follower",
+            "movies.replication.leader-url=" + leaderUrl,
+            "movies.replication.long-poll-millis=500");
+        MovieService followerMovies = follower.getBean(MovieService.class);
+        CatalogReplicator replicator = follower.getBean(CatalogReplicator.class);
+
+        // Initial sync installs a snapshot
+        await(() -> followerMovies.getMovieById(13L).isPresent(), "the follower has the leader's new movie");
+        assertEquals(1, replicator.getSnapshotsInstalled());
+
+        // Live changes arrive as deltas through the long poll
+        leaderMovies.deleteMovie(2L);
+        leaderMovies.saveMovie(new Movie(1L, "The Great Escape", "John Director", 1994, "Drama",
+            "Renamed", 142, 5.0));
+        await(() -> !followerMovies.getMovieById(2L).isPresent(), "the delete is replicated");
+        await(() -> followerMovies.searchMovies("great escape", null, null).size() == 1, "the update is replicated");
+
+        // After a disconnect the follower catches up from its last version, without a snapshot
+        replicator.stop();
+        for (long id = 100; id < 110; id++) {
+            leaderMovies.saveMovie(new Movie(id, "Sea Battle " + id, "Admiral Storm", 2022, "Action",
+                "Epic naval combat", 140, 4.0));
+        }
+        replicator.start();
+        await(() -> followerMovies.getAllMovies().size() == leaderMovies.getAllMovies().size(),
+            "the follower catches up after reconnecting");
+        assertEquals(1, replicator.getSnapshotsInstalled());
+        assertEquals(leaderMovies.getChangeLog().getLatestVersion(), replicator.getAppliedVersion());
+        assertEquals(leaderMovies.getChangeLog().getEpoch(), replicator.getAppliedEpoch());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLongPollsDoNotHoldRequestThreads() throws Exception {
+        // Two request threads, fewer than the followers waiting on the feed
+        leader = startInstance("movies.replication.role=leader", "server.tomcat.threads.max=2",
+            "server.tomcat.threads.min-spare=1");
+        MovieService leaderMovies = leader.getBean(MovieService.class);
+        String leaderUrl = "http://localhost:" + leader.getEnvironment().getProperty("local.server.port");
+        CatalogChangeLog changeLog = leaderMovies.getChangeLog();
+        String poll = leaderUrl + "/api/replication/changes?epoch=" + changeLog.getEpoch()
+            + "&since=" + changeLog.getLatestVersion() + "&waitMillis=20000";
+
+        SimpleClientHttpRequestFactory requests = new SimpleClientHttpRequestFactory();
+        requests.setReadTimeout(5_000);
+        RestTemplate client = new RestTemplate(requests);
+        ExecutorService followers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Map<String, Object>>> polls = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                polls.add(followers.submit(() -> (Map<String, Object>) new RestTemplate().getForObject(poll, Map.class)));
+            }
+            Thread.sleep(500);
+            // Served while all four polls wait
+            assertNotNull(client.getForObject(leaderUrl + "/api/movies/search?name=escape", Map.class));
+            for (Future<Map<String, Object>> pending : polls) {
+                assertFalse(pending.isDone());
+            }
+
+            leaderMovies.deleteMovie(2L);
+            for (Future<Map<String, Object>> pending : polls) {
+                Map<String, Object> response = pending.get(5, TimeUnit.SECONDS);
+                assertEquals(false, response.get("snapshot"));
+                assertEquals(1, ((List<?>) response.get("changes")).size());
+            }
+        } finally {
+            followers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the per-phase {@code Server-Timing} header and the flight recorder events, the
+ * header against a running instance of the application.
+ */
+public class RequestTimingTest {
+
+    private static final Pattern SERVER_TIMING = Pattern.compile("[a-z]+;dur=\\d+\\.\\d{2}(, [a-z]+;dur=\\d+\\.\\d{2})*");
+
+    private ConfigurableApplicationContext context;
+
+    @TempDir
+    Path tempDir;
+
+    private String start(String... properties) {
+        String[] args = new String[properties.length + 3];
+        args[0] = "--server.port=0";
+        args[1] = "--spring.main.banner-mode=off";
+        args[2] = "--movies.analytics.file=";
+        for (int i = 0; i < properties.length; i++) {
+            args[i + 3] = "--" + properties[i];
+        }
+        context = new SpringApplicationBuilder(MoviesApplication.class).run(args);
+        return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    private static Map<String, Double> parse(String header) {
+        assertNotNull(header, "Server-Timing header should be present");
+        assertTrue(SERVER_TIMING.matcher(header).matches(), "Malformed Server-Timing header: " + header);
+        Map<String, Double> phases = new HashMap<>();
+        for (String metric : header.split(", ")) {
+            String[] parts = metric.split(";dur=");
+            phases.put(parts[0], Double.parseDouble(parts[1]));
+        }
+        return phases;
+    }
+
+    @Test
+    public void testPhasesOutsideRequestAreIgnored() {
+        assertNull(RequestTiming.current());
+        try (RequestTiming.Phase phase = RequestTiming.phase(RequestTiming.SEARCH)) {
+            assertNotNull(phase);
+        }
+        assertNull(RequestTiming.current());
+    }
+
+    @Test
+    public void testRepeatedPhasesAreSummed() throws Exception {
+        RequestTiming timing = RequestTiming.start();
+        try {
+            for (int i = 0; i < 2; i++) {
+                RequestTiming.Phase phase = RequestTiming.phase(RequestTiming.SEARCH);
+                Thread.sleep(5);
+                phase.close();
+            }
+            timing.record(RequestTiming.RENDER, 1_500_000);
+        } finally {
+            RequestTiming.clear();
+        }
+
+        Map<String, Double> millis = timing.getPhaseMillis();
+        assertEquals(2, millis.size());
+        assertTrue(millis.get(RequestTiming.SEARCH) >= 10.0);
+        assertEquals(1.5, millis.get(RequestTiming.RENDER), 1e-9);
+
+        Map<String, Double> header = parse(timing.toServerTiming());
+        assertEquals(1.5, header.get(RequestTiming.RENDER), 1e-9);
+        assertTrue(header.get(RequestTiming.TOTAL) >= header.get(RequestTiming.SEARCH));
+    }
+
+    @Test
+    public void testServerTimingHeaderReportsPhases() {
+        String baseUrl = start("movies.timing.server-timing=true");
+        RestTemplate client = new RestTemplate();
+
+        ResponseEntity<String> page = client.getForEntity(baseUrl + "/movies/1/details", String.class);
+        assertEquals(200, page.getStatusCodeValue());
+        Map<String, Double> pagePhases = parse(page.getHeaders().getFirst(RequestTimingFilter.SERVER_TIMING));
+        assertTrue(pagePhases.containsKey(RequestTiming.REVIEWS));
+        assertTrue(pagePhases.containsKey(RequestTiming.SIMILAR));
+        assertTrue(pagePhases.containsKey(RequestTiming.RENDER));
+        assertTrue(pagePhases.get(RequestTiming.TOTAL) >= pagePhases.get(RequestTiming.RENDER));
+        assertTrue(page.getBody().contains("</html>"), "Buffered page should be sent in full");
+
+        ResponseEntity<String> api = client.getForEntity(baseUrl + "/api/movies/search?genre=drama", String.class);
+        assertEquals(200, api.getStatusCodeValue());
+        Map<String, Double> apiPhases = parse(api.getHeaders().getFirst(RequestTimingFilter.SERVER_TIMING));
+        assertTrue(apiPhases.containsKey(RequestTiming.SEARCH));
+        assertTrue(apiPhases.containsKey(RequestTiming.SERIALIZE));
+        assertFalse(apiPhases.containsKey(RequestTiming.RENDER));
+        assertEquals(api.getBody().getBytes(java.nio.charset.StandardCharsets.UTF_8).length,
+            api.getHeaders().getContentLength());
+
+        // Other requests are not buffered
+        ResponseEntity<String> typeahead = client.getForEntity(baseUrl + "/api/movies/typeahead?q=the", String.class);
+        assertEquals(200, typeahead.getStatusCodeValue());
+        assertNull(typeahead.getHeaders().getFirst(RequestTimingFilter.SERVER_TIMING));
+    }
+
+    @Test
+    public void testServerTimingHeaderIsOffByDefault() {
+        String baseUrl = start();
+        ResponseEntity<String> api = new RestTemplate().getForEntity(baseUrl + "/api/movies/search?genre=drama", String.class);
+        assertEquals(200, api.getStatusCodeValue());
+        assertNull(api.getHeaders().getFirst(RequestTimingFilter.SERVER_TIMING));
+    }
+
+    @Test
+    public void testOnlyPagesAndSearchAreTimed() {
+        assertTrue(RequestTimingFilter.isTimed("/movies"));
+        assertTrue(RequestTimingFilter.isTimed("/movies/1/details"));
+        assertTrue(RequestTimingFilter.isTimed("/movies/cards"));
+        assertTrue(RequestTimingFilter.isTimed("/api/movies/search"));
+        assertFalse(RequestTimingFilter.isTimed("/api/replication/changes"));
+        assertFalse(RequestTimingFilter.isTimed("/api/admin/memory"));
+        assertFalse(RequestTimingFilter.isTimed("/css/movies.css"));
+        assertFalse(RequestTimingFilter.isTimed("/moviesx"));
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws Exception {
+        Path file = tempDir.resolve("movies.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("qdevmovies.Search");
+            recording.enable("qdevmovies.ReviewLoad");
+            recording.start();
+
+            MovieService movieService = new MovieService();
+            movieService.searchMovies(null, null, "drama");
+            movieService.searchMovies(null, null, "drama");
+            ReviewService reviewService = new ReviewService();
+            try {
+                reviewService.getReviewsForMovieAsync(1L).get();
+            } finally {
+                reviewService.shutdown();
+            }
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        int searches = 0;
+        int cacheHits = 0;
+        int reviewLoads = 0;
+        for (RecordedEvent event : events) {
+            String name = event.getEventType().getName();
+            if (name.equals("qdevmovies.Search")) {
+                searches++;
+                assertEquals("drama", event.getString("genre"));
+                assertTrue(event.getInt("resultCount") > 0);
+                if (event.getBoolean("cacheHit")) {
+                    cacheHits++;
+                }
+            } else if (name.equals("qdevmovies.ReviewLoad")) {
+                reviewLoads++;
+                assertEquals(1L, event.getLong("movieId"));
+                assertTrue(event.getInt("reviewCount") > 0);
+            }
+        }
+        assertEquals(2, searches);
+        assertEquals(1, cacheHits);
+        assertEquals(1, reviewLoads);
+    }
+}
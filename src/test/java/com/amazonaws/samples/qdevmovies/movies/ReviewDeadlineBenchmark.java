@@ -0,0 +1,67 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ui.ExtendedModelMap;
+import org.springframework.ui.Model;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures details page latency against slow review sources, with reviews loaded in the
+ * background up to the page deadline. Not part of the regular test run (the class name
+ * does not end in Test); run it with {@code mvn test -Dtest=ReviewDeadlineBenchmark}.
+ */
+public class ReviewDeadlineBenchmark {
+
+    private static final long[] REVIEW_LATENCIES_MILLIS = {0, 50, 400};
+    private static final long DEADLINE_MILLIS = 30;
+    private static final int REQUESTS = 200;
+
+    @Test
+    public void benchmarkDetailsPageLatency() throws Exception {
+        System.out.printf("%-12s %8s %8s %8s %10s %9s%n",
+            "reviews ms", "p50 ms", "p99 ms", "max ms", "fallbacks", "rejected");
+        for (long latency : REVIEW_LATENCIES_MILLIS) {
+            MovieService movieService = new MovieService();
+            ReviewService reviewService = new ReviewService(
+                new DelayedReviewRepository(new JsonReviewRepository(), () -> latency), 4, 8);
+            SimilarMoviesService similarMoviesService = new SimilarMoviesService(movieService, new ReviewService(), 6, 100);
+            try {
+                CatalogIndexes.awaitBuilt(similarMoviesService::currentIndex);
+                MoviesController controller = new MoviesController();
+                inject(controller, "movieService", movieService);
+                inject(controller, "reviewService", reviewService);
+                inject(controller, "similarMoviesService", similarMoviesService);
+                inject(controller, "reviewDeadlineMillis", DEADLINE_MILLIS);
+
+                long[] millis = new long[REQUESTS];
+                int fallbacks = 0;
+                for (int i = 0; i < REQUESTS; i++) {
+                    Model model = new ExtendedModelMap();
+                    long start = System.nanoTime();
+                    assertEquals("movie-details", controller.getMovieDetails(1L + i % 12, model));
+                    millis[i] = (System.nanoTime() - start) / 1_000_000;
+                    if (Boolean.TRUE.equals(model.getAttribute("reviewsLoading"))) {
+                        fallbacks++;
+                    }
+                }
+                Arrays.sort(millis);
+                System.out.printf("%-12d %8d %8d %8d %10d %9d%n", latency, millis[REQUESTS / 2],
+                    millis[(int) Math.ceil(0.99 * REQUESTS) - 1], millis[REQUESTS - 1], fallbacks,
+                    reviewService.getRejectedLoads());
+            } finally {
+                similarMoviesService.shutdown();
+                reviewService.shutdown();
+                movieService.shutdown();
+            }
+        }
+    }
+
+    private static void inject(Object target, String field, Object value) throws Exception {
+        java.lang.reflect.Field declared = MoviesController.class.getDeclaredField(field);
+        declared.setAccessible(true);
+        declared.set(target, value);
+    }
+}
@@ -0,0 +1,131 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.ui.ExtendedModelMap;
+import org.springframework.ui.Model;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for loading reviews off the request thread with a deadline on the details page.
+ */
+public class ReviewLoadingTest {
+
+    private final AtomicLong latencyMillis = new AtomicLong();
+    private final AtomicInteger reads = new AtomicInteger();
+    private MovieService movieService;
+    private ReviewService reviewService;
+    private SimilarMoviesService similarMoviesService;
+
+    private MoviesController controller(int loaderThreads, int loaderQueue, long deadlineMillis) throws Exception {
+        movieService = new MovieService();
+        reviewService = new ReviewService(new DelayedReviewRepository(new JsonReviewRepository(), () -> {
+            reads.incrementAndGet();
+            return latencyMillis.get();
+        }),
+            loaderThreads, loaderQueue);
+        similarMoviesService = new SimilarMoviesService(movieService, new ReviewService(), 6, 100);
+        CatalogIndexes.awaitBuilt(similarMoviesService::currentIndex);
+        MoviesController controller = new MoviesController();
+        inject(controller, "movieService", movieService);
+        inject(controller, "reviewService", reviewService);
+        inject(controller, "similarMoviesService", similarMoviesService);
+        inject(controller, "reviewDeadlineMillis", deadlineMillis);
+        return controller;
+    }
+
+    private static void inject(Object target, String field, Object value) throws Exception {
+        java.lang.reflect.Field declared = MoviesController.class.getDeclaredField(field);
+        declared.setAccessible(true);
+        declared.set(target, value);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (reviewService != null) {
+            reviewService.shutdown();
+            similarMoviesService.shutdown();
+            movieService.shutdown();
+        }
+    }
+
+    @Test
+    public void testFastReviewsAreRenderedWithThePage() throws Exception {
+        MoviesController controller = controller(2, 8, 1000);
+        Model model = new ExtendedModelMap();
+        assertEquals("movie-details", controller.getMovieDetails(1L, model));
+        assertEquals(false, model.getAttribute("reviewsLoading"));
+        assertFalse(((List<?>) model.getAttribute("allReviews")).isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSlowReviewsDoNotHoldUpThePage() throws Exception {
+        latencyMillis.set(1500);
+        MoviesController controller = controller(2, 8, 50);
+        Model model = new ExtendedModelMap();
+        long start = System.nanoTime();
+        assertEquals("movie-details", controller.getMovieDetails(1L, model));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis < 500, "details page took " + elapsedMillis + " ms");
+        assertEquals(true, model.getAttribute("reviewsLoading"));
+        assertTrue(((List<?>) model.getAttribute("allReviews")).isEmpty());
+        assertNotNull(model.getAttribute("movie"));
+        assertFalse(((List<?>) model.getAttribute("similarMovies")).isEmpty());
+
+        // The browser's follow-up request joins the load the page started
+        ResponseEntity<Map<String, Object>> reviews = controller.movieReviewsApi(1L);
+        assertEquals(HttpStatus.OK, reviews.getStatusCode());
+        assertFalse(((List<Review>) reviews.getBody().get("reviews")).isEmpty());
+        assertEquals(1, reads.get());
+        assertEquals(HttpStatus.NOT_FOUND, controller.movieReviewsApi(999L).getStatusCode());
+    }
+
+    @Test
+    public void testPagesMissingTheDeadlineRenderWithoutReviews() throws Exception {
+        // Loads never finish during the test: every page has to take the fallback
+        latencyMillis.set(60_000);
+        MoviesController controller = controller(2, 2, 30);
+        for (int i = 0; i < 24; i++) {
+            Model model = new ExtendedModelMap();
+            assertEquals("movie-details", controller.getMovieDetails(1L + i % 12, model));
+            assertEquals(true, model.getAttribute("reviewsLoading"));
+            assertTrue(((List<?>) model.getAttribute("allReviews")).isEmpty());
+        }
+        // 2 loads run and 2 wait; repeat requests join them, the other 8 movies are rejected twice
+        assertEquals(16, reviewService.getRejectedLoads());
+        assertTrue(reads.get() <= 2, reads.get() + " reads started");
+    }
+
+    @Test
+    public void testBulkheadRejectsLoadsBeyondItsCapacity() throws Exception {
+        latencyMillis.set(500);
+        controller(1, 1, 0);
+        CompletableFuture<List<Review>> first = reviewService.getReviewsForMovieAsync(1L);
+        CompletableFuture<List<Review>> second = reviewService.getReviewsForMovieAsync(2L);
+        // Same movie: shares the load already in flight
+        assertSame(first, reviewService.getReviewsForMovieAsync(1L));
+
+        CompletableFuture<List<Review>> third = reviewService.getReviewsForMovieAsync(3L);
+        assertTrue(third.isCompletedExceptionally());
+        ExecutionException failure = assertThrows(ExecutionException.class, third::get);
+        assertTrue(failure.getCause() instanceof RejectedExecutionException);
+        assertEquals(1, reviewService.getRejectedLoads());
+
+        assertFalse(first.get().isEmpty());
+        assertFalse(second.get().isEmpty());
+        assertNotSame(first, reviewService.getReviewsForMovieAsync(1L));
+    }
+}
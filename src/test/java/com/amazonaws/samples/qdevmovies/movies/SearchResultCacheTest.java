@@ -0,0 +1,118 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchResultCacheTest {
+
+    private static final List<Movie> RESULTS = Collections.singletonList(
+        new Movie(1L, "The Pirate's Treasure", "Captain Hook", 2023, "Adventure", "A swashbuckling adventure", 120, 4.5));
+
+    private static SearchCriteria key(int i) {
+        return SearchCriteria.of("query-" + i, null, null);
+    }
+
+    @Test
+    public void testCriteriaAreNormalized() {
+        assertEquals(SearchCriteria.of("Prison", null, "Drama"), SearchCriteria.of("  prison ", null, "DRAMA"));
+        assertEquals(SearchCriteria.of(null, null, null), SearchCriteria.of("   ", null, ""));
+        assertNotEquals(SearchCriteria.of("prison", 1L, null), SearchCriteria.of("prison", 2L, null));
+    }
+
+    @Test
+    public void testHitAndMissCounting() {
+        SearchResultCache cache = new SearchResultCache(16, 1024 * 1024);
+        assertNull(cache.get(key(1), 1));
+        cache.put(key(1), RESULTS, 1);
+        assertSame(RESULTS, cache.get(key(1), 1));
+        assertSame(RESULTS, cache.get(SearchCriteria.of(" QUERY-1 ", null, null), 1));
+
+        SearchResultCache.Stats stats = cache.stats();
+        assertEquals(2, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getSize());
+        assertTrue(stats.getEstimatedBytes() > 0);
+    }
+
+    @Test
+    public void testBoundedByEntryCount() {
+        SearchResultCache cache = new SearchResultCache(50, Long.MAX_VALUE);
+        for (int i = 0; i < 500; i++) {
+            cache.get(key(i), 1);
+            cache.put(key(i), RESULTS, 1);
+        }
+        SearchResultCache.Stats stats = cache.stats();
+        assertTrue(stats.getSize() <= 50, "Cache grew past its entry bound: " + stats.getSize());
+        assertTrue(stats.getEvictions() + stats.getAdmissionRejections() >= 450);
+    }
+
+    @Test
+    public void testBoundedByEstimatedBytes() {
+        long entryBytes = SearchResultCache.estimateBytes(key(1), RESULTS);
+        SearchResultCache cache = new SearchResultCache(1000, entryBytes * 10);
+        for (int i = 0; i < 100; i++) {
+            cache.put(key(i), RESULTS, 1);
+        }
+        SearchResultCache.Stats stats = cache.stats();
+        assertTrue(stats.getEstimatedBytes() <= entryBytes * 10);
+        assertTrue(stats.getSize() <= 10);
+    }
+
+    @Test
+    public void testFrequentQueriesSurviveScan() {
+        SearchResultCache cache = new SearchResultCache(100, Long.MAX_VALUE);
+        // A small hot set, searched repeatedly...
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 20; i++) {
+                if (cache.get(key(i), 1) == null) {
+                    cache.put(key(i), RESULTS, 1);
+                }
+            }
+        }
+        // ...followed by a long tail of one-off searches
+        for (int i = 1000; i < 3000; i++) {
+            cache.get(key(i), 1);
+            cache.put(key(i), RESULTS, 1);
+        }
+        int resident = 0;
+        for (int i = 0; i < 20; i++) {
+            if (cache.get(key(i), 1) != null) {
+                resident++;
+            }
+        }
+        assertTrue(resident >= 18, "Hot queries were flushed by a scan, only " + resident + " left");
+    }
+
+    @Test
+    public void testCatalogVersionChangeInvalidatesEverything() {
+        SearchResultCache cache = new SearchResultCache(16, 1024 * 1024);
+        cache.put(key(1), RESULTS, 1);
+        cache.put(key(2), RESULTS, 1);
+
+        assertNull(cache.get(key(1), 2));
+        assertEquals(0, cache.stats().getSize());
+        assertEquals(1, cache.stats().getInvalidations());
+
+        // Results computed against the old catalog must not be stored
+        cache.put(key(1), RESULTS, 1);
+        assertNull(cache.get(key(1), 2));
+    }
+
+    @Test
+    public void testOversizedEntryIsNotCached() {
+        SearchResultCache cache = new SearchResultCache(16, 64);
+        cache.put(key(1), RESULTS, 1);
+        assertNull(cache.get(key(1), 1));
+        assertEquals(1, cache.stats().getAdmissionRejections());
+    }
+
+    @Test
+    public void testInvalidBounds() {
+        assertThrows(IllegalArgumentException.class, () -> new SearchResultCache(1, 1024));
+        assertThrows(IllegalArgumentException.class, () -> new SearchResultCache(16, 0));
+    }
+}
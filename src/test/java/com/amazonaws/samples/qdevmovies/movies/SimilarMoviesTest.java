@@ -0,0 +1,220 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the precomputed similar movies index and service.
+ */
+public class SimilarMoviesTest {
+
+    private static final Function<Movie, SimilarityIndex.ReviewSummary> NO_REVIEWS =
+        movie -> SimilarityIndex.ReviewSummary.of(new ArrayList<>());
+
+    private static final String[] GENRES = {"Drama", "Action/Crime", "Adventure/Fantasy", "Action/Sci-Fi",
+        "Crime/Drama", "Comedy", "Horror/Thriller", "Drama/Romance"};
+
+    private static List<Movie> syntheticCatalog(int size, long seed) {
+        Random random = new Random(seed);
+        List<Movie> catalog = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            catalog.add(new Movie(i, "Synthetic Movie " + i, "Director " + random.nextInt(size / 20 + 1),
+                1920 + random.nextInt(100), GENRES[random.nextInt(GENRES.length)], "Description",
+                80 + random.nextInt(100), random.nextInt(11) / 2.0));
+        }
+        return catalog;
+    }
+
+    private static List<Long> ids(List<SimilarityIndex.Neighbour> neighbours) {
+        List<Long> ids = new ArrayList<>();
+        for (SimilarityIndex.Neighbour neighbour : neighbours) {
+            ids.add(neighbour.getMovie().getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testMostSimilarMoviesShareGenreAndDirector() {
+        List<Movie> catalog = Arrays.asList(
+            new Movie(1L, "Sea Battle", "Admiral Storm", 2022, "Action/Adventure", "Naval combat", 140, 4.0),
+            new Movie(2L, "Sea Battle II", "Admiral Storm", 2024, "Action/Adventure", "More naval combat", 135, 3.5),
+            new Movie(3L, "Harbour Raid", "Captain Hook", 2020, "Action/Adventure", "A daring raid", 120, 4.0),
+            new Movie(4L, "Quiet Shores", "Jane Calm", 1975, "Drama/Romance", "A love story", 100, 4.5),
+            new Movie(5L, "Storm Warning", "Admiral Storm", 2021, "Drama", "A tense wait", 110, 3.0));
+        SimilarityIndex index = SimilarityIndex.build(catalog, NO_REVIEWS, 3, 100, 1);
+
+        assertEquals(SimilarityIndex.Mode.EXACT, index.getMode());
+        List<SimilarityIndex.Neighbour> similar = index.neighbours(1L, 3);
+        assertEquals(Arrays.asList(2L, 3L, 5L), ids(similar));
+        assertTrue(similar.get(0).getScore() >= similar.get(1).getScore());
+        assertTrue(similar.get(1).getScore() >= similar.get(2).getScore());
+        assertFalse(ids(index.neighbours(4L, 4)).contains(4L));
+        assertEquals(1, index.neighbours(1L, 1).size());
+        assertTrue(index.neighbours(99L, 3).isEmpty());
+    }
+
+    @Test
+    public void testReviewsInfluenceSimilarity() {
+        List<Movie> catalog = Arrays.asList(
+            new Movie(1L, "A", "Director A", 2000, "Drama", "", 120, 4.0),
+            new Movie(2L, "B", "Director B", 2000, "Drama", "", 120, 4.0),
+            new Movie(3L, "C", "Director C", 2000, "Drama", "", 120, 4.0));
+        Review loved = new Review("fan", "😀", 5.0, "Great");
+        Review hated = new Review("critic", "😠", 1.0, "Awful");
+        SimilarityIndex index = SimilarityIndex.build(catalog, movie -> SimilarityIndex.ReviewSummary.of(
+            movie.getId() == 2L ? Arrays.asList(hated, hated) : Arrays.asList(loved, loved)), 2, 100, 1);
+        assertEquals(Arrays.asList(3L, 2L), ids(index.neighbours(1L, 2)));
+    }
+
+    @Test
+    public void testApproximateBuildFindsNearlyExactNeighbours() {
+        List<Movie> catalog = syntheticCatalog(6_000, 42);
+        SimilarityIndex exact = SimilarityIndex.build(catalog, NO_REVIEWS, 10, Integer.MAX_VALUE, 1);
+        SimilarityIndex approximate = SimilarityIndex.build(catalog, NO_REVIEWS, 10, 0, 1);
+        assertEquals(SimilarityIndex.Mode.APPROXIMATE, approximate.getMode());
+
+        // Many movies tie on score, so compare scores rather than identities: an
+        // approximate neighbour is a hit if it is as similar as the exact 10th best
+        double hits = 0;
+        double total = 0;
+        double scoreRatio = 0;
+        for (long id = 1; id <= catalog.size(); id += 37) {
+            List<SimilarityIndex.Neighbour> best = exact.neighbours(id, 10);
+            List<SimilarityIndex.Neighbour> found = approximate.neighbours(id, 10);
+            double threshold = best.get(best.size() - 1).getScore() - 1e-6;
+            for (SimilarityIndex.Neighbour neighbour : found) {
+                if (neighbour.getScore() >= threshold) {
+                    hits++;
+                }
+            }
+            total += best.size();
+            scoreRatio += found.get(0).getScore() / best.get(0).getScore();
+        }
+        double recall = hits / total;
+        double samples = Math.ceil(catalog.size() / 37.0);
+        assertTrue(recall > 0.9, "recall@10 was " + recall);
+        assertTrue(scoreRatio / samples > 0.95);
+    }
+
+    @Test
+    public void testApproximateBuildScalesToLargeCatalogs() {
+        List<Movie> catalog = syntheticCatalog(50_000, 7);
+        SimilarityIndex index = SimilarityIndex.build(catalog, NO_REVIEWS, 10, 10_000, 1);
+        assertEquals(SimilarityIndex.Mode.APPROXIMATE, index.getMode());
+        for (long id = 1; id <= catalog.size(); id += 997) {
+            List<SimilarityIndex.Neighbour> neighbours = index.neighbours(id, 10);
+            assertEquals(10, neighbours.size());
+            assertFalse(ids(neighbours).contains(id));
+        }
+    }
+
+    @Test
+    public void testBuildIsDeterministic() {
+        List<Movie> catalog = syntheticCatalog(3_000, 11);
+        SimilarityIndex first = SimilarityIndex.build(catalog, NO_REVIEWS, 5, 0, 1);
+        SimilarityIndex second = SimilarityIndex.build(catalog, NO_REVIEWS, 5, 0, 1);
+        for (long id = 1; id <= catalog.size(); id += 101) {
+            assertEquals(ids(first.neighbours(id, 5)), ids(second.neighbours(id, 5)));
+        }
+    }
+
+    @Test
+    public void testBuildsReadReviewsInOneBulkPass() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        ReviewService reviewService = new ReviewService(new DelayedReviewRepository(new JsonReviewRepository(), () -> {
+            reads.incrementAndGet();
+            return 20;
+        }));
+        MovieService movieService = new MovieService();
+        SimilarMoviesService similar = new SimilarMoviesService(movieService, reviewService, 5, 100);
+        TypeaheadService typeahead = new TypeaheadService(movieService, reviewService, 10);
+        try {
+            CatalogIndexes.awaitBuilt(similar::currentIndex);
+            CatalogIndexes.awaitBuilt(typeahead::currentIndex);
+            assertEquals(5, similar.getSimilarMovies(1L, 5).size());
+            assertFalse(typeahead.complete("the", 5).isEmpty());
+            // One delayed read per index build, not one per movie
+            assertEquals(2, reads.get());
+            assertEquals(0, reviewService.getCompletedLoads());
+
+            Map<Long, SimilarityIndex.ReviewSummary> summaries = reviewService.getReviewSummaries();
+            assertEquals(reviewService.getReviewsForMovie(1L).size(), summaries.get(1L).getCount());
+        } finally {
+            similar.shutdown();
+            typeahead.shutdown();
+            reviewService.shutdown();
+            movieService.shutdown();
+        }
+    }
+
+    @Test
+    public void testServiceRebuildsAfterCatalogChanges() throws Exception {
+        MovieService movieService = new MovieService();
+        SimilarMoviesService service = new SimilarMoviesService(movieService, new ReviewService(), 5, 100);
+        try {
+            CatalogIndexes.awaitBuilt(service::currentIndex);
+            assertEquals(5, service.getSimilarMovies(1L, 10).size());
+            assertEquals(2, service.getSimilarMovies(1L, 2).size());
+            assertTrue(service.getSimilarMovies(999L, 5).isEmpty());
+
+            // Deleted movies disappear immediately; new ones once the index is rebuilt
+            long deleted = service.getSimilarMovies(1L, 1).get(0).getMovie().getId();
+            movieService.deleteMovie(deleted);
+            assertFalse(ids(service.getSimilarMovies(1L, 5)).contains(deleted));
+
+            Movie prison = movieService.getMovieById(1L).get();
+            movieService.saveMovie(new Movie(13L, "The Prison Escape II", prison.getDirector(), prison.getYear(),
+                prison.getGenre(), "The sequel", prison.getDuration(), prison.getImdbRating()));
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (service.currentIndex().getCatalogVersion() != movieService.getCatalogVersion()) {
+                assertTrue(System.currentTimeMillis() < deadline, "index was not rebuilt");
+                Thread.sleep(10);
+            }
+            assertEquals(13L, service.getSimilarMovies(1L, 1).get(0).getMovie().getId());
+        } finally {
+            service.shutdown();
+            movieService.shutdown();
+        }
+    }
+
+    @Test
+    public void testLookupsDoNotWaitForTheFirstBuildAndFailedBuildsAreRetried() throws Exception {
+        MovieService movieService = new MovieService();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger builds = new AtomicInteger();
+        CatalogIndexHolder<String> holder = new CatalogIndexHolder<>("test-index", movieService, version -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (builds.incrementAndGet() == 1) {
+                throw new IllegalStateException("review source unavailable");
+            }
+            return "index@" + version;
+        }, 50);
+        try {
+            // Nothing is built yet, and asking does not block
+            assertNull(holder.get());
+            assertEquals(-1, holder.getCatalogVersion());
+
+            release.countDown();
+            String index = CatalogIndexes.awaitBuilt(holder::get);
+            assertEquals("index@" + movieService.getCatalogVersion(), index);
+            assertEquals(2, builds.get());
+        } finally {
+            holder.shutdown();
+            movieService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the precompressed, fingerprinted static assets, the serving against a running
+ * instance of the application.
+ */
+public class StaticAssetsTest {
+
+    private ConfigurableApplicationContext context;
+
+    private String start(String... properties) {
+        String[] args = new String[properties.length + 3];
+        args[0] = "--server.port=0";
+        args[1] = "--spring.main.banner-mode=off";
+        args[2] = "--movies.analytics.file=";
+        for (int i = 0; i < properties.length; i++) {
+            args[i + 3] = "--" + properties[i];
+        }
+        context = new SpringApplicationBuilder(MoviesApplication.class).run(args);
+        return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    private static ResponseEntity<byte[]> get(String url, String... headers) {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        for (int i = 0; i < headers.length; i += 2) {
+            requestHeaders.set(headers[i], headers[i + 1]);
+        }
+        return new RestTemplate().exchange(url, HttpMethod.GET, new HttpEntity<>(requestHeaders), byte[].class);
+    }
+
+    @Test
+    public void testPrepareFingerprintsAndCompresses() throws Exception {
+        StringBuilder css = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            css.append(".movie-card-").append(i).append(" { color: #333; padding: 8px; }\n");
+        }
+        byte[] content = css.toString().getBytes(StandardCharsets.UTF_8);
+        StaticAssets.Asset asset = StaticAssets.prepare("/css/site.css", content);
+
+        assertTrue(asset.getHashedPath().matches("/css/site\\.[0-9a-f]{12}\\.css"), asset.getHashedPath());
+        assertEquals("text/css;charset=UTF-8", asset.getContentType());
+        assertNotNull(asset.getGzip());
+        assertTrue(asset.getGzip().length < content.length / 4);
+        byte[] inflated = StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(asset.getGzip())));
+        assertArrayEquals(content, inflated);
+
+        assertEquals(asset.getHashedPath(), StaticAssets.prepare("/css/site.css", content).getHashedPath());
+        content[0] = '#';
+        assertNotEquals(asset.getHashedPath(), StaticAssets.prepare("/css/site.css", content).getHashedPath());
+    }
+
+    @Test
+    public void testTinyAssetIsNotGzipped() {
+        StaticAssets.Asset asset = StaticAssets.prepare("/js/a.js", "x()".getBytes(StandardCharsets.UTF_8));
+        assertNull(asset.getGzip());
+        assertEquals("text/javascript;charset=UTF-8", asset.getContentType());
+    }
+
+    @Test
+    public void testLoadFindsBundledAssets() {
+        StaticAssets assets = StaticAssets.load();
+        for (String path : new String[] {"/css/movies.css", "/css/movie-details.css", "/js/reviews.js", "/js/typeahead.js"}) {
+            String hashed = assets.hashedPath(path);
+            assertNotNull(hashed, path);
+            assertSame(assets.get(path), assets.get(hashed));
+        }
+        assertNull(assets.hashedPath("/proto/movies.proto"));
+    }
+
+    @Test
+    public void testAcceptsGzip() {
+        assertTrue(StaticAssetFilter.acceptsGzip("gzip, deflate, br"));
+        assertTrue(StaticAssetFilter.acceptsGzip("br;q=1.0, GZIP;q=0.5"));
+        assertTrue(StaticAssetFilter.acceptsGzip("*"));
+        assertFalse(StaticAssetFilter.acceptsGzip("gzip;q=0"));
+        assertFalse(StaticAssetFilter.acceptsGzip("gzip; q=0.000, br"));
+        assertFalse(StaticAssetFilter.acceptsGzip("br, deflate"));
+        assertFalse(StaticAssetFilter.acceptsGzip(null));
+    }
+
+    @Test
+    public void testPagesLinkFingerprintedAssets() throws Exception {
+        String base = start();
+        StaticAssets assets = context.getBean(StaticAssetFilter.class).getAssets();
+        String page = new RestTemplate().getForObject(base + "/movies", String.class);
+        assertTrue(page.contains("href=\"" + assets.hashedPath("/css/movies.css") + "\""), page);
+        assertTrue(page.contains("src=\"" + assets.hashedPath("/js/typeahead.js") + "\""), page);
+        assertFalse(page.contains("\"/css/movies.css\""));
+
+        String details = new RestTemplate().getForObject(base + "/movies/1/details", String.class);
+        assertTrue(details.contains(assets.hashedPath("/css/movie-details.css")));
+    }
+
+    @Test
+    public void testFingerprintedAssetIsImmutable() throws Exception {
+        String base = start();
+        StaticAssets assets = context.getBean(StaticAssetFilter.class).getAssets();
+        String hashed = assets.hashedPath("/css/movies.css");
+        byte[] identity = assets.get(hashed).getIdentity();
+
+        ResponseEntity<byte[]> plain = get(base + hashed);
+        assertEquals(StaticAssetFilter.IMMUTABLE, plain.getHeaders().getCacheControl());
+        assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(plain.getHeaders().getContentType().isCompatibleWith(org.springframework.http.MediaType.valueOf("text/css")));
+        assertArrayEquals(identity, plain.getBody());
+
+        ResponseEntity<byte[]> gzipped = get(base + hashed, HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, gzipped.getHeaders().getFirst(HttpHeaders.VARY));
+        assertTrue(gzipped.getBody().length < identity.length);
+        assertArrayEquals(identity, StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(gzipped.getBody()))));
+        assertNotEquals(plain.getHeaders().getETag(), gzipped.getHeaders().getETag());
+    }
+
+    @Test
+    public void testPlainPathRevalidates() throws Exception {
+        String base = start();
+        ResponseEntity<byte[]> first = get(base + "/js/typeahead.js");
+        assertEquals(StaticAssetFilter.REVALIDATE, first.getHeaders().getCacheControl());
+        String etag = first.getHeaders().getETag();
+        assertNotNull(etag);
+
+        ResponseEntity<byte[]> second = get(base + "/js/typeahead.js", HttpHeaders.IF_NONE_MATCH, etag);
+        assertEquals(HttpStatus.NOT_MODIFIED, second.getStatusCode());
+        assertNull(second.getBody());
+    }
+
+    @Test
+    public void testDisabledPipelineLinksPlainAssets() throws Exception {
+        String base = start("movies.assets.enabled=false");
+        assertTrue(context.getBeansOfType(StaticAssetFilter.class).isEmpty());
+        String page = new RestTemplate().getForObject(base + "/movies", String.class);
+        assertTrue(page.contains("href=\"/css/movies.css\""));
+        assertEquals(HttpStatus.OK, get(base + "/css/movies.css").getStatusCode());
+    }
+}
@@ -0,0 +1,162 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the deterministic synthetic catalog generator and its Zipf sampler.
+ */
+public class SyntheticCatalogGeneratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSameSeedWritesIdenticalFiles() throws Exception {
+        SyntheticCatalogGenerator.Summary first = new SyntheticCatalogGenerator(7, 2000, 50).write(tempDir.resolve("a"));
+        new SyntheticCatalogGenerator(7, 2000, 50).write(tempDir.resolve("b"));
+        new SyntheticCatalogGenerator(8, 2000, 50).write(tempDir.resolve("c"));
+
+        for (String file : new String[] {SyntheticCatalogGenerator.MOVIES_FILE, SyntheticCatalogGenerator.REVIEWS_FILE}) {
+            byte[] a = Files.readAllBytes(tempDir.resolve("a").resolve(file));
+            assertArrayEquals(a, Files.readAllBytes(tempDir.resolve("b").resolve(file)));
+            assertFalse(Files.size(tempDir.resolve("c").resolve(file)) == a.length
+                && java.util.Arrays.equals(a, Files.readAllBytes(tempDir.resolve("c").resolve(file))));
+        }
+        assertEquals(2000, first.getMovies());
+        assertEquals(Files.size(tempDir.resolve("a").resolve(SyntheticCatalogGenerator.MOVIES_FILE)), first.getMoviesBytes());
+    }
+
+    @Test
+    public void testLoadersReadGeneratedFiles() throws Exception {
+        SyntheticCatalogGenerator generator = new SyntheticCatalogGenerator(42, 3000, 80);
+        SyntheticCatalogGenerator.Summary summary = generator.write(tempDir);
+
+        JsonMovieRepository movies = new JsonMovieRepository(tempDir.resolve(SyntheticCatalogGenerator.MOVIES_FILE));
+        JsonReviewRepository reviews = new JsonReviewRepository(tempDir.resolve(SyntheticCatalogGenerator.REVIEWS_FILE));
+        assertEquals(3000, movies.count());
+        assertEquals(summary.getReviews(), reviews.count());
+        for (long id : new long[] {1, 17, 1500, 3000}) {
+            Movie expected = generator.movie(id);
+            Movie loaded = movies.findById(id).get();
+            assertEquals(expected.getMovieName(), loaded.getMovieName());
+            assertEquals(expected.getDirector(), loaded.getDirector());
+            assertEquals(expected.getGenre(), loaded.getGenre());
+            assertEquals(expected.getYear(), loaded.getYear());
+            assertEquals(expected.getDescription(), loaded.getDescription());
+            assertEquals(expected.getDuration(), loaded.getDuration());
+            assertEquals(expected.getImdbRating(), loaded.getImdbRating(), 0.0);
+            List<Review> expectedReviews = generator.reviews(expected);
+            List<Review> loadedReviews = reviews.findByMovieId(id);
+            assertEquals(expectedReviews.size(), loadedReviews.size());
+            for (int i = 0; i < expectedReviews.size(); i++) {
+                assertEquals(expectedReviews.get(i).getComment(), loadedReviews.get(i).getComment());
+                assertEquals(expectedReviews.get(i).getRating(), loadedReviews.get(i).getRating(), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testMalformedFilesFailToLoad() throws Exception {
+        new SyntheticCatalogGenerator(42, 100, 5).write(tempDir);
+        Path movies = tempDir.resolve(SyntheticCatalogGenerator.MOVIES_FILE);
+        Path reviews = tempDir.resolve(SyntheticCatalogGenerator.REVIEWS_FILE);
+
+        // A truncated file is an error, not a smaller or empty catalog
+        byte[] content = Files.readAllBytes(movies);
+        Files.write(movies, java.util.Arrays.copyOf(content, content.length / 2));
+        assertThrows(java.io.IOException.class, () -> new JsonMovieRepository(movies));
+        Files.write(movies, "[{\"id\": 1, \"movieName\": \"No director\"}]".getBytes(StandardCharsets.UTF_8));
+        assertThrows(java.io.IOException.class, () -> new JsonMovieRepository(movies));
+        Files.write(movies, "[] []".getBytes(StandardCharsets.UTF_8));
+        assertThrows(java.io.IOException.class, () -> new JsonMovieRepository(movies));
+        Files.write(movies, " [ ] ".getBytes(StandardCharsets.UTF_8));
+        assertEquals(0, new JsonMovieRepository(movies).count());
+
+        Files.write(reviews, "{\"one\": []}".getBytes(StandardCharsets.UTF_8));
+        assertThrows(java.io.IOException.class, () -> new JsonReviewRepository(reviews));
+        assertThrows(java.nio.file.NoSuchFileException.class,
+            () -> new JsonReviewRepository(tempDir.resolve("missing.json")));
+    }
+
+    @Test
+    public void testDistributionsAreSkewed() {
+        int size = 20_000;
+        int maxReviews = 200;
+        SyntheticCatalogGenerator generator = new SyntheticCatalogGenerator(42, size, maxReviews);
+        Map<String, Integer> genres = new HashMap<>();
+        Set<String> directors = new HashSet<>();
+        List<Integer> reviewCounts = new ArrayList<>();
+        int shortest = Integer.MAX_VALUE;
+        int longest = 0;
+        long totalReviews = 0;
+        for (long id = 1; id <= size; id++) {
+            Movie movie = generator.movie(id);
+            genres.merge(movie.getGenre(), 1, Integer::sum);
+            directors.add(movie.getDirector());
+            shortest = Math.min(shortest, movie.getMovieName().length());
+            longest = Math.max(longest, movie.getMovieName().length());
+            assertTrue(movie.getYear() >= 1920 && movie.getYear() <= 2024);
+            assertTrue(movie.getImdbRating() >= 1.0 && movie.getImdbRating() <= 5.0);
+            int reviews = generator.reviews(movie).size();
+            reviewCounts.add(reviews);
+            totalReviews += reviews;
+        }
+
+        // Genres: the most popular is several times as common as the median one
+        List<Integer> genreCounts = new ArrayList<>(genres.values());
+        Collections.sort(genreCounts, Collections.reverseOrder());
+        assertTrue(genreCounts.get(0) > 4 * genreCounts.get(genreCounts.size() / 2), "Genres " + genres);
+        // Directors repeat
+        assertTrue(directors.size() < size / 4, directors.size() + " directors");
+        // Titles range from a word to long subtitled sequels
+        assertTrue(shortest <= 6, "Shortest title " + shortest);
+        assertTrue(longest >= 40, "Longest title " + longest);
+        // Reviews: most movies have few, the top 1% hold a large share
+        Collections.sort(reviewCounts, Collections.reverseOrder());
+        assertTrue(reviewCounts.get(size / 2) <= 1, "Median reviews " + reviewCounts.get(size / 2));
+        long topShare = 0;
+        for (int i = 0; i < size / 100; i++) {
+            topShare += reviewCounts.get(i);
+        }
+        assertTrue(topShare * 5 > totalReviews, "Top 1% hold " + topShare + " of " + totalReviews);
+        assertTrue(reviewCounts.get(0) <= maxReviews);
+    }
+
+    @Test
+    public void testZipfSamplerFrequencies() {
+        ZipfSampler sampler = new ZipfSampler(1000, 1.0);
+        Random random = new Random(1);
+        int[] counts = new int[1001];
+        for (int i = 0; i < 200_000; i++) {
+            long k = sampler.sample(random);
+            assertTrue(k >= 1 && k <= 1000);
+            counts[(int) k]++;
+        }
+        // P(k) is proportional to 1/k
+        assertEquals(2.0, (double) counts[1] / counts[2], 0.15);
+        assertEquals(10.0, (double) counts[1] / counts[10], 1.5);
+
+        ZipfSampler huge = new ZipfSampler(1_000_000_000_000L, 0.8);
+        for (int i = 0; i < 10_000; i++) {
+            long k = huge.sample(random);
+            assertTrue(k >= 1 && k <= 1_000_000_000_000L);
+        }
+        assertEquals(1, new ZipfSampler(1, 1.2).sample(random));
+        assertThrows(IllegalArgumentException.class, () -> new ZipfSampler(0, 1.0));
+    }
+}
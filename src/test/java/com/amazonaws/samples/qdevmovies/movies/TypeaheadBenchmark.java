@@ -0,0 +1,65 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures typeahead lookups over growing catalogs, to show their cost does not grow
+ * with the catalog. Not part of the regular test run (the class name does not end in
+ * Test); run it with {@code mvn test -Dtest=TypeaheadBenchmark}.
+ */
+public class TypeaheadBenchmark {
+
+    private static final int[] CATALOG_SIZES = {2_000, 20_000, 200_000};
+    private static final String[] WORDS = {"the", "pirate", "treasure", "sea", "battle", "island", "storm",
+        "captain", "escape", "prison", "dream", "heist", "ghost", "ship", "gold", "black", "pearl", "night"};
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+
+    @Test
+    public void benchmarkLookups() {
+        System.out.printf("%-10s %12s %12s %14s %10s %10s%n",
+            "movies", "completions", "trie nodes", "stored entries", "build ms", "ns/lookup");
+        for (int size : CATALOG_SIZES) {
+            Random random = new Random(5);
+            List<Movie> movies = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) {
+                String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+                movies.add(new Movie(i, name, "Director " + random.nextInt(size / 10), 2000, "Drama", "", 100,
+                    random.nextInt(101) / 20.0));
+            }
+            TypeaheadIndex index = TypeaheadIndex.build(movies, Movie::getImdbRating, 10);
+            String[] prefixes = new String[1024];
+            for (int i = 0; i < prefixes.length; i++) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                prefixes[i] = word.substring(0, 1 + random.nextInt(word.length()));
+            }
+
+            long found = 0;
+            long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+            for (int i = 0; System.nanoTime() < warmupEnd; i++) {
+                found += index.complete(prefixes[i & 1023], 8).size();
+            }
+            long lookups = 0;
+            long start = System.nanoTime();
+            long end = start + MEASURE_NANOS;
+            long now;
+            do {
+                for (int i = 0; i < 1024; i++) {
+                    found += index.complete(prefixes[i], 8).size();
+                }
+                lookups += 1024;
+                now = System.nanoTime();
+            } while (now < end);
+            assertTrue(found > 0);
+            System.out.printf("%-10d %12d %12d %14d %10d %10.0f%n", size, index.getCompletionCount(),
+                index.getNodeCount(), index.getStoredCompletions(), index.getBuildMillis(),
+                (double) (now - start) / lookups);
+        }
+    }
+}
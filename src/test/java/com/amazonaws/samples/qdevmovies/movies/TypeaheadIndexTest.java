@@ -0,0 +1,189 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the typeahead prefix trie and service.
+ */
+public class TypeaheadIndexTest {
+
+    private static final ToDoubleFunction<Movie> BY_RATING = Movie::getImdbRating;
+
+    private static final String[] WORDS = {"the", "pirate", "treasure", "sea", "battle", "island", "storm",
+        "captain", "escape", "prison", "dream", "heist", "ghost", "ship", "gold", "black", "pearl", "night"};
+
+    private static List<Movie> catalog() {
+        return Arrays.asList(
+            new Movie(1L, "The Pirate's Treasure", "Captain Hook", 2023, "Adventure", "A swashbuckling adventure", 120, 4.5),
+            new Movie(2L, "Sea Battle", "Admiral Storm", 2022, "Action", "Epic naval combat", 140, 4.0),
+            new Movie(3L, "Treasure Island", "Long John Silver", 2021, "Adventure", "Classic pirate tale", 110, 4.8),
+            new Movie(4L, "Pirates: Escape the Escape", "Captain Hook", 2019, "Comedy", "Escaping twice", 95, 3.0),
+            new Movie(5L, "Storm Warning", "Admiral Storm", 2020, "Drama", "A tense wait", 100, 2.5));
+    }
+
+    private static List<String> texts(List<TypeaheadIndex.Completion> completions) {
+        List<String> texts = new ArrayList<>();
+        for (TypeaheadIndex.Completion completion : completions) {
+            texts.add(completion.getText());
+        }
+        return texts;
+    }
+
+    @Test
+    public void testCompletesPrefixesBestFirst() {
+        TypeaheadIndex index = TypeaheadIndex.build(catalog(), BY_RATING, 10);
+
+        assertEquals(Arrays.asList("The Pirate's Treasure", "Pirates: Escape the Escape"), texts(index.complete("pira", 10)));
+        // Word starts in the middle of a name match too
+        assertEquals(Arrays.asList("Treasure Island", "The Pirate's Treasure"), texts(index.complete("treas", 10)));
+        assertEquals(Arrays.asList("Treasure Island"), texts(index.complete("treas", 1)));
+        assertTrue(index.complete("zebra", 10).isEmpty());
+        assertTrue(index.complete("   ", 10).isEmpty());
+    }
+
+    @Test
+    public void testNormalizesCaseAndPunctuation() {
+        TypeaheadIndex index = TypeaheadIndex.build(catalog(), BY_RATING, 10);
+
+        assertEquals(Arrays.asList("The Pirate's Treasure"), texts(index.complete("  THE PIRATES", 10)));
+        assertEquals(Arrays.asList("The Pirate's Treasure"), texts(index.complete("pirate's t", 10)));
+        assertEquals(Arrays.asList("Pirates: Escape the Escape"), texts(index.complete("pirates escape", 10)));
+        // A trailing space asks for the whole word
+        assertEquals(Arrays.asList("Pirates: Escape the Escape"), texts(index.complete("escape ", 10)));
+        assertTrue(index.complete("pirate ", 10).isEmpty());
+        assertEquals("pirates escape the ", TypeaheadIndex.normalize("Pirates: Escape -- the ", true));
+        assertEquals("pirates escape the", TypeaheadIndex.normalize("Pirates: Escape -- the ", false));
+    }
+
+    @Test
+    public void testSuggestsDirectorsOnceWithTheirBestMovie() {
+        TypeaheadIndex index = TypeaheadIndex.build(catalog(), BY_RATING, 10);
+
+        List<TypeaheadIndex.Completion> completions = index.complete("storm", 10);
+        assertEquals(Arrays.asList("Admiral Storm", "Storm Warning"), texts(completions));
+        assertEquals(TypeaheadIndex.Kind.DIRECTOR, completions.get(0).getKind());
+        assertEquals(2L, completions.get(0).getMovieId());
+        assertEquals(TypeaheadIndex.Kind.MOVIE, completions.get(1).getKind());
+
+        // A movie matching a prefix at several word starts is suggested once
+        assertEquals(Arrays.asList("Pirates: Escape the Escape"), texts(index.complete("escape", 10)));
+        assertEquals(1, index.complete("captain", 10).size());
+    }
+
+    @Test
+    public void testMatchesBruteForceOnLargeCatalog() {
+        Random random = new Random(3);
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 1; i <= 20_000; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int w = 0, words = 1 + random.nextInt(4); w < words; w++) {
+                name.append(w == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            name.append(' ').append(i);
+            movies.add(new Movie(i, name.toString(), "Director " + random.nextInt(500), 2000, "Drama", "",
+                100, random.nextInt(101) / 20.0));
+        }
+        TypeaheadIndex index = TypeaheadIndex.build(movies, BY_RATING, 10);
+
+        // Brute force: every completion with a word starting with the prefix, in rank order
+        List<TypeaheadIndex.Completion> all = new ArrayList<>();
+        Map<String, TypeaheadIndex.Completion> directors = new LinkedHashMap<>();
+        for (Movie movie : movies) {
+            all.add(new TypeaheadIndex.Completion(TypeaheadIndex.Kind.MOVIE, movie.getMovieName(), movie.getId(),
+                movie.getImdbRating()));
+            TypeaheadIndex.Completion best = directors.get(movie.getDirector());
+            if (best == null || movie.getImdbRating() > best.getWeight()) {
+                directors.put(movie.getDirector(), new TypeaheadIndex.Completion(TypeaheadIndex.Kind.DIRECTOR,
+                    movie.getDirector(), movie.getId(), movie.getImdbRating()));
+            }
+        }
+        all.addAll(directors.values());
+        all.sort(Comparator.comparingDouble(TypeaheadIndex.Completion::getWeight).reversed()
+            .thenComparing(TypeaheadIndex.Completion::getText)
+            .thenComparing(TypeaheadIndex.Completion::getKind)
+            .thenComparingLong(TypeaheadIndex.Completion::getMovieId));
+
+        String[] prefixes = {"p", "pi", "pirate", "pirate t", "treasure is", "ghost ship 1", "director 4",
+            "director 42", "42", "night black", "s", "zzz"};
+        for (String prefix : prefixes) {
+            List<String> expected = new ArrayList<>();
+            for (TypeaheadIndex.Completion completion : all) {
+                String text = TypeaheadIndex.normalize(completion.getText(), false);
+                if (text.startsWith(prefix) || text.contains(" " + prefix)) {
+                    expected.add(completion.getText());
+                    if (expected.size() == 10) {
+                        break;
+                    }
+                }
+            }
+            assertEquals(expected, texts(index.complete(prefix, 10)), prefix);
+        }
+    }
+
+    @Test
+    public void testLookupWorkIsIndependentOfCatalogSize() {
+        Random random = new Random(5);
+        List<Movie> movies = new ArrayList<>();
+        Set<Character> alphabet = new HashSet<>();
+        for (int i = 1; i <= 200_000; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            String director = "Director " + random.nextInt(20_000);
+            movies.add(new Movie(i, name, director, 2000, "Drama", "", 100, random.nextInt(101) / 20.0));
+            for (char c : TypeaheadIndex.normalize(name + " " + director, false).toCharArray()) {
+                alphabet.add(c);
+            }
+        }
+        TypeaheadIndex index = TypeaheadIndex.build(movies, BY_RATING, 10);
+
+        // A lookup walks one node per typed character and at most the alphabet's siblings
+        // on each level, whatever the number of completions below it
+        for (int i = 0; i < 1024; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            String prefix = word.substring(0, 1 + random.nextInt(word.length()));
+            assertFalse(index.complete(prefix, 8).isEmpty(), prefix);
+            int visited = index.visitedNodes(prefix);
+            assertTrue(visited >= prefix.length() && visited <= prefix.length() * alphabet.size(),
+                prefix + " visited " + visited + " nodes");
+        }
+        assertTrue(index.visitedNodes("zzzz") <= alphabet.size());
+        assertTrue(index.getStoredCompletions() < (long) index.getNodeCount() * index.getK());
+    }
+
+    @Test
+    public void testServiceSkipsDeletedMoviesAndRebuilds() throws Exception {
+        MovieService movieService = new MovieService();
+        TypeaheadService service = new TypeaheadService(movieService, new ReviewService(), 10);
+        try {
+            CatalogIndexes.awaitBuilt(service::currentIndex);
+            assertEquals(Arrays.asList("The Prison Escape"), texts(service.complete("prison", 10)));
+            movieService.deleteMovie(1L);
+            assertTrue(service.complete("prison", 10).isEmpty());
+
+            movieService.saveMovie(new Movie(13L, "Prison Break", "John Director", 1994, "Drama", "Another escape",
+                120, 4.0));
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (service.getIndexedCatalogVersion() != movieService.getCatalogVersion()) {
+                assertTrue(System.currentTimeMillis() < deadline, "index was not rebuilt");
+                service.currentIndex();
+                Thread.sleep(10);
+            }
+            assertEquals(Arrays.asList("Prison Break"), texts(service.complete("prison", 10)));
+        } finally {
+            service.shutdown();
+            movieService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the CBOR and protobuf encodings of the movie API, the {@code fields=}
+ * projection and content negotiation, with payload size comparisons.
+ */
+public class WireFormatTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper cborMapper = new CBORMapper();
+    private MovieService movieService;
+
+    @BeforeEach
+    public void setUp() {
+        movieService = new MovieService();
+    }
+
+    private static Map<String, Object> searchResponse(Object movies, int totalResults) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("movies", movies);
+        response.put("totalResults", totalResults);
+        Map<String, Object> criteria = new HashMap<>();
+        criteria.put("name", "");
+        criteria.put("id", "");
+        criteria.put("genre", "Drama");
+        response.put("searchCriteria", criteria);
+        response.put("pirateMessage", "Ahoy! Found " + totalResults + " pieces of treasure!");
+        return response;
+    }
+
+    private static List<Movie> syntheticCatalog(int size) {
+        List<Movie> catalog = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            catalog.add(new Movie(i, "Synthetic Movie Number " + i, "Director " + (i % 500), 1950 + i % 70,
+                "Drama", "A long enough description of synthetic movie number " + i + " for realistic payloads",
+                90 + i % 60, (i % 10) / 2.0));
+        }
+        return catalog;
+    }
+
+    @Test
+    public void testProtobufRoundTripsResponses() throws Exception {
+        List<Movie> movies = movieService.getAllMovies();
+        Map<String, Object> decoded = MovieProtobufDecoder.decode(MovieProtobuf.encode(
+            searchResponse(movieService.toJsonArray(movies), movies.size())));
+
+        assertEquals(movies.size(), decoded.get("totalResults"));
+        assertEquals("Ahoy! Found 12 pieces of treasure!", decoded.get("pirateMessage"));
+        assertEquals(Map.of("genre", "Drama"), decoded.get("searchCriteria"));
+        List<Map<String, Object>> decodedMovies = castList(decoded.get("movies"));
+        for (int i = 0; i < movies.size(); i++) {
+            assertEquals(MovieFields.ALL.project(movies.get(i)), decodedMovies.get(i));
+        }
+
+        MovieFields fields = MovieFields.parse("movieName,id");
+        decoded = MovieProtobufDecoder.decode(MovieProtobuf.encode(searchResponse(fields.project(movies), movies.size())));
+        assertEquals(Map.of("id", 1L, "movieName", "The Prison Escape"), castList(decoded.get("movies")).get(0));
+
+        Map<String, Object> similar = new HashMap<>();
+        similar.put("movieId", 1L);
+        similar.put("scores", Arrays.asList(0.75, 0.5, -0.125));
+        decoded = MovieProtobufDecoder.decode(MovieProtobuf.encode(similar));
+        assertEquals(1L, decoded.get("movieId"));
+        assertEquals(Arrays.asList(0.75, 0.5, -0.125), decoded.get("scores"));
+
+        Map<String, Object> unknown = new HashMap<>();
+        unknown.put("bogus", 1);
+        assertThrows(IllegalArgumentException.class, () -> MovieProtobuf.encode(unknown));
+    }
+
+    @Test
+    public void testFieldsSelection() {
+        MovieFields fields = MovieFields.parse(" icon, id ,,id");
+        assertEquals(Arrays.asList("id", "icon"), fields.getNames());
+        assertFalse(fields.isAll());
+        assertTrue(MovieFields.parse(null).isAll());
+        assertTrue(MovieFields.parse(" ").isAll());
+        assertTrue(MovieFields.parse(String.join(",", MovieFields.ALL.getNames())).isAll());
+        assertThrows(IllegalArgumentException.class, () -> MovieFields.parse("id,budget"));
+    }
+
+    /**
+     * Runs the application on a random port, since negotiation depends on the
+     * registered message converters.
+     */
+    @Test
+    public void testAcceptHeaderSelectsEncodingOverHttp() throws Exception {
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(MoviesApplication.class)
+            .run("--server.port=0", "--spring.main.banner-mode=off", "--movies.replication.role=leader");
+        try {
+            String baseUrl = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+            RestTemplate client = new RestTemplate();
+            String search = baseUrl + "/api/movies/search?genre=drama";
+
+            ResponseEntity<byte[]> json = fetch(client, search, null);
+            assertTrue(json.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_JSON));
+            JsonNode jsonBody = objectMapper.readTree(json.getBody());
+
+            ResponseEntity<byte[]> cbor = fetch(client, search, MediaType.APPLICATION_CBOR);
+            assertEquals(MediaType.APPLICATION_CBOR, cbor.getHeaders().getContentType());
+            JsonNode cborBody = cborMapper.readTree(cbor.getBody());
+            assertEquals(jsonBody, cborBody);
+
+            ResponseEntity<byte[]> protobuf = fetch(client, search, MovieProtobufHttpMessageConverter.APPLICATION_X_PROTOBUF);
+            assertEquals(MovieProtobufHttpMessageConverter.APPLICATION_X_PROTOBUF, protobuf.getHeaders().getContentType());
+            Map<String, Object> protobufBody = MovieProtobufDecoder.decode(protobuf.getBody());
+            assertEquals(jsonBody.get("totalResults").asInt(), protobufBody.get("totalResults"));
+            assertEquals(jsonBody.get("pirateMessage").asText(), protobufBody.get("pirateMessage"));
+            assertEquals(jsonBody.get("movies").size(), castList(protobufBody.get("movies")).size());
+
+            // Only movie list responses have a protobuf encoding
+            HttpClientErrorException notAcceptable = assertThrows(HttpClientErrorException.class,
+                () -> fetch(client, baseUrl + "/api/replication/changes", MovieProtobufHttpMessageConverter.APPLICATION_X_PROTOBUF));
+            assertEquals(406, notAcceptable.getRawStatusCode());
+            ResponseEntity<byte[]> changes = fetch(client, baseUrl + "/api/replication/changes", MediaType.APPLICATION_CBOR);
+            assertEquals(MediaType.APPLICATION_CBOR, changes.getHeaders().getContentType());
+            assertTrue(cborMapper.readTree(changes.getBody()).get("snapshot").asBoolean());
+
+            JsonNode projected = objectMapper.readTree(
+                fetch(client, baseUrl + "/api/movies/search?name=prison&fields=id,movieName", null).getBody());
+            assertEquals("{\"id\":1,\"movieName\":\"The Prison Escape\"}", projected.get("movies").get(0).toString());
+
+            HttpClientErrorException badField = assertThrows(HttpClientErrorException.class,
+                () -> fetch(client, baseUrl + "/api/movies/search?fields=id,budget", null));
+            assertEquals(400, badField.getRawStatusCode());
+            assertTrue(badField.getResponseBodyAsString().contains("budget"));
+        } finally {
+            app.close();
+        }
+    }
+
+    private static ResponseEntity<byte[]> fetch(RestTemplate client, String url, MediaType accept) {
+        HttpHeaders headers = new HttpHeaders();
+        if (accept != null) {
+            headers.setAccept(Arrays.asList(accept));
+        }
+        return client.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+    }
+
+    @Test
+    public void testPayloadSizes() throws Exception {
+        List<Movie> catalog = syntheticCatalog(1_000);
+        MovieService service = new MovieService(catalog);
+        Map<String, Object> full = searchResponse(service.toJsonArray(catalog), catalog.size());
+        Map<String, Object> projected = searchResponse(MovieFields.parse("id,movieName").project(catalog), catalog.size());
+
+        byte[] json = objectMapper.writeValueAsBytes(full);
+        byte[] cbor = cborMapper.writeValueAsBytes(full);
+        byte[] protobuf = MovieProtobuf.encode(full);
+        byte[] projectedJson = objectMapper.writeValueAsBytes(projected);
+        byte[] projectedProtobuf = MovieProtobuf.encode(projected);
+
+        assertTrue(cbor.length < json.length, "CBOR " + cbor.length + " vs JSON " + json.length);
+        assertTrue(protobuf.length < cbor.length * 0.8, "protobuf " + protobuf.length + " vs CBOR " + cbor.length);
+        assertTrue(projectedJson.length < json.length / 3);
+        assertTrue(projectedProtobuf.length < projectedJson.length * 0.75);
+
+        // Every encoding decodes to the same movies
+        JsonNode fromJson = objectMapper.readTree(json).get("movies");
+        assertEquals(fromJson, cborMapper.readTree(cbor).get("movies"));
+        List<Map<String, Object>> fromProtobuf = castList(MovieProtobufDecoder.decode(protobuf).get("movies"));
+        for (int i = 0; i < catalog.size(); i += 97) {
+            assertEquals(fromJson.get(i).get("imdbRating").asDouble(), fromProtobuf.get(i).getOrDefault("imdbRating", 0.0));
+            assertEquals(fromJson.get(i).get("description").asText(), fromProtobuf.get(i).get("description"));
+        }
+        service.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> castList(Object value) {
+        return (List<Map<String, Object>>) value;
+    }
+}